@@ -0,0 +1,47 @@
+package page.foliage.inject.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the allocation rate per operation is reported
+ * along with throughput. Accepts the usual JMH command line options, for example a regular
+ * expression that selects the benchmarks to run.
+ */
+public final class BenchmarkMain {
+  private BenchmarkMain() {}
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLine);
+    if (!hasGcProfiler(commandLine)) {
+      options.addProfiler(GCProfiler.class);
+    }
+    Runner runner = new Runner(options.build());
+    if (commandLine.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+
+  private static boolean hasGcProfiler(CommandLineOptions commandLine) {
+    for (ProfilerConfig profiler : commandLine.getProfilers()) {
+      if (profiler.getKlass().equals("gc")
+          || profiler.getKlass().equals(GCProfiler.class.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,123 @@
+package page.foliage.inject.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import page.foliage.inject.Injector;
+import page.foliage.inject.internal.InjectorCreationRecorder;
+import page.foliage.inject.spi.InjectorCreationReport;
+
+/**
+ * Reports how injector creation scales, with numbers that a JMH time measurement doesn't give: the
+ * peak and retained heap of each creation, and the time and generated classes of each creation
+ * phase. Each scenario and size is created once from freshly generated classes, after a warm-up
+ * creation of the same shape.
+ *
+ * <p>Usage: {@code CreationScaling [scenario size]...}, for example {@code BINDINGS 10000}. Without
+ * arguments, every scenario is run at the sizes of {@link InjectorCreationBenchmark}. Run with a
+ * large heap, such as {@code -Xmx4g}, and without other load, since heap usage is sampled from the
+ * whole JVM. Peak heap is the sum of the peaks of each heap pool, so it can overestimate the true
+ * peak.
+ */
+public final class CreationScaling {
+  private CreationScaling() {}
+
+  private static final Object[][] DEFAULT_RUNS = {
+    {CreationScenario.BINDINGS, 1_000},
+    {CreationScenario.BINDINGS, 10_000},
+    {CreationScenario.BINDINGS, 100_000},
+    {CreationScenario.PROVIDES_MODULES, 1_000},
+    {CreationScenario.PROVIDES_MODULES, 10_000},
+    {CreationScenario.PROVIDES_MODULES, 100_000},
+    {CreationScenario.PRIVATE_NESTING, 10},
+    {CreationScenario.PRIVATE_NESTING, 100},
+    {CreationScenario.PRIVATE_NESTING, 250},
+    {CreationScenario.CHILD_INJECTORS, 10},
+    {CreationScenario.CHILD_INJECTORS, 100},
+    {CreationScenario.CHILD_INJECTORS, 1_000},
+  };
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      for (Object[] run : DEFAULT_RUNS) {
+        run((CreationScenario) run[0], (Integer) run[1]);
+      }
+    } else if (args.length % 2 == 0) {
+      for (int i = 0; i < args.length; i += 2) {
+        run(CreationScenario.valueOf(args[i]), Integer.parseInt(args[i + 1]));
+      }
+    } else {
+      System.err.println("Usage: CreationScaling [scenario size]...");
+      System.exit(2);
+    }
+  }
+
+  private static void run(CreationScenario scenario, int size) {
+    scenario.prepare(size).create(); // warms up the code paths of this shape
+    CreationScenario.Prepared prepared = scenario.prepare(size);
+
+    long heapBefore = usedHeapAfterGc();
+    resetPeakHeap();
+    long start = System.nanoTime();
+    List<Injector> injectors = prepared.create();
+    Duration time = Duration.ofNanos(System.nanoTime() - start);
+    long peakHeap = peakHeap();
+    long retainedHeap = usedHeapAfterGc() - heapBefore;
+
+    // the injectors are still used here, so they were reachable while the retained heap was
+    // measured; the phases of all injectors of the scenario are summed
+    Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    Map<String, Long> phaseClasses = new LinkedHashMap<>();
+    long generatedClasses = 0;
+    for (Injector injector : injectors) {
+      InjectorCreationReport report = InjectorCreationRecorder.getReport(injector);
+      report
+          .getPhaseTimes()
+          .forEach((phase, t) -> phaseNanos.merge(phase, t.toNanos(), Long::sum));
+      report
+          .getPhaseGeneratedClassCounts()
+          .forEach((phase, n) -> phaseClasses.merge(phase, n, Long::sum));
+      generatedClasses += report.getGeneratedClassCount();
+    }
+    System.out.printf(
+        "%s %d: %d ms, peak heap %d MB, retained heap %d MB, %d generated classes%n",
+        scenario, size, time.toMillis(), peakHeap >> 20, retainedHeap >> 20, generatedClasses);
+    for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+      System.out.printf(
+          "  %-50s %8.1f ms %8d classes%n",
+          phase.getKey(),
+          phase.getValue() / 1e6,
+          phaseClasses.getOrDefault(phase.getKey(), 0L));
+    }
+  }
+
+  private static long usedHeapAfterGc() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
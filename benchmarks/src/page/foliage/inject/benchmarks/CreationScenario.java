@@ -0,0 +1,84 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import page.foliage.inject.Guice;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Module;
+
+/**
+ * The shapes of injectors whose creation is benchmarked. Each scenario is prepared with a size,
+ * which generates its classes and modules, and then creates an injector from them.
+ */
+enum CreationScenario {
+  /** One module with an untargetted constructor binding for each of {@code size} services. */
+  BINDINGS {
+    @Override
+    Prepared prepare(int size) {
+      SyntheticModules modules = new SyntheticModules(size);
+      Module module = modules.bindingsModule(0, size);
+      return () -> Collections.singletonList(Guice.createInjector(module));
+    }
+  },
+
+  /** {@code size} services provided by modules of {@value #METHODS_PER_MODULE} provider methods. */
+  PROVIDES_MODULES {
+    @Override
+    Prepared prepare(int size) {
+      List<Module> modules = new SyntheticModules(size).providesModules(METHODS_PER_MODULE);
+      return () -> Collections.singletonList(Guice.createInjector(modules));
+    }
+  },
+
+  /** Private modules nested {@code size} levels deep, each binding and exposing one service. */
+  PRIVATE_NESTING {
+    @Override
+    Prepared prepare(int size) {
+      Module module = new SyntheticModules(size).privateModules(size);
+      return () -> Collections.singletonList(Guice.createInjector(module));
+    }
+  },
+
+  /**
+   * {@code size} child injectors of an empty injector, each binding {@value #BINDINGS_PER_CHILD}
+   * services of its own. Their dependencies on services of other children get just-in-time bindings
+   * in the parent.
+   */
+  CHILD_INJECTORS {
+    @Override
+    Prepared prepare(int size) {
+      SyntheticModules modules = new SyntheticModules(size * BINDINGS_PER_CHILD);
+      Module[] childModules = new Module[size];
+      for (int i = 0; i < size; i++) {
+        childModules[i] =
+            modules.bindingsModule(i * BINDINGS_PER_CHILD, (i + 1) * BINDINGS_PER_CHILD);
+      }
+      return () -> {
+        List<Injector> injectors = new ArrayList<>();
+        Injector parent = Guice.createInjector();
+        injectors.add(parent);
+        for (Module childModule : childModules) {
+          injectors.add(parent.createChildInjector(childModule));
+        }
+        return injectors;
+      };
+    }
+  };
+
+  static final int METHODS_PER_MODULE = 100;
+  static final int BINDINGS_PER_CHILD = 10;
+
+  /** Generates fresh classes and modules for a scenario of the given size. */
+  abstract Prepared prepare(int size);
+
+  /** A prepared scenario. */
+  interface Prepared {
+    /**
+     * Creates the injectors of the scenario, returning all of them. Only the first creation uses
+     * cold classes; later ones reuse the reflection and generated classes cached for them.
+     */
+    List<Injector> create();
+  }
+}
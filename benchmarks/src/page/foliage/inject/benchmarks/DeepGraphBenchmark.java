@@ -0,0 +1,83 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.Guice;
+import page.foliage.inject.Inject;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Provider;
+
+/**
+ * Provisions an unscoped graph of just-in-time constructor bindings: a binary tree of 6 levels, so
+ * every operation constructs 63 objects.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepGraphBenchmark {
+
+  public static class Level0 {
+    @Inject
+    Level0(Level1 left, Level1 right) {}
+  }
+
+  public static class Level1 {
+    @Inject
+    Level1(Level2 left, Level2 right) {}
+  }
+
+  public static class Level2 {
+    @Inject
+    Level2(Level3 left, Level3 right) {}
+  }
+
+  public static class Level3 {
+    @Inject
+    Level3(Level4 left, Level4 right) {}
+  }
+
+  public static class Level4 {
+    @Inject
+    Level4(Level5 left, Level5 right) {}
+  }
+
+  public static class Level5 {}
+
+  private Injector injector;
+  private Provider<Level0> provider;
+
+  @Setup
+  public void setUp() {
+    injector = Guice.createInjector();
+    provider = injector.getProvider(Level0.class);
+  }
+
+  @Benchmark
+  public Level0 getInstance() {
+    return injector.getInstance(Level0.class);
+  }
+
+  @Benchmark
+  public Level0 providerGet() {
+    return provider.get();
+  }
+
+  @Benchmark
+  public Level5 getLeaf() {
+    return injector.getInstance(Level5.class);
+  }
+}
@@ -0,0 +1,105 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.Injector;
+
+/**
+ * Measures the wall time of creating injectors of growing sizes. Every measurement creates one
+ * injector from freshly generated classes, so it includes the reflection and bytecode generation of
+ * a cold start. Use {@link CreationScaling} for the heap and generated classes of each phase.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InjectorCreationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Bindings {
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    CreationScenario.Prepared scenario;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      scenario = CreationScenario.BINDINGS.prepare(size);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ProvidesModules {
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    CreationScenario.Prepared scenario;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      scenario = CreationScenario.PROVIDES_MODULES.prepare(size);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class PrivateNesting {
+    // retained memory grows about with the cube of the depth, so deeper nesting needs more heap
+    @Param({"10", "100", "250"})
+    int depth;
+
+    CreationScenario.Prepared scenario;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      scenario = CreationScenario.PRIVATE_NESTING.prepare(depth);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ChildInjectors {
+    @Param({"10", "100", "1000"})
+    int children;
+
+    CreationScenario.Prepared scenario;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      scenario = CreationScenario.CHILD_INJECTORS.prepare(children);
+    }
+  }
+
+  @Benchmark
+  public List<Injector> bindings(Bindings state) {
+    return state.scenario.create();
+  }
+
+  @Benchmark
+  public List<Injector> providesModules(ProvidesModules state) {
+    return state.scenario.create();
+  }
+
+  @Benchmark
+  public List<Injector> privateNesting(PrivateNesting state) {
+    return state.scenario.create();
+  }
+
+  @Benchmark
+  public List<Injector> childInjectors(ChildInjectors state) {
+    return state.scenario.create();
+  }
+}
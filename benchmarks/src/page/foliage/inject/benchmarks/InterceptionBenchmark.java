@@ -0,0 +1,116 @@
+package page.foliage.inject.benchmarks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Injector;
+import page.foliage.inject.matcher.Matchers;
+
+/**
+ * Calls methods intercepted by pass-through interceptors, which go through the interceptor stack
+ * of the enhanced class, and provisions instances of the enhanced class.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptionBenchmark {
+
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  public @interface Intercepted {}
+
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  public @interface InterceptedTwice {}
+
+  public static class Service {
+    @Intercepted
+    public int intercepted(int value) {
+      return value + 1;
+    }
+
+    @Intercepted
+    @InterceptedTwice
+    public int twiceIntercepted(int value) {
+      return value + 1;
+    }
+
+    public int direct(int value) {
+      return value + 1;
+    }
+  }
+
+  /** Proceeds without doing anything else. */
+  static final class PassThrough implements MethodInterceptor {
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      return invocation.proceed();
+    }
+  }
+
+  private Injector injector;
+  private Service service;
+  private int value;
+
+  @Setup
+  public void setUp() {
+    injector =
+        Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                bindInterceptor(
+                    Matchers.subclassesOf(Service.class),
+                    Matchers.annotatedWith(Intercepted.class),
+                    new PassThrough());
+                bindInterceptor(
+                    Matchers.subclassesOf(Service.class),
+                    Matchers.annotatedWith(InterceptedTwice.class),
+                    new PassThrough());
+              }
+            });
+    service = injector.getInstance(Service.class);
+  }
+
+  @Benchmark
+  public int intercepted() {
+    return service.intercepted(value++);
+  }
+
+  @Benchmark
+  public int twiceIntercepted() {
+    return service.twiceIntercepted(value++);
+  }
+
+  /** A method of the enhanced class that isn't intercepted, for comparison. */
+  @Benchmark
+  public int direct() {
+    return service.direct(value++);
+  }
+
+  @Benchmark
+  public Service provisionEnhanced() {
+    return injector.getInstance(Service.class);
+  }
+}
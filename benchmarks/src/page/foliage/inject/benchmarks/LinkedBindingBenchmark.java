@@ -0,0 +1,80 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.ImplementedBy;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Key;
+import page.foliage.inject.name.Names;
+
+/** Provisions objects through linked bindings, explicit and just-in-time. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkedBindingBenchmark {
+
+  public interface Service {}
+
+  public static class ServiceImpl implements Service {}
+
+  @ImplementedBy(DefaultService.class)
+  public interface ImplementedService {}
+
+  public static class DefaultService implements ImplementedService {}
+
+  private static final Key<Service> FIRST = Key.get(Service.class, Names.named("first"));
+  private static final Key<Service> SECOND = Key.get(Service.class, Names.named("second"));
+
+  private Injector injector;
+
+  @Setup
+  public void setUp() {
+    injector =
+        Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                bind(Service.class).to(ServiceImpl.class);
+                bind(SECOND).to(Service.class);
+                bind(FIRST).to(SECOND);
+              }
+            });
+  }
+
+  @Benchmark
+  public ServiceImpl unlinked() {
+    return injector.getInstance(ServiceImpl.class);
+  }
+
+  @Benchmark
+  public Service linked() {
+    return injector.getInstance(Service.class);
+  }
+
+  /** Follows three links to reach the constructor binding. */
+  @Benchmark
+  public Service linkedChain() {
+    return injector.getInstance(FIRST);
+  }
+
+  @Benchmark
+  public ImplementedService implementedBy() {
+    return injector.getInstance(ImplementedService.class);
+  }
+}
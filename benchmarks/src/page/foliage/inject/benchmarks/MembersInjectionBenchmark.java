@@ -0,0 +1,94 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.Guice;
+import page.foliage.inject.Inject;
+import page.foliage.inject.Injector;
+import page.foliage.inject.MembersInjector;
+
+/** Injects fields and methods, into existing instances and while constructing objects. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MembersInjectionBenchmark {
+
+  public static class Dependency {}
+
+  public static class FieldTarget {
+    @Inject Dependency first;
+    @Inject Dependency second;
+    @Inject Dependency third;
+  }
+
+  public static class MethodTarget {
+    Dependency first;
+    Dependency second;
+
+    @Inject
+    void setFirst(Dependency first) {
+      this.first = first;
+    }
+
+    @Inject
+    void setSecond(Dependency second) {
+      this.second = second;
+    }
+  }
+
+  private Injector injector;
+  private MembersInjector<FieldTarget> fieldInjector;
+  private MembersInjector<MethodTarget> methodInjector;
+  private final FieldTarget fieldTarget = new FieldTarget();
+  private final MethodTarget methodTarget = new MethodTarget();
+
+  @Setup
+  public void setUp() {
+    injector = Guice.createInjector();
+    fieldInjector = injector.getMembersInjector(FieldTarget.class);
+    methodInjector = injector.getMembersInjector(MethodTarget.class);
+  }
+
+  @Benchmark
+  public FieldTarget injectFields() {
+    fieldInjector.injectMembers(fieldTarget);
+    return fieldTarget;
+  }
+
+  @Benchmark
+  public MethodTarget injectMethods() {
+    methodInjector.injectMembers(methodTarget);
+    return methodTarget;
+  }
+
+  /** Looks up the members injector of the instance's class on every call. */
+  @Benchmark
+  public FieldTarget injectorInjectMembers() {
+    injector.injectMembers(fieldTarget);
+    return fieldTarget;
+  }
+
+  @Benchmark
+  public FieldTarget constructWithFields() {
+    return injector.getInstance(FieldTarget.class);
+  }
+
+  @Benchmark
+  public MethodTarget constructWithMethods() {
+    return injector.getInstance(MethodTarget.class);
+  }
+}
@@ -0,0 +1,115 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Key;
+import page.foliage.inject.Provider;
+import page.foliage.inject.TypeLiteral;
+import page.foliage.inject.multibindings.MapBinder;
+import page.foliage.inject.multibindings.Multibinder;
+import page.foliage.inject.multibindings.OptionalBinder;
+import page.foliage.inject.name.Names;
+
+/**
+ * Provisions the sets, maps and optionals of {@link Multibinder}, {@link MapBinder} and {@link
+ * OptionalBinder}, whose unscoped elements are constructed on every call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultibindingBenchmark {
+
+  private static final int ELEMENTS = 10;
+
+  public interface Handler {}
+
+  public static class HandlerImpl implements Handler {}
+
+  public static class DefaultHandler implements Handler {}
+
+  private static final Key<Set<Handler>> SET_KEY = Key.get(new TypeLiteral<Set<Handler>>() {});
+  private static final Key<Map<String, Handler>> MAP_KEY =
+      Key.get(new TypeLiteral<Map<String, Handler>>() {});
+  private static final Key<Map<String, Provider<Handler>>> PROVIDER_MAP_KEY =
+      Key.get(new TypeLiteral<Map<String, Provider<Handler>>>() {});
+  private static final Key<Optional<Handler>> OPTIONAL_KEY =
+      Key.get(new TypeLiteral<Optional<Handler>>() {}, Names.named("optional"));
+  private static final Key<Optional<Handler>> DEFAULT_KEY =
+      Key.get(new TypeLiteral<Optional<Handler>>() {}, Names.named("default"));
+
+  private Injector injector;
+
+  @Setup
+  public void setUp() {
+    injector =
+        Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                Multibinder<Handler> setBinder = Multibinder.newSetBinder(binder(), Handler.class);
+                MapBinder<String, Handler> mapBinder =
+                    MapBinder.newMapBinder(binder(), String.class, Handler.class);
+                for (int i = 0; i < ELEMENTS; i++) {
+                  // distinct keys, since identical element bindings are deduplicated
+                  Key<Handler> element = Key.get(Handler.class, Names.named("handler" + i));
+                  bind(element).to(HandlerImpl.class);
+                  setBinder.addBinding().to(element);
+                  mapBinder.addBinding("handler" + i).to(element);
+                }
+                OptionalBinder.newOptionalBinder(
+                        binder(), Key.get(Handler.class, Names.named("optional")))
+                    .setBinding()
+                    .to(HandlerImpl.class);
+                OptionalBinder.newOptionalBinder(
+                        binder(), Key.get(Handler.class, Names.named("default")))
+                    .setDefault()
+                    .to(DefaultHandler.class);
+              }
+            });
+  }
+
+  @Benchmark
+  public Set<Handler> set() {
+    return injector.getInstance(SET_KEY);
+  }
+
+  @Benchmark
+  public Map<String, Handler> map() {
+    return injector.getInstance(MAP_KEY);
+  }
+
+  @Benchmark
+  public Map<String, Provider<Handler>> providerMap() {
+    return injector.getInstance(PROVIDER_MAP_KEY);
+  }
+
+  @Benchmark
+  public Optional<Handler> optionalActual() {
+    return injector.getInstance(OPTIONAL_KEY);
+  }
+
+  @Benchmark
+  public Optional<Handler> optionalDefault() {
+    return injector.getInstance(DEFAULT_KEY);
+  }
+}
@@ -0,0 +1,87 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Provider;
+import page.foliage.inject.Provides;
+import page.foliage.inject.name.Named;
+
+/**
+ * Provisions objects from {@code @Provides} methods. The methods are invoked through generated
+ * fast-classes by {@link FastClass}, and reflectively by {@link Reflective}, which disables
+ * bytecode generation for its fork.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class ProvidesMethodBenchmark {
+
+  /** Invokes provider methods through fast-classes. */
+  @Fork(value = 1, jvmArgsAppend = "-Dguice_bytecode_gen_option=ENABLED")
+  public static class FastClass extends ProvidesMethodBenchmark {}
+
+  /** Invokes provider methods reflectively. */
+  @Fork(value = 1, jvmArgsAppend = "-Dguice_bytecode_gen_option=DISABLED")
+  public static class Reflective extends ProvidesMethodBenchmark {}
+
+  public static class Config {}
+
+  public static class Service {
+    Service(Config config, String name) {}
+  }
+
+  public static class ServicesModule extends AbstractModule {
+    @Provides
+    Config provideConfig() {
+      return new Config();
+    }
+
+    @Provides
+    @Named("name")
+    String provideName() {
+      return "service";
+    }
+
+    @Provides
+    Service provideService(Config config, @Named("name") String name) {
+      return new Service(config, name);
+    }
+  }
+
+  private Injector injector;
+  private Provider<Service> provider;
+
+  @Setup
+  public void setUp() {
+    injector = Guice.createInjector(new ServicesModule());
+    provider = injector.getProvider(Service.class);
+  }
+
+  @Benchmark
+  public Config noDependencies() {
+    return injector.getInstance(Config.class);
+  }
+
+  /** Calls a provider method with two dependencies that are provider methods themselves. */
+  @Benchmark
+  public Service withDependencies() {
+    return provider.get();
+  }
+}
@@ -0,0 +1,79 @@
+package page.foliage.inject.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Inject;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Provider;
+import page.foliage.inject.Singleton;
+
+/** Looks up singletons that have already been created. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SingletonBenchmark {
+
+  @Singleton
+  public static class Service {}
+
+  public static class EagerService {}
+
+  public static class Client {
+    @Inject
+    Client(Service service, EagerService eagerService) {}
+  }
+
+  private Injector injector;
+  private Provider<Service> provider;
+
+  @Setup
+  public void setUp() {
+    injector =
+        Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                bind(EagerService.class).asEagerSingleton();
+              }
+            });
+    provider = injector.getProvider(Service.class);
+    provider.get();
+  }
+
+  @Benchmark
+  public Service getInstance() {
+    return injector.getInstance(Service.class);
+  }
+
+  @Benchmark
+  public EagerService getEagerInstance() {
+    return injector.getInstance(EagerService.class);
+  }
+
+  @Benchmark
+  public Service providerGet() {
+    return provider.get();
+  }
+
+  /** An unscoped object whose dependencies are both singletons. */
+  @Benchmark
+  public Client getSingletonClient() {
+    return injector.getInstance(Client.class);
+  }
+}
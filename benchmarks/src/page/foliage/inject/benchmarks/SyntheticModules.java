@@ -0,0 +1,184 @@
+package page.foliage.inject.benchmarks;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Binder;
+import page.foliage.inject.Inject;
+import page.foliage.inject.Module;
+import page.foliage.inject.PrivateModule;
+import page.foliage.inject.Provides;
+
+/**
+ * Generates classes and modules for benchmarking injector creation. Each instance defines fresh
+ * classes in its own class loader, so injectors created from them don't benefit from reflection
+ * or bytecode generation done for earlier injectors.
+ *
+ * <p>Services are numbered from 0. Service {@code i > 0} has an {@code @Inject} constructor that
+ * takes service {@code (i - 1) / 2}, so the services form a balanced tree rooted at service 0.
+ */
+final class SyntheticModules {
+
+  private static final String PACKAGE = "page/foliage/inject/benchmarks/generated/";
+  private static final String OBJECT = Type.getInternalName(Object.class);
+  private static final String MODULE = Type.getInternalName(Module.class);
+  private static final String INJECT = Type.getDescriptor(Inject.class);
+  private static final String PROVIDES = Type.getDescriptor(Provides.class);
+  private static final String CONFIGURE =
+      Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Binder.class));
+
+  private final GeneratedClassLoader loader = new GeneratedClassLoader();
+  private final List<Class<?>> services = new ArrayList<>();
+
+  /** Generates {@code count} service classes. */
+  SyntheticModules(int count) {
+    for (int i = 0; i < count; i++) {
+      services.add(loader.define(serviceName(i), serviceClass(i)));
+    }
+  }
+
+  /** Returns a module with an untargetted binding for each service in the given range. */
+  Module bindingsModule(int from, int to) {
+    return new AbstractModule() {
+      @Override
+      protected void configure() {
+        for (int i = from; i < to; i++) {
+          bind(services.get(i));
+        }
+      }
+    };
+  }
+
+  /**
+   * Generates modules whose {@code @Provides} methods provide all services, with at most {@code
+   * methodsPerModule} methods per module.
+   */
+  List<Module> providesModules(int methodsPerModule) {
+    List<Module> modules = new ArrayList<>();
+    for (int from = 0; from < services.size(); from += methodsPerModule) {
+      int to = Math.min(from + methodsPerModule, services.size());
+      String name = PACKAGE + "ProvidesModule" + modules.size();
+      Class<?> moduleClass = loader.define(name, providesModuleClass(name, from, to));
+      try {
+        modules.add((Module) moduleClass.getConstructor().newInstance());
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return modules;
+  }
+
+  /**
+   * Returns a private module nested {@code depth} levels deep. Level {@code i} binds and exposes
+   * service {@code i}, whose dependency is bound by an enclosing level.
+   */
+  Module privateModules(int depth) {
+    Module module = null;
+    for (int i = depth - 1; i >= 0; i--) {
+      module = privateModule(i, module);
+    }
+    return module;
+  }
+
+  private PrivateModule privateModule(int index, Module nested) {
+    return new PrivateModule() {
+      @Override
+      protected void configure() {
+        bind(services.get(index));
+        expose(services.get(index));
+        if (nested != null) {
+          install(nested);
+        }
+      }
+    };
+  }
+
+  private static String serviceName(int index) {
+    return PACKAGE + "Service" + index;
+  }
+
+  private static String constructorDescriptor(int index) {
+    return index == 0 ? "()V" : "(L" + serviceName((index - 1) / 2) + ";)V";
+  }
+
+  private static byte[] serviceClass(int index) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, serviceName(index), null, OBJECT, null);
+    MethodVisitor mv =
+        cw.visitMethod(ACC_PUBLIC, "<init>", constructorDescriptor(index), null, null);
+    mv.visitAnnotation(INJECT, true).visitEnd();
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private static byte[] providesModuleClass(String name, int from, int to) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, OBJECT, new String[] {MODULE});
+
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "configure", CONFIGURE, null, null);
+    mv.visitCode();
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    for (int i = from; i < to; i++) {
+      String service = serviceName(i);
+      String constructor = constructorDescriptor(i);
+      String descriptor = constructor.substring(0, constructor.length() - 1) + "L" + service + ";";
+      mv = cw.visitMethod(ACC_PUBLIC, "provideService" + i, descriptor, null, null);
+      mv.visitAnnotation(PROVIDES, true).visitEnd();
+      mv.visitCode();
+      mv.visitTypeInsn(NEW, service);
+      mv.visitInsn(DUP);
+      if (i > 0) {
+        mv.visitVarInsn(ALOAD, 1);
+      }
+      mv.visitMethodInsn(INVOKESPECIAL, service, "<init>", constructor, false);
+      mv.visitInsn(ARETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Defines the generated classes, which see the classes of this project through the parent. */
+  private static final class GeneratedClassLoader extends ClassLoader {
+    GeneratedClassLoader() {
+      super(SyntheticModules.class.getClassLoader());
+    }
+
+    Class<?> define(String internalName, byte[] bytes) {
+      return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package page.foliage.inject.benchmarks;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import page.foliage.inject.AbstractModule;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Inject;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Provider;
+import page.foliage.inject.Singleton;
+
+/**
+ * Provisions from many threads at once, checking that every provision succeeds and that each
+ * singleton is created once. Each thread asks for a lazily created singleton, which all the threads
+ * contend for, and for a binding whose constructor calls back into the injector through a provider
+ * and closes a circular dependency, which must share the context of the provision that is running
+ * on the thread.
+ *
+ * <p>Usage: {@code VirtualThreadStress [threads]}, with 100,000 threads by default. Each provision
+ * runs on its own virtual thread on Java 21 and later; on earlier versions the provisions run on a
+ * pool of platform threads instead, which still checks the provisioning paths but not carrier
+ * pinning. Run it with each context propagation option, and on Java 21 to 23 with {@code
+ * -Djdk.tracePinnedThreads=short} to report threads that pin their carrier:
+ *
+ * <pre>
+ *     java -Dguice_context_propagation_option=HANDOFF -Djdk.tracePinnedThreads=short \
+ *         -cp target/benchmarks.jar page.foliage.inject.benchmarks.VirtualThreadStress
+ * </pre>
+ */
+public final class VirtualThreadStress {
+  private VirtualThreadStress() {}
+
+  private static final int DEFAULT_THREADS = 100_000;
+
+  /** Created lazily by the first thread that asks for it. */
+  @Singleton
+  public static class Registry {
+    static final AtomicInteger instances = new AtomicInteger();
+
+    @Inject
+    Registry() {
+      instances.incrementAndGet();
+    }
+  }
+
+  public interface Handler {}
+
+  /** Provisions a session from its constructor, which depends back on the handler. */
+  public static class DefaultHandler implements Handler {
+    @Inject
+    DefaultHandler(Registry registry, Provider<Session> sessions) {
+      sessions.get();
+    }
+  }
+
+  public static class Session {
+    @Inject
+    Session(Handler handler) {}
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length > 1) {
+      System.err.println("Usage: VirtualThreadStress [threads]");
+      System.exit(2);
+    }
+    int threads = args.length == 0 ? DEFAULT_THREADS : Integer.parseInt(args[0]);
+    Injector injector =
+        Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                bind(Handler.class).to(DefaultHandler.class);
+              }
+            });
+
+    ThreadFactory virtualThreads = virtualThreadFactory();
+    ExecutorService pool =
+        virtualThreads == null
+            ? Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors())
+            : null;
+    Set<Registry> registries = ConcurrentHashMap.newKeySet();
+    AtomicInteger failures = new AtomicInteger();
+    AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    Runnable provision =
+        () -> {
+          try {
+            start.await();
+            registries.add(injector.getInstance(Registry.class));
+            injector.getInstance(Handler.class);
+          } catch (Throwable t) {
+            failures.incrementAndGet();
+            firstFailure.compareAndSet(null, t);
+          } finally {
+            done.countDown();
+          }
+        };
+    for (int i = 0; i < threads; i++) {
+      if (virtualThreads != null) {
+        virtualThreads.newThread(provision).start();
+      } else {
+        pool.execute(provision);
+      }
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    done.await();
+    Duration time = Duration.ofNanos(System.nanoTime() - startNanos);
+    if (pool != null) {
+      pool.shutdown();
+    }
+
+    System.out.printf(
+        "%s, %s threads: %,d provisions in %d ms, %,d failures, %d singleton instances%n",
+        System.getProperty("guice_context_propagation_option", "THREAD_LOCAL"),
+        virtualThreads == null ? "platform" : "virtual",
+        threads,
+        time.toMillis(),
+        failures.get(),
+        Registry.instances.get());
+    if (firstFailure.get() != null) {
+      firstFailure.get().printStackTrace();
+    }
+    if (failures.get() > 0 || Registry.instances.get() != 1 || registries.size() != 1) {
+      System.exit(1);
+    }
+  }
+
+  /** Returns a factory of virtual threads, or null before Java 21. */
+  private static ThreadFactory virtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory)
+          Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package page.foliage.inject.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates the {@code GeneratedMembers} of the classes that declare {@code @Inject} constructors,
+ * fields or methods, or {@code @Provides} methods, so that Guice can inject them without scanning
+ * them, without reflection and without generating classes at runtime.
+ *
+ * <p>Each round that processes classes also generates an index of them, which is registered as a
+ * {@code GeneratedMembers.Index} service once processing is over. Guice only uses the generated
+ * members of classes listed by an index.
+ */
+public final class InjectionProcessor extends AbstractProcessor {
+
+  private static final String INDEX = MembersGenerator.GENERATED_MEMBERS + "$Index";
+
+  /** The qualified names of all classes compiled so far, including nested classes. */
+  private final Set<String> compiledClasses = new HashSet<>();
+
+  /** The index classes generated by previous rounds, with the classes they were generated for. */
+  private final TreeMap<String, List<Element>> indices = new TreeMap<>();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    Set<String> annotationTypes = new LinkedHashSet<>();
+    annotationTypes.add(MembersGenerator.INJECT);
+    annotationTypes.add(MembersGenerator.JAVAX_INJECT);
+    annotationTypes.add(MembersGenerator.PROVIDES);
+    return annotationTypes;
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    addCompiledClasses(ElementFilter.typesIn(roundEnv.getRootElements()));
+    if (roundEnv.processingOver()) {
+      writeServices();
+      return false;
+    }
+
+    TreeMap<String, TypeElement> classes = new TreeMap<>();
+    MembersGenerator generator = new MembersGenerator(processingEnv, compiledClasses);
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        Element enclosing = element.getEnclosingElement();
+        if (enclosing instanceof TypeElement && generator.canGenerate((TypeElement) enclosing)) {
+          TypeElement type = (TypeElement) enclosing;
+          classes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), type);
+        }
+      }
+    }
+
+    List<Element> generated = new ArrayList<>();
+    for (TypeElement type : classes.values()) {
+      try {
+        String source = generator.generate(type);
+        try (Writer writer =
+            processingEnv
+                .getFiler()
+                .createSourceFile(generator.generatedName(type), type)
+                .openWriter()) {
+          writer.write(source);
+        }
+        generated.add(type);
+      } catch (IllegalArgumentException e) {
+        // a type that doesn't exist yet, or isn't valid; Guice scans the class instead
+      } catch (IOException e) {
+        processingEnv
+            .getMessager()
+            .printMessage(Diagnostic.Kind.ERROR, "Unable to write generated members: " + e, type);
+      }
+    }
+    if (!generated.isEmpty()) {
+      writeIndex(generated);
+    }
+    return false;
+  }
+
+  private void addCompiledClasses(Iterable<TypeElement> types) {
+    for (TypeElement type : types) {
+      compiledClasses.add(type.getQualifiedName().toString());
+      addCompiledClasses(ElementFilter.typesIn(type.getEnclosedElements()));
+    }
+  }
+
+  /** Writes an index of the classes whose members this round generated. */
+  private void writeIndex(List<Element> types) {
+    List<String> classNames = new ArrayList<>();
+    for (Element type : types) {
+      classNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement) type).toString());
+    }
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(types.get(0)).getQualifiedName().toString();
+    String simpleName =
+        String.format("GuiceMembersIndex_%08x", String.join(",", classNames).hashCode());
+    String name = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+    StringBuilder source = new StringBuilder();
+    source.append("// Generated by ").append(InjectionProcessor.class.getName());
+    source.append(". Do not edit.\n");
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n");
+    }
+    source.append("\npublic final class ").append(simpleName);
+    source.append(" implements ").append(INDEX.replace('$', '.')).append(" {\n");
+    source.append("\n  @Override\n");
+    source.append("  public String[] getClassNames() {\n");
+    source.append("    return new String[] {\n");
+    for (String className : classNames) {
+      source.append("      \"").append(className).append("\",\n");
+    }
+    source.append("    };\n");
+    source.append("  }\n");
+    source.append("}\n");
+    try (Writer writer =
+        processingEnv
+            .getFiler()
+            .createSourceFile(name, types.toArray(new Element[0]))
+            .openWriter()) {
+      writer.write(source.toString());
+      indices.put(name, types);
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to write generated members index: " + e);
+    }
+  }
+
+  /** Registers the generated indices as services. */
+  private void writeServices() {
+    if (indices.isEmpty()) {
+      return;
+    }
+    List<Element> originatingElements = new ArrayList<>();
+    StringBuilder services = new StringBuilder();
+    for (String index : indices.keySet()) {
+      services.append(index).append('\n');
+      originatingElements.addAll(indices.get(index));
+    }
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .createResource(
+                  StandardLocation.CLASS_OUTPUT,
+                  "",
+                  "META-INF/services/" + INDEX,
+                  originatingElements.toArray(new Element[0]));
+      try (Writer writer = file.openWriter()) {
+        writer.write(services.toString());
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to register generated members: " + e);
+    }
+  }
+}
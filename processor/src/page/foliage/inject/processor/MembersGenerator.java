@@ -0,0 +1,583 @@
+package page.foliage.inject.processor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates the {@code GeneratedMembers} of one class: the members that the generated class can
+ * call, and the injectable constructor, injectable members and provider methods that Guice would
+ * find by scanning the class.
+ *
+ * <p>Scanning is only reproduced for the common cases. Whenever scanning would report an error or
+ * a warning, or would have to decide which methods override others, nothing is generated for that
+ * part, and Guice scans the class at runtime as usual. Injectable members and provider methods are
+ * also only generated when the superclasses of the class are compiled along with it, or belong to
+ * the JDK or to Guice, so that they can't change without the class being processed again.
+ */
+final class MembersGenerator {
+
+  static final String INJECT = "page.foliage.inject.Inject";
+  static final String JAVAX_INJECT = "javax.inject.Inject";
+  static final String PROVIDES = "page.foliage.inject.Provides";
+  static final String GENERATED_MEMBERS = "page.foliage.inject.spi.GeneratedMembers";
+  static final String SUFFIX = "_GuiceMembers";
+
+  private static final String BINDING_ANNOTATION = "page.foliage.inject.BindingAnnotation";
+  private static final String QUALIFIER = "javax.inject.Qualifier";
+
+  /** The packages of superclasses that are known not to change along with the application. */
+  private static final Pattern LIBRARY_PACKAGES =
+      Pattern.compile("java(\\..*)?|page\\.foliage\\.inject(\\..*)?");
+
+  /** Orders fields and methods the way {@code DeclaredMembers} orders them at runtime. */
+  private final Comparator<Element> declaredOrder =
+      Comparator.comparing((Element member) -> member.getSimpleName().toString())
+          .thenComparing(this::returnTypeName)
+          .thenComparing(this::parameterTypeNames, MembersGenerator::compareLexicographically);
+
+  private final Elements elements;
+  private final Types types;
+  private final Set<String> compiledClasses;
+
+  /**
+   * @param compiledClasses the qualified names of the classes compiled along with the processed
+   *     classes
+   */
+  MembersGenerator(ProcessingEnvironment processingEnv, Set<String> compiledClasses) {
+    this.elements = processingEnv.getElementUtils();
+    this.types = processingEnv.getTypeUtils();
+    this.compiledClasses = compiledClasses;
+  }
+
+  /**
+   * Returns true if members can be generated for {@code type}: a class that isn't nested in
+   * another class's instances, and that code in its package can use.
+   */
+  boolean canGenerate(TypeElement type) {
+    if (type.getKind() != ElementKind.CLASS) {
+      return false;
+    }
+    for (Element e = type; e.getKind().isClass(); e = e.getEnclosingElement()) {
+      TypeElement t = (TypeElement) e;
+      if (t.getModifiers().contains(Modifier.PRIVATE)
+          || (t.getNestingKind() != NestingKind.TOP_LEVEL
+              && t.getNestingKind() != NestingKind.MEMBER)
+          || (t.getNestingKind() == NestingKind.MEMBER
+              && !t.getModifiers().contains(Modifier.STATIC))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the binary name of the generated class of {@code type}. */
+  String generatedName(TypeElement type) {
+    return elements.getBinaryName(type) + SUFFIX;
+  }
+
+  /**
+   * Returns the source of the generated members of {@code type}, which {@link #canGenerate}
+   * accepts.
+   *
+   * @throws IllegalArgumentException if a member of the class has a type that doesn't exist
+   */
+  String generate(TypeElement type) {
+    String className = type.getQualifiedName().toString();
+    String packageName = packageOf(type).getQualifiedName().toString();
+    ExecutableElement constructor = injectableConstructor(type);
+
+    List<Element> accessible = new ArrayList<>();
+    if (constructor != null
+        && !type.getModifiers().contains(Modifier.ABSTRACT)
+        && isAccessible(constructor, packageName)) {
+      accessible.add(constructor);
+    }
+    for (Element member : type.getEnclosedElements()) {
+      boolean injected =
+          (member.getKind() == ElementKind.FIELD || member.getKind() == ElementKind.METHOD)
+              && isInjected(member);
+      boolean provides = member.getKind() == ElementKind.METHOD && has(member, PROVIDES);
+      if ((injected || provides) && isAccessible(member, packageName)) {
+        accessible.add(member);
+      }
+    }
+
+    StringBuilder source = new StringBuilder();
+    source.append("// Generated by ").append(InjectionProcessor.class.getName());
+    source.append(". Do not edit.\n");
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n");
+    }
+    String simpleName =
+        generatedName(type).substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+    source.append("\n@SuppressWarnings({");
+    source.append("\"deprecation\", \"rawtypes\", \"removal\", \"unchecked\"})\n");
+    source.append("public final class ").append(simpleName);
+    source.append(" extends ").append(GENERATED_MEMBERS).append(" {\n");
+
+    List<String> accessibleDescriptions = new ArrayList<>();
+    for (Element member : accessible) {
+      accessibleDescriptions.add(describe(member));
+    }
+    appendStrings(source, "getAccessibleMembers", accessibleDescriptions);
+
+    source.append("\n  @Override\n");
+    source.append("  public Object invoke(int member, Object target, Object[] arguments)");
+    source.append(" throws Throwable {\n");
+    source.append("    switch (member) {\n");
+    for (int i = 0; i < accessible.size(); i++) {
+      source.append("      case ").append(i).append(":\n");
+      appendInvocation(source, className, accessible.get(i));
+    }
+    source.append("      default:\n");
+    source.append("        throw new IllegalArgumentException(\"No member \" + member);\n");
+    source.append("    }\n");
+    source.append("  }\n");
+
+    if (constructor != null) {
+      source.append("\n  @Override\n");
+      source.append("  public String getInjectableConstructor() {\n");
+      source.append("    return \"").append(isInjected(constructor) ? 1 : 0).append(' ');
+      source.append(describe(constructor)).append("\";\n");
+      source.append("  }\n");
+    }
+    List<String> injectableMembers = injectableMembers(type);
+    if (injectableMembers != null) {
+      appendStrings(source, "getInjectableMembers", injectableMembers);
+    }
+    List<String> providerMethods = providerMethods(type);
+    if (providerMethods != null) {
+      appendStrings(source, "getProviderMethods", providerMethods);
+    }
+    source.append("}\n");
+    return source.toString();
+  }
+
+  /**
+   * Returns the constructor that Guice would inject, or null if scanning would report an error.
+   */
+  private ExecutableElement injectableConstructor(TypeElement type) {
+    List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+    ExecutableElement atInject = null;
+    for (ExecutableElement constructor : constructors) {
+      if (isInjected(constructor)) {
+        if (atInject != null || isOptional(constructor)) {
+          return null;
+        }
+        atInject = constructor;
+      }
+    }
+    if (atInject != null) {
+      return hasBindingAnnotation(atInject) ? null : atInject;
+    }
+    for (ExecutableElement constructor : constructors) {
+      if (constructor.getParameters().isEmpty()) {
+        return constructor.getModifiers().contains(Modifier.PRIVATE)
+                || hasBindingAnnotation(constructor)
+            ? null
+            : constructor;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the injectable instance members of {@code type} and its superclasses, described as
+   * {@code depth flags name descriptor}, or null if they must be found by scanning.
+   */
+  private List<String> injectableMembers(TypeElement type) {
+    List<TypeElement> hierarchy = compiledHierarchy(type);
+    if (hierarchy == null) {
+      return null;
+    }
+    List<String> result = new ArrayList<>();
+    List<ExecutableElement> injectedMethods = new ArrayList<>();
+    for (int depth = hierarchy.size() - 1; depth >= 0; depth--) {
+      TypeElement current = hierarchy.get(depth);
+      List<VariableElement> fields = ElementFilter.fieldsIn(current.getEnclosedElements());
+      fields.sort(declaredOrder);
+      for (VariableElement field : fields) {
+        if (!field.getModifiers().contains(Modifier.STATIC) && isInjected(field)) {
+          if (field.getModifiers().contains(Modifier.FINAL) && has(field, JAVAX_INJECT)) {
+            return null; // an error
+          }
+          result.add(depth + " " + (isOptional(field) ? 2 : 0) + " " + describe(field));
+        }
+      }
+      List<ExecutableElement> methods = ElementFilter.methodsIn(current.getEnclosedElements());
+      methods.sort(declaredOrder);
+      List<ExecutableElement> declaredInjectedMethods = new ArrayList<>();
+      for (ExecutableElement method : methods) {
+        if (method.getModifiers().contains(Modifier.STATIC)) {
+          continue;
+        }
+        for (ExecutableElement injected : injectedMethods) {
+          if (sameSignature(method, injected)) {
+            return null; // overrides need to be resolved by scanning
+          }
+        }
+        if (isInjected(method)) {
+          if (hasBindingAnnotation(method)
+              || method.getModifiers().contains(Modifier.ABSTRACT)
+              || !method.getTypeParameters().isEmpty()) {
+            return null; // an error, or a method that isn't injected
+          }
+          result.add(depth + " " + (isOptional(method) ? 2 : 0) + " " + describe(method));
+          declaredInjectedMethods.add(method);
+        }
+      }
+      injectedMethods.addAll(declaredInjectedMethods);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@code @Provides} methods of instances of {@code type}, described as {@code depth
+   * name descriptor}, or null if they must be found by scanning.
+   */
+  private List<String> providerMethods(TypeElement type) {
+    List<TypeElement> hierarchy = compiledHierarchy(type);
+    if (hierarchy == null) {
+      return null;
+    }
+    List<String> result = new ArrayList<>();
+    List<String> subclassMethodNames = new ArrayList<>();
+    for (int depth = 0; depth < hierarchy.size(); depth++) {
+      List<ExecutableElement> methods =
+          ElementFilter.methodsIn(hierarchy.get(depth).getEnclosedElements());
+      methods.sort(declaredOrder);
+      for (ExecutableElement method : methods) {
+        if (has(method, PROVIDES)) {
+          if (subclassMethodNames.contains(method.getSimpleName().toString())) {
+            return null; // may be overridden, which scanning reports
+          }
+          result.add(depth + " " + describe(method));
+        }
+      }
+      for (ExecutableElement method : methods) {
+        subclassMethodNames.add(method.getSimpleName().toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code type} and its superclasses that are compiled along with the processed classes.
+   * Their other superclasses may only be classes of the JDK or of Guice, such as {@code
+   * AbstractModule}, which don't change along with the application, and must not declare any
+   * injectable members or provider methods. Returns null otherwise.
+   */
+  private List<TypeElement> compiledHierarchy(TypeElement type) {
+    List<TypeElement> hierarchy = new ArrayList<>();
+    TypeElement current = type;
+    while (compiledClasses.contains(current.getQualifiedName().toString())) {
+      hierarchy.add(current);
+      current = (TypeElement) types.asElement(current.getSuperclass());
+    }
+    for (; current != null; current = (TypeElement) types.asElement(current.getSuperclass())) {
+      String packageName = packageOf(current).getQualifiedName().toString();
+      if (!LIBRARY_PACKAGES.matcher(packageName).matches()) {
+        return null;
+      }
+      for (Element member : current.getEnclosedElements()) {
+        if (isInjected(member) || has(member, PROVIDES)) {
+          return null;
+        }
+      }
+    }
+    return hierarchy;
+  }
+
+  private boolean sameSignature(ExecutableElement a, ExecutableElement b) {
+    if (!a.getSimpleName().contentEquals(b.getSimpleName())
+        || a.getParameters().size() != b.getParameters().size()) {
+      return false;
+    }
+    for (int i = 0; i < a.getParameters().size(); i++) {
+      if (!types.isSameType(
+          types.erasure(a.getParameters().get(i).asType()),
+          types.erasure(b.getParameters().get(i).asType()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Appends the statements of one case of the switch of {@code invoke}. */
+  private void appendInvocation(StringBuilder source, String className, Element member) {
+    boolean isStatic = member.getModifiers().contains(Modifier.STATIC);
+    String receiver = isStatic ? className : "((" + className + ") target)";
+    if (member.getKind() == ElementKind.FIELD) {
+      source.append("        ").append(receiver).append('.').append(member.getSimpleName());
+      source.append(" = ").append(argument(member.asType(), 0)).append(";\n");
+      source.append("        return null;\n");
+      return;
+    }
+    ExecutableElement executable = (ExecutableElement) member;
+    StringBuilder call = new StringBuilder();
+    if (executable.getKind() == ElementKind.CONSTRUCTOR) {
+      call.append("new ").append(className);
+    } else {
+      call.append(receiver).append('.').append(executable.getSimpleName());
+    }
+    call.append('(');
+    for (int i = 0; i < executable.getParameters().size(); i++) {
+      call.append(i > 0 ? ", " : "");
+      call.append(argument(executable.getParameters().get(i).asType(), i));
+    }
+    call.append(')');
+    if (executable.getKind() == ElementKind.METHOD
+        && executable.getReturnType().getKind() == TypeKind.VOID) {
+      source.append("        ").append(call).append(";\n");
+      source.append("        return null;\n");
+    } else {
+      source.append("        return ").append(call).append(";\n");
+    }
+  }
+
+  /** Returns the expression of an argument cast to the erasure of its parameter's type. */
+  private String argument(TypeMirror type, int index) {
+    TypeMirror erased = types.erasure(type);
+    String argument = "arguments[" + index + "]";
+    if (erased.getKind().isPrimitive()) {
+      TypeElement boxed = types.boxedClass(types.getPrimitiveType(erased.getKind()));
+      return "(" + sourceName(erased) + ") (" + boxed.getQualifiedName() + ") " + argument;
+    }
+    return "(" + sourceName(erased) + ") " + argument;
+  }
+
+  /**
+   * Returns true if the generated class, in {@code packageName}, can call {@code member} and name
+   * the types of its parameters.
+   */
+  private boolean isAccessible(Element member, String packageName) {
+    Set<Modifier> modifiers = member.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE)
+        || (member.getKind() == ElementKind.FIELD && modifiers.contains(Modifier.FINAL))) {
+      return false;
+    }
+    if (member.getKind() == ElementKind.FIELD) {
+      return isAccessible(member.asType(), packageName);
+    }
+    ExecutableElement executable = (ExecutableElement) member;
+    if (modifiers.contains(Modifier.ABSTRACT) || !executable.getTypeParameters().isEmpty()) {
+      return false;
+    }
+    for (VariableElement parameter : executable.getParameters()) {
+      if (!isAccessible(parameter.asType(), packageName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isAccessible(TypeMirror type, String packageName) {
+    TypeMirror erased = types.erasure(type);
+    while (erased.getKind() == TypeKind.ARRAY) {
+      erased = ((ArrayType) erased).getComponentType();
+    }
+    if (erased.getKind().isPrimitive()) {
+      return true;
+    }
+    if (erased.getKind() != TypeKind.DECLARED) {
+      return false;
+    }
+    for (Element e = types.asElement(erased);
+        e.getKind().isClass() || e.getKind().isInterface();
+        e = e.getEnclosingElement()) {
+      Set<Modifier> modifiers = e.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)
+          || (!modifiers.contains(Modifier.PUBLIC)
+              && !packageOf(e).getQualifiedName().contentEquals(packageName))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Describes a member by its name and JVM descriptor, as {@code GeneratedMembers} does. */
+  private String describe(Element member) {
+    if (member.getKind() == ElementKind.FIELD) {
+      return member.getSimpleName() + " " + descriptor(member.asType());
+    }
+    ExecutableElement executable = (ExecutableElement) member;
+    StringBuilder descriptor = new StringBuilder("(");
+    for (VariableElement parameter : executable.getParameters()) {
+      descriptor.append(descriptor(parameter.asType()));
+    }
+    descriptor.append(')').append(descriptor(executable.getReturnType()));
+    String name =
+        executable.getKind() == ElementKind.CONSTRUCTOR
+            ? "<init>"
+            : executable.getSimpleName().toString();
+    return name + " " + descriptor;
+  }
+
+  private String descriptor(TypeMirror type) {
+    TypeMirror erased = types.erasure(type);
+    switch (erased.getKind()) {
+      case BOOLEAN:
+        return "Z";
+      case BYTE:
+        return "B";
+      case CHAR:
+        return "C";
+      case SHORT:
+        return "S";
+      case INT:
+        return "I";
+      case LONG:
+        return "J";
+      case FLOAT:
+        return "F";
+      case DOUBLE:
+        return "D";
+      case VOID:
+        return "V";
+      case ARRAY:
+        return "[" + descriptor(((ArrayType) erased).getComponentType());
+      case DECLARED:
+        return "L" + binaryName(erased).replace('.', '/') + ";";
+      default:
+        throw new IllegalArgumentException("Unexpected type " + type);
+    }
+  }
+
+  /** Returns the name that {@code Class.getName} returns for the erasure of {@code type}. */
+  private String className(TypeMirror type) {
+    TypeMirror erased = types.erasure(type);
+    if (erased.getKind().isPrimitive() || erased.getKind() == TypeKind.VOID) {
+      return erased.getKind().name().toLowerCase(Locale.ROOT);
+    } else if (erased.getKind() == TypeKind.ARRAY) {
+      return descriptor(erased).replace('/', '.');
+    } else {
+      return binaryName(erased);
+    }
+  }
+
+  /** Returns the name of the erasure of {@code type} in source code. */
+  private String sourceName(TypeMirror erased) {
+    if (erased.getKind().isPrimitive()) {
+      return erased.getKind().name().toLowerCase(Locale.ROOT);
+    } else if (erased.getKind() == TypeKind.ARRAY) {
+      return sourceName(((ArrayType) erased).getComponentType()) + "[]";
+    } else {
+      return ((TypeElement) types.asElement(erased)).getQualifiedName().toString();
+    }
+  }
+
+  private String binaryName(TypeMirror declared) {
+    return elements.getBinaryName((TypeElement) types.asElement(declared)).toString();
+  }
+
+  private String returnTypeName(Element member) {
+    return member.getKind() == ElementKind.METHOD
+        ? className(((ExecutableElement) member).getReturnType())
+        : className(member.asType());
+  }
+
+  private List<String> parameterTypeNames(Element member) {
+    List<String> names = new ArrayList<>();
+    if (member instanceof ExecutableElement) {
+      for (VariableElement parameter : ((ExecutableElement) member).getParameters()) {
+        names.add(className(parameter.asType()));
+      }
+    }
+    return names;
+  }
+
+  private static int compareLexicographically(List<String> a, List<String> b) {
+    for (int i = 0; i < a.size() && i < b.size(); i++) {
+      int result = a.get(i).compareTo(b.get(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(a.size(), b.size());
+  }
+
+  private static void appendStrings(StringBuilder source, String method, List<String> strings) {
+    source.append("\n  @Override\n");
+    source.append("  public String[] ").append(method).append("() {\n");
+    source.append("    return new String[] {\n");
+    for (String string : strings) {
+      source.append("      \"").append(string).append("\",\n");
+    }
+    source.append("    };\n");
+    source.append("  }\n");
+  }
+
+  private boolean isInjected(Element member) {
+    return has(member, INJECT) || has(member, JAVAX_INJECT);
+  }
+
+  /** Returns true if {@code member} is annotated with {@code @Inject(optional = true)}. */
+  private boolean isOptional(Element member) {
+    AnnotationMirror inject = find(member, INJECT);
+    if (inject == null) {
+      return false;
+    }
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value :
+        elements.getElementValuesWithDefaults(inject).entrySet()) {
+      if (value.getKey().getSimpleName().contentEquals("optional")) {
+        return Boolean.TRUE.equals(value.getValue().getValue());
+      }
+    }
+    return false;
+  }
+
+  /** Returns true if {@code member} has an annotation that is a binding annotation or qualifier. */
+  private boolean hasBindingAnnotation(Element member) {
+    for (AnnotationMirror annotation : member.getAnnotationMirrors()) {
+      Element annotationType = annotation.getAnnotationType().asElement();
+      if (has(annotationType, BINDING_ANNOTATION) || has(annotationType, QUALIFIER)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean has(Element element, String annotationName) {
+    return find(element, annotationName) != null;
+  }
+
+  private static AnnotationMirror find(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static PackageElement packageOf(Element element) {
+    while (element.getKind() != ElementKind.PACKAGE) {
+      element = element.getEnclosingElement();
+    }
+    return (PackageElement) element;
+  }
+}
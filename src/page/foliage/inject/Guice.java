@@ -18,6 +18,7 @@ package page.foliage.inject;
 
 import java.util.Arrays;
 
+import page.foliage.inject.internal.InjectorTemplateImpl;
 import page.foliage.inject.internal.InternalInjectorCreator;
 
 /**
@@ -87,4 +88,26 @@ public final class Guice {
   public static Injector createInjector(Stage stage, Iterable<? extends Module> modules) {
     return new InternalInjectorCreator().stage(stage).addModules(modules).build();
   }
+
+  /**
+   * Creates a template for child injectors of {@code parent} with the given modules, which binds
+   * the seed keys to different instances in each child.
+   *
+   * @throws CreationException if the modules have errors, or bind one of the seed keys
+   */
+  public static InjectorTemplate createInjectorTemplate(
+      Injector parent, Iterable<? extends Key<?>> seedKeys, Module... modules) {
+    return createInjectorTemplate(parent, seedKeys, Arrays.asList(modules));
+  }
+
+  /**
+   * Creates a template for child injectors of {@code parent} with the given modules, which binds
+   * the seed keys to different instances in each child.
+   *
+   * @throws CreationException if the modules have errors, or bind one of the seed keys
+   */
+  public static InjectorTemplate createInjectorTemplate(
+      Injector parent, Iterable<? extends Key<?>> seedKeys, Iterable<? extends Module> modules) {
+    return InjectorTemplateImpl.create(parent, seedKeys, modules);
+  }
 }
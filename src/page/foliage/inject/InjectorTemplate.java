@@ -0,0 +1,39 @@
+package page.foliage.inject;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates child injectors of the same modules, such as one per tenant or request, more cheaply
+ * than {@link Injector#createChildInjector(Iterable)}. The modules are configured, scanned for
+ * provider methods and checked for errors once, when the template is created with {@link
+ * Guice#createInjectorTemplate}. Each child then replays the recorded bindings, and binds the
+ * values that differ between children to the template's seed keys.
+ *
+ * <p>Since the modules are configured once, the objects they bind, such as instances, providers,
+ * listeners and interceptors, are shared by all the children. Per-child objects must either be
+ * seeded or created by the children, by binding their classes or with provider methods, which are
+ * called separately for each child. The children of templates whose modules can't be replayed
+ * safely, such as modules that request injection of instances, look up providers, or bind
+ * providers that have injected members, are created by configuring the modules again.
+ */
+public interface InjectorTemplate {
+
+  /** Returns the injector the children are created from. */
+  Injector getParent();
+
+  /** Returns the keys that every child binds to its own instance. */
+  Set<Key<?>> getSeedKeys();
+
+  /**
+   * Creates a child injector of the parent, with the bindings of the template's modules and the
+   * given instances bound to the seed keys.
+   *
+   * @param seeds an instance for each seed key, which is injected like instances bound with {@link
+   *     page.foliage.inject.binder.LinkedBindingBuilder#toInstance}
+   * @throws IllegalArgumentException if {@code seeds} doesn't bind exactly the seed keys, or binds
+   *     one to an instance of another type
+   * @throws CreationException if errors occur during injector creation
+   */
+  Injector createChildInjector(Map<Key<?>, ?> seeds);
+}
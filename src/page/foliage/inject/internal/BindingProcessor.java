@@ -133,7 +133,8 @@ final class BindingProcessor extends AbstractBindingProcessor {
                 new InternalFactoryToInitializableAdapter<T>(
                     initializable,
                     source,
-                    injector.provisionListenerStore.get((ProviderInstanceBinding<T>) binding));
+                    injector.provisionListenerStore.get((ProviderInstanceBinding<T>) binding),
+                    injector.provisionMetrics.statisticsFor(key));
             InternalFactory<? extends T> scopedFactory =
                 Scoping.scope(key, injector, factory, source, scoping);
             putBinding(
@@ -154,7 +155,8 @@ final class BindingProcessor extends AbstractBindingProcessor {
                     injector,
                     providerKey,
                     source,
-                    injector.provisionListenerStore.get((ProviderKeyBinding<T>) binding));
+                    injector.provisionListenerStore.get((ProviderKeyBinding<T>) binding),
+                    injector.provisionMetrics.statisticsFor(key));
             processedBindingData.addCreationListener(boundProviderFactory);
             InternalFactory<? extends T> scopedFactory =
                 Scoping.scope(
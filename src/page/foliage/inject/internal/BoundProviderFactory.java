@@ -26,6 +26,7 @@ import page.foliage.inject.spi.Dependency;
 final class BoundProviderFactory<T> extends ProviderInternalFactory<T> implements CreationListener {
 
   private final ProvisionListenerStackCallback<T> provisionCallback;
+  private final ProvisionStatisticsImpl statistics;
   private final InjectorImpl injector;
   final Key<? extends javax.inject.Provider<? extends T>> providerKey;
   private InternalFactory<? extends javax.inject.Provider<? extends T>> providerFactory;
@@ -34,9 +35,11 @@ final class BoundProviderFactory<T> extends ProviderInternalFactory<T> implement
       InjectorImpl injector,
       Key<? extends javax.inject.Provider<? extends T>> providerKey,
       Object source,
-      ProvisionListenerStackCallback<T> provisionCallback) {
+      ProvisionListenerStackCallback<T> provisionCallback,
+      ProvisionStatisticsImpl statistics) {
     super(source);
     this.provisionCallback = provisionCallback;
+    this.statistics = statistics;
     this.injector = injector;
     this.providerKey = providerKey;
   }
@@ -57,7 +60,7 @@ final class BoundProviderFactory<T> extends ProviderInternalFactory<T> implement
       throws InternalProvisionException {
     try {
       javax.inject.Provider<? extends T> provider = providerFactory.get(context, dependency, true);
-      return circularGet(provider, context, dependency, provisionCallback);
+      return circularGet(provider, context, dependency, provisionCallback, statistics);
     } catch (InternalProvisionException ipe) {
       throw ipe.addSource(providerKey);
     }
@@ -17,14 +17,18 @@
 package page.foliage.inject.internal;
 
 import static page.foliage.guava.common.base.Preconditions.checkArgument;
+import static page.foliage.inject.internal.aop.ClassBuilding.buildConstructionGraph;
 import static page.foliage.inject.internal.aop.ClassBuilding.buildFastClass;
+import static page.foliage.inject.internal.aop.ClassBuilding.buildMembersInjector;
 import static page.foliage.inject.internal.aop.ClassBuilding.canEnhance;
 import static page.foliage.inject.internal.aop.ClassBuilding.canFastInvoke;
 import static page.foliage.inject.internal.aop.ClassBuilding.signature;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.BitSet;
@@ -71,6 +75,10 @@ public final class BytecodeGen {
 
   public static final String FASTCLASS_BY_GUICE_MARKER = "$$FastClassByGuice$$";
 
+  public static final String GRAPH_BY_GUICE_MARKER = "$$GraphByGuice$$";
+
+  public static final String MEMBERS_INJECTOR_BY_GUICE_MARKER = "$$MembersInjectorByGuice$$";
+
   /** Builder of enhanced classes. */
   public interface EnhancerBuilder {
     /**
@@ -100,6 +108,89 @@ public final class BytecodeGen {
     Function<String, BiFunction<Object, Object[], Object>> buildEnhancer(BitSet methodIndices);
   }
 
+  /** Builder of construction graphs. */
+  public interface ConstructionGraphBuilder {
+    /**
+     * Returns true if the graph can call the given constructor directly.
+     *
+     * <p>This is always true for public constructors of public types whose parameter types are
+     * also public and visible from the host class. Package-private constructors and types can
+     * only be used if they're in the same package as the host and we can define types in the same
+     * class loader with Unsafe.
+     */
+    boolean canConstruct(Constructor<?> constructor);
+
+    /**
+     * Adds a call to the given constructor and returns its index. The constructor's arguments are
+     * the constructors and leaves added next, in parameter order. The first constructor added is
+     * the root of the graph.
+     */
+    int addConstructor(Constructor<?> constructor);
+
+    /** Adds a leaf argument and returns its index. */
+    int addLeaf();
+
+    /**
+     * Generates the construction graph.
+     *
+     * <p>The graph is represented as a {@link Function} that accepts a context object and returns
+     * the constructed root. Each leaf function accepts the same context object and returns the
+     * argument for its parameter. When a constructor throws, or a leaf value can't be cast to its
+     * parameter type, the error function is called with the constructor index and the exception;
+     * the graph then throws the exception returned by the error function.
+     */
+    Function<Object, Object> build(
+        Function<Object, Object>[] leaves, BiFunction<Object, Object, Object> onError);
+  }
+
+  /** Builder of fast members-injectors. */
+  public interface MembersInjectorBuilder {
+    /**
+     * Returns true if the members-injector can inject the given field or method directly.
+     *
+     * <p>This is always true for public, non-final instance fields and public instance methods of
+     * public types, whose field and parameter types are also public and visible from the host
+     * class. Package-private members and types can only be used if they're in the same package as
+     * the host and we can define types in the same class loader with Unsafe.
+     */
+    boolean canInject(Member member);
+
+    /** Adds a direct assignment of the given field and returns the index of its leaf. */
+    int addField(Field field);
+
+    /**
+     * Adds a direct call to the given method and returns the index of its first leaf. The method
+     * has one leaf per parameter, with consecutive indices.
+     */
+    int addMethod(Method method);
+
+    /** Adds an opaque injection step and returns the index of its leaf. */
+    int addStep();
+
+    /**
+     * Generates the members-injector.
+     *
+     * <p>The members-injector is represented as a {@link BiFunction} that accepts the instance to
+     * inject plus a context object. Each leaf function accepts the same context object plus the
+     * instance, and returns the value for its field or parameter; step functions are called for
+     * their side-effects. When an injected method throws, or a leaf value can't be cast to its
+     * parameter type, the error function is called with the member index and the exception; the
+     * members-injector then throws the exception returned by the error function.
+     */
+    BiFunction<Object, Object, Object> build(
+        BiFunction<Object, Object, Object>[] leaves, BiFunction<Object, Object, Object> onError);
+  }
+
+  /** Create a builder of fast members-injectors for the given class. */
+  static MembersInjectorBuilder membersInjectorBuilder(Class<?> hostClass) {
+    return buildMembersInjector(hostClass);
+  }
+
+  /** Create a builder of construction graphs rooted at the given class. */
+  static ConstructionGraphBuilder constructionGraphBuilder(Class<?> hostClass) {
+    return buildConstructionGraph(hostClass);
+  }
+
   /** Create a builder of enhancers for the given class. */
   static EnhancerBuilder enhancerBuilder(Class<?> hostClass) {
     return ENHANCER_BUILDERS.getUnchecked(hostClass);
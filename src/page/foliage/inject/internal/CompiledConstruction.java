@@ -0,0 +1,103 @@
+package page.foliage.inject.internal;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import page.foliage.inject.spi.InjectionPoint;
+
+/**
+ * Constructs instances using a generated construction graph, which calls the constructors of a
+ * binding and of its plain constructor dependencies directly. Remaining dependencies are leaves of
+ * the graph, provisioned through their usual factories.
+ *
+ * <p>Errors are reported as if the constructors had been called through their factories: each
+ * {@link InternalProvisionException} leaves the graph wrapped in a {@link Failure}, along with the
+ * sources that the skipped factories and parameter injectors would have added.
+ *
+ * @see ConstructionCompiler
+ */
+final class CompiledConstruction<T> {
+
+  private final Function<Object, Object> graph;
+
+  CompiledConstruction(Function<Object, Object> graph) {
+    this.graph = graph;
+  }
+
+  @SuppressWarnings("unchecked") // the graph always constructs the type of its root
+  T construct(InternalContext context) throws InternalProvisionException {
+    try {
+      return (T) graph.apply(context);
+    } catch (Failure failure) {
+      throw failure.exception;
+    }
+  }
+
+  private static InternalProvisionException addSources(
+      InternalProvisionException exception, Object[] sources) {
+    for (Object source : sources) {
+      exception.addSource(source);
+    }
+    return exception;
+  }
+
+  /** Provisions one argument of the graph through its parameter injector. */
+  static final class Leaf implements Function<Object, Object> {
+    private final SingleParameterInjector<?> parameterInjector;
+    private final Object[] sources;
+
+    /**
+     * @param sources the sources to add to errors after the parameter injector has added its own,
+     *     innermost first
+     */
+    Leaf(SingleParameterInjector<?> parameterInjector, Object[] sources) {
+      this.parameterInjector = parameterInjector;
+      this.sources = sources;
+    }
+
+    @Override
+    public Object apply(Object context) {
+      try {
+        return parameterInjector.inject((InternalContext) context);
+      } catch (InternalProvisionException ipe) {
+        throw new Failure(addSources(ipe, sources));
+      }
+    }
+  }
+
+  /** Converts exceptions thrown by the constructors of the graph into provision errors. */
+  static final class ErrorHandler implements BiFunction<Object, Object, Object> {
+    private final InjectionPoint[] injectionPoints;
+    private final Object[][] sources;
+
+    /**
+     * @param injectionPoints the constructor injection points, by constructor index
+     * @param sources the sources to add to errors from each constructor, innermost first
+     */
+    ErrorHandler(InjectionPoint[] injectionPoints, Object[][] sources) {
+      this.injectionPoints = injectionPoints;
+      this.sources = sources;
+    }
+
+    @Override
+    public Object apply(Object constructorIndex, Object cause) {
+      int index = (Integer) constructorIndex;
+      InternalProvisionException exception =
+          InternalProvisionException.errorInjectingConstructor((Throwable) cause)
+              .addSource(injectionPoints[index]);
+      return new Failure(addSources(exception, sources[index]));
+    }
+  }
+
+  /** Carries a provision error out of the graph, to be rethrown by {@link #construct}. */
+  static final class Failure extends RuntimeException {
+    final InternalProvisionException exception;
+
+    Failure(InternalProvisionException exception) {
+      super(null, null, false, false);
+      this.exception = exception;
+    }
+
+    private static final long serialVersionUID = 0;
+  }
+}
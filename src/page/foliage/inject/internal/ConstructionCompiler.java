@@ -0,0 +1,297 @@
+package page.foliage.inject.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import page.foliage.guava.common.collect.Sets;
+import page.foliage.inject.Binding;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Key;
+import page.foliage.inject.spi.Dependency;
+import page.foliage.inject.spi.HasDependencies;
+import page.foliage.inject.spi.InjectionPoint;
+
+/**
+ * Compiles the constructor bindings of an injector into construction graphs once the injector has
+ * been created. See {@link InternalFlags.CompiledInjectorOption}.
+ *
+ * <p>Starting from each constructor, dependencies that are plain constructor bindings, bound
+ * directly or through linked bindings, are inlined into the graph. A plain constructor binding is
+ * unscoped, has no provision listeners, injectable members, injection listeners or method
+ * interceptors, and its constructor can be called from generated code. Every other dependency is
+ * a leaf provisioned through its usual factory, so scoped dependencies go through their scope.
+ *
+ * <p>Inlined constructors skip the bookkeeping that detects circular dependencies. A constructor is
+ * therefore only compiled when none of its leaves can lead back to an enclosing constructor in the
+ * graph, which is checked by walking the dependencies of the leaf bindings.
+ */
+final class ConstructionCompiler {
+
+  /** Limits the number of constructors inlined into a single graph. */
+  private static final int MAX_CONSTRUCTORS = 64;
+
+  /** Limits the number of bindings visited when walking the dependencies of a leaf. */
+  private static final int MAX_VISITED_BINDINGS = 10_000;
+
+  private static final Object[] NO_SOURCES = {};
+
+  private final InjectorImpl injector;
+
+  /** Constructor injectors that have already been considered. */
+  private final Set<ConstructorInjector<?>> compiled = Sets.newIdentityHashSet();
+
+  /** Memoized results of {@link #reachableConstructors}. */
+  private final Map<Key<?>, Set<ConstructorInjector<?>>> reachableConstructors = new HashMap<>();
+
+  ConstructionCompiler(InjectorImpl injector) {
+    this.injector = injector;
+  }
+
+  /** Compiles the eligible constructor bindings of the injector, including just-in-time ones. */
+  void compileBindings() {
+    List<Binding<?>> candidates =
+        new ArrayList<>(injector.getBindingData().getExplicitBindingsThisLevel().values());
+    synchronized (injector.getJitBindingData().lock()) {
+      candidates.addAll(injector.getJitBindingData().getJitBindings().values());
+    }
+    for (Binding<?> binding : candidates) {
+      if (binding instanceof ConstructorBindingImpl) {
+        ConstructorInjector<?> constructorInjector =
+            ((ConstructorBindingImpl<?>) binding).getConstructorInjector();
+        if (constructorInjector != null && compiled.add(constructorInjector)) {
+          compile(constructorInjector);
+        }
+      }
+    }
+  }
+
+  private <T> void compile(ConstructorInjector<T> constructorInjector) {
+    if (!isPlain(constructorInjector)) {
+      return;
+    }
+    Class<?> hostClass =
+        constructorInjector.getConstructionProxy().getConstructor().getDeclaringClass();
+    Graph graph = new Graph(BytecodeGen.constructionGraphBuilder(hostClass));
+    if (!graph.builder.canConstruct(constructorInjector.getConstructionProxy().getConstructor())) {
+      return;
+    }
+    graph.addConstructor(constructorInjector, NO_SOURCES);
+    if (graph.constructors.size() < 2 || !graph.hasAcyclicLeaves()) {
+      return; // nothing to gain, or not safe to skip the circular dependency checks
+    }
+    try {
+      constructorInjector.setCompiledConstruction(new CompiledConstruction<T>(graph.build()));
+    } catch (RuntimeException | LinkageError e) {
+      /* fall-through, keep using the factories */
+    }
+  }
+
+  /** True if constructing never runs user code besides the constructor itself. */
+  private static boolean isPlain(ConstructorInjector<?> constructorInjector) {
+    MembersInjectorImpl<?> membersInjector = constructorInjector.getMembersInjector();
+    return membersInjector != null
+        && membersInjector.isNoOp()
+        && constructorInjector.getConstructionProxy().getMethodInterceptors().isEmpty();
+  }
+
+  /**
+   * Returns the constructor injector called by the given parameter factory if it can be inlined,
+   * collecting the target keys of any linked bindings along the way, innermost first.
+   */
+  private static ConstructorInjector<?> inlinableConstructor(
+      InternalFactory<?> factory, List<Object> linkSources) {
+    boolean linked = false;
+    while (factory instanceof FactoryProxy) {
+      FactoryProxy<?> factoryProxy = (FactoryProxy<?>) factory;
+      linkSources.add(factoryProxy.getTargetKey());
+      factory = factoryProxy.getTargetFactory();
+      linked = true;
+    }
+    if (!(factory instanceof ConstructorBindingImpl.Factory)) {
+      return null;
+    }
+    ConstructorBindingImpl.Factory<?> constructorFactory =
+        (ConstructorBindingImpl.Factory<?>) factory;
+    if (constructorFactory.hasProvisionListeners()
+        || constructorFactory.hasStatistics()
+        || (!linked && constructorFactory.isFailIfNotLinked())) {
+      return null;
+    }
+    Collections.reverse(linkSources);
+    return constructorFactory.getConstructorInjector();
+  }
+
+  /** Finds an existing binding without creating any just-in-time bindings. */
+  private static BindingImpl<?> findBinding(InjectorImpl injector, Key<?> key) {
+    BindingImpl<?> binding = injector.getBindingData().getExplicitBinding(key);
+    if (binding != null) {
+      return binding;
+    }
+    synchronized (injector.getJitBindingData().lock()) {
+      for (InjectorImpl current = injector; current != null; current = current.parent) {
+        binding = current.getJitBindingData().getJitBinding(key);
+        if (binding != null) {
+          return binding;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the constructor injectors that provisioning the given key may call, or {@code null} if
+   * that can't be determined. Results are shared by all graphs compiled for the injector.
+   */
+  private Set<ConstructorInjector<?>> reachableConstructors(Key<?> key) {
+    if (reachableConstructors.containsKey(key)) {
+      return reachableConstructors.get(key);
+    }
+    Set<ConstructorInjector<?>> reachable = walkDependencies(findBinding(injector, key));
+    reachableConstructors.put(key, reachable);
+    return reachable;
+  }
+
+  private Set<ConstructorInjector<?>> walkDependencies(BindingImpl<?> start) {
+    Set<ConstructorInjector<?>> reachable = Sets.newIdentityHashSet();
+    Set<BindingImpl<?>> visited = Sets.newIdentityHashSet();
+    Deque<BindingImpl<?>> pending = new ArrayDeque<>();
+    if (!visit(start, visited, pending)) {
+      return null;
+    }
+    while (!pending.isEmpty()) {
+      BindingImpl<?> binding = pending.pop();
+      InjectorImpl owner = binding.getInjector() != null ? binding.getInjector() : injector;
+      if (binding instanceof ConstructorBindingImpl) {
+        ConstructorInjector<?> constructorInjector =
+            ((ConstructorBindingImpl<?>) binding).getConstructorInjector();
+        if (constructorInjector == null) {
+          return null;
+        }
+        reachable.add(constructorInjector);
+      } else if (binding instanceof ExposedBindingImpl) {
+        // exposed bindings depend on the private injector, follow the key into it instead
+        Injector privateInjector =
+            ((ExposedBindingImpl<?>) binding).getPrivateElements().getInjector();
+        if (!(privateInjector instanceof InjectorImpl)
+            || !visit(
+                findBinding((InjectorImpl) privateInjector, binding.getKey()), visited, pending)) {
+          return null;
+        }
+        continue;
+      } else if (!(binding instanceof HasDependencies)) {
+        return null;
+      }
+      for (Dependency<?> dependency : ((HasDependencies) binding).getDependencies()) {
+        if (!visit(findBinding(owner, dependency.getKey()), visited, pending)) {
+          return null;
+        }
+      }
+    }
+    return reachable;
+  }
+
+  /**
+   * Queues the binding if it hasn't been seen before. Returns false if the binding is missing, is
+   * the injector itself (which lets user code provision anything), or there are too many.
+   */
+  private static boolean visit(
+      BindingImpl<?> binding, Set<BindingImpl<?>> visited, Deque<BindingImpl<?>> pending) {
+    if (binding == null
+        || binding.getKey().getTypeLiteral().getRawType() == Injector.class
+        || visited.size() >= MAX_VISITED_BINDINGS) {
+      return false;
+    }
+    if (visited.add(binding)) {
+      pending.push(binding);
+    }
+    return true;
+  }
+
+  /** The construction graph being compiled for a single constructor. */
+  private final class Graph {
+    final BytecodeGen.ConstructionGraphBuilder builder;
+    final List<ConstructorInjector<?>> constructors = new ArrayList<>();
+    final List<InjectionPoint> injectionPoints = new ArrayList<>();
+    final List<Object[]> constructorSources = new ArrayList<>();
+    final List<Function<Object, Object>> leaves = new ArrayList<>();
+    final List<Key<?>> leafKeys = new ArrayList<>();
+    /** For each leaf, the constructors that are still being constructed when it's provisioned. */
+    final List<List<ConstructorInjector<?>>> leafAncestors = new ArrayList<>();
+    final List<ConstructorInjector<?>> ancestors = new ArrayList<>();
+
+    Graph(BytecodeGen.ConstructionGraphBuilder builder) {
+      this.builder = builder;
+    }
+
+    /** Adds the constructor and its arguments, in parameter order. */
+    void addConstructor(ConstructorInjector<?> constructorInjector, Object[] sources) {
+      ConstructionProxy<?> constructionProxy = constructorInjector.getConstructionProxy();
+      builder.addConstructor(constructionProxy.getConstructor());
+      constructors.add(constructorInjector);
+      injectionPoints.add(constructionProxy.getInjectionPoint());
+      constructorSources.add(sources);
+
+      SingleParameterInjector<?>[] parameterInjectors = constructorInjector.getParameterInjectors();
+      if (parameterInjectors == null) {
+        return;
+      }
+      ancestors.add(constructorInjector);
+      for (SingleParameterInjector<?> parameterInjector : parameterInjectors) {
+        List<Object> argumentSources = new ArrayList<>();
+        ConstructorInjector<?> argumentConstructor =
+            inlinableConstructor(parameterInjector.getFactory(), argumentSources);
+        if (argumentConstructor != null
+            && constructors.size() < MAX_CONSTRUCTORS
+            && !ancestors.contains(argumentConstructor)
+            && isPlain(argumentConstructor)
+            && builder.canConstruct(argumentConstructor.getConstructionProxy().getConstructor())) {
+          argumentSources.add(parameterInjector.getDependency());
+          Collections.addAll(argumentSources, sources);
+          addConstructor(argumentConstructor, argumentSources.toArray());
+        } else {
+          builder.addLeaf();
+          leaves.add(new CompiledConstruction.Leaf(parameterInjector, sources));
+          leafKeys.add(parameterInjector.getDependency().getKey());
+          leafAncestors.add(new ArrayList<>(ancestors));
+        }
+      }
+      ancestors.remove(ancestors.size() - 1);
+    }
+
+    /**
+     * True if no leaf can lead back to a constructor that is still being constructed when the leaf
+     * is provisioned. Those are the only constructors whose circular dependency checks would fire.
+     */
+    boolean hasAcyclicLeaves() {
+      for (int i = 0; i < leafKeys.size(); i++) {
+        Set<ConstructorInjector<?>> reachable = reachableConstructors(leafKeys.get(i));
+        if (reachable == null) {
+          return false;
+        }
+        for (ConstructorInjector<?> ancestor : leafAncestors.get(i)) {
+          if (reachable.contains(ancestor)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    Function<Object, Object> build() {
+      @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+      Function<Object, Object>[] leafArray = leaves.toArray(new Function[0]);
+      return builder.build(
+          leafArray,
+          new CompiledConstruction.ErrorHandler(
+              injectionPoints.toArray(new InjectionPoint[0]),
+              constructorSources.toArray(new Object[0][])));
+    }
+  }
+}
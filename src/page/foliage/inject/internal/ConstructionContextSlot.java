@@ -0,0 +1,109 @@
+package page.foliage.inject.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A dense index into the {@link ConstructionContext} table of an {@link InternalContext}. Each
+ * factory that tracks circular dependencies ({@link ConstructorInjector}, {@link
+ * ProviderInternalFactory} and {@link InternalProviderInstanceBindingImpl.CyclicFactory}) owns one
+ * slot, so looking up its construction context is an array access rather than a hash lookup.
+ *
+ * <p>Indices are assigned lazily, on first provision, by the {@link Indices} of the injector tree
+ * that provisions, so they start at zero in each tree and the tables of its contexts only grow to
+ * the number of slots the tree uses. When a slot becomes unreachable its index is returned to the
+ * tree, which keeps indices dense even when child injectors are created and discarded repeatedly.
+ * Factories can be shared across injector trees (for example when a list of elements is used to
+ * build several injectors), in which case the trees after the first look their index up.
+ */
+final class ConstructionContextSlot {
+
+  private static final AtomicReferenceFieldUpdater<ConstructionContextSlot, Assignment> ASSIGNMENT =
+      AtomicReferenceFieldUpdater.newUpdater(
+          ConstructionContextSlot.class, Assignment.class, "assignment");
+
+  /**
+   * The index of this slot in the first tree that provisioned it, or null if none has. Assignments
+   * are immutable, so a racy read always observes a complete one.
+   */
+  private volatile Assignment assignment;
+
+  /** Returns this slot's index in the tree of {@code indices}, assigning one on first use. */
+  int index(Indices indices) {
+    Assignment local = assignment;
+    return local != null && local.indices == indices ? local.index : indices.indexOf(this);
+  }
+
+  /** The index of a slot in one tree. */
+  private static final class Assignment {
+    final Indices indices;
+    final int index;
+
+    Assignment(Indices indices, int index) {
+      this.indices = indices;
+      this.index = index;
+    }
+  }
+
+  /** The indices assigned to the slots that an injector tree provisions. */
+  static final class Indices {
+    private final Lock lock = new ReentrantLock();
+
+    /** Indices currently assigned to live slots. Guarded by {@link #lock}. */
+    private final BitSet used = new BitSet();
+
+    /** Keeps track of slots so their index can be recycled once they're garbage collected. */
+    private final ReferenceQueue<ConstructionContextSlot> collected = new ReferenceQueue<>();
+
+    /**
+     * The indices of slots that were first assigned by another tree. Guarded by {@link #lock}.
+     * Entries are removed once their slots are collected.
+     */
+    private final Map<ConstructionContextSlot, Integer> shared = new WeakHashMap<>();
+
+    private int indexOf(ConstructionContextSlot slot) {
+      lock.lock();
+      try {
+        Assignment assignment = slot.assignment;
+        if (assignment != null && assignment.indices == this) {
+          return assignment.index;
+        }
+        Integer sharedIndex = shared.get(slot);
+        if (sharedIndex != null) {
+          return sharedIndex;
+        }
+        for (Reference<?> reference; (reference = collected.poll()) != null; ) {
+          used.clear(((IndexReference) reference).index);
+        }
+        int index = used.nextClearBit(0);
+        used.set(index);
+        new IndexReference(slot, index, collected);
+        if (assignment != null
+            || !ASSIGNMENT.compareAndSet(slot, null, new Assignment(this, index))) {
+          shared.put(slot, index);
+        }
+        return index;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Returns the index of a collected slot to its tree. */
+  private static final class IndexReference extends WeakReference<ConstructionContextSlot> {
+    final int index;
+
+    IndexReference(
+        ConstructionContextSlot slot, int index, ReferenceQueue<ConstructionContextSlot> queue) {
+      super(slot, queue);
+      this.index = index;
+    }
+  }
+}
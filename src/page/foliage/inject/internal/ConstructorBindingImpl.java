@@ -153,6 +153,12 @@ final class ConstructorBindingImpl<T> extends BindingImpl<T>
     factory.constructorInjector =
         (ConstructorInjector<T>) injector.constructors.get(constructorInjectionPoint, errors);
     factory.provisionCallback = injector.provisionListenerStore.get(this);
+    factory.statistics = injector.provisionMetrics.statisticsFor(getKey());
+  }
+
+  /** Returns the constructor injector, or {@code null} if this binding isn't initialized. */
+  ConstructorInjector<T> getConstructorInjector() {
+    return factory.constructorInjector;
   }
 
   /** True if this binding has been initialized and is ready for use. */
@@ -273,17 +279,38 @@ final class ConstructorBindingImpl<T> extends BindingImpl<T>
     return Objects.hashCode(getKey(), getScoping(), constructorInjectionPoint);
   }
 
-  private static class Factory<T> implements InternalFactory<T> {
+  static class Factory<T> implements InternalFactory<T> {
     private final boolean failIfNotLinked;
     private final Key<?> key;
     private ConstructorInjector<T> constructorInjector;
     private ProvisionListenerStackCallback<T> provisionCallback;
+    private ProvisionStatisticsImpl statistics;
 
     Factory(boolean failIfNotLinked, Key<?> key) {
       this.failIfNotLinked = failIfNotLinked;
       this.key = key;
     }
 
+    /** Returns the constructor injector, or {@code null} if this factory isn't ready. */
+    ConstructorInjector<T> getConstructorInjector() {
+      return constructorInjector;
+    }
+
+    /** True if this factory notifies provision listeners. */
+    boolean hasProvisionListeners() {
+      return provisionCallback != null;
+    }
+
+    /** True if this factory records provision statistics. */
+    boolean hasStatistics() {
+      return statistics != null;
+    }
+
+    /** True if this factory only succeeds when retrieved from a linked binding. */
+    boolean isFailIfNotLinked() {
+      return failIfNotLinked;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public T get(InternalContext context, Dependency<?> dependency, boolean linked)
@@ -299,7 +326,7 @@ final class ConstructorBindingImpl<T> extends BindingImpl<T>
 
       // This may not actually be safe because it could return a super type of T (if that's all the
       // client needs), but it should be OK in practice thanks to the wonders of erasure.
-      return (T) localInjector.construct(context, dependency, provisionCallback);
+      return (T) localInjector.construct(context, dependency, provisionCallback, statistics);
     }
   }
 }
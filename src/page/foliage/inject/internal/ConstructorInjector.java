@@ -38,6 +38,8 @@ final class ConstructorInjector<T> {
   private final SingleParameterInjector<?>[] parameterInjectors;
   private final ConstructionProxy<T> constructionProxy;
   private final MembersInjectorImpl<T> membersInjector;
+  private final ConstructionContextSlot constructionContextSlot = new ConstructionContextSlot();
+  private CompiledConstruction<T> compiledConstruction;
 
   ConstructorInjector(
       Set<InjectionPoint> injectableMembers,
@@ -58,6 +60,22 @@ final class ConstructorInjector<T> {
     return constructionProxy;
   }
 
+  /** Returns the parameter injectors, or {@code null} if the constructor takes no parameters. */
+  SingleParameterInjector<?>[] getParameterInjectors() {
+    return parameterInjectors;
+  }
+
+  MembersInjectorImpl<T> getMembersInjector() {
+    return membersInjector;
+  }
+
+  /**
+   * Uses the given compiled construction whenever there are no provision listeners or statistics.
+   */
+  void setCompiledConstruction(CompiledConstruction<T> compiledConstruction) {
+    this.compiledConstruction = compiledConstruction;
+  }
+
   /**
    * Construct an instance. Returns {@code Object} instead of {@code T} because it may return a
    * proxy.
@@ -65,9 +83,17 @@ final class ConstructorInjector<T> {
   Object construct(
       final InternalContext context,
       Dependency<?> dependency,
-      @Nullable ProvisionListenerStackCallback<T> provisionCallback)
+      @Nullable ProvisionListenerStackCallback<T> provisionCallback,
+      @Nullable ProvisionStatisticsImpl statistics)
       throws InternalProvisionException {
-    final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+    // Compiled constructions never take part in circular dependencies, so need no bookkeeping.
+    CompiledConstruction<T> localCompiledConstruction = compiledConstruction;
+    if (localCompiledConstruction != null && provisionCallback == null && statistics == null) {
+      return localCompiledConstruction.construct(context);
+    }
+
+    final ConstructionContext<T> constructionContext =
+        context.getConstructionContext(constructionContextSlot);
     // We have a circular reference between constructors. Return a proxy.
     if (constructionContext.isConstructing()) {
       // TODO (user): if we can't proxy this object, can we proxy the other object?
@@ -87,6 +113,7 @@ final class ConstructorInjector<T> {
     }
 
     constructionContext.startConstruction();
+    long start = statistics != null ? System.nanoTime() : 0L;
     try {
       // Optimization: Don't go through the callback stack if we have no listeners.
       if (provisionCallback == null) {
@@ -103,6 +130,9 @@ final class ConstructorInjector<T> {
       }
     } finally {
       constructionContext.finishConstruction();
+      if (statistics != null) {
+        statistics.record(System.nanoTime() - start);
+      }
     }
   }
 
@@ -0,0 +1,197 @@
+package page.foliage.inject.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import javax.annotation.Nullable;
+
+/**
+ * Hands the {@link InternalContext} of a top-level provision down to the injector calls made while
+ * it runs, when contexts are handed off explicitly (see {@link
+ * InternalFlags.ContextPropagationOption#HANDOFF}). One is shared by all injectors of a tree.
+ *
+ * <p>On Java 25 and later the context is bound to a {@code java.lang.ScopedValue} for the duration
+ * of the provision, which costs virtual threads no thread local storage. On earlier versions it's
+ * held in a thread local that is removed as soon as the provision returns, so nothing is left
+ * behind in the thread either way.
+ */
+abstract class ContextHandOff {
+
+  static ContextHandOff create() {
+    return ScopedValues.AVAILABLE ? new ScopedValueHandOff() : new ThreadLocalHandOff();
+  }
+
+  /** Returns the context of the provision that is running on this thread, or null if none is. */
+  @Nullable
+  abstract InternalContext current();
+
+  /**
+   * Runs a top-level provision with {@code context} handed off to the injector calls it makes, and
+   * closes the context once it returns.
+   */
+  abstract <T> T call(InternalContext context, ContextualCallable<T> callable)
+      throws InternalProvisionException;
+
+  private static final class ThreadLocalHandOff extends ContextHandOff {
+    private final ThreadLocal<InternalContext> context = new ThreadLocal<>();
+
+    @Override
+    InternalContext current() {
+      return context.get();
+    }
+
+    @Override
+    <T> T call(InternalContext context, ContextualCallable<T> callable)
+        throws InternalProvisionException {
+      this.context.set(context);
+      try {
+        return callable.call(context);
+      } finally {
+        this.context.remove();
+        context.close();
+      }
+    }
+  }
+
+  private static final class ScopedValueHandOff extends ContextHandOff {
+    private final Object scopedValue = ScopedValues.newInstance();
+
+    @Override
+    InternalContext current() {
+      return ScopedValues.get(scopedValue);
+    }
+
+    @Override
+    <T> T call(InternalContext context, ContextualCallable<T> callable)
+        throws InternalProvisionException {
+      Call<T> call = new Call<>(context, callable);
+      try {
+        ScopedValues.run(scopedValue, context, call);
+      } finally {
+        context.close();
+      }
+      if (call.failure != null) {
+        throw call.failure;
+      }
+      return call.result;
+    }
+  }
+
+  /** Adapts a callable to the {@link Runnable} that {@code ScopedValue.Carrier.run} expects. */
+  private static final class Call<T> implements Runnable {
+    final InternalContext context;
+    final ContextualCallable<T> callable;
+    T result;
+    InternalProvisionException failure;
+
+    Call(InternalContext context, ContextualCallable<T> callable) {
+      this.context = context;
+      this.callable = callable;
+    }
+
+    @Override
+    public void run() {
+      try {
+        result = callable.call(context);
+      } catch (InternalProvisionException e) {
+        failure = e;
+      }
+    }
+  }
+
+  /**
+   * Method handles for {@code java.lang.ScopedValue}, which is only final from Java 25, so it's
+   * not used on the versions where it's a preview API.
+   */
+  private static final class ScopedValues {
+    /** Returned by {@code orElse} when the value isn't bound, as it doesn't accept null. */
+    private static final Object UNBOUND = new Object();
+
+    static final boolean AVAILABLE;
+    private static final MethodHandle NEW_INSTANCE;
+    private static final MethodHandle OR_ELSE;
+    private static final MethodHandle WHERE;
+    private static final MethodHandle RUN;
+
+    static {
+      MethodHandle newInstance = null;
+      MethodHandle orElse = null;
+      MethodHandle where = null;
+      MethodHandle run = null;
+      if (featureVersion() >= 25) {
+        try {
+          Class<?> scopedValue = Class.forName("java.lang.ScopedValue");
+          Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+          MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+          newInstance =
+              lookup
+                  .findStatic(scopedValue, "newInstance", MethodType.methodType(scopedValue))
+                  .asType(MethodType.methodType(Object.class));
+          orElse =
+              lookup
+                  .findVirtual(
+                      scopedValue, "orElse", MethodType.methodType(Object.class, Object.class))
+                  .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+          where =
+              lookup
+                  .findStatic(
+                      scopedValue,
+                      "where",
+                      MethodType.methodType(carrier, scopedValue, Object.class))
+                  .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+          run =
+              lookup
+                  .findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class))
+                  .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+          newInstance = orElse = where = run = null;
+        }
+      }
+      NEW_INSTANCE = newInstance;
+      OR_ELSE = orElse;
+      WHERE = where;
+      RUN = run;
+      AVAILABLE = run != null;
+    }
+
+    private static int featureVersion() {
+      String version = System.getProperty("java.specification.version", "1.8");
+      try {
+        return version.startsWith("1.") ? 8 : Integer.parseInt(version);
+      } catch (NumberFormatException e) {
+        return 8;
+      }
+    }
+
+    static Object newInstance() {
+      try {
+        return (Object) NEW_INSTANCE.invokeExact();
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    @Nullable
+    static InternalContext get(Object scopedValue) {
+      Object value;
+      try {
+        value = (Object) OR_ELSE.invokeExact(scopedValue, UNBOUND);
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+      return value == UNBOUND ? null : (InternalContext) value;
+    }
+
+    static void run(Object scopedValue, InternalContext context, Runnable runnable) {
+      try {
+        Object carrier = (Object) WHERE.invokeExact(scopedValue, (Object) context);
+        RUN.invokeExact(carrier, runnable);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+}
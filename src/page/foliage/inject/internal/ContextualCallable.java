@@ -0,0 +1,9 @@
+package page.foliage.inject.internal;
+
+/**
+ * Work that runs with the {@link InternalContext} of the current provision. See {@link
+ * InjectorImpl#callInContext}.
+ */
+interface ContextualCallable<T> {
+  T call(InternalContext context) throws InternalProvisionException;
+}
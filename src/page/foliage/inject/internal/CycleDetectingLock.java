@@ -1,16 +1,17 @@
 package page.foliage.inject.internal;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import page.foliage.guava.common.base.Preconditions;
 import page.foliage.guava.common.collect.ImmutableListMultimap;
-import page.foliage.guava.common.collect.LinkedHashMultimap;
 import page.foliage.guava.common.collect.ListMultimap;
 import page.foliage.guava.common.collect.Maps;
-import page.foliage.guava.common.collect.Multimap;
 import page.foliage.guava.common.collect.MultimapBuilder;
 
 /**
@@ -48,8 +49,16 @@ interface CycleDetectingLock<ID> {
 
   /**
    * Wraps locks so they would never cause a deadlock. On each {@link
-   * CycleDetectingLock#lockOrDetectPotentialLocksCycle} we check for dependency cycles within locks
-   * created by the same factory. Either we detect a cycle and return it or take it atomically.
+   * CycleDetectingLock#lockOrDetectPotentialLocksCycle} that would block, we check for dependency
+   * cycles within locks sharing the same registry. Either we detect a cycle and return it or take
+   * it atomically.
+   *
+   * <p>Locks that are free, or already owned by the calling thread, are taken without touching any
+   * shared state besides the registry entry of the calling thread, so threads creating unrelated
+   * singletons don't contend with each other. Cycles can only involve threads that are blocked, so
+   * they're looked for only when a thread is about to block, under a lock private to the registry.
+   * Each injector tree has its own registry; cycles through locks of different registries aren't
+   * detected.
    *
    * <p>Important to note that we do not prevent deadlocks in the client code. As an example: Thread
    * A takes lock L and creates singleton class CA depending on the singleton class CB. Meanwhile
@@ -61,46 +70,24 @@ interface CycleDetectingLock<ID> {
    */
   class CycleDetectingLockFactory<ID> {
 
-    /**
-     * Specifies lock that thread is currently waiting on to own it. Used only for purposes of locks
-     * cycle detection.
-     *
-     * <ul>
-     *   <li>Key: thread
-     *   <li>Value: lock that is being waited on
-     * </ul>
-     *
-     * <p>Element is added inside {@link #lockOrDetectPotentialLocksCycle()} before {@link
-     * Lock#lock} is called. Element is removed inside {@link #lockOrDetectPotentialLocksCycle()}
-     * after {@link Lock#lock} and synchronously with adding it to {@link #locksOwnedByThread}.
-     *
-     * <p>Same lock can be added for several threads in case all of them are trying to take it.
-     *
-     * <p>Guarded by {@code CycleDetectingLockFactory.class}.
-     */
-    private static Map<Thread, ReentrantCycleDetectingLock<?>> lockThreadIsWaitingOn =
-        Maps.newHashMap();
+    private final Registry registry;
+
+    /** Creates a factory with its own registry. */
+    CycleDetectingLockFactory() {
+      this(new Registry());
+    }
+
+    private CycleDetectingLockFactory(Registry registry) {
+      this.registry = registry;
+    }
 
     /**
-     * Lists locks that thread owns. Used only to populate locks in a potential cycle when it is
-     * detected.
-     *
-     * <ul>
-     *   <li>Key: thread
-     *   <li>Value: stack of locks that were owned.
-     * </ul>
-     *
-     * <p>Element is added inside {@link #lockOrDetectPotentialLocksCycle()} after {@link Lock#lock}
-     * is called. Element is removed inside {@link #unlock()} synchronously with {@link
-     * Lock#unlock()} call.
-     *
-     * <p>Same lock can only be present several times for the same thread as locks are reentrant.
-     * Lock can not be owned by several different threads as the same time.
-     *
-     * <p>Guarded by {@code CycleDetectingLockFactory.class}.
+     * Returns a new factory whose locks are checked for cycles together with the locks of this
+     * factory. Reported cycles only list the ids of locks created by the same factory.
      */
-    private static final Multimap<Thread, ReentrantCycleDetectingLock<?>> locksOwnedByThread =
-        LinkedHashMultimap.create();
+    <I> CycleDetectingLockFactory<I> newSiblingFactory() {
+      return new CycleDetectingLockFactory<I>(registry);
+    }
 
     /**
      * Creates new lock within this factory context. We can guarantee that locks created by the same
@@ -112,28 +99,53 @@ interface CycleDetectingLock<ID> {
       return new ReentrantCycleDetectingLock<ID>(this, userLockId, new ReentrantLock());
     }
 
+    /** The owners and waiters of the locks created by a group of factories. */
+    private static final class Registry {
+
+      /**
+       * Guards {@link #lockThreadIsWaitingOn}. A {@link ReentrantLock} rather than a monitor, so
+       * that threads waiting for it don't pin the carrier thread when running on virtual threads.
+       */
+      final Lock waitersLock = new ReentrantLock();
+
+      /**
+       * Specifies lock that thread is currently waiting on to own it. Used only for purposes of
+       * locks cycle detection.
+       *
+       * <p>Element is added inside {@link #lockOrDetectPotentialLocksCycle()} before blocking on
+       * {@link Lock#lock}, and removed once the lock is taken. While a thread is in this map it
+       * doesn't change the locks it owns, so they can be read by other threads holding {@link
+       * #waitersLock}.
+       *
+       * <p>Same lock can be added for several threads in case all of them are trying to take it.
+       */
+      final Map<Thread, ReentrantCycleDetectingLock<?>> lockThreadIsWaitingOn = Maps.newHashMap();
+
+      /**
+       * Lists locks that each thread owns, in the order they were taken. Used only to populate
+       * locks in a potential cycle when it is detected. Each list is only modified by its thread,
+       * and is removed once it's empty.
+       */
+      final ConcurrentMap<Thread, List<ReentrantCycleDetectingLock<?>>> locksOwnedByThread =
+          new ConcurrentHashMap<>();
+    }
+
     /** The implementation for {@link CycleDetectingLock}. */
     static class ReentrantCycleDetectingLock<ID> implements CycleDetectingLock<ID> {
 
       /** Underlying lock used for actual waiting when no potential deadlocks are detected. */
-      private final Lock lockImplementation;
+      private final ReentrantLock lockImplementation;
       /** User id for this lock. */
       private final ID userLockId;
       /** Factory that was used to create this lock. */
       private final CycleDetectingLockFactory<ID> lockFactory;
-      /**
-       * Thread that owns this lock. Nullable. Guarded by {@code CycleDetectingLockFactory.this}.
-       */
-      private Thread lockOwnerThread = null;
-
-      /**
-       * Number of times that thread owned this lock. Guarded by {@code
-       * CycleDetectingLockFactory.this}.
-       */
-      private int lockReentranceCount = 0;
+      /** Thread that owns this lock. Nullable. Only set by the owner thread. */
+      private volatile Thread lockOwnerThread = null;
 
       ReentrantCycleDetectingLock(
-          CycleDetectingLockFactory<ID> lockFactory, ID userLockId, Lock lockImplementation) {
+          CycleDetectingLockFactory<ID> lockFactory,
+          ID userLockId,
+          ReentrantLock lockImplementation) {
         this.lockFactory = lockFactory;
         this.userLockId = Preconditions.checkNotNull(userLockId, "userLockId");
         this.lockImplementation =
@@ -143,32 +155,43 @@ interface CycleDetectingLock<ID> {
       @Override
       public ListMultimap<Thread, ID> lockOrDetectPotentialLocksCycle() {
         final Thread currentThread = Thread.currentThread();
-        synchronized (CycleDetectingLockFactory.class) {
-          checkState();
-          // Add this lock to the waiting map to ensure it is included in any reported lock cycle.
-          lockThreadIsWaitingOn.put(currentThread, this);
-          ListMultimap<Thread, ID> locksInCycle = detectPotentialLocksCycle();
-          if (!locksInCycle.isEmpty()) {
-            // We aren't actually going to wait for this lock, so remove it from the map.
-            lockThreadIsWaitingOn.remove(currentThread);
-            // potential deadlock is found, we don't try to take this lock
-            return locksInCycle;
+        if (!lockImplementation.tryLock()) {
+          Registry registry = lockFactory.registry;
+          registry.waitersLock.lock();
+          try {
+            // Add this lock to the waiting map to ensure it is included in any reported lock cycle.
+            registry.lockThreadIsWaitingOn.put(currentThread, this);
+            ListMultimap<Thread, ID> locksInCycle = detectPotentialLocksCycle();
+            if (!locksInCycle.isEmpty()) {
+              // We aren't actually going to wait for this lock, so remove it from the map.
+              registry.lockThreadIsWaitingOn.remove(currentThread);
+              // potential deadlock is found, we don't try to take this lock
+              return locksInCycle;
+            }
+          } finally {
+            registry.waitersLock.unlock();
           }
-        }
 
-        // this may be blocking, but we don't expect it to cause a deadlock
-        lockImplementation.lock();
+          // this may be blocking, but we don't expect it to cause a deadlock
+          lockImplementation.lock();
 
-        synchronized (CycleDetectingLockFactory.class) {
-          // current thread is no longer waiting on this lock
-          lockThreadIsWaitingOn.remove(currentThread);
-          checkState();
+          registry.waitersLock.lock();
+          try {
+            // current thread is no longer waiting on this lock
+            registry.lockThreadIsWaitingOn.remove(currentThread);
+          } finally {
+            registry.waitersLock.unlock();
+          }
+        }
 
-          // mark it as owned by us
+        if (lockImplementation.getHoldCount() == 1) {
+          // mark it as owned by us, and add it to the list of locks owned by a current thread
           lockOwnerThread = currentThread;
-          lockReentranceCount++;
-          // add this lock to the list of locks owned by a current thread
-          locksOwnedByThread.put(currentThread, this);
+          lockFactory
+              .registry
+              .locksOwnedByThread
+              .computeIfAbsent(currentThread, thread -> new ArrayList<>())
+              .add(this);
         }
         // no deadlock is found, locking successful
         return ImmutableListMultimap.of();
@@ -176,62 +199,30 @@ interface CycleDetectingLock<ID> {
 
       @Override
       public void unlock() {
-        final Thread currentThread = Thread.currentThread();
-        synchronized (CycleDetectingLockFactory.class) {
-          checkState();
-          Preconditions.checkState(
-              lockOwnerThread != null, "Thread is trying to unlock a lock that is not locked");
-          Preconditions.checkState(
-              lockOwnerThread == currentThread,
-              "Thread is trying to unlock a lock owned by another thread");
-
-          // releasing underlying lock
-          lockImplementation.unlock();
-
-          // be sure to release the lock synchronously with updating internal state
-          lockReentranceCount--;
-          if (lockReentranceCount == 0) {
-            // we no longer own this lock
-            lockOwnerThread = null;
-            Preconditions.checkState(
-                locksOwnedByThread.remove(currentThread, this),
-                "Internal error: Can not find this lock in locks owned by a current thread");
-            if (locksOwnedByThread.get(currentThread).isEmpty()) {
-              // clearing memory
-              locksOwnedByThread.removeAll(currentThread);
-            }
-          }
-        }
-      }
-
-      /** Check consistency of an internal state. */
-      void checkState() throws IllegalStateException {
         final Thread currentThread = Thread.currentThread();
         Preconditions.checkState(
-            !lockThreadIsWaitingOn.containsKey(currentThread),
-            "Internal error: Thread should not be in a waiting thread on a lock now");
-        if (lockOwnerThread != null) {
-          // check state of a locked lock
-          Preconditions.checkState(
-              lockReentranceCount >= 0,
-              "Internal error: Lock ownership and reentrance count internal states do not match");
-          Preconditions.checkState(
-              locksOwnedByThread.get(lockOwnerThread).contains(this),
-              "Internal error: Set of locks owned by a current thread and lock "
-                  + "ownership status do not match");
-        } else {
-          // check state of a non locked lock
-          Preconditions.checkState(
-              lockReentranceCount == 0,
-              "Internal error: Reentrance count of a non locked lock is expect to be zero");
+            lockImplementation.isHeldByCurrentThread(),
+            "Thread is trying to unlock a lock that it doesn't own");
+        if (lockImplementation.getHoldCount() == 1) {
+          // we no longer own this lock
+          lockOwnerThread = null;
+          List<ReentrantCycleDetectingLock<?>> ownedLocks =
+              lockFactory.registry.locksOwnedByThread.get(currentThread);
           Preconditions.checkState(
-              !locksOwnedByThread.values().contains(this),
-              "Internal error: Non locked lock should not be owned by any thread");
+              ownedLocks != null && ownedLocks.remove(ownedLocks.lastIndexOf(this)) == this,
+              "Internal error: Can not find this lock in locks owned by a current thread");
+          if (ownedLocks.isEmpty()) {
+            // clearing memory
+            lockFactory.registry.locksOwnedByThread.remove(currentThread);
+          }
         }
+        // releasing underlying lock
+        lockImplementation.unlock();
       }
 
       /**
-       * Algorithm to detect a potential lock cycle.
+       * Algorithm to detect a potential lock cycle. Must be called while holding the lock of the
+       * registry, after adding the current thread to the waiting threads.
        *
        * <p>For lock's thread owner check which lock is it trying to take. Repeat recursively. When
        * current thread is found a potential cycle is detected.
@@ -240,7 +231,8 @@ interface CycleDetectingLock<ID> {
        */
       private ListMultimap<Thread, ID> detectPotentialLocksCycle() {
         final Thread currentThread = Thread.currentThread();
-        if (lockOwnerThread == null || lockOwnerThread == currentThread) {
+        Thread owner = lockOwnerThread;
+        if (owner == null || owner == currentThread) {
           // if nobody owns this lock, lock cycle is impossible
           // if a current thread owns this lock, we let Guice to handle it
           return ImmutableListMultimap.of();
@@ -251,12 +243,10 @@ interface CycleDetectingLock<ID> {
         // lock that is a part of a potential locks cycle, starts with current lock
         ReentrantCycleDetectingLock<?> lockOwnerWaitingOn = this;
         // try to find a dependency path between lock's owner thread and a current thread
-        while (lockOwnerWaitingOn != null && lockOwnerWaitingOn.lockOwnerThread != null) {
-          Thread threadOwnerThreadWaits = lockOwnerWaitingOn.lockOwnerThread;
+        while (lockOwnerWaitingOn != null && (owner = lockOwnerWaitingOn.lockOwnerThread) != null) {
           // in case locks cycle exists lock we're waiting for is part of it
-          lockOwnerWaitingOn =
-              addAllLockIdsAfter(threadOwnerThreadWaits, lockOwnerWaitingOn, potentialLocksCycle);
-          if (threadOwnerThreadWaits == currentThread) {
+          lockOwnerWaitingOn = addAllLockIdsAfter(owner, lockOwnerWaitingOn, potentialLocksCycle);
+          if (owner == currentThread) {
             // owner thread depends on current thread, cycle detected
             return potentialLocksCycle;
           }
@@ -267,21 +257,28 @@ interface CycleDetectingLock<ID> {
 
       /**
        * Adds all locks held by the given thread that are after the given lock and then returns the
-       * lock the thread is currently waiting on, if any
+       * lock the thread is currently waiting on, if any. Threads that aren't waiting can't be part
+       * of a cycle, so nothing is added for them.
        */
       private ReentrantCycleDetectingLock<?> addAllLockIdsAfter(
           Thread thread,
           ReentrantCycleDetectingLock<?> lock,
           ListMultimap<Thread, ID> potentialLocksCycle) {
-        boolean found = false;
-        Collection<ReentrantCycleDetectingLock<?>> ownedLocks = locksOwnedByThread.get(thread);
-        Preconditions.checkNotNull(
-            ownedLocks, "Internal error: No locks were found taken by a thread");
-        for (ReentrantCycleDetectingLock<?> ownedLock : ownedLocks) {
-          if (ownedLock == lock) {
-            found = true;
-          }
-          if (found && ownedLock.lockFactory == this.lockFactory) {
+        Registry registry = lockFactory.registry;
+        ReentrantCycleDetectingLock<?> unownedLock = registry.lockThreadIsWaitingOn.get(thread);
+        if (unownedLock == null) {
+          return null;
+        }
+        // the thread is waiting, so the locks it owns don't change while we read them
+        List<ReentrantCycleDetectingLock<?>> ownedLocks = registry.locksOwnedByThread.get(thread);
+        int index = ownedLocks == null ? -1 : ownedLocks.indexOf(lock);
+        if (index < 0) {
+          // the lock was released since its owner was read, so the owner isn't blocking anyone
+          return null;
+        }
+        for (ReentrantCycleDetectingLock<?> ownedLock :
+            ownedLocks.subList(index, ownedLocks.size())) {
+          if (ownedLock.lockFactory == this.lockFactory) {
             // All locks are stored in a shared map therefore there is no way to
             // enforce type safety. We know that our cast is valid as we check for a lock's
             // factory. If the lock was generated by the
@@ -291,11 +288,8 @@ interface CycleDetectingLock<ID> {
             potentialLocksCycle.put(thread, userLockId);
           }
         }
-        Preconditions.checkState(
-            found, "Internal error: We can not find locks that created a cycle that we detected");
-        ReentrantCycleDetectingLock<?> unownedLock = lockThreadIsWaitingOn.get(thread);
-        // If this thread is waiting for a lock add it to the cycle and return it
-        if (unownedLock != null && unownedLock.lockFactory == this.lockFactory) {
+        // This thread is waiting for a lock: add it to the cycle and return it
+        if (unownedLock.lockFactory == this.lockFactory) {
           @SuppressWarnings("unchecked")
           ID typed = (ID) unownedLock.userLockId;
           potentialLocksCycle.put(thread, typed);
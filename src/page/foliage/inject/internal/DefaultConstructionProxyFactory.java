@@ -16,6 +16,7 @@
 
 package page.foliage.inject.internal;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -47,6 +48,12 @@ final class DefaultConstructionProxyFactory<T> implements ConstructionProxyFacto
     @SuppressWarnings("unchecked") // the injection point is for a constructor of T
     final Constructor<T> constructor = (Constructor<T>) injectionPoint.getMember();
 
+    BiFunction<Object, Object[], Object> generatedConstructor =
+        GeneratedInjection.invoker(constructor);
+    if (generatedConstructor != null) {
+      return new FastClassProxy<T>(injectionPoint, constructor, generatedConstructor);
+    }
+
     if (InternalFlags.isBytecodeGenEnabled()) {
       try {
         BiFunction<Object, Object[], Object> fastConstructor =
@@ -59,10 +66,20 @@ final class DefaultConstructionProxyFactory<T> implements ConstructionProxyFacto
       }
     }
 
+    try {
+      return new MethodHandleProxy<T>(
+          injectionPoint, constructor, MethodHandleInvokers.forConstructor(constructor));
+    } catch (Exception | LinkageError e) {
+      /* fall-through */
+    }
+
     return new ReflectiveProxy<T>(injectionPoint, constructor);
   }
 
-  /** A {@link ConstructionProxy} that uses bytecode generation to invoke the constructor. */
+  /**
+   * A {@link ConstructionProxy} that invokes the constructor through bytecode generated at runtime,
+   * or through the members generated for its class at compile time.
+   */
   private static final class FastClassProxy<T> implements ConstructionProxy<T> {
     final InjectionPoint injectionPoint;
     final Constructor<T> constructor;
@@ -103,6 +120,45 @@ final class DefaultConstructionProxyFactory<T> implements ConstructionProxyFacto
     }
   }
 
+  /** A {@link ConstructionProxy} that uses a method handle to invoke the constructor. */
+  private static final class MethodHandleProxy<T> implements ConstructionProxy<T> {
+    final InjectionPoint injectionPoint;
+    final Constructor<T> constructor;
+    final MethodHandle handle;
+
+    MethodHandleProxy(
+        InjectionPoint injectionPoint, Constructor<T> constructor, MethodHandle handle) {
+      this.injectionPoint = injectionPoint;
+      this.constructor = constructor;
+      this.handle = handle;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... arguments) throws InvocationTargetException {
+      try {
+        return (T) (Object) handle.invokeExact((Object) null, arguments);
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e); // match JDK reflection behaviour
+      }
+    }
+
+    @Override
+    public InjectionPoint getInjectionPoint() {
+      return injectionPoint;
+    }
+
+    @Override
+    public Constructor<T> getConstructor() {
+      return constructor;
+    }
+
+    @Override
+    public ImmutableMap<Method, List<MethodInterceptor>> getMethodInterceptors() {
+      return ImmutableMap.of();
+    }
+  }
+
   private static final class ReflectiveProxy<T> implements ConstructionProxy<T> {
     final Constructor<T> constructor;
     final InjectionPoint injectionPoint;
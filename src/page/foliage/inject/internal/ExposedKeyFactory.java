@@ -29,6 +29,9 @@ final class ExposedKeyFactory<T> implements InternalFactory<T>, CreationListener
   private final PrivateElements privateElements;
   private BindingImpl<T> delegate;
 
+  /** The end of the chain of links starting at the delegate, once {@link #flatten}ed. */
+  private FactoryProxy.Chain<? extends T> chain;
+
   ExposedKeyFactory(Key<T> key, PrivateElements privateElements) {
     this.key = key;
     this.privateElements = privateElements;
@@ -50,9 +53,25 @@ final class ExposedKeyFactory<T> implements InternalFactory<T>, CreationListener
     this.delegate = explicitBinding;
   }
 
+  InternalFactory<? extends T> getTargetFactory() {
+    return delegate == null ? null : delegate.getInternalFactory();
+  }
+
+  /**
+   * Makes this factory call the factory at the end of the chain starting at the delegate directly.
+   * Called once the injector is created.
+   */
+  void flatten() {
+    chain = FactoryProxy.Chain.resolve(this);
+  }
+
   @Override
   public T get(InternalContext context, Dependency<?> dependency, boolean linked)
       throws InternalProvisionException {
+    FactoryProxy.Chain<? extends T> localChain = chain;
+    if (localChain != null) {
+      return localChain.get(context, dependency, linked);
+    }
     // TODO(lukes): add a source to the thrown exception?
     return delegate.getInternalFactory().get(context, dependency, linked);
   }
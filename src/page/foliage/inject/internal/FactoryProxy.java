@@ -16,7 +16,13 @@
 
 package page.foliage.inject.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 import page.foliage.guava.common.base.MoreObjects;
+import page.foliage.guava.common.collect.Sets;
 import page.foliage.inject.Key;
 import page.foliage.inject.internal.InjectorImpl.JitLimitation;
 import page.foliage.inject.spi.Dependency;
@@ -34,6 +40,9 @@ final class FactoryProxy<T> implements InternalFactory<T>, CreationListener {
 
   private InternalFactory<? extends T> targetFactory;
 
+  /** The end of the chain of links starting at this proxy, once {@link #flatten}ed. */
+  private Chain<? extends T> chain;
+
   FactoryProxy(InjectorImpl injector, Key<T> key, Key<? extends T> targetKey, Object source) {
     this.injector = injector;
     this.key = key;
@@ -52,9 +61,29 @@ final class FactoryProxy<T> implements InternalFactory<T>, CreationListener {
     }
   }
 
+  Key<? extends T> getTargetKey() {
+    return targetKey;
+  }
+
+  InternalFactory<? extends T> getTargetFactory() {
+    return targetFactory;
+  }
+
+  /**
+   * Makes this proxy call the factory at the end of its chain of links directly. Called once the
+   * injector is created.
+   */
+  void flatten() {
+    chain = Chain.resolve(this);
+  }
+
   @Override
   public T get(InternalContext context, Dependency<?> dependency, boolean linked)
       throws InternalProvisionException {
+    Chain<? extends T> localChain = chain;
+    if (localChain != null) {
+      return localChain.get(context, dependency, linked);
+    }
     Key<? extends T> localTargetKey = targetKey;
     try {
       return targetFactory.get(context, dependency, true);
@@ -70,4 +99,68 @@ final class FactoryProxy<T> implements InternalFactory<T>, CreationListener {
         .add("provider", targetFactory)
         .toString();
   }
+
+  /**
+   * A chain of linked and exposed bindings resolved to the factory at its end. Following a link
+   * only adds its target key to errors and marks the provision as linked, and following an exposed
+   * binding does nothing at all, so calling the end directly behaves the same. Chains stop at any
+   * other factory: scoped links go through their scope, and provision listeners are notified by
+   * the factories that construct or provide the instance.
+   */
+  static final class Chain<T> {
+    private final InternalFactory<? extends T> factory;
+    /** The target keys of the links in the chain, innermost first. */
+    private final Object[] sources;
+    /** Whether the chain contains a link, which passes on that the provision is linked. */
+    private final boolean linked;
+
+    private Chain(InternalFactory<? extends T> factory, Object[] sources, boolean linked) {
+      this.factory = factory;
+      this.sources = sources;
+      this.linked = linked;
+    }
+
+    /**
+     * Returns the chain starting at the given factory, or null if there is nothing to skip or the
+     * chain doesn't end, which is left to be reported when provisioning.
+     */
+    @SuppressWarnings("unchecked") // each factory in the chain provides a subtype of the key
+    static <T> Chain<T> resolve(InternalFactory<? extends T> start) {
+      List<Object> sources = new ArrayList<>();
+      Set<InternalFactory<?>> visited = Sets.newIdentityHashSet();
+      InternalFactory<?> factory = start;
+      int skipped = -1;
+      while (factory instanceof FactoryProxy || factory instanceof ExposedKeyFactory) {
+        if (!visited.add(factory)) {
+          return null;
+        }
+        if (factory instanceof FactoryProxy) {
+          FactoryProxy<?> factoryProxy = (FactoryProxy<?>) factory;
+          sources.add(factoryProxy.targetKey);
+          factory = factoryProxy.targetFactory;
+        } else {
+          factory = ((ExposedKeyFactory<?>) factory).getTargetFactory();
+        }
+        skipped++;
+      }
+      if (factory == null || skipped < 1) {
+        return null;
+      }
+      Collections.reverse(sources);
+      return new Chain<T>(
+          (InternalFactory<? extends T>) factory, sources.toArray(), !sources.isEmpty());
+    }
+
+    T get(InternalContext context, Dependency<?> dependency, boolean linked)
+        throws InternalProvisionException {
+      try {
+        return factory.get(context, dependency, this.linked || linked);
+      } catch (InternalProvisionException ipe) {
+        for (Object source : sources) {
+          ipe.addSource(source);
+        }
+        throw ipe;
+      }
+    }
+  }
 }
@@ -0,0 +1,184 @@
+package page.foliage.inject.internal;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import javax.annotation.Nullable;
+
+import page.foliage.guava.common.collect.ImmutableList;
+import page.foliage.guava.common.primitives.Primitives;
+import page.foliage.inject.TypeLiteral;
+import page.foliage.inject.internal.CompiledConstruction.Failure;
+import page.foliage.inject.spi.InjectionPoint;
+
+/**
+ * Injects the members of an instance using a generated members-injector, which assigns fields and
+ * calls methods directly instead of through reflection. Members that can't be accessed from
+ * generated code, such as private or final fields, are injected by their {@link
+ * SingleMemberInjector} as part of the same pass, so members are always injected in order.
+ *
+ * <p>Errors are reported exactly as the member injectors would report them: each {@link
+ * InternalProvisionException} leaves the generated code wrapped in a {@link Failure}.
+ */
+final class FastMembersInjection {
+
+  private final BiFunction<Object, Object, Object> membersInjector;
+
+  private FastMembersInjection(BiFunction<Object, Object, Object> membersInjector) {
+    this.membersInjector = membersInjector;
+  }
+
+  /**
+   * Returns a fast members-injector for the given member injectors, or {@code null} if none of the
+   * members can be injected directly or bytecode generation is disabled.
+   */
+  @Nullable
+  static FastMembersInjection create(
+      TypeLiteral<?> type, ImmutableList<SingleMemberInjector> memberInjectors) {
+    Class<?> hostClass = type.getRawType();
+    if (!InternalFlags.isBytecodeGenEnabled() || memberInjectors.isEmpty()) {
+      return null;
+    }
+    try {
+      BytecodeGen.MembersInjectorBuilder builder = BytecodeGen.membersInjectorBuilder(hostClass);
+      List<BiFunction<Object, Object, Object>> leaves = new ArrayList<>();
+      InjectionPoint[] injectionPoints = new InjectionPoint[memberInjectors.size()];
+      boolean anyDirect = false;
+      for (int i = 0; i < injectionPoints.length; i++) {
+        SingleMemberInjector memberInjector = memberInjectors.get(i);
+        injectionPoints[i] = memberInjector.getInjectionPoint();
+        Member member = injectionPoints[i].getMember();
+        if (GeneratedInjection.invoker(member) != null) {
+          // the member injector already calls it without reflection or runtime bytecode
+          builder.addStep();
+          leaves.add(new StepLeaf(memberInjector));
+        } else if (memberInjector instanceof SingleFieldInjector && builder.canInject(member)) {
+          builder.addField((Field) member);
+          leaves.add(new FieldLeaf((SingleFieldInjector) memberInjector));
+          anyDirect = true;
+        } else if (memberInjector instanceof SingleMethodInjector && builder.canInject(member)) {
+          builder.addMethod((Method) member);
+          SingleParameterInjector<?>[] parameterInjectors =
+              ((SingleMethodInjector) memberInjector).getParameterInjectors();
+          if (parameterInjectors != null) {
+            for (SingleParameterInjector<?> parameterInjector : parameterInjectors) {
+              leaves.add(new ParameterLeaf(parameterInjector));
+            }
+          }
+          anyDirect = true;
+        } else {
+          builder.addStep();
+          leaves.add(new StepLeaf(memberInjector));
+        }
+      }
+      if (!anyDirect) {
+        return null;
+      }
+      @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation
+      BiFunction<Object, Object, Object>[] leafArray = leaves.toArray(new BiFunction[0]);
+      return new FastMembersInjection(builder.build(leafArray, new ErrorHandler(injectionPoints)));
+    } catch (RuntimeException | LinkageError e) {
+      return null; // fall-through, keep using the member injectors
+    }
+  }
+
+  void inject(InternalContext context, Object instance) throws InternalProvisionException {
+    try {
+      membersInjector.apply(instance, context);
+    } catch (Failure failure) {
+      throw failure.exception;
+    }
+  }
+
+  /** Provisions the value of a field, like {@link SingleFieldInjector#inject}. */
+  private static final class FieldLeaf implements BiFunction<Object, Object, Object> {
+    private final SingleFieldInjector fieldInjector;
+    private final Class<?> boxedType;
+
+    FieldLeaf(SingleFieldInjector fieldInjector) {
+      this.fieldInjector = fieldInjector;
+      this.boxedType = Primitives.wrap(fieldInjector.field.getType());
+    }
+
+    @Override
+    public Object apply(Object context, Object instance) {
+      Object value;
+      try {
+        value =
+            fieldInjector
+                .binding
+                .getInternalFactory()
+                .get((InternalContext) context, fieldInjector.dependency, false);
+      } catch (InternalProvisionException e) {
+        throw new Failure(e.addSource(fieldInjector.dependency));
+      }
+      Class<?> fieldType = fieldInjector.field.getType();
+      if (value != null ? !boxedType.isInstance(value) : fieldType.isPrimitive()) {
+        // let reflection reject the value, so the error matches the reflective path
+        try {
+          fieldInjector.field.set(instance, value);
+        } catch (IllegalAccessException e) {
+          throw new AssertionError(e); // a security manager is blocking us, we're hosed
+        }
+      }
+      return value;
+    }
+  }
+
+  /** Provisions one argument of an injected method. */
+  private static final class ParameterLeaf implements BiFunction<Object, Object, Object> {
+    private final SingleParameterInjector<?> parameterInjector;
+
+    ParameterLeaf(SingleParameterInjector<?> parameterInjector) {
+      this.parameterInjector = parameterInjector;
+    }
+
+    @Override
+    public Object apply(Object context, Object instance) {
+      try {
+        return parameterInjector.inject((InternalContext) context);
+      } catch (InternalProvisionException e) {
+        throw new Failure(e);
+      }
+    }
+  }
+
+  /** Injects a member that can't be injected directly through its member injector. */
+  private static final class StepLeaf implements BiFunction<Object, Object, Object> {
+    private final SingleMemberInjector memberInjector;
+
+    StepLeaf(SingleMemberInjector memberInjector) {
+      this.memberInjector = memberInjector;
+    }
+
+    @Override
+    public Object apply(Object context, Object instance) {
+      try {
+        memberInjector.inject((InternalContext) context, instance);
+      } catch (InternalProvisionException e) {
+        throw new Failure(e);
+      }
+      return null;
+    }
+  }
+
+  /** Converts exceptions thrown by injected methods into provision errors. */
+  private static final class ErrorHandler implements BiFunction<Object, Object, Object> {
+    private final InjectionPoint[] injectionPoints;
+
+    ErrorHandler(InjectionPoint[] injectionPoints) {
+      this.injectionPoints = injectionPoints;
+    }
+
+    @Override
+    public Object apply(Object memberIndex, Object cause) {
+      return new Failure(
+          InternalProvisionException.errorInjectingMethod((Throwable) cause)
+              .addSource(injectionPoints[(Integer) memberIndex]));
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package page.foliage.inject.internal;
+
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import page.foliage.guava.common.cache.CacheBuilder;
+import page.foliage.guava.common.cache.CacheLoader;
+import page.foliage.guava.common.cache.LoadingCache;
+import page.foliage.inject.internal.InjectionSnapshot.MemberRef;
+import page.foliage.inject.internal.InjectionSnapshot.RecordedMember;
+import page.foliage.inject.spi.GeneratedMembers;
+
+/**
+ * Finds and calls the {@link GeneratedMembers} of classes, which the annotation processor generates
+ * at compile time. Their injectable constructors, injectable members and provider methods are
+ * returned the same way as the {@link InjectionSnapshot} returns recorded scans, so that keys,
+ * scopes and errors are still read from the members themselves. Their members are called through
+ * invokers with the contract of fast-class invokers, which need neither reflection nor classes
+ * generated at runtime.
+ *
+ * <p>Generated members are ignored when the {@code guice_generated_injection_option} system
+ * property is set to {@code DISABLED}.
+ */
+public final class GeneratedInjection {
+  private GeneratedInjection() {}
+
+  private static final Logger logger = Logger.getLogger(GeneratedInjection.class.getName());
+
+  /** The names of the classes listed by the indices visible from each class loader. */
+  private static final LoadingCache<ClassLoader, Set<String>> INDEXED_CLASSES =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(CacheLoader.from(GeneratedInjection::readIndices));
+
+  private static final ClassValue<Generated> GENERATED =
+      new ClassValue<Generated>() {
+        @Override
+        protected Generated computeValue(Class<?> type) {
+          return load(type);
+        }
+      };
+
+  /**
+   * Returns the injectable constructor generated for {@code type}, or null if it must be found by
+   * scanning. The flags of the constructor are those of {@link InjectionSnapshot#constructorKey}.
+   */
+  public static List<RecordedMember> findConstructor(Class<?> type) {
+    Generated generated = get(type);
+    return generated != null ? generated.constructor() : null;
+  }
+
+  /**
+   * Returns the injectable instance members generated for {@code type}, or null if they must be
+   * found by scanning. The flags of the members are those of {@link InjectionSnapshot#membersKey}.
+   */
+  public static List<RecordedMember> findMembers(Class<?> type) {
+    Generated generated = get(type);
+    return generated != null ? generated.members() : null;
+  }
+
+  /**
+   * Returns the {@code @Provides} methods generated for instances of {@code moduleClass}, or null
+   * if they must be found by scanning.
+   */
+  public static List<RecordedMember> findProviderMethods(Class<?> moduleClass) {
+    Generated generated = get(moduleClass);
+    return generated != null ? generated.providerMethods() : null;
+  }
+
+  /**
+   * Returns an invoker of the generated members that calls {@code member}, or null if there is
+   * none. The invoker has the contract of {@link BytecodeGen#fastMethod}: exceptions thrown by the
+   * member propagate unwrapped. Fields are set to the first argument.
+   */
+  static BiFunction<Object, Object[], Object> invoker(Member member) {
+    Generated generated = get(member.getDeclaringClass());
+    if (generated == null) {
+      return null;
+    }
+    MemberRef ref = MemberRef.of(member, 0, 0);
+    Integer index = generated.accessibleMembers.get(ref.name + " " + ref.descriptor);
+    return index != null ? new Invoker(generated.generatedMembers, index) : null;
+  }
+
+  private static Generated get(Class<?> type) {
+    return InternalFlags.isGeneratedInjectionEnabled() ? GENERATED.get(type) : null;
+  }
+
+  private static Generated load(Class<?> type) {
+    ClassLoader loader = type.getClassLoader();
+    if (loader == null || !INDEXED_CLASSES.getUnchecked(loader).contains(type.getName())) {
+      return null;
+    }
+    try {
+      Class<?> generatedClass =
+          Class.forName(type.getName() + GeneratedMembers.SUFFIX, true, loader);
+      return new Generated(
+          type, (GeneratedMembers) generatedClass.getDeclaredConstructor().newInstance());
+    } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+      logger.log(Level.WARNING, "Ignoring the generated members of " + type.getName(), e);
+      return null;
+    }
+  }
+
+  private static Set<String> readIndices(ClassLoader loader) {
+    Set<String> classNames = new HashSet<>();
+    try {
+      for (GeneratedMembers.Index index :
+          ServiceLoader.load(GeneratedMembers.Index.class, loader)) {
+        Collections.addAll(classNames, index.getClassNames());
+      }
+    } catch (ServiceConfigurationError | LinkageError e) {
+      logger.log(Level.WARNING, "Unable to read the indices of generated members", e);
+    }
+    return classNames;
+  }
+
+  /** The generated members of a class, with the members they describe resolved on first use. */
+  private static final class Generated {
+    final Class<?> type;
+    final GeneratedMembers generatedMembers;
+    final Map<String, Integer> accessibleMembers = new HashMap<>();
+    volatile List<RecordedMember> constructor;
+    volatile List<RecordedMember> members;
+    volatile List<RecordedMember> providerMethods;
+
+    Generated(Class<?> type, GeneratedMembers generatedMembers) {
+      this.type = type;
+      this.generatedMembers = generatedMembers;
+      String[] accessible = generatedMembers.getAccessibleMembers();
+      for (int i = 0; i < accessible.length; i++) {
+        accessibleMembers.put(accessible[i], i);
+      }
+    }
+
+    List<RecordedMember> constructor() {
+      List<RecordedMember> result = constructor;
+      if (result == null) {
+        String description = generatedMembers.getInjectableConstructor();
+        if (description == null) {
+          return null;
+        }
+        result = constructor = resolve(new String[] {"0 " + description}, true);
+      }
+      return result;
+    }
+
+    List<RecordedMember> members() {
+      List<RecordedMember> result = members;
+      if (result == null) {
+        String[] descriptions = generatedMembers.getInjectableMembers();
+        if (descriptions == null) {
+          return null;
+        }
+        result = members = resolve(descriptions, true);
+      }
+      return result;
+    }
+
+    List<RecordedMember> providerMethods() {
+      List<RecordedMember> result = providerMethods;
+      if (result == null) {
+        String[] descriptions = generatedMembers.getProviderMethods();
+        if (descriptions == null) {
+          return null;
+        }
+        result = providerMethods = resolve(descriptions, false);
+      }
+      return result;
+    }
+
+    /**
+     * Resolves members described as {@code depth flags name descriptor}, or as {@code depth name
+     * descriptor} with flags 0 if {@code flagged} is false. Returns null, which falls back to
+     * scanning, if a description is malformed or its member no longer exists.
+     */
+    private List<RecordedMember> resolve(String[] descriptions, boolean flagged) {
+      List<RecordedMember> resolved = new ArrayList<>(descriptions.length);
+      for (String description : descriptions) {
+        String[] parts = description.split(" ");
+        if (parts.length != (flagged ? 4 : 3)) {
+          return null;
+        }
+        int depth;
+        int flags;
+        try {
+          depth = Integer.parseInt(parts[0]);
+          flags = flagged ? Integer.parseInt(parts[1]) : 0;
+        } catch (NumberFormatException e) {
+          return null;
+        }
+        String name = parts[parts.length - 2];
+        String descriptor = parts[parts.length - 1];
+        Class<?> declaringClass = type;
+        for (; depth > 0 && declaringClass != null; depth--) {
+          declaringClass = declaringClass.getSuperclass();
+        }
+        Member member =
+            declaringClass != null
+                ? MemberRef.of(0, name, descriptor, flags).resolve(declaringClass)
+                : null;
+        if (member == null) {
+          return null;
+        }
+        resolved.add(new RecordedMember(member, flags));
+      }
+      return Collections.unmodifiableList(resolved);
+    }
+  }
+
+  /** Calls one of the accessible members of generated members. */
+  private static final class Invoker implements BiFunction<Object, Object[], Object> {
+    private final GeneratedMembers generatedMembers;
+    private final int index;
+
+    Invoker(GeneratedMembers generatedMembers, int index) {
+      this.generatedMembers = generatedMembers;
+      this.index = index;
+    }
+
+    @Override
+    public Object apply(Object target, Object[] arguments) {
+      try {
+        return generatedMembers.invoke(index, target, arguments);
+      } catch (Throwable e) {
+        throw Invoker.<RuntimeException>rethrow(e);
+      }
+    }
+
+    /** Rethrows checked exceptions unwrapped, as fast-class invokers do. */
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E rethrow(Throwable e) throws E {
+      throw (E) e;
+    }
+  }
+}
@@ -48,9 +48,11 @@ final class Initializer {
   /**
    * Allows us to detect circular dependencies. It's only used during injectable reference
    * initialization. After initialization direct access through volatile field is used.
+   *
+   * <p>Shares its registry with the singleton locks of the injector tree, so that cycles between
+   * instances and singletons are detected. Created with the first injectable reference.
    */
-  private final CycleDetectingLockFactory<Class<?>> cycleDetectingLockFactory =
-      new CycleDetectingLockFactory<Class<?>>();
+  private CycleDetectingLockFactory<Class<?>> cycleDetectingLockFactory;
 
   /**
    * Instances that need injection during injector creation to a source that registered them. New
@@ -100,6 +102,9 @@ final class Initializer {
       return cached;
     }
 
+    if (cycleDetectingLockFactory == null) {
+      cycleDetectingLockFactory = injector.singletonLockFactory.newSiblingFactory();
+    }
     InjectableReference<T> injectableReference =
         new InjectableReference<T>(
             injector,
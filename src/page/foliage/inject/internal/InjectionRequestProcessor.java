@@ -129,22 +129,25 @@ final class InjectionRequestProcessor extends AbstractProcessor {
     }
 
     void injectMembers() {
-      InternalContext context = injector.enterContext();
       try {
-        boolean isStageTool = injector.options.stage == Stage.TOOL;
-        for (SingleMemberInjector memberInjector : memberInjectors) {
-          // Run injections if we're not in tool stage (ie, PRODUCTION or DEV),
-          // or if we are in tool stage and the injection point is toolable.
-          if (!isStageTool || memberInjector.getInjectionPoint().isToolable()) {
-            try {
-              memberInjector.inject(context, null);
-            } catch (InternalProvisionException e) {
-              errors.merge(e);
-            }
-          }
-        }
-      } finally {
-        context.close();
+        injector.callInContext(
+            context -> {
+              boolean isStageTool = injector.options.stage == Stage.TOOL;
+              for (SingleMemberInjector memberInjector : memberInjectors) {
+                // Run injections if we're not in tool stage (ie, PRODUCTION or DEV),
+                // or if we are in tool stage and the injection point is toolable.
+                if (!isStageTool || memberInjector.getInjectionPoint().isToolable()) {
+                  try {
+                    memberInjector.inject(context, null);
+                  } catch (InternalProvisionException e) {
+                    errors.merge(e);
+                  }
+                }
+              }
+              return null;
+            });
+      } catch (InternalProvisionException e) {
+        errors.merge(e);
       }
     }
   }
@@ -0,0 +1,533 @@
+package page.foliage.inject.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of the results of scanning classes for injectable constructors, injectable members and
+ * provider methods, kept in the file named by {@link InternalFlags#getInjectionSnapshotFile}.
+ * Scanning a class reads the annotations of every member in its hierarchy and checks which methods
+ * override others. The snapshot records which members a scan selected instead, so that a later JVM
+ * only looks those members up by name and descriptor. Keys and scopes are still read from the
+ * selected members, which keeps their errors and the resolution of type parameters unchanged.
+ *
+ * <p>Each entry records the fingerprints of the classes it was scanned from, and is dropped as soon
+ * as one of them no longer matches. A class from a jar is fingerprinted by the path, size and
+ * modification time of the jar, a class from a directory by a checksum of its class file, and a
+ * class of the JDK by the version of the JDK. Classes from anywhere else, such as classes defined
+ * at runtime, are never recorded. Neither are scans that reported errors or warnings, which are
+ * reported again by scanning.
+ *
+ * <p>The snapshot file is read when the snapshot is first used, and rewritten when the JVM exits if
+ * any entries were added or dropped. The file starts with the length and checksum of its contents,
+ * and every count in it is checked against the bytes that remain, so a truncated or corrupted file
+ * is ignored and rewritten. A snapshot that can't be loaded at all is deleted, and classes are then
+ * scanned as if snapshots were disabled.
+ */
+public final class InjectionSnapshot {
+
+  private static final Logger logger = Logger.getLogger(InjectionSnapshot.class.getName());
+
+  private static final int MAGIC = 0x47534e50;
+  private static final int VERSION = 2;
+
+  /** The bytes of the magic number, version, length and checksum that precede the contents. */
+  private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+  // The fewest bytes that an entry, a class of an entry and a member of an entry take.
+  private static final int ENTRY_BYTES = 2 + 4 + 4;
+  private static final int CLASS_BYTES = 2 + 8;
+  private static final int MEMBER_BYTES = 1 + 4 + 2 + 2 + 4;
+
+  /** Flag of a recorded constructor that is annotated with {@code @Inject}. */
+  public static final int AT_INJECT = 1;
+
+  /** Flag of a recorded field or method that is an optional injection point. */
+  public static final int OPTIONAL = 2;
+
+  private static final byte CONSTRUCTOR = 0;
+  private static final byte FIELD = 1;
+  private static final byte METHOD = 2;
+
+  /** Fingerprints of classes; 0 for classes that can't be fingerprinted. */
+  private static final ClassValue<Long> fingerprints =
+      new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+          return fingerprint(type);
+        }
+      };
+
+  /** Fingerprints of jar files, by path. */
+  private static final ConcurrentMap<String, Long> jarFingerprints = new ConcurrentHashMap<>();
+
+  private static final class Holder {
+    static final InjectionSnapshot INSTANCE = create();
+  }
+
+  private final Path file;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private volatile boolean changed;
+
+  private InjectionSnapshot(Path file) {
+    this.file = file;
+  }
+
+  /** Returns the snapshot of this JVM, or null if snapshots are disabled or failed to load. */
+  public static InjectionSnapshot get() {
+    return InternalFlags.getInjectionSnapshotFile() != null ? Holder.INSTANCE : null;
+  }
+
+  /** Loads the snapshot, or returns null if it can't be loaded, so that classes are scanned. */
+  private static InjectionSnapshot create() {
+    String fileName = InternalFlags.getInjectionSnapshotFile();
+    InjectionSnapshot snapshot;
+    try {
+      snapshot = new InjectionSnapshot(Paths.get(fileName));
+      snapshot.read();
+    } catch (Throwable t) {
+      // this runs in a class initializer, whose failure would fail every later scan
+      logger.log(
+          Level.WARNING, "Deleting injection snapshot " + fileName + " that can't be loaded", t);
+      try {
+        Files.deleteIfExists(Paths.get(fileName));
+      } catch (IOException | RuntimeException e) {
+        logger.log(Level.WARNING, "Unable to delete injection snapshot " + fileName, e);
+      }
+      return null;
+    }
+    try {
+      Runtime.getRuntime()
+          .addShutdownHook(new Thread(snapshot::writeIfChanged, "Guice injection snapshot"));
+    } catch (SecurityException | IllegalStateException e) {
+      logger.log(Level.WARNING, "Injection snapshots will not be written", e);
+    }
+    return snapshot;
+  }
+
+  /** Returns the key of the injectable constructor of {@code type}. */
+  public static String constructorKey(Class<?> type) {
+    return "C " + type.getName();
+  }
+
+  /** Returns the key of the injectable instance fields and methods of {@code type}. */
+  public static String membersKey(Class<?> type) {
+    return "M " + type.getName();
+  }
+
+  /**
+   * Returns the key of the provider methods of a module, as found with the given annotations. The
+   * flags of the recorded methods are the indices of their annotations in that collection.
+   */
+  public static String providerMethodsKey(
+      Class<?> moduleClass,
+      boolean staticModule,
+      Collection<? extends Class<? extends Annotation>> annotationClasses) {
+    StringBuilder key = new StringBuilder(staticModule ? "S " : "P ").append(moduleClass.getName());
+    for (Class<? extends Annotation> annotationClass : annotationClasses) {
+      key.append(' ').append(annotationClass.getName());
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the members recorded for {@code key}, looked up in {@code type} and, if {@code
+   * superclasses} is true, in its superclasses. Returns null if nothing was recorded, or if one of
+   * the classes changed since, in which case the entry is dropped.
+   */
+  public List<RecordedMember> find(String key, Class<?> type, boolean superclasses) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    List<RecordedMember> members = entry.resolve(type, superclasses);
+    if (members == null && entries.remove(key, entry)) {
+      changed = true;
+    }
+    return members;
+  }
+
+  /**
+   * Records the members selected by scanning {@code type} and, if {@code superclasses} is true, its
+   * superclasses. Nothing is recorded if one of the classes can't be fingerprinted.
+   */
+  public void record(
+      String key, Class<?> type, boolean superclasses, List<RecordedMember> members) {
+    List<Class<?>> classes = new ArrayList<>();
+    for (Class<?> c = type;
+        c != null && c != Object.class;
+        c = superclasses ? c.getSuperclass() : null) {
+      classes.add(c);
+    }
+    String[] names = new String[classes.size()];
+    long[] classFingerprints = new long[classes.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = classes.get(i).getName();
+      classFingerprints[i] = fingerprints.get(classes.get(i));
+      if (classFingerprints[i] == 0) {
+        return;
+      }
+    }
+    MemberRef[] refs = new MemberRef[members.size()];
+    for (int i = 0; i < refs.length; i++) {
+      Member member = members.get(i).getMember();
+      int classIndex = classes.indexOf(member.getDeclaringClass());
+      if (classIndex < 0) {
+        return;
+      }
+      refs[i] = MemberRef.of(member, classIndex, members.get(i).getFlags());
+    }
+    entries.put(key, new Entry(names, classFingerprints, refs));
+    changed = true;
+  }
+
+  private void read() {
+    if (!Files.isRegularFile(file)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        logger.warning("Ignoring injection snapshot " + file + " of another format");
+        changed = true;
+        return;
+      }
+      int length = in.readInt();
+      long checksum = in.readLong();
+      if (length < 0 || length != Files.size(file) - HEADER_BYTES) {
+        throw new IOException("Truncated injection snapshot of " + length + " bytes");
+      }
+      byte[] contents = new byte[length];
+      in.readFully(contents);
+      CRC32 crc = new CRC32();
+      crc.update(contents);
+      if (crc.getValue() != checksum) {
+        throw new IOException("Injection snapshot doesn't match its checksum");
+      }
+      DataInputStream body = new DataInputStream(new ByteArrayInputStream(contents));
+      for (int i = readCount(body, ENTRY_BYTES); i > 0; i--) {
+        String key = body.readUTF();
+        entries.put(key, Entry.read(body));
+      }
+      if (body.available() != 0) {
+        throw new IOException("Injection snapshot has trailing bytes");
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Ignoring unreadable injection snapshot " + file, e);
+      entries.clear();
+      changed = true;
+    }
+  }
+
+  private void writeIfChanged() {
+    if (!changed) {
+      return;
+    }
+    Path target = file.toAbsolutePath();
+    try {
+      Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), null);
+      ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      DataOutputStream body = new DataOutputStream(contents);
+      Map<String, Entry> snapshot = new HashMap<>(entries);
+      body.writeInt(snapshot.size());
+      for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+        body.writeUTF(entry.getKey());
+        entry.getValue().write(body);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(contents.toByteArray());
+      try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(contents.size());
+        out.writeLong(crc.getValue());
+        contents.writeTo(out);
+      }
+      try {
+        Files.move(
+            temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Unable to write injection snapshot " + target, e);
+    }
+  }
+
+  /**
+   * Reads a count of items that take at least {@code minimumBytes} each, checking that they fit in
+   * the bytes that remain.
+   */
+  private static int readCount(DataInputStream in, int minimumBytes) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || (long) count * minimumBytes > in.available()) {
+      throw new IOException("Invalid count " + count + " in injection snapshot");
+    }
+    return count;
+  }
+
+  private static long fingerprint(Class<?> type) {
+    try {
+      CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+      URL location = codeSource != null ? codeSource.getLocation() : null;
+      if (location == null) {
+        return type.getClassLoader() == null ? jdkFingerprint() : 0;
+      }
+      if ("jrt".equals(location.getProtocol())) {
+        return jdkFingerprint();
+      }
+      if (!"file".equals(location.getProtocol())) {
+        return 0;
+      }
+      File file = new File(location.toURI());
+      if (file.isDirectory()) {
+        File classFile = new File(file, type.getName().replace('.', '/') + ".class");
+        if (!classFile.isFile()) {
+          return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(classFile.toPath()));
+        return nonZero(crc.getValue() * 31 + classFile.length());
+      }
+      return jarFingerprints.computeIfAbsent(
+          file.getPath(),
+          path -> nonZero((path.hashCode() * 31L + file.length()) * 31 + file.lastModified()));
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  private static long jdkFingerprint() {
+    String version = System.getProperty("java.runtime.version", System.getProperty("java.version"));
+    return nonZero(version != null ? version.hashCode() : 0);
+  }
+
+  private static long nonZero(long fingerprint) {
+    return fingerprint != 0 ? fingerprint : 1;
+  }
+
+  /** A member selected by a scan, with flags whose meaning depends on the kind of scan. */
+  public static final class RecordedMember {
+    private final Member member;
+    private final int flags;
+
+    public RecordedMember(Member member, int flags) {
+      this.member = member;
+      this.flags = flags;
+    }
+
+    public Member getMember() {
+      return member;
+    }
+
+    public int getFlags() {
+      return flags;
+    }
+  }
+
+  /** The members recorded for a key, along with the classes they were scanned from. */
+  private static final class Entry {
+    final String[] classNames;
+    final long[] classFingerprints;
+    final MemberRef[] members;
+
+    Entry(String[] classNames, long[] classFingerprints, MemberRef[] members) {
+      this.classNames = classNames;
+      this.classFingerprints = classFingerprints;
+      this.members = members;
+    }
+
+    List<RecordedMember> resolve(Class<?> type, boolean superclasses) {
+      Class<?>[] classes = new Class<?>[classNames.length];
+      Class<?> c = type;
+      for (int i = 0; i < classes.length; i++) {
+        if (c == null
+            || !c.getName().equals(classNames[i])
+            || fingerprints.get(c) != classFingerprints[i]) {
+          return null;
+        }
+        classes[i] = c;
+        c = superclasses ? c.getSuperclass() : null;
+      }
+      if (c != null && c != Object.class) {
+        return null;
+      }
+      if (members.length == 0) {
+        return Collections.emptyList();
+      }
+      List<RecordedMember> resolved = new ArrayList<>(members.length);
+      for (MemberRef ref : members) {
+        Member member = ref.resolve(classes[ref.classIndex]);
+        if (member == null) {
+          return null;
+        }
+        resolved.add(new RecordedMember(member, ref.flags));
+      }
+      return resolved;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(classNames.length);
+      for (int i = 0; i < classNames.length; i++) {
+        out.writeUTF(classNames[i]);
+        out.writeLong(classFingerprints[i]);
+      }
+      out.writeInt(members.length);
+      for (MemberRef member : members) {
+        out.writeByte(member.kind);
+        out.writeInt(member.classIndex);
+        out.writeUTF(member.name);
+        out.writeUTF(member.descriptor);
+        out.writeInt(member.flags);
+      }
+    }
+
+    static Entry read(DataInputStream in) throws IOException {
+      String[] classNames = new String[readCount(in, CLASS_BYTES)];
+      long[] classFingerprints = new long[classNames.length];
+      for (int i = 0; i < classNames.length; i++) {
+        classNames[i] = in.readUTF();
+        classFingerprints[i] = in.readLong();
+      }
+      MemberRef[] members = new MemberRef[readCount(in, MEMBER_BYTES)];
+      for (int i = 0; i < members.length; i++) {
+        byte kind = in.readByte();
+        int classIndex = in.readInt();
+        if (classIndex < 0 || classIndex >= classNames.length) {
+          throw new IOException("Member of unknown class " + classIndex);
+        }
+        members[i] = new MemberRef(kind, classIndex, in.readUTF(), in.readUTF(), in.readInt());
+      }
+      return new Entry(classNames, classFingerprints, members);
+    }
+  }
+
+  /** Identifies a member of one of the classes of an entry by name and descriptor. */
+  static final class MemberRef {
+    final byte kind;
+    final int classIndex;
+    final String name;
+    final String descriptor;
+    final int flags;
+
+    MemberRef(byte kind, int classIndex, String name, String descriptor, int flags) {
+      this.kind = kind;
+      this.classIndex = classIndex;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.flags = flags;
+    }
+
+    /** Returns a reference to the member with the given name and descriptor. */
+    static MemberRef of(int classIndex, String name, String descriptor, int flags) {
+      byte kind = name.equals("<init>") ? CONSTRUCTOR : descriptor.startsWith("(") ? METHOD : FIELD;
+      return new MemberRef(kind, classIndex, name, descriptor, flags);
+    }
+
+    static MemberRef of(Member member, int classIndex, int flags) {
+      if (member instanceof Constructor) {
+        Constructor<?> constructor = (Constructor<?>) member;
+        return new MemberRef(
+            CONSTRUCTOR,
+            classIndex,
+            "<init>",
+            descriptor(constructor.getParameterTypes(), void.class),
+            flags);
+      } else if (member instanceof Field) {
+        Field field = (Field) member;
+        return new MemberRef(
+            FIELD, classIndex, field.getName(), descriptor(field.getType()), flags);
+      } else {
+        Method method = (Method) member;
+        return new MemberRef(
+            METHOD,
+            classIndex,
+            method.getName(),
+            descriptor(method.getParameterTypes(), method.getReturnType()),
+            flags);
+      }
+    }
+
+    Member resolve(Class<?> declaringClass) {
+      switch (kind) {
+        case CONSTRUCTOR:
+          for (Constructor<?> constructor : declaringClass.getDeclaredConstructors()) {
+            if (descriptor.equals(descriptor(constructor.getParameterTypes(), void.class))) {
+              return constructor;
+            }
+          }
+          return null;
+        case FIELD:
+          try {
+            Field field = declaringClass.getDeclaredField(name);
+            return descriptor.equals(descriptor(field.getType())) ? field : null;
+          } catch (NoSuchFieldException e) {
+            return null;
+          }
+        case METHOD:
+          for (Method method : declaringClass.getDeclaredMethods()) {
+            if (method.getName().equals(name)
+                && descriptor.equals(
+                    descriptor(method.getParameterTypes(), method.getReturnType()))) {
+              return method;
+            }
+          }
+          return null;
+        default:
+          return null;
+      }
+    }
+  }
+
+  private static String descriptor(Class<?>[] parameterTypes, Class<?> returnType) {
+    StringBuilder descriptor = new StringBuilder("(");
+    for (Class<?> parameterType : parameterTypes) {
+      descriptor.append(descriptor(parameterType));
+    }
+    return descriptor.append(')').append(descriptor(returnType)).toString();
+  }
+
+  private static String descriptor(Class<?> type) {
+    if (type.isArray()) {
+      return type.getName().replace('.', '/');
+    } else if (!type.isPrimitive()) {
+      return "L" + type.getName().replace('.', '/') + ";";
+    } else if (type == boolean.class) {
+      return "Z";
+    } else if (type == long.class) {
+      return "J";
+    } else if (type == void.class) {
+      return "V";
+    } else {
+      // B, C, D, F, I and S are the first letters of the primitive type names
+      return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+    }
+  }
+}
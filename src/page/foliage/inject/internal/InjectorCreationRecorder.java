@@ -0,0 +1,249 @@
+package page.foliage.inject.internal;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import page.foliage.guava.common.collect.ImmutableMap;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Key;
+import page.foliage.inject.spi.InjectorCreationReport;
+
+/**
+ * Records the timings of an injector creation for its {@link InjectorCreationReport}. Recording
+ * methods may be called from any thread.
+ *
+ * <p>Generated classes and reflective scans are counted for the creation that the thread doing
+ * them works for, see {@link #enter}. The thread creating the injector works for its creation
+ * throughout, and so do the threads that it hands parts of the creation to.
+ */
+public final class InjectorCreationRecorder {
+
+  /** The recorder of the creation that each thread works for, if any. */
+  private static final ThreadLocal<InjectorCreationRecorder> current = new ThreadLocal<>();
+
+  private final long startNanos = System.nanoTime();
+  private final LongAdder generatedClasses = new LongAdder();
+  private final LongAdder reflectiveScans = new LongAdder();
+
+  private final Map<String, Long> phaseNanos = new LinkedHashMap<>(); // guarded by this
+  private final Map<String, Long> phaseGeneratedClasses = new LinkedHashMap<>(); // guarded by this
+  private long generatedClassesAtLastPhase; // guarded by this
+  private final Map<String, Long> moduleNanos = new ConcurrentHashMap<>();
+  private final Map<Key<?>, Long> justInTimeBindingNanos = new ConcurrentHashMap<>();
+  private final Map<Key<?>, Long> eagerSingletonNanos = new ConcurrentHashMap<>();
+
+  /** The report once the creation has finished, null until then. */
+  private volatile InjectorCreationReport report;
+
+  /**
+   * Returns the report of the creation of {@code injector}, or what has been recorded so far if it
+   * is still being created, or null if it wasn't created by Guice. Private environments share the
+   * report of the injector that they're part of.
+   */
+  public static InjectorCreationReport getReport(Injector injector) {
+    if (injector instanceof InternalInjectorCreator.ToolStageInjector) {
+      injector = ((InternalInjectorCreator.ToolStageInjector) injector).getDelegate();
+    }
+    return injector instanceof InjectorImpl
+        ? ((InjectorImpl) injector).createdBy.getReport()
+        : null;
+  }
+
+  /** Counts a class generated by Guice for the creation that the current thread works for. */
+  public static void countGeneratedClass() {
+    InjectorCreationRecorder recorder = current.get();
+    if (recorder != null) {
+      recorder.generatedClasses.increment();
+    }
+  }
+
+  /** Counts a type scanned for injection points for the creation the current thread works for. */
+  public static void countReflectiveScan() {
+    InjectorCreationRecorder recorder = current.get();
+    if (recorder != null) {
+      recorder.reflectiveScans.increment();
+    }
+  }
+
+  /**
+   * Makes the current thread work for this creation, until {@link #exit} is called with the
+   * returned recorder of the creation it worked for before, if any.
+   */
+  public InjectorCreationRecorder enter() {
+    InjectorCreationRecorder previous = current.get();
+    current.set(this);
+    return previous;
+  }
+
+  /** Makes the current thread work for the creation it worked for before {@link #enter}. */
+  public static void exit(InjectorCreationRecorder previous) {
+    if (previous != null) {
+      current.set(previous);
+    } else {
+      current.remove();
+    }
+  }
+
+  /** Returns the recorder of the creation that the current thread works for, or null. */
+  static InjectorCreationRecorder current() {
+    return current.get();
+  }
+
+  /** Returns a task that runs {@code task} while working for this creation. */
+  public Runnable workingFor(Runnable task) {
+    return () -> {
+      InjectorCreationRecorder previous = enter();
+      try {
+        task.run();
+      } finally {
+        exit(previous);
+      }
+    };
+  }
+
+  synchronized void recordPhase(String phase, long nanos) {
+    phaseNanos.merge(phase, nanos, Long::sum);
+    long generated = generatedClasses.sum();
+    phaseGeneratedClasses.merge(phase, generated - generatedClassesAtLastPhase, Long::sum);
+    generatedClassesAtLastPhase = generated;
+  }
+
+  /** Records the time spent configuring a module, excluding the modules it installed. */
+  public void recordModule(Class<?> moduleClass, long nanos) {
+    moduleNanos.merge(moduleClass.getName(), nanos, Long::sum);
+  }
+
+  void recordJustInTimeBinding(Key<?> key, long nanos) {
+    justInTimeBindingNanos.merge(key, nanos, Long::sum);
+  }
+
+  void recordEagerSingleton(Key<?> key, long nanos) {
+    eagerSingletonNanos.merge(key, nanos, Long::sum);
+  }
+
+  /** Finishes recording; later calls to the recording methods don't change the report. */
+  void finish() {
+    report = snapshot();
+    moduleNanos.clear();
+    justInTimeBindingNanos.clear();
+    eagerSingletonNanos.clear();
+  }
+
+  /** Returns the finished report, or what has been recorded so far. */
+  InjectorCreationReport getReport() {
+    InjectorCreationReport finished = report;
+    return finished != null ? finished : snapshot();
+  }
+
+  private InjectorCreationReport snapshot() {
+    ImmutableMap<String, Duration> phases;
+    ImmutableMap<String, Long> phaseClasses;
+    synchronized (this) {
+      phases = toDurations(phaseNanos, false);
+      phaseClasses = ImmutableMap.copyOf(phaseGeneratedClasses);
+    }
+    return new Report(
+        Duration.ofNanos(System.nanoTime() - startNanos),
+        phases,
+        toDurations(moduleNanos, true),
+        toDurations(justInTimeBindingNanos, true),
+        toDurations(eagerSingletonNanos, true),
+        generatedClasses.sum(),
+        phaseClasses,
+        reflectiveScans.sum());
+  }
+
+  private static <K> ImmutableMap<K, Duration> toDurations(Map<K, Long> nanos, boolean sort) {
+    ImmutableMap.Builder<K, Duration> builder = ImmutableMap.builder();
+    if (sort) {
+      nanos.entrySet().stream()
+          .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()))
+          .forEachOrdered(entry -> builder.put(entry.getKey(), Duration.ofNanos(entry.getValue())));
+    } else {
+      nanos.forEach((key, value) -> builder.put(key, Duration.ofNanos(value)));
+    }
+    return builder.build();
+  }
+
+  private static final class Report implements InjectorCreationReport {
+    private final Duration totalTime;
+    private final ImmutableMap<String, Duration> phaseTimes;
+    private final ImmutableMap<String, Duration> moduleTimes;
+    private final ImmutableMap<Key<?>, Duration> justInTimeBindingTimes;
+    private final ImmutableMap<Key<?>, Duration> eagerSingletonTimes;
+    private final long generatedClassCount;
+    private final ImmutableMap<String, Long> phaseGeneratedClassCounts;
+    private final long reflectiveScanCount;
+
+    Report(
+        Duration totalTime,
+        ImmutableMap<String, Duration> phaseTimes,
+        ImmutableMap<String, Duration> moduleTimes,
+        ImmutableMap<Key<?>, Duration> justInTimeBindingTimes,
+        ImmutableMap<Key<?>, Duration> eagerSingletonTimes,
+        long generatedClassCount,
+        ImmutableMap<String, Long> phaseGeneratedClassCounts,
+        long reflectiveScanCount) {
+      this.totalTime = totalTime;
+      this.phaseTimes = phaseTimes;
+      this.moduleTimes = moduleTimes;
+      this.justInTimeBindingTimes = justInTimeBindingTimes;
+      this.eagerSingletonTimes = eagerSingletonTimes;
+      this.generatedClassCount = generatedClassCount;
+      this.phaseGeneratedClassCounts = phaseGeneratedClassCounts;
+      this.reflectiveScanCount = reflectiveScanCount;
+    }
+
+    @Override
+    public Duration getTotalTime() {
+      return totalTime;
+    }
+
+    @Override
+    public ImmutableMap<String, Duration> getPhaseTimes() {
+      return phaseTimes;
+    }
+
+    @Override
+    public ImmutableMap<String, Duration> getModuleTimes() {
+      return moduleTimes;
+    }
+
+    @Override
+    public ImmutableMap<Key<?>, Duration> getJustInTimeBindingTimes() {
+      return justInTimeBindingTimes;
+    }
+
+    @Override
+    public ImmutableMap<Key<?>, Duration> getEagerSingletonTimes() {
+      return eagerSingletonTimes;
+    }
+
+    @Override
+    public long getGeneratedClassCount() {
+      return generatedClassCount;
+    }
+
+    @Override
+    public ImmutableMap<String, Long> getPhaseGeneratedClassCounts() {
+      return phaseGeneratedClassCounts;
+    }
+
+    @Override
+    public long getReflectiveScanCount() {
+      return reflectiveScanCount;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "InjectorCreationReport[totalTime=%s, phases=%s, generatedClasses=%d,"
+              + " reflectiveScans=%d]",
+          totalTime, phaseTimes, generatedClassCount, reflectiveScanCount);
+    }
+  }
+}
@@ -28,6 +28,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import page.foliage.guava.common.base.MoreObjects;
 import page.foliage.guava.common.base.Objects;
@@ -50,6 +52,8 @@ import page.foliage.inject.Provider;
 import page.foliage.inject.Scope;
 import page.foliage.inject.Stage;
 import page.foliage.inject.TypeLiteral;
+import page.foliage.inject.internal.CycleDetectingLock.CycleDetectingLockFactory;
+import page.foliage.inject.internal.InternalFlags.ContextPropagationOption;
 import page.foliage.inject.internal.util.SourceProvider;
 import page.foliage.inject.spi.BindingTargetVisitor;
 import page.foliage.inject.spi.ConvertedConstantBinding;
@@ -135,11 +139,20 @@ final class InjectorImpl implements Injector, Lookups {
 
     if (parent != null) {
       localContext = parent.localContext;
+      contextHandOff = parent.contextHandOff;
+      constructionContextIndices = parent.constructionContextIndices;
+      singletonLockFactory = parent.singletonLockFactory;
     } else {
       // No ThreadLocal.initialValue(), as that would cause classloader leaks. See
       // https://github.com/google/guice/issues/288#issuecomment-48216933,
       // https://github.com/google/guice/issues/288#issuecomment-48216944
       localContext = new ThreadLocal<>();
+      contextHandOff =
+          InternalFlags.getContextPropagationOption() == ContextPropagationOption.HANDOFF
+              ? ContextHandOff.create()
+              : null;
+      constructionContextIndices = new ConstructionContextSlot.Indices();
+      singletonLockFactory = new CycleDetectingLockFactory<>();
     }
   }
 
@@ -175,16 +188,23 @@ final class InjectorImpl implements Injector, Lookups {
     if (explicitBinding != null) {
       return explicitBinding;
     }
-    synchronized (jitBindingData.lock()) {
-      // See if any jit bindings have been created for this key.
+    // See if any jit bindings have been created for this key. Unpublished ones are only visible to
+    // the threads creating them, which hold the lock or create them concurrently.
+    BindingImpl<T> jitBinding = getPublishedJitBinding(key);
+    if (jitBinding == null
+        && (jitBindingData.isLockHeldByCurrentThread()
+            || jitBindingData.isCreatingConcurrently())) {
       for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
         @SuppressWarnings("unchecked")
-        BindingImpl<T> jitBinding = (BindingImpl<T>) injector.jitBindingData.getJitBinding(key);
-        if (jitBinding != null) {
-          return jitBinding;
+        BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindingData.getJitBinding(key);
+        if (binding != null) {
+          return binding;
         }
       }
     }
+    if (jitBinding != null) {
+      return jitBinding;
+    }
 
     // If Key is a Provider, we have to see if the type it is providing exists,
     // and, if so, we have to create the binding for the provider.
@@ -261,45 +281,107 @@ final class InjectorImpl implements Injector, Lookups {
       throws ErrorsException {
 
     boolean jitOverride = isProvider(key) || isTypeLiteral(key) || isMembersInjector(key);
+    // first try to find a published JIT binding, without locking
+    BindingImpl<T> published = getPublishedJitBinding(key);
+    if (published != null) {
+      return checkJitAllowed(published, key, errors, jitType, jitOverride);
+    }
+    if (!jitBindingData.isLockHeldByCurrentThread() && !jitBindingData.isCreatingConcurrently()) {
+      // scan the types we're about to bind before queueing behind other threads for the lock
+      PreparedInjectionPoints.prepare(this, key, jitType);
+    }
+    if (jitBindingData.isConcurrentCreationAllowed()) {
+      InjectorJitBindingData.ConcurrentCreation creation = jitBindingData.beginConcurrentCreation();
+      BindingImpl<T> binding;
+      boolean linked;
+      try {
+        binding = getOrCreateJustInTimeBinding(key, errors, jitType, jitOverride);
+      } finally {
+        linked = jitBindingData.endConcurrentCreation(creation);
+      }
+      // nested lookups return bindings that are published along with the outermost one's
+      if (linked
+          && (jitBindingData.isCreatingConcurrently() || getPublishedJitBinding(key) == binding)) {
+        return binding;
+      }
+      // some of the bindings we created or used failed along with those of another thread, look
+      // again one thread at a time so that the errors are reported just like they would be then
+    }
     synchronized (jitBindingData.lock()) {
-      // first try to find a JIT binding that we've already created
-      for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
-        @SuppressWarnings("unchecked") // we only store bindings that match their key
-        BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindingData.getJitBindings().get(key);
+      jitBindingData.awaitConcurrentCreations();
+      jitBindingData.beginCreation();
+      try {
+        return getOrCreateJustInTimeBinding(key, errors, jitType, jitOverride);
+      } finally {
+        jitBindingData.endCreation();
+      }
+    }
+  }
 
-        if (binding != null) {
-          // If we found a JIT binding and we don't allow them,
-          // fail.  (But allow bindings created through TypeConverters.)
-          if (options.jitDisabled
-              && jitType == JitLimitation.NO_JIT
-              && !jitOverride
-              && !(binding instanceof ConvertedConstantBindingImpl)) {
-            throw errors.jitDisabled(key).toException();
-          } else {
-            return binding;
-          }
-        }
+  /**
+   * Returns the just-in-time binding for {@code key} that we've already created, including
+   * unpublished ones, or creates it. Must be called while holding the lock, or from a concurrent
+   * creation.
+   */
+  private <T> BindingImpl<T> getOrCreateJustInTimeBinding(
+      Key<T> key, Errors errors, JitLimitation jitType, boolean jitOverride)
+      throws ErrorsException {
+    // try to find a JIT binding that we've already created, including unpublished ones
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      @SuppressWarnings("unchecked") // we only store bindings that match their key
+      BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindingData.getJitBinding(key);
+
+      if (binding != null) {
+        return checkJitAllowed(binding, key, errors, jitType, jitOverride);
       }
+    }
+
+    // If we previously failed creating this JIT binding and our Errors has
+    // already recorded an error, then just directly throw that error.
+    // We need to do this because it's possible we already cleaned up the
+    // entry in jitBindings (during cleanup), and we may be trying
+    // to create it again (in the case of a recursive JIT binding).
+    // We need both of these guards for different reasons
+    // isFailedJitBinding: We want to continue processing if we've never
+    //   failed before, so that our initial error message contains
+    //   as much useful information as possible about what errors exist.
+    // errors.hasErrors: If we haven't already failed, then it's OK to
+    //   continue processing, to make sure the ultimate error message
+    //   is the correct one.
+    // See: ImplicitBindingsTest#testRecursiveJitBindingsCleanupCorrectly
+    // for where this guard comes into play.
+    if (jitBindingData.isFailedJitBinding(key) && errors.hasErrors()) {
+      throw errors.toException();
+    }
+    return createJustInTimeBindingRecursive(key, errors, options.jitDisabled, jitType);
+  }
 
-      // If we previously failed creating this JIT binding and our Errors has
-      // already recorded an error, then just directly throw that error.
-      // We need to do this because it's possible we already cleaned up the
-      // entry in jitBindings (during cleanup), and we may be trying
-      // to create it again (in the case of a recursive JIT binding).
-      // We need both of these guards for different reasons
-      // isFailedJitBinding: We want to continue processing if we've never
-      //   failed before, so that our initial error message contains
-      //   as much useful information as possible about what errors exist.
-      // errors.hasErrors: If we haven't already failed, then it's OK to
-      //   continue processing, to make sure the ultimate error message
-      //   is the correct one.
-      // See: ImplicitBindingsTest#testRecursiveJitBindingsCleanupCorrectly
-      // for where this guard comes into play.
-      if (jitBindingData.isFailedJitBinding(key) && errors.hasErrors()) {
-        throw errors.toException();
+  /** Returns the first published JIT binding for {@code key} in this injector or its ancestors. */
+  @SuppressWarnings("unchecked") // we only store bindings that match their key
+  private <T> BindingImpl<T> getPublishedJitBinding(Key<T> key) {
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      BindingImpl<T> binding = (BindingImpl<T>) injector.jitBindingData.getPublishedJitBinding(key);
+      if (binding != null) {
+        return binding;
       }
-      return createJustInTimeBindingRecursive(key, errors, options.jitDisabled, jitType);
-    } // end synchronized(jitBindingData.lock())
+    }
+    return null;
+  }
+
+  /** Returns the existing JIT binding, unless JIT bindings are disabled for this lookup. */
+  private <T> BindingImpl<T> checkJitAllowed(
+      BindingImpl<T> binding, Key<T> key, Errors errors, JitLimitation jitType, boolean jitOverride)
+      throws ErrorsException {
+    // If we found a JIT binding and we don't allow them,
+    // fail.  (But allow bindings created through TypeConverters.)
+    if (options.jitDisabled
+        && jitType == JitLimitation.NO_JIT
+        && !jitOverride
+        && !(binding instanceof ConvertedConstantBindingImpl)) {
+      throw errors.jitDisabled(key).toException();
+    } else {
+      return binding;
+    }
   }
 
   /** Returns true if the key type is Provider (but not a subclass of Provider). */
@@ -593,13 +675,22 @@ final class InjectorImpl implements Injector, Lookups {
     }
   }
 
-  <T> void initializeJitBinding(BindingImpl<T> binding, Errors errors) throws ErrorsException {
+  /**
+   * Initializes a just-in-time binding and returns it, or returns the binding that another
+   * concurrent creation already put for its key.
+   */
+  <T> BindingImpl<T> initializeJitBinding(BindingImpl<T> binding, Errors errors)
+      throws ErrorsException {
     // Put the partially constructed binding in the map a little early. This enables us to handle
     // circular dependencies. Example: FooImpl -> BarImpl -> FooImpl.
     // Note: We don't need to synchronize on jitBindingData.lock() during injector creation.
     if (binding instanceof DelayedInitialize) {
       Key<T> key = binding.getKey();
-      jitBindingData.putJitBinding(key, binding);
+      @SuppressWarnings("unchecked") // we only store bindings that match their key
+      BindingImpl<T> existing = (BindingImpl<T>) jitBindingData.putJitBinding(key, binding);
+      if (existing != binding) {
+        return existing;
+      }
       boolean successful = false;
       DelayedInitialize delayed = (DelayedInitialize) binding;
       try {
@@ -615,6 +706,7 @@ final class InjectorImpl implements Injector, Lookups {
         }
       }
     }
+    return binding;
   }
 
   /**
@@ -629,7 +721,9 @@ final class InjectorImpl implements Injector, Lookups {
     for (Dependency<?> dep : deps) {
       Key<?> depKey = dep.getKey();
       InjectionPoint ip = dep.getInjectionPoint();
-      if (encountered.add(depKey)) { // only check if we haven't looked at this key yet
+      // only check if we haven't looked at this key yet, and leave the bindings that another thread
+      // is creating to be checked before they're published
+      if (encountered.add(depKey) && !jitBindingData.isCreatedConcurrently(depKey)) {
         BindingImpl<?> depBinding = jitBindingData.getJitBinding(depKey);
         if (depBinding != null) { // if the binding still exists, validate
           boolean failed = cleanup(depBinding, encountered); // if children fail, we fail
@@ -654,12 +748,51 @@ final class InjectorImpl implements Injector, Lookups {
     return bindingFailed;
   }
 
+  /**
+   * Returns true if every dependency of a binding that was created concurrently still has a
+   * binding, so that it may be published. Must be called while holding the lock.
+   */
+  boolean hasLinkedDependencies(BindingImpl<?> binding) {
+    if (binding instanceof ConstructorBindingImpl
+        && !((ConstructorBindingImpl<?>) binding).isInitialized()) {
+      return false;
+    }
+    for (Dependency<?> dependency : getInternalDependencies(binding)) {
+      Key<?> key = dependency.getKey();
+      if (bindingData.getExplicitBinding(key) == null && getExistingJitBinding(key) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the JIT binding for {@code key} in this injector or its ancestors, if any. */
+  private BindingImpl<?> getExistingJitBinding(Key<?> key) {
+    for (InjectorImpl injector = this; injector != null; injector = injector.parent) {
+      BindingImpl<?> binding = injector.jitBindingData.getJitBinding(key);
+      if (binding != null) {
+        return binding;
+      }
+    }
+    return null;
+  }
+
+  /** Removes a binding that was created concurrently and can't be published. */
+  void removeFailedJitBinding(BindingImpl<?> binding) {
+    removeFailedJitBinding(
+        binding,
+        binding instanceof ConstructorBindingImpl
+            ? ((ConstructorBindingImpl<?>) binding).getInternalConstructor()
+            : null);
+  }
+
   /** Cleans up any state that may have been cached when constructing the JIT binding. */
   private void removeFailedJitBinding(Binding<?> binding, InjectionPoint ip) {
     jitBindingData.addFailedJitBinding(binding.getKey());
     jitBindingData.removeJitBinding(binding.getKey());
     membersInjectorStore.remove(binding.getKey().getTypeLiteral());
     provisionListenerStore.remove(binding);
+    provisionMetrics.remove(binding.getKey());
     if (ip != null) {
       constructors.remove(ip);
     }
@@ -786,6 +919,7 @@ final class InjectorImpl implements Injector, Lookups {
             providerKey,
             internalFactory);
     internalFactory.setProvisionListenerCallback(provisionListenerStore.get(binding));
+    internalFactory.setProvisionStatistics(provisionMetrics.statisticsFor(key));
     return binding;
   }
 
@@ -861,10 +995,16 @@ final class InjectorImpl implements Injector, Lookups {
     }
 
     key = MoreTypes.canonicalizeKey(key); // before storing the key long-term, canonicalize it.
+    InjectorCreationRecorder recorder = creationRecorder;
+    long start = recorder != null ? System.nanoTime() : 0;
     BindingImpl<T> binding = createJustInTimeBinding(key, errors, jitDisabled, jitType);
+    if (recorder != null) {
+      recorder.recordJustInTimeBinding(key, System.nanoTime() - start);
+    }
     jitBindingData.banKeyInParent(key, bindingData, binding.getSource());
-    jitBindingData.putJitBinding(key, binding);
-    return binding;
+    @SuppressWarnings("unchecked") // we only store bindings that match their key
+    BindingImpl<T> put = (BindingImpl<T>) jitBindingData.putJitBinding(key, binding);
+    return put;
   }
 
   /**
@@ -941,8 +1081,7 @@ final class InjectorImpl implements Injector, Lookups {
     BindingImpl<T> binding =
         createUninitializedBinding(key, Scoping.UNSCOPED, source, errors, true);
     errors.throwIfNewErrors(numErrorsBefore);
-    initializeJitBinding(binding, errors);
-    return binding;
+    return initializeJitBinding(binding, errors);
   }
 
   <T> InternalFactory<? extends T> getInternalFactory(
@@ -957,12 +1096,17 @@ final class InjectorImpl implements Injector, Lookups {
 
   @Override
   public Map<Key<?>, Binding<?>> getAllBindings() {
-    synchronized (jitBindingData.lock()) {
+    if (jitBindingData.isLockHeldByCurrentThread()) {
+      // we may be creating jit bindings ourselves, include the ones that aren't published yet
       return new ImmutableMap.Builder<Key<?>, Binding<?>>()
           .putAll(bindingData.getExplicitBindingsThisLevel())
           .putAll(jitBindingData.getJitBindings())
           .build();
     }
+    return new ImmutableMap.Builder<Key<?>, Binding<?>>()
+        .putAll(bindingData.getExplicitBindingsThisLevel())
+        .putAll(jitBindingData.getPublishedJitBindings())
+        .build();
   }
 
   @Override
@@ -1053,6 +1197,15 @@ final class InjectorImpl implements Injector, Lookups {
   /** Cached provision listener callbacks for each key. */
   ProvisionListenerCallbackStore provisionListenerStore;
 
+  /** Provision statistics of the bindings of this injector. */
+  final ProvisionMetricsImpl provisionMetrics = new ProvisionMetricsImpl(this);
+
+  /** Records the creation of this injector while it's being created, null afterwards. */
+  volatile InjectorCreationRecorder creationRecorder;
+
+  /** Records the creation that built this injector, for its report. */
+  InjectorCreationRecorder createdBy;
+
   @Override
   @SuppressWarnings({
     "unchecked",
@@ -1083,9 +1236,30 @@ final class InjectorImpl implements Injector, Lookups {
     return getMembersInjector(TypeLiteral.get(type));
   }
 
+  /**
+   * Providers handed out by {@link #getProvider(Key)}, so that repeated lookups of the same key
+   * return the same instance without rebuilding keys, errors, dependencies and adapters.
+   */
+  private final ConcurrentMap<Key<?>, Provider<?>> providersByKey = new ConcurrentHashMap<>();
+
+  /**
+   * Providers handed out by {@link #getProvider(Class)}. Kept separately from {@link
+   * #providersByKey} so that lookups by raw type don't need to allocate a {@link Key}.
+   *
+   * <p>This is intentionally not a {@link ClassValue}: the cached providers reference this
+   * injector, so a per-injector {@code ClassValue} would keep every injector (and child injector)
+   * reachable for as long as the looked up classes are loaded.
+   */
+  private final ConcurrentMap<Class<?>, Provider<?>> providersByType = new ConcurrentHashMap<>();
+
   @Override
   public <T> Provider<T> getProvider(Class<T> type) {
-    return getProvider(Key.get(checkNotNull(type, "type")));
+    @SuppressWarnings("unchecked") // we only store providers that match their type
+    Provider<T> cached = (Provider<T>) providersByType.get(checkNotNull(type, "type"));
+    if (cached != null) {
+      return cached;
+    }
+    return cacheProvider(providersByType, type, getProvider(Key.get(type)));
   }
 
   <T> Provider<T> getProviderOrThrow(final Dependency<T> dependency, Errors errors)
@@ -1093,18 +1267,32 @@ final class InjectorImpl implements Injector, Lookups {
     Key<T> key = dependency.getKey();
     BindingImpl<? extends T> binding = getBindingOrThrow(key, errors, JitLimitation.NO_JIT);
     final InternalFactory<? extends T> internalFactory = binding.getInternalFactory();
+    final SingletonScope.SingletonProvider<? extends T> singleton =
+        internalFactory instanceof InternalFactoryToProviderAdapter
+            ? ((InternalFactoryToProviderAdapter<? extends T>) internalFactory).getSingleton()
+            : null;
 
     return new Provider<T>() {
+      /**
+       * Set once a singleton binding is initialized, after which the instance is returned without
+       * entering a context.
+       */
+      SingletonScope.Initialized<? extends T> initialized;
+
       @Override
       public T get() {
-        InternalContext currentContext = enterContext();
+        SingletonScope.Initialized<? extends T> localInitialized = initialized;
+        if (localInitialized != null) {
+          return localInitialized.instance;
+        }
         try {
-          T t = internalFactory.get(currentContext, dependency, false);
+          T t = callInContext(context -> internalFactory.get(context, dependency, false));
+          if (singleton != null) {
+            initialized = singleton.getInitialized();
+          }
           return t;
         } catch (InternalProvisionException e) {
           throw e.addSource(dependency).toProvisionException();
-        } finally {
-          currentContext.close();
         }
       }
 
@@ -1117,12 +1305,16 @@ final class InjectorImpl implements Injector, Lookups {
 
   @Override
   public <T> Provider<T> getProvider(final Key<T> key) {
-    checkNotNull(key, "key");
+    @SuppressWarnings("unchecked") // we only store providers that match their key
+    Provider<T> cached = (Provider<T>) providersByKey.get(checkNotNull(key, "key"));
+    if (cached != null) {
+      return cached;
+    }
     Errors errors = new Errors(key);
     try {
       Provider<T> result = getProviderOrThrow(Dependency.get(key), errors);
       errors.throwIfNewErrors(0);
-      return result;
+      return cacheProvider(providersByKey, key, result);
     } catch (ErrorsException e) {
       ConfigurationException exception =
           new ConfigurationException(errors.merge(e.getErrors()).getMessages());
@@ -1130,6 +1322,19 @@ final class InjectorImpl implements Injector, Lookups {
     }
   }
 
+  /**
+   * Stores {@code provider} in {@code cache} unless another thread got there first, and returns
+   * whichever provider ended up in the cache. We don't use {@code computeIfAbsent} because
+   * resolving a provider can create just-in-time bindings, which may run user code that looks up
+   * other providers.
+   */
+  private static <K, T> Provider<T> cacheProvider(
+      ConcurrentMap<K, Provider<?>> cache, K key, Provider<T> provider) {
+    @SuppressWarnings("unchecked") // we only store providers that match their key
+    Provider<T> existing = (Provider<T>) cache.putIfAbsent(key, provider);
+    return existing != null ? existing : provider;
+  }
+
   @Override
   public <T> T getInstance(Key<T> key) {
     return getProvider(key).get();
@@ -1142,7 +1347,9 @@ final class InjectorImpl implements Injector, Lookups {
 
   /**
    * Holds Object[] as a mutable wrapper, rather than InternalContext, since array operations are
-   * faster than ThreadLocal.set() / .get() operations.
+   * faster than ThreadLocal.set() / .get() operations. The first element is the current context,
+   * the others hold the cleared construction context table left behind by the previous one (see
+   * {@link InternalContext#close()}).
    *
    * <p>Holds Object[] rather than InternalContext[], since localContext never gets cleaned up at
    * any point. This could lead to problems when, for example, an OSGI application is reloaded, the
@@ -1153,36 +1360,79 @@ final class InjectorImpl implements Injector, Lookups {
    */
   private final ThreadLocal<Object[]> localContext;
 
-  /** Only to be called by the {@link SingletonScope} provider. */
+  /**
+   * Hands the context of each top-level provision down to the injector calls it makes, or null if
+   * contexts are looked up in {@link #localContext}. See {@link
+   * ContextPropagationOption#HANDOFF}.
+   */
+  private final ContextHandOff contextHandOff;
+
+  /**
+   * The indices of the construction context slots used by this injector tree. Shared by all
+   * injectors of a tree, like the contexts themselves, so the context tables stay as small as the
+   * tree.
+   */
+  private final ConstructionContextSlot.Indices constructionContextIndices;
+
+  /**
+   * Creates the locks that guard the creation of singletons. Shared by all injectors of a tree, so
+   * that lock cycles between them are detected, while injectors of different trees don't contend.
+   */
+  final CycleDetectingLockFactory<Key<?>> singletonLockFactory;
+
+  /**
+   * Only to be called by the {@link SingletonScope} provider. Returns the context of the provision
+   * that is running on this thread, or null if none is.
+   */
   InternalContext getLocalContext() {
+    if (contextHandOff != null) {
+      return contextHandOff.current();
+    }
     return (InternalContext) localContext.get()[0];
   }
 
+  /**
+   * Calls {@code callable} with the context of the provision that is running on this thread, or
+   * with a new context if none is. Every provision that may be top-level goes through this, so
+   * that the injector calls made by user code while it runs, such as {@code Provider.get()} in a
+   * constructor, share its context.
+   */
+  <T> T callInContext(ContextualCallable<T> callable) throws InternalProvisionException {
+    if (contextHandOff != null) {
+      InternalContext ctx = contextHandOff.current();
+      if (ctx == null) {
+        ctx = new InternalContext(options, constructionContextIndices);
+        return contextHandOff.call(ctx, callable);
+      }
+      ctx.enter();
+      try {
+        return callable.call(ctx);
+      } finally {
+        ctx.close();
+      }
+    }
+    InternalContext ctx = enterContext();
+    try {
+      return callable.call(ctx);
+    } finally {
+      ctx.close();
+    }
+  }
+
   /**
    * Looks up thread local context and {@link InternalContext#enter() enters} it or creates a new
-   * context if necessary.
-   *
-   * <p>All callers of this are responsible for calling {@link InternalContext#close()}. Typical
-   * usage should look like:
-   *
-   * <pre>{@code
-   * InternalContext ctx = injector.enterContext();
-   * try {
-   *   ... use ctx ...
-   * } finally {
-   *   ctx.close();
-   * }
-   * }</pre>
+   * context if necessary. Only used when contexts aren't handed off; all callers of this are
+   * responsible for calling {@link InternalContext#close()}.
    */
-  InternalContext enterContext() {
+  private InternalContext enterContext() {
     Object[] reference = localContext.get();
     if (reference == null) {
-      reference = new Object[1];
+      reference = new Object[3];
       localContext.set(reference);
     }
     InternalContext ctx = (InternalContext) reference[0];
     if (ctx == null) {
-      reference[0] = ctx = new InternalContext(options, reference);
+      reference[0] = ctx = new InternalContext(options, constructionContextIndices, reference);
     } else {
       ctx.enter();
     }
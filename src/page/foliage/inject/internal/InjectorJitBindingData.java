@@ -1,9 +1,13 @@
 package page.foliage.inject.internal;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import page.foliage.guava.common.collect.Maps;
 import page.foliage.guava.common.collect.Sets;
@@ -13,10 +17,34 @@ import page.foliage.inject.Key;
  * A container for most just-in-time (JIT) binding data corresponding to an Injector. It
  * includes @Inject constructor bindings. It does not include {@link MembersInjectorStore} or {@link
  * ProvisionListenerCallbackStore}, which are still stored in {@link InjectorImpl}.
+ *
+ * <p>JIT bindings are created while holding the {@link #lock}, and are put in the cache before
+ * they're initialized so circular dependencies can be resolved. They're only published for reading
+ * without the lock once the outermost creation has finished, see {@link #beginCreation}. Bindings
+ * that fail along the way are removed before they're published.
+ *
+ * <p>If {@link InternalFlags#isConcurrentJitEnabled concurrent creation} is enabled, threads
+ * instead create bindings without holding the lock, each in its own {@link ConcurrentCreation},
+ * and only take it to read and update this data. See {@link #beginConcurrentCreation}.
  */
 final class InjectorJitBindingData {
-  /** Just-in-time binding cache. Guarded by {@link #lock}. */
+  /** Just-in-time binding cache, including unpublished bindings. Guarded by {@link #lock}. */
   private final Map<Key<?>, BindingImpl<?>> jitBindings = Maps.newHashMap();
+
+  /** Published just-in-time bindings, which can be read without holding the lock. */
+  private final Map<Key<?>, BindingImpl<?>> publishedJitBindings = new ConcurrentHashMap<>();
+
+  /**
+   * Keys put in {@link #jitBindings} since the outermost creation began. Guarded by {@link #lock}.
+   */
+  private final List<Key<?>> unpublishedKeys = new ArrayList<>();
+
+  /**
+   * The concurrent creations that put the unpublished bindings of {@link #jitBindings}, by key.
+   * Guarded by {@link #lock}.
+   */
+  private final Map<Key<?>, ConcurrentCreation> creators = new HashMap<>();
+
   /**
    * Cache of Keys that we were unable to create JIT bindings for, so we don't keep trying. Guarded
    * by {@link #lock}.
@@ -34,11 +62,11 @@ final class InjectorJitBindingData {
    * This lock is needed for threadsafe InjectorJitBindingData accesses. It corresponds to this
    * InjectorJitBindingData's highest ancestor.
    */
-  private final Object lock;
+  private final CreationLock lock;
 
   InjectorJitBindingData(Optional<InjectorJitBindingData> parent) {
     this.parent = parent;
-    this.lock = parent.isPresent() ? parent.get().lock() : this;
+    this.lock = parent.isPresent() ? parent.get().lock : new CreationLock();
     this.bannedKeys = new WeakKeySet(lock);
   }
 
@@ -46,24 +74,134 @@ final class InjectorJitBindingData {
     return Collections.unmodifiableMap(jitBindings);
   }
 
+  /**
+   * Returns the binding for {@code key}, including unpublished ones. If it's still being created
+   * by another concurrent creation, that creation is joined to the current thread's, see {@link
+   * #beginConcurrentCreation}.
+   */
   BindingImpl<?> getJitBinding(Key<?> key) {
-    return jitBindings.get(key);
+    synchronized (lock) {
+      BindingImpl<?> binding = jitBindings.get(key);
+      if (binding != null && lock.creations != null) {
+        ConcurrentCreation creation = lock.creations.get();
+        ConcurrentCreation creator = creators.get(key);
+        if (creation != null && creator != null) {
+          creation.join(creator);
+        }
+      }
+      return binding;
+    }
+  }
+
+  /**
+   * Returns the published just-in-time bindings; the returned map can be read without holding the
+   * lock and reflects later changes.
+   */
+  Map<Key<?>, BindingImpl<?>> getPublishedJitBindings() {
+    return Collections.unmodifiableMap(publishedJitBindings);
   }
 
-  void putJitBinding(Key<?> key, BindingImpl<?> binding) {
-    jitBindings.put(key, binding);
+  /** Returns the binding for {@code key} if it has been published; doesn't need the lock. */
+  BindingImpl<?> getPublishedJitBinding(Key<?> key) {
+    return publishedJitBindings.get(key);
+  }
+
+  /**
+   * Puts the binding for {@code key} in the cache and returns it. If another concurrent creation
+   * already put one, that binding is kept and returned instead, and its creation is joined to the
+   * current thread's.
+   */
+  BindingImpl<?> putJitBinding(Key<?> key, BindingImpl<?> binding) {
+    synchronized (lock) {
+      ConcurrentCreation creation = lock.creations != null ? lock.creations.get() : null;
+      if (creation != null) {
+        BindingImpl<?> existing = jitBindings.get(key);
+        ConcurrentCreation creator = creators.get(key);
+        if (existing != null && existing != binding && creator != creation) {
+          if (creator != null) {
+            creation.join(creator);
+          }
+          return existing;
+        }
+        jitBindings.put(key, binding);
+        if (creator == null) {
+          creators.put(key, creation);
+          creation.added(this, key);
+        }
+        return binding;
+      }
+      jitBindings.put(key, binding);
+      if (lock.depth == 0) {
+        publishedJitBindings.put(key, binding);
+      } else {
+        if (unpublishedKeys.isEmpty()) {
+          lock.unpublished.add(this);
+        }
+        unpublishedKeys.add(key);
+      }
+      return binding;
+    }
   }
 
   void removeJitBinding(Key<?> key) {
-    jitBindings.remove(key);
+    synchronized (lock) {
+      jitBindings.remove(key);
+      publishedJitBindings.remove(key);
+      creators.remove(key);
+    }
+  }
+
+  /**
+   * Starts creating just-in-time bindings, which won't be published until the matching call to
+   * {@link #endCreation}. Calls can be nested, in which case the bindings are published when the
+   * outermost creation ends. Must be called while holding the lock.
+   */
+  void beginCreation() {
+    lock.depth++;
+  }
+
+  /** Ends creating just-in-time bindings. Must be called while holding the lock. */
+  void endCreation() {
+    if (--lock.depth == 0) {
+      for (InjectorJitBindingData data : lock.unpublished) {
+        data.publish();
+      }
+      lock.unpublished.clear();
+    }
+  }
+
+  /** Publishes the bindings that are still in the cache after creation has ended. */
+  private void publish() {
+    for (Key<?> key : unpublishedKeys) {
+      BindingImpl<?> binding = jitBindings.get(key);
+      if (binding != null) {
+        publishedJitBindings.put(key, binding);
+      }
+    }
+    unpublishedKeys.clear();
   }
 
   boolean isFailedJitBinding(Key<?> key) {
-    return failedJitBindings.contains(key);
+    synchronized (lock) {
+      return failedJitBindings.contains(key);
+    }
   }
 
   void addFailedJitBinding(Key<?> key) {
-    failedJitBindings.add(key);
+    synchronized (lock) {
+      failedJitBindings.add(key);
+    }
+  }
+
+  /** Returns true if {@code key} has a binding that another concurrent creation is creating. */
+  boolean isCreatedConcurrently(Key<?> key) {
+    if (lock.creations == null) {
+      return false;
+    }
+    synchronized (lock) {
+      ConcurrentCreation creator = creators.get(key);
+      return creator != null && creator != lock.creations.get();
+    }
   }
 
   /**
@@ -73,8 +211,10 @@ final class InjectorJitBindingData {
    * the banned key's lifetime.
    */
   void banKey(Key<?> key, InjectorBindingData injectorBindingData, Object source) {
-    banKeyInParent(key, injectorBindingData, source);
-    bannedKeys.add(key, injectorBindingData, source);
+    synchronized (lock) {
+      banKeyInParent(key, injectorBindingData, source);
+      bannedKeys.add(key, injectorBindingData, source);
+    }
   }
 
   /**
@@ -93,15 +233,251 @@ final class InjectorJitBindingData {
    * data object. This indicates that one of the injector's children has bound the key.
    */
   boolean isBannedKey(Key<?> key) {
-    return bannedKeys.contains(key);
+    synchronized (lock) {
+      return bannedKeys.contains(key);
+    }
   }
 
   /** Returns the source of a banned key. */
   Set<Object> getSourcesForBannedKey(Key<?> key) {
-    return bannedKeys.getSources(key);
+    synchronized (lock) {
+      return bannedKeys.getSources(key);
+    }
   }
 
   Object lock() {
     return lock;
   }
+
+  /** Returns true if the current thread holds the lock, and so may see unpublished bindings. */
+  boolean isLockHeldByCurrentThread() {
+    return Thread.holdsLock(lock);
+  }
+
+  /** Returns true if bindings may be created without holding the lock by the current thread. */
+  boolean isConcurrentCreationAllowed() {
+    return lock.creations != null && !Thread.holdsLock(lock);
+  }
+
+  /** Returns true if a concurrent creation is running on the current thread. */
+  boolean isCreatingConcurrently() {
+    return lock.creations != null && lock.creations.get() != null;
+  }
+
+  /**
+   * Starts creating just-in-time bindings on the current thread without holding the lock, or
+   * enters the creation that's already running on it. Must be matched by a call to {@link
+   * #endConcurrentCreation}.
+   *
+   * <p>The first creation to put a binding for a key creates it, and other creations that need the
+   * key use that binding, even before it's initialized, just like circular dependencies within a
+   * creation do. Those creations are then joined: their bindings are only published once all of
+   * them have ended, and the threads that end first wait for the others. Since creations never wait
+   * for each other before they end, unrelated keys are created in parallel and creations that
+   * depend on each other can't deadlock.
+   *
+   * <p>Before they're published, joined bindings are checked again: those that were banned in the
+   * meantime or that depend on a binding that failed in another creation are removed as failed,
+   * and the threads that created them are told to retry their lookup while holding the lock, so
+   * that errors are reported as if the bindings had been created one at a time.
+   */
+  ConcurrentCreation beginConcurrentCreation() {
+    ConcurrentCreation creation = lock.creations.get();
+    if (creation != null) {
+      creation.depth++;
+      return creation;
+    }
+    synchronized (lock) {
+      // let the thread that waits for the running creations to end go first
+      while (lock.draining > 0) {
+        lock.awaitUninterruptibly();
+      }
+      creation = new ConcurrentCreation(lock);
+      lock.pending++;
+    }
+    lock.creations.set(creation);
+    return creation;
+  }
+
+  /**
+   * Ends the current thread's concurrent creation. If this is the outermost call, waits until the
+   * bindings of the creation and of the creations joined to it are published, and returns false if
+   * any of its bindings were removed in the process, in which case the lookup must be retried.
+   */
+  boolean endConcurrentCreation(ConcurrentCreation creation) {
+    if (--creation.depth > 0) {
+      return true;
+    }
+    lock.creations.remove();
+    synchronized (lock) {
+      if (--creation.group.working == 0) {
+        creation.group.publish();
+        lock.notifyAll();
+      }
+      while (!creation.group.published) {
+        lock.awaitUninterruptibly();
+      }
+      return !creation.invalidated;
+    }
+  }
+
+  /**
+   * Waits until no concurrent creations other than those joined to the current thread's are
+   * running, and keeps new ones from starting until the lock is released. Must be called while
+   * holding the lock before creating bindings with it, since bindings created with the lock see the
+   * unpublished bindings of every creation.
+   */
+  void awaitConcurrentCreations() {
+    if (lock.creations == null) {
+      return;
+    }
+    ConcurrentCreation own = lock.creations.get();
+    int joined = own != null ? own.group.members.size() : 0;
+    if (lock.pending > joined) {
+      lock.draining++;
+      try {
+        while (lock.pending > joined) {
+          lock.awaitUninterruptibly();
+        }
+      } finally {
+        if (--lock.draining == 0) {
+          lock.notifyAll();
+        }
+      }
+    }
+  }
+
+  /** The lock shared by an injector hierarchy, which also tracks the bindings being created. */
+  private static final class CreationLock {
+    /** Nesting depth of {@link InjectorJitBindingData#beginCreation} calls. Guarded by this. */
+    int depth;
+
+    /** Data objects with unpublished bindings. Guarded by this. */
+    final List<InjectorJitBindingData> unpublished = new ArrayList<>();
+
+    /**
+     * The concurrent creation running on each thread, or null if bindings are only created while
+     * holding the lock.
+     */
+    final ThreadLocal<ConcurrentCreation> creations =
+        InternalFlags.isConcurrentJitEnabled() ? new ThreadLocal<>() : null;
+
+    /** The number of concurrent creations whose bindings aren't published yet. Guarded by this. */
+    int pending;
+
+    /** The number of threads waiting in {@link #awaitConcurrentCreations}. Guarded by this. */
+    int draining;
+
+    /** Waits to be notified, and restores the interrupt status if it is interrupted meanwhile. */
+    void awaitUninterruptibly() {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * The just-in-time bindings created by one thread without holding the lock, from its outermost
+   * lookup until it returns. See {@link #beginConcurrentCreation}.
+   */
+  static final class ConcurrentCreation {
+    private final CreationLock lock;
+
+    /** Nesting depth of lookups on the creating thread. Only accessed by that thread. */
+    private int depth = 1;
+
+    /** The creations this one is joined to. Guarded by {@link #lock}. */
+    private Group group = new Group(this);
+
+    /** The cache each key put by this creation was put in. Guarded by {@link #lock}. */
+    private final List<InjectorJitBindingData> data = new ArrayList<>();
+
+    /** The keys put by this creation. Guarded by {@link #lock}. */
+    private final List<Key<?>> keys = new ArrayList<>();
+
+    /** True if any of the bindings put by this creation were removed before they were published. */
+    private boolean invalidated;
+
+    private ConcurrentCreation(CreationLock lock) {
+      this.lock = lock;
+    }
+
+    private void added(InjectorJitBindingData data, Key<?> key) {
+      this.data.add(data);
+      this.keys.add(key);
+    }
+
+    /** Joins the group of {@code other}, unless it's already published. */
+    private void join(ConcurrentCreation other) {
+      Group from = other.group;
+      Group into = group;
+      if (from == into || from.published) {
+        return;
+      }
+      if (from.members.size() > into.members.size()) {
+        Group larger = from;
+        from = into;
+        into = larger;
+      }
+      for (ConcurrentCreation member : from.members) {
+        member.group = into;
+      }
+      into.members.addAll(from.members);
+      into.working += from.working;
+    }
+  }
+
+  /** Concurrent creations whose bindings are published together. */
+  private static final class Group {
+    final List<ConcurrentCreation> members = new ArrayList<>();
+
+    /** The number of members that haven't ended. */
+    int working = 1;
+
+    boolean published;
+
+    Group(ConcurrentCreation creation) {
+      members.add(creation);
+    }
+
+    /**
+     * Removes the bindings that were banned or lost a dependency since they were put, as often as
+     * that removes more of them, and publishes the rest. Must be called while holding the lock.
+     */
+    void publish() {
+      boolean removed;
+      do {
+        removed = false;
+        for (ConcurrentCreation member : members) {
+          for (int i = 0; i < member.keys.size(); i++) {
+            InjectorJitBindingData data = member.data.get(i);
+            Key<?> key = member.keys.get(i);
+            BindingImpl<?> binding = data.jitBindings.get(key);
+            if (binding != null
+                && data.creators.get(key) == member
+                && (data.bannedKeys.contains(key)
+                    || !binding.getInjector().hasLinkedDependencies(binding))) {
+              binding.getInjector().removeFailedJitBinding(binding);
+              member.invalidated = true;
+              removed = true;
+            }
+          }
+        }
+      } while (removed);
+      for (ConcurrentCreation member : members) {
+        for (int i = 0; i < member.keys.size(); i++) {
+          InjectorJitBindingData data = member.data.get(i);
+          Key<?> key = member.keys.get(i);
+          if (data.creators.get(key) == member) {
+            data.creators.remove(key);
+            data.publishedJitBindings.put(key, data.jitBindings.get(key));
+          }
+        }
+        member.lock.pending--;
+      }
+      published = true;
+    }
+  }
 }
@@ -44,6 +44,7 @@ import page.foliage.inject.spi.InjectionPoint;
 import page.foliage.inject.spi.ModuleAnnotatedMethodScannerBinding;
 import page.foliage.inject.spi.PrivateElements;
 import page.foliage.inject.spi.ProvisionListenerBinding;
+import page.foliage.inject.spi.ProvisionMetrics;
 import page.foliage.inject.spi.TypeListenerBinding;
 
 /**
@@ -94,6 +95,9 @@ final class InjectorShell {
     /** null unless this exists in a {@link Binder#newPrivateBinder private environment} */
     private PrivateElementsImpl privateElements;
 
+    /** true if the modules replay elements that already include the parent's scanners */
+    private boolean replaying;
+
     Builder stage(Stage stage) {
       this.stage = stage;
       return this;
@@ -120,6 +124,14 @@ final class InjectorShell {
       }
     }
 
+    /**
+     * Marks the modules as replaying elements recorded along with {@link #inheritedScanners} and
+     * already checked for binding source restrictions, so that neither is done twice.
+     */
+    void replaying() {
+      this.replaying = true;
+    }
+
     Stage getStage() {
       return options.stage;
     }
@@ -144,6 +156,7 @@ final class InjectorShell {
         Initializer initializer,
         ProcessedBindingData processedBindingData,
         ContinuousStopwatch stopwatch,
+        InjectorCreationRecorder recorder,
         Errors errors) {
       checkState(stage != null, "Stage not initialized");
       checkState(privateElements == null || parent != null, "PrivateElements with no parent");
@@ -151,20 +164,23 @@ final class InjectorShell {
       checkState(
           (privateElements == null && elements.isEmpty()) || modules.isEmpty(),
           "The shell is either built from modules (root) or from PrivateElements (children).");
+      // the parent's JIT bindings must not change while we're being built, see lock()
+      jitBindingData.awaitConcurrentCreations();
 
       // bind Singleton if this is a top-level injector
       if (parent == null) {
         modules.add(0, new RootModule());
-      } else {
-        modules.add(0, new InheritedScannersModule(parent.getBindingData()));
+      } else if (!replaying) {
+        modules.add(0, inheritedScanners(parent));
       }
-      elements.addAll(Elements.getElements(stage, modules));
+      elements.addAll(Elements.getElements(GUICE_INTERNAL, stage, modules, recorder));
 
       // Check binding source restrictions only for the root shell (note that the root shell
       // can have a parent Injector, when Injector.createChildInjector is called). It isn't
       // necessary to call this check on child PrivateElements shells because it walks the entire
       // tree of elements, recurring on PrivateElements.
-      if (privateElements == null) {
+      // Replayed elements were checked when they were recorded.
+      if (privateElements == null && !replaying) {
         elements.addAll(BindingSourceRestriction.check(GUICE_INTERNAL, elements));
       }
 
@@ -174,6 +190,8 @@ final class InjectorShell {
       options = optionsProcessor.getOptions(stage, options);
 
       InjectorImpl injector = new InjectorImpl(parent, bindingData, jitBindingData, options);
+      injector.creationRecorder = recorder;
+      injector.createdBy = recorder;
       if (privateElements != null) {
         privateElements.initInjector(injector);
       }
@@ -209,6 +227,9 @@ final class InjectorShell {
       bindStage(injector, stage);
       bindInjector(injector);
       bindLogger(injector);
+      if (InternalFlags.isProvisionMetricsEnabled()) {
+        bindProvisionMetrics(injector);
+      }
 
       // Process all normal bindings, then UntargettedBindings.
       // This is necessary because UntargettedBindings can create JIT bindings
@@ -227,7 +248,8 @@ final class InjectorShell {
       PrivateElementProcessor processor = new PrivateElementProcessor(errors);
       processor.process(injector, elements);
       for (Builder builder : processor.getInjectorShellBuilders()) {
-        injectorShells.addAll(builder.build(initializer, processedBindingData, stopwatch, errors));
+        injectorShells.addAll(
+            builder.build(initializer, processedBindingData, stopwatch, recorder, errors));
       }
       stopwatch.resetAndLog("Private environment creation");
 
@@ -321,6 +343,51 @@ final class InjectorShell {
     }
   }
 
+  /**
+   * When provision metrics are collected, they're bound in every injector, to the metrics of its
+   * own bindings.
+   */
+  private static void bindProvisionMetrics(InjectorImpl injector) {
+    Key<ProvisionMetrics> key = Key.get(ProvisionMetrics.class);
+    ProvisionMetricsFactory metricsFactory = new ProvisionMetricsFactory(injector.provisionMetrics);
+    injector
+        .getBindingData()
+        .putBinding(
+            key,
+            new ProviderInstanceBindingImpl<ProvisionMetrics>(
+                injector,
+                key,
+                SourceProvider.UNKNOWN_SOURCE,
+                metricsFactory,
+                Scoping.UNSCOPED,
+                metricsFactory,
+                ImmutableSet.<InjectionPoint>of()));
+  }
+
+  private static class ProvisionMetricsFactory
+      implements InternalFactory<ProvisionMetrics>, Provider<ProvisionMetrics> {
+    private final ProvisionMetrics metrics;
+
+    private ProvisionMetricsFactory(ProvisionMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public ProvisionMetrics get(InternalContext context, Dependency<?> dependency, boolean linked) {
+      return metrics;
+    }
+
+    @Override
+    public ProvisionMetrics get() {
+      return metrics;
+    }
+
+    @Override
+    public String toString() {
+      return "Provider<ProvisionMetrics>";
+    }
+  }
+
   private static void bindStage(InjectorImpl injector, Stage stage) {
     Key<Stage> key = Key.get(Stage.class);
     InstanceBindingImpl<Stage> stageBinding =
@@ -343,6 +410,11 @@ final class InjectorShell {
     }
   }
 
+  /** Returns a module that installs the scanners of {@code parent} in its child injectors. */
+  static Module inheritedScanners(InjectorImpl parent) {
+    return new InheritedScannersModule(parent.getBindingData());
+  }
+
   private static class InheritedScannersModule implements Module {
     private final InjectorBindingData bindingData;
 
@@ -0,0 +1,318 @@
+package page.foliage.inject.internal;
+
+import static page.foliage.guava.common.base.Preconditions.checkArgument;
+import static page.foliage.guava.common.base.Preconditions.checkNotNull;
+import static page.foliage.inject.internal.GuiceInternal.GUICE_INTERNAL;
+import static page.foliage.inject.spi.Elements.withTrustedSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import page.foliage.guava.common.collect.ImmutableList;
+import page.foliage.guava.common.collect.ImmutableSet;
+import page.foliage.guava.common.collect.Sets;
+import page.foliage.guava.common.primitives.Primitives;
+import page.foliage.inject.Binder;
+import page.foliage.inject.Binding;
+import page.foliage.inject.CreationException;
+import page.foliage.inject.Guice;
+import page.foliage.inject.Injector;
+import page.foliage.inject.InjectorTemplate;
+import page.foliage.inject.Key;
+import page.foliage.inject.Module;
+import page.foliage.inject.PrivateBinder;
+import page.foliage.inject.Scopes;
+import page.foliage.inject.Stage;
+import page.foliage.inject.internal.util.SourceProvider;
+import page.foliage.inject.spi.BindingSourceRestriction;
+import page.foliage.inject.spi.Element;
+import page.foliage.inject.spi.Elements;
+import page.foliage.inject.spi.InjectionRequest;
+import page.foliage.inject.spi.InstanceBinding;
+import page.foliage.inject.spi.MembersInjectorLookup;
+import page.foliage.inject.spi.Message;
+import page.foliage.inject.spi.PrivateElements;
+import page.foliage.inject.spi.ProviderInstanceBinding;
+import page.foliage.inject.spi.ProviderLookup;
+import page.foliage.inject.spi.ScopeBinding;
+
+/**
+ * Records the elements of the modules of an {@link InjectorTemplate} once, and replays them to
+ * create each child injector. Replaying elements skips configuring the modules, scanning them for
+ * provider methods and checking the sources of restricted bindings, which were all done when the
+ * elements were recorded; the bindings themselves are still created and validated by each child.
+ *
+ * <p>Replayed elements share the objects they bind. That's only done if it has the same effect as
+ * configuring the modules again: elements whose objects are initialized for one injector are
+ * replayed with copies when possible, such as provider methods, and otherwise make the template
+ * configure its modules again for each child.
+ */
+public final class InjectorTemplateImpl implements InjectorTemplate {
+
+  private final InjectorImpl parent;
+  private final ImmutableSet<Key<?>> seedKeys;
+  private final ImmutableList<Module> modules;
+
+  /** The recorded elements, or null if the modules are configured again for each child. */
+  private final ImmutableList<Element> elements;
+
+  /** The source of the bindings of seeds, which is the code that created the template. */
+  private final Object seedSource;
+
+  private InjectorTemplateImpl(
+      InjectorImpl parent,
+      ImmutableSet<Key<?>> seedKeys,
+      ImmutableList<Module> modules,
+      ImmutableList<Element> elements,
+      Object seedSource) {
+    this.parent = parent;
+    this.seedKeys = seedKeys;
+    this.modules = modules;
+    this.elements = elements;
+    this.seedSource = seedSource;
+  }
+
+  /**
+   * Records the elements of {@code modules} for child injectors of {@code parent}.
+   *
+   * @throws CreationException if the modules reported errors, bind one of the seed keys, or if a
+   *     seed key is restricted to other binding sources
+   */
+  public static InjectorTemplate create(
+      Injector parent, Iterable<? extends Key<?>> seedKeys, Iterable<? extends Module> modules) {
+    checkArgument(
+        parent instanceof InjectorImpl, "%s isn't an injector created by Guice.", parent);
+    InjectorImpl parentImpl = (InjectorImpl) parent;
+    ImmutableSet<Key<?>> seedKeySet = ImmutableSet.copyOf(seedKeys);
+    ImmutableList<Module> moduleList = ImmutableList.copyOf(modules);
+    Object seedSource =
+        SourceProvider.DEFAULT_INSTANCE
+            .plusSkippedClasses(InjectorTemplateImpl.class, Guice.class)
+            .get(new Throwable().getStackTrace());
+
+    List<Module> recordedModules = new ArrayList<>();
+    recordedModules.add(InjectorShell.inheritedScanners(parentImpl));
+    recordedModules.addAll(moduleList);
+    InjectorCreationRecorder recorder = new InjectorCreationRecorder();
+    Stage stage = parentImpl.options.stage;
+    List<Element> elements =
+        Elements.getElements(GUICE_INTERNAL, stage, recordedModules, recorder);
+    List<Element> seedElements =
+        Elements.getElements(
+            GUICE_INTERNAL,
+            stage,
+            ImmutableList.of(new SeedKeysModule(seedKeySet, seedSource)),
+            recorder);
+
+    List<Message> messages = new ArrayList<>();
+    Set<Key<?>> boundKeys = Sets.newHashSet();
+    for (Element element : elements) {
+      if (element instanceof Message) {
+        messages.add((Message) element);
+      } else if (element instanceof Binding) {
+        boundKeys.add(((Binding<?>) element).getKey());
+      } else if (element instanceof PrivateElements) {
+        boundKeys.addAll(((PrivateElements) element).getExposedKeys());
+      }
+    }
+    for (Key<?> seedKey : seedKeySet) {
+      if (boundKeys.contains(seedKey)) {
+        messages.add(
+            new Message(
+                seedSource,
+                String.format(
+                    "%s is a seed key of the template, but is also bound by its modules.",
+                    seedKey)));
+      }
+    }
+    messages.addAll(BindingSourceRestriction.check(GUICE_INTERNAL, elements));
+    messages.addAll(BindingSourceRestriction.check(GUICE_INTERNAL, seedElements));
+    if (!messages.isEmpty()) {
+      throw new CreationException(messages);
+    }
+
+    boolean replayable = true;
+    for (Element element : elements) {
+      replayable &= isReplayable(element);
+    }
+    return new InjectorTemplateImpl(
+        parentImpl,
+        seedKeySet,
+        moduleList,
+        replayable ? ImmutableList.copyOf(elements) : null,
+        seedSource);
+  }
+
+  @Override
+  public Injector getParent() {
+    return parent;
+  }
+
+  @Override
+  public Set<Key<?>> getSeedKeys() {
+    return seedKeys;
+  }
+
+  @Override
+  public Injector createChildInjector(Map<Key<?>, ?> seeds) {
+    checkNotNull(seeds, "seeds");
+    checkArgument(
+        seeds.keySet().equals(seedKeys),
+        "Seeds must bind exactly the seed keys %s, but bind %s.",
+        seedKeys,
+        seeds.keySet());
+    for (Map.Entry<Key<?>, ?> seed : seeds.entrySet()) {
+      Object value = seed.getValue();
+      Class<?> type = Primitives.wrap(seed.getKey().getTypeLiteral().getRawType());
+      checkArgument(value != null, "The seed of %s is null.", seed.getKey());
+      checkArgument(
+          type.isInstance(value),
+          "The seed of %s is an instance of %s.",
+          seed.getKey(),
+          value.getClass().getName());
+    }
+
+    Module seedsModule = new SeedsModule(seeds, seedSource);
+    if (elements == null) {
+      List<Module> childModules = new ArrayList<>(modules);
+      childModules.add(seedsModule);
+      return parent.createChildInjector(childModules);
+    }
+    return new InternalInjectorCreator()
+        .parentInjector(parent)
+        .addModules(ImmutableList.of(new ReplayModule(elements), seedsModule))
+        .replayingTemplate()
+        .build();
+  }
+
+  @Override
+  public String toString() {
+    return "InjectorTemplate[seedKeys=" + seedKeys + ", modules=" + modules + "]";
+  }
+
+  /**
+   * Returns true if {@code element} can be replayed in any number of injectors with the same effect
+   * as configuring its module again for each of them. That isn't the case of elements that inject
+   * or initialize the objects they bind for the injector they're in, since those objects would be
+   * shared, nor of lookups, whose providers were handed to the module that made them.
+   */
+  private static boolean isReplayable(Element element) {
+    if (element instanceof PrivateElements) {
+      for (Element privateElement : ((PrivateElements) element).getElements()) {
+        if (!isReplayable(privateElement)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (element instanceof InstanceBinding) {
+      return ((InstanceBinding<?>) element).getInjectionPoints().isEmpty();
+    } else if (element instanceof ProviderInstanceBinding) {
+      ProviderInstanceBinding<?> binding = (ProviderInstanceBinding<?>) element;
+      Object provider = binding.getUserSuppliedProvider();
+      if (provider instanceof InternalProviderInstanceBindingImpl.Factory) {
+        return provider instanceof ProviderMethod;
+      }
+      return binding.getInjectionPoints().isEmpty();
+    } else if (element instanceof ScopeBinding) {
+      // custom scopes may hold the instances of one injector
+      Object scope = ((ScopeBinding) element).getScope();
+      return scope == Scopes.SINGLETON || scope == Scopes.NO_SCOPE;
+    }
+    return !(element instanceof InjectionRequest
+        || element instanceof ProviderLookup
+        || element instanceof MembersInjectorLookup);
+  }
+
+  /** Replays recorded elements, with copies of their provider methods. */
+  private static final class ReplayModule implements Module {
+    private final List<Element> elements;
+
+    ReplayModule(List<Element> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+      for (Element element : elements) {
+        replay(element, binder);
+      }
+    }
+
+    private static void replay(Element element, Binder binder) {
+      if (element instanceof ProviderInstanceBinding
+          && ((ProviderInstanceBinding<?>) element).getUserSuppliedProvider()
+              instanceof ProviderMethod) {
+        replayProviderMethod((BindingImpl<?>) element, binder);
+      } else if (element instanceof PrivateElements) {
+        PrivateElements privateElements = (PrivateElements) element;
+        PrivateBinder privateBinder =
+            binder.withSource(privateElements.getSource()).newPrivateBinder();
+        for (Element privateElement : privateElements.getElements()) {
+          replay(privateElement, privateBinder);
+        }
+        for (Key<?> key : privateElements.getExposedKeys()) {
+          privateBinder.withSource(privateElements.getExposedSource(key)).expose(key);
+        }
+      } else {
+        element.applyTo(binder);
+      }
+    }
+
+    private static <T> void replayProviderMethod(BindingImpl<T> binding, Binder binder) {
+      @SuppressWarnings("unchecked") // the provider of a binding provides its type
+      ProviderMethod<T> providerMethod =
+          (ProviderMethod<T>) ((ProviderInstanceBinding<T>) binding).getUserSuppliedProvider();
+      binding
+          .getScoping()
+          .applyTo(
+              withTrustedSource(GUICE_INTERNAL, binder, binding.getSource())
+                  .bind(binding.getKey())
+                  .toProvider(providerMethod.copy()));
+    }
+  }
+
+  /** Binds the seed keys, so that their binding sources can be checked. */
+  private static final class SeedKeysModule implements Module {
+    private final Set<Key<?>> seedKeys;
+    private final Object source;
+
+    SeedKeysModule(Set<Key<?>> seedKeys, Object source) {
+      this.seedKeys = seedKeys;
+      this.source = source;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+      binder = binder.withSource(source);
+      for (Key<?> seedKey : seedKeys) {
+        binder.bind(seedKey);
+      }
+    }
+  }
+
+  /** Binds the seed keys to the seeds of a child injector. */
+  private static final class SeedsModule implements Module {
+    private final Map<Key<?>, ?> seeds;
+    private final Object source;
+
+    SeedsModule(Map<Key<?>, ?> seeds, Object source) {
+      this.seeds = seeds;
+      this.source = source;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+      binder = binder.withSource(source);
+      for (Map.Entry<Key<?>, ?> seed : seeds.entrySet()) {
+        bindSeed(binder, seed.getKey(), seed.getValue());
+      }
+    }
+
+    @SuppressWarnings("unchecked") // seeds were checked to be instances of their keys' types
+    private static <T> void bindSeed(Binder binder, Key<T> key, Object seed) {
+      binder.bind(key).toInstance((T) seed);
+    }
+  }
+}
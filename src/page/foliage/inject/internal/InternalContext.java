@@ -16,7 +16,9 @@
 
 package page.foliage.inject.internal;
 
-import java.util.IdentityHashMap;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
 
 import page.foliage.inject.internal.InjectorImpl.InjectorOptions;
 import page.foliage.inject.spi.Dependency;
@@ -30,8 +32,23 @@ final class InternalContext implements AutoCloseable {
 
   private final InjectorOptions options;
 
-  private final IdentityHashMap<Object, ConstructionContext<?>> constructionContexts =
-      new IdentityHashMap<>();
+  /** Assigns the indices of the construction context slots of this injector tree. */
+  private final ConstructionContextSlot.Indices indices;
+
+  /**
+   * Construction contexts indexed by {@link ConstructionContextSlot#index}. Allocated lazily, or
+   * recycled from the previous context that was used by this thread.
+   */
+  private Object[] constructionContexts;
+
+  /**
+   * The indices of the non-null elements of {@link #constructionContexts}, in the first {@link
+   * #usedIndexCount} elements, so only those are cleared when this context is closed. Recycled
+   * along with the table.
+   */
+  private int[] usedIndices;
+
+  private int usedIndexCount;
 
   /** Keeps track of the type that is currently being requested for injection. */
   private Dependency<?> dependency;
@@ -43,19 +60,38 @@ final class InternalContext implements AutoCloseable {
   private int enterCount;
 
   /**
-   * A single element array to clear when the {@link #enterCount} hits {@code 0}.
+   * A three element array to clear when the {@link #enterCount} hits {@code 0}. The first element
+   * holds this context while it is in use, the others hold the emptied {@link
+   * #constructionContexts} table and the {@link #usedIndices} for reuse by the next context on the
+   * same thread.
    *
-   * <p>This is the value stored in the {@code InjectorImpl.localContext} thread local.
+   * <p>This is the value stored in the {@code InjectorImpl.localContext} thread local. Only plain,
+   * cleared arrays are left behind in it, so it never keeps Guice classes reachable. It's null if
+   * the context is handed off explicitly rather than stored in the thread local.
    */
-  private final Object[] toClear;
+  private final @Nullable Object[] toClear;
 
-  InternalContext(InjectorOptions options, Object[] toClear) {
+  InternalContext(
+      InjectorOptions options, ConstructionContextSlot.Indices indices, Object[] toClear) {
     this.options = options;
+    this.indices = indices;
     this.toClear = toClear;
     this.enterCount = 1;
+    this.constructionContexts = (Object[]) toClear[1];
+    this.usedIndices = (int[]) toClear[2];
+    toClear[1] = null;
+    toClear[2] = null;
+  }
+
+  /** Creates a context that's handed off explicitly rather than stored in the thread local. */
+  InternalContext(InjectorOptions options, ConstructionContextSlot.Indices indices) {
+    this.options = options;
+    this.indices = indices;
+    this.toClear = null;
+    this.enterCount = 1;
   }
 
-  /** Should only be called by InjectorImpl.enterContext(). */
+  /** Should only be called by InjectorImpl.enterContext() and callInContext(). */
   void enter() {
     enterCount++;
   }
@@ -67,8 +103,13 @@ final class InternalContext implements AutoCloseable {
     if (newCount < 0) {
       throw new IllegalStateException("Called close() too many times");
     }
-    if (newCount == 0) {
+    if (newCount == 0 && toClear != null) {
       toClear[0] = null;
+      for (int i = 0; i < usedIndexCount; i++) {
+        constructionContexts[usedIndices[i]] = null;
+      }
+      toClear[1] = constructionContexts;
+      toClear[2] = usedIndices;
     }
   }
 
@@ -77,12 +118,27 @@ final class InternalContext implements AutoCloseable {
   }
 
   @SuppressWarnings("unchecked")
-  <T> ConstructionContext<T> getConstructionContext(Object key) {
-    ConstructionContext<T> constructionContext =
-        (ConstructionContext<T>) constructionContexts.get(key);
+  <T> ConstructionContext<T> getConstructionContext(ConstructionContextSlot slot) {
+    int index = slot.index(indices);
+    Object[] contexts = constructionContexts;
+    if (contexts == null || index >= contexts.length) {
+      int length = contexts == null ? 16 : contexts.length * 2;
+      Object[] grown = new Object[Math.max(length, index + 1)];
+      if (contexts != null) {
+        System.arraycopy(contexts, 0, grown, 0, contexts.length);
+      }
+      constructionContexts = contexts = grown;
+    }
+    ConstructionContext<T> constructionContext = (ConstructionContext<T>) contexts[index];
     if (constructionContext == null) {
       constructionContext = new ConstructionContext<>();
-      constructionContexts.put(key, constructionContext);
+      contexts[index] = constructionContext;
+      if (usedIndices == null) {
+        usedIndices = new int[8];
+      } else if (usedIndexCount == usedIndices.length) {
+        usedIndices = Arrays.copyOf(usedIndices, usedIndexCount * 2);
+      }
+      usedIndices[usedIndexCount++] = index;
     }
     return constructionContext;
   }
@@ -30,21 +30,24 @@ import page.foliage.inject.spi.ProviderInstanceBinding;
 final class InternalFactoryToInitializableAdapter<T> extends ProviderInternalFactory<T> {
 
   private final ProvisionListenerStackCallback<T> provisionCallback;
+  private final ProvisionStatisticsImpl statistics;
   private final Initializable<? extends javax.inject.Provider<? extends T>> initializable;
 
   public InternalFactoryToInitializableAdapter(
       Initializable<? extends javax.inject.Provider<? extends T>> initializable,
       Object source,
-      ProvisionListenerStackCallback<T> provisionCallback) {
+      ProvisionListenerStackCallback<T> provisionCallback,
+      ProvisionStatisticsImpl statistics) {
     super(source);
     this.provisionCallback = provisionCallback;
+    this.statistics = statistics;
     this.initializable = checkNotNull(initializable, "provider");
   }
 
   @Override
   public T get(InternalContext context, Dependency<?> dependency, boolean linked)
       throws InternalProvisionException {
-    return circularGet(initializable.get(), context, dependency, provisionCallback);
+    return circularGet(initializable.get(), context, dependency, provisionCallback, statistics);
   }
 
   @Override
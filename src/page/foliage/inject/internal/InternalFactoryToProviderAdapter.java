@@ -42,7 +42,11 @@ final class InternalFactoryToProviderAdapter<T> implements InternalFactory<T> {
     // were also dropped.
     context.setDependency(dependency);
     try {
-      T t = provider.get();
+      // Hand our context straight to singletons; other scopes enter it again through the injector.
+      T t =
+          provider instanceof SingletonScope.SingletonProvider
+              ? ((SingletonScope.SingletonProvider<? extends T>) provider).get(context)
+              : provider.get();
       if (t == null && !dependency.isNullable()) {
         InternalProvisionException.onNullInjectedIntoNonNullableDependency(source, dependency);
       }
@@ -52,6 +56,13 @@ final class InternalFactoryToProviderAdapter<T> implements InternalFactory<T> {
     }
   }
 
+  /** Returns the singleton this adapts, or null if the provider comes from another scope. */
+  SingletonScope.SingletonProvider<? extends T> getSingleton() {
+    return provider instanceof SingletonScope.SingletonProvider
+        ? (SingletonScope.SingletonProvider<? extends T>) provider
+        : null;
+  }
+
   @Override
   public String toString() {
     return provider.toString();
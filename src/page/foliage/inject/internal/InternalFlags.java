@@ -44,6 +44,40 @@ public final class InternalFlags {
   private static final ColorizeOption COLORIZE_OPTION =
       getSystemOption("guice_colorize_error_messages", ColorizeOption.OFF);
 
+  private static final ContextPropagationOption CONTEXT_PROPAGATION_OPTION =
+      getSystemOption("guice_context_propagation_option", ContextPropagationOption.THREAD_LOCAL);
+
+  private static final CompiledInjectorOption COMPILED_INJECTOR_OPTION =
+      getSystemOption("guice_compiled_injector_option", CompiledInjectorOption.DISABLED);
+
+  private static final ConcurrentJitOption CONCURRENT_JIT_OPTION =
+      getSystemOption("guice_concurrent_jit_option", ConcurrentJitOption.DISABLED);
+
+  private static final ParallelCreationOption PARALLEL_CREATION_OPTION =
+      getSystemOption("guice_parallel_creation_option", ParallelCreationOption.DISABLED);
+
+  private static final ParallelModulesOption PARALLEL_MODULES_OPTION =
+      getSystemOption("guice_parallel_modules_option", ParallelModulesOption.DISABLED);
+
+  private static final int PARALLEL_MODULES_THREADS =
+      getSystemOption("guice_parallel_modules_threads", Runtime.getRuntime().availableProcessors());
+
+  private static final ParallelSingletonOption PARALLEL_SINGLETON_OPTION =
+      getSystemOption("guice_parallel_singleton_option", ParallelSingletonOption.DISABLED);
+
+  private static final int PARALLEL_SINGLETON_THREADS =
+      getSystemOption(
+          "guice_parallel_singleton_threads", Runtime.getRuntime().availableProcessors());
+
+  private static final ProvisionMetricsOption PROVISION_METRICS_OPTION =
+      getSystemOption("guice_provision_metrics_option", ProvisionMetricsOption.DISABLED);
+
+  private static final String INJECTION_SNAPSHOT_FILE =
+      getSystemOption("guice_injection_snapshot_file");
+
+  private static final GeneratedInjectionOption GENERATED_INJECTION_OPTION =
+      getSystemOption("guice_generated_injection_option", GeneratedInjectionOption.ENABLED);
+
   /** The options for Guice stack trace collection. */
   public enum IncludeStackTraceOption {
     /** No stack trace collection */
@@ -141,6 +175,152 @@ public final class InternalFlags {
     abstract boolean enabled();
   }
 
+  /**
+   * Options for how Guice makes the current provisioning context available to nested provisions.
+   */
+  public enum ContextPropagationOption {
+    /**
+     * Store the context in a per-injector-tree thread local, so that every provision on a thread
+     * shares it, including injector calls made by user code while it is being provisioned.
+     * (Default)
+     */
+    THREAD_LOCAL,
+
+    /**
+     * Hand the context down explicitly from each top-level provision, without touching the thread
+     * local on the common paths (unscoped and singleton bindings). This suits many short-lived
+     * threads such as virtual threads, which would otherwise each allocate thread local storage.
+     *
+     * <p>Injector calls made by user code while a provision runs (such as {@code Provider.get} in
+     * a constructor) share its context, just like with {@link #THREAD_LOCAL}. The context is bound
+     * to a {@code ScopedValue} for the duration of the top-level provision on Java 25 and later,
+     * and to a thread local that is removed as soon as it returns on earlier versions.
+     */
+    HANDOFF
+  }
+
+  /**
+   * Options for compiling constructor bindings once the injector has been created. When enabled,
+   * each constructor binding whose dependencies form a tree of plain constructor bindings gets a
+   * generated class that calls those constructors directly, instead of walking the binding's
+   * factories and argument arrays on every provision.
+   *
+   * <p>Provision semantics are unchanged. Bindings that have provision listeners, injectable fields
+   * or methods, injection listeners, method interceptors, or that take part in circular
+   * dependencies are not compiled, and scoped dependencies are always provisioned through their
+   * scope. Just-in-time bindings created after the injector are not compiled. Compilation requires
+   * bytecode generation and makes injector creation slower.
+   */
+  public enum CompiledInjectorOption {
+    /** Bindings are always provisioned through their factories. (Default) */
+    DISABLED,
+    /** Eligible constructor bindings are compiled when the injector is created. */
+    ENABLED,
+  }
+
+  /**
+   * Options for creating just-in-time bindings concurrently once an injector has been created.
+   *
+   * <p>By default a thread that creates just-in-time bindings holds a lock shared by the whole
+   * injector hierarchy until they're all created. When enabled, each thread creates the bindings it
+   * needs without holding that lock, so that threads that need unrelated bindings don't wait for
+   * each other. A binding is created once, by the first thread that gets to it; threads whose
+   * bindings depend on each other publish them together, once they have all finished. Banned keys,
+   * failures and the cleanup of failed bindings behave as they do by default. Bindings created
+   * while injectors are being created are still created while holding the lock.
+   */
+  public enum ConcurrentJitOption {
+    /** Just-in-time bindings are created one thread at a time. (Default) */
+    DISABLED,
+    /** Threads create unrelated just-in-time bindings concurrently. */
+    ENABLED,
+  }
+
+  /**
+   * Options for creating injectors in parallel.
+   *
+   * <p>When enabled, the reflection and bytecode generation needed to initialize the bindings of a
+   * new injector are done on the common fork-join pool before the bindings are initialized: the
+   * injectable members of constructor bindings, and the constructors and members of the types that
+   * will get just-in-time bindings, are scanned in parallel and their fast-classes generated. The
+   * bindings themselves are still initialized in order by the creating thread, so errors are
+   * reported exactly as they are when this is disabled.
+   */
+  public enum ParallelCreationOption {
+    /** Injectors are created by a single thread. (Default) */
+    DISABLED,
+    /** Independent steps of injector creation run in parallel. */
+    ENABLED,
+  }
+
+  /**
+   * Options for configuring modules in parallel.
+   *
+   * <p>When enabled, the top-level modules of an injector are configured by the creating thread
+   * along with a pool of {@code guice_parallel_modules_threads} threads shared by all injectors,
+   * which defaults to the number of available processors and whose idle threads time out. Each
+   * module is configured with its own binder, and their elements are merged in module order as if
+   * the modules had been installed one after the other. A module installed by more than one
+   * top-level module is still configured once, by whichever thread installs it first, and its
+   * elements are merged where the first of those modules installed it. Modules should therefore
+   * not depend on each other being configured first.
+   */
+  public enum ParallelModulesOption {
+    /** Modules are configured one after the other by the creating thread. (Default) */
+    DISABLED,
+    /** Top-level modules are configured in parallel. */
+    ENABLED,
+  }
+
+  /**
+   * Options for loading eager singletons in parallel.
+   *
+   * <p>When enabled, the thread creating an injector loads its eager singletons along with a pool
+   * of {@code guice_parallel_singleton_threads} threads shared by all injectors, which defaults to
+   * the number of available processors and whose idle threads time out. A singleton is only loaded
+   * once the eager singletons it depends on have been loaded, so startup is bounded by the longest
+   * chain of dependent singletons rather than by all of them. Dependencies that aren't declared by
+   * bindings, such as singletons looked up by providers, are still safe but may leave threads
+   * waiting for each other. Errors are reported in the same order as when this is disabled.
+   */
+  public enum ParallelSingletonOption {
+    /** Eager singletons are loaded one after the other by the creating thread. (Default) */
+    DISABLED,
+    /** Eager singletons that don't depend on each other are loaded in parallel. */
+    ENABLED,
+  }
+
+  /**
+   * Options for collecting provision metrics.
+   *
+   * <p>When enabled, every injector counts and times the provisions of its constructor and provider
+   * bindings, and the time spent waiting for singleton locks, and makes them available through
+   * {@link page.foliage.inject.spi.ProvisionMetrics}. Constructions aren't compiled while metrics
+   * are collected, so that each binding is measured.
+   */
+  public enum ProvisionMetricsOption {
+    /** Provisions aren't measured. (Default) */
+    DISABLED,
+    /** Provisions are counted and timed for each binding. */
+    ENABLED,
+  }
+
+  /**
+   * Options for using the members generated at compile time by the annotation processor.
+   *
+   * <p>When enabled, classes compiled with the processor have their injectable constructor,
+   * injectable members and provider methods listed by their generated members instead of being
+   * scanned, and the generated members call them instead of reflection, method handles or
+   * fast-classes generated at runtime. Members the generated members can't call, such as private
+   * members, are called as they are otherwise.
+   */
+  public enum GeneratedInjectionOption {
+    /** Generated members are ignored. */
+    DISABLED,
+    /** Generated members are used when they are available. (Default) */
+    ENABLED,
+  }
+
   public static IncludeStackTraceOption getIncludeStackTraceOption() {
     return INCLUDE_STACK_TRACES;
   }
@@ -161,6 +341,113 @@ public final class InternalFlags {
     return COLORIZE_OPTION.enabled();
   }
 
+  public static ContextPropagationOption getContextPropagationOption() {
+    return CONTEXT_PROPAGATION_OPTION;
+  }
+
+  public static boolean isCompiledInjectorEnabled() {
+    return COMPILED_INJECTOR_OPTION == CompiledInjectorOption.ENABLED && isBytecodeGenEnabled();
+  }
+
+  public static boolean isConcurrentJitEnabled() {
+    return CONCURRENT_JIT_OPTION == ConcurrentJitOption.ENABLED;
+  }
+
+  public static boolean isParallelCreationEnabled() {
+    return PARALLEL_CREATION_OPTION == ParallelCreationOption.ENABLED;
+  }
+
+  public static boolean isParallelModulesEnabled() {
+    return PARALLEL_MODULES_OPTION == ParallelModulesOption.ENABLED;
+  }
+
+  public static int getParallelModulesThreads() {
+    return PARALLEL_MODULES_THREADS;
+  }
+
+  public static boolean isParallelSingletonEnabled() {
+    return PARALLEL_SINGLETON_OPTION == ParallelSingletonOption.ENABLED;
+  }
+
+  public static int getParallelSingletonThreads() {
+    return PARALLEL_SINGLETON_THREADS;
+  }
+
+  public static boolean isProvisionMetricsEnabled() {
+    return PROVISION_METRICS_OPTION == ProvisionMetricsOption.ENABLED;
+  }
+
+  public static boolean isGeneratedInjectionEnabled() {
+    return GENERATED_INJECTION_OPTION == GeneratedInjectionOption.ENABLED;
+  }
+
+  /**
+   * Returns the file that injection metadata is snapshotted to, or null if snapshots are disabled.
+   * When set, the snapshot in the file is used instead of scanning the classes it describes, as
+   * long as they haven't changed, and the classes scanned otherwise are added to the file when the
+   * JVM exits. See {@link InjectionSnapshot}.
+   */
+  public static String getInjectionSnapshotFile() {
+    return INJECTION_SNAPSHOT_FILE;
+  }
+
+  /**
+   * Gets the system option indicated by the specified key; runs as a privileged action.
+   *
+   * @param name of the system option
+   * @return value of the option, null if not set or no access
+   */
+  private static String getSystemOption(final String name) {
+    try {
+      String value =
+          AccessController.doPrivileged(
+              new PrivilegedAction<String>() {
+                @Override
+                public String run() {
+                  return System.getProperty(name);
+                }
+              });
+      return (value != null && value.length() > 0) ? value : null;
+    } catch (SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the system option indicated by the specified key; runs as a privileged action.
+   *
+   * @param name of the system option
+   * @param defaultValue if the option is not set or is not a positive number
+   * @return value of the option, defaultValue if not set or no access
+   */
+  private static int getSystemOption(final String name, int defaultValue) {
+    String value = null;
+    try {
+      value =
+          AccessController.doPrivileged(
+              new PrivilegedAction<String>() {
+                @Override
+                public String run() {
+                  return System.getProperty(name);
+                }
+              });
+      if (value == null || value.length() == 0) {
+        return defaultValue;
+      }
+      int intValue = Integer.parseInt(value);
+      if (intValue > 0) {
+        return intValue;
+      }
+    } catch (SecurityException e) {
+      return defaultValue;
+    } catch (NumberFormatException e) {
+      /* fall-through to the warning */
+    }
+    logger.warning(
+        value + " is not a valid flag value for " + name + ". Values must be positive numbers.");
+    return defaultValue;
+  }
+
   /**
    * Gets the system option indicated by the specified key; runs as a privileged action.
    *
@@ -61,8 +61,9 @@ import page.foliage.inject.spi.TypeConverterBinding;
  */
 public final class InternalInjectorCreator {
 
+  private final InjectorCreationRecorder recorder = new InjectorCreationRecorder();
   private final ContinuousStopwatch stopwatch =
-      new ContinuousStopwatch(Stopwatch.createUnstarted());
+      new ContinuousStopwatch(Stopwatch.createUnstarted(), recorder::recordPhase);
   private final Errors errors = new Errors();
 
   private final Initializer initializer = new Initializer();
@@ -97,21 +98,40 @@ public final class InternalInjectorCreator {
     return this;
   }
 
+  /**
+   * Marks the modules as replaying the elements recorded by an {@link InjectorTemplateImpl}, which
+   * already include the scanners inherited from the parent injector.
+   */
+  InternalInjectorCreator replayingTemplate() {
+    shellBuilder.replaying();
+    return this;
+  }
+
   public Injector build() {
     if (shellBuilder == null) {
       throw new AssertionError("Already built, builders are not reusable.");
     }
 
-    // Synchronize while we're building up the bindings and other injector data. This ensures that
-    // the JIT bindings in the parent injector don't change while we're being built
-    synchronized (shellBuilder.lock()) {
-      shells = shellBuilder.build(initializer, processedBindingData, stopwatch, errors);
-      stopwatch.resetAndLog("Injector construction");
+    InjectorCreationRecorder previousRecorder = recorder.enter();
+    try {
+      // Synchronize while we're building up the bindings and other injector data. This ensures
+      // that the JIT bindings in the parent injector don't change while we're being built
+      synchronized (shellBuilder.lock()) {
+        shells = shellBuilder.build(initializer, processedBindingData, stopwatch, recorder, errors);
+        stopwatch.resetAndLog("Injector construction");
+
+        initializeStatically();
+      }
 
-      initializeStatically();
+      injectDynamically();
+    } finally {
+      InjectorCreationRecorder.exit(previousRecorder);
     }
 
-    injectDynamically();
+    recorder.finish();
+    for (InjectorShell shell : shells) {
+      shell.getInjector().creationRecorder = null;
+    }
 
     if (shellBuilder.getStage() == Stage.TOOL) {
       // wrap the primaryInjector in a ToolStageInjector
@@ -124,6 +144,16 @@ public final class InternalInjectorCreator {
 
   /** Initialize and validate everything. */
   private void initializeStatically() {
+    if (InternalFlags.isParallelCreationEnabled()) {
+      for (InjectorShell shell : shells) {
+        InjectorImpl injector = shell.getInjector();
+        Collection<Binding<?>> bindings =
+            injector.getBindingData().getExplicitBindingsThisLevel().values();
+        PreparedInjectionPoints.prepareAll(injector, bindings);
+      }
+      stopwatch.resetAndLog("Parallel binding preparation");
+    }
+
     processedBindingData.initializeBindings();
     stopwatch.resetAndLog("Binding initialization");
 
@@ -162,6 +192,40 @@ public final class InternalInjectorCreator {
     }
 
     errors.throwCreationExceptionIfErrorsExist();
+
+    if (shellBuilder.getStage() != Stage.TOOL) {
+      for (InjectorShell shell : shells) {
+        flattenFactoryChains(shell.getInjector());
+      }
+      stopwatch.resetAndLog("Binding chain flattening");
+    }
+
+    if (InternalFlags.isCompiledInjectorEnabled() && shellBuilder.getStage() != Stage.TOOL) {
+      for (InjectorShell shell : shells) {
+        new ConstructionCompiler(shell.getInjector()).compileBindings();
+      }
+      stopwatch.resetAndLog("Binding compilation");
+    }
+  }
+
+  /**
+   * Resolves the linked and exposed bindings of the injector to the factories at the end of their
+   * chains, so that provisioning through a chain of them costs a single call.
+   */
+  private static void flattenFactoryChains(InjectorImpl injector) {
+    List<Binding<?>> bindings =
+        new ArrayList<>(injector.getBindingData().getExplicitBindingsThisLevel().values());
+    synchronized (injector.getJitBindingData().lock()) {
+      bindings.addAll(injector.getJitBindingData().getJitBindings().values());
+    }
+    for (Binding<?> binding : bindings) {
+      InternalFactory<?> factory = ((BindingImpl<?>) binding).getInternalFactory();
+      if (factory instanceof FactoryProxy) {
+        ((FactoryProxy<?>) factory).flatten();
+      } else if (factory instanceof ExposedKeyFactory) {
+        ((ExposedKeyFactory<?>) factory).flatten();
+      }
+    }
   }
 
   /** Returns the injector being constructed. This is not necessarily the root injector. */
@@ -205,20 +269,37 @@ public final class InternalInjectorCreator {
       // jit bindings must be accessed while holding the lock.
       candidateBindings.addAll(injector.getJitBindingData().getJitBindings().values());
     }
-    InternalContext context = injector.enterContext();
-    try {
+    if (InternalFlags.isParallelSingletonEnabled()) {
+      List<BindingImpl<?>> singletons = new ArrayList<>();
       for (BindingImpl<?> binding : candidateBindings) {
         if (isEagerSingleton(injector, binding, stage)) {
-          Dependency<?> dependency = Dependency.get(binding.getKey());
-          try {
-            binding.getInternalFactory().get(context, dependency, false);
-          } catch (InternalProvisionException e) {
-            errors.withSource(dependency).merge(e);
-          }
+          singletons.add(binding);
         }
       }
-    } finally {
-      context.close();
+      new ParallelSingletonLoader(
+              injector, singletons, recorder, ParallelSingletonLoader.defaultExecutor())
+          .load(errors);
+      return;
+    }
+    try {
+      injector.callInContext(
+          context -> {
+            for (BindingImpl<?> binding : candidateBindings) {
+              if (isEagerSingleton(injector, binding, stage)) {
+                Dependency<?> dependency = Dependency.get(binding.getKey());
+                long start = System.nanoTime();
+                try {
+                  binding.getInternalFactory().get(context, dependency, false);
+                } catch (InternalProvisionException e) {
+                  errors.withSource(dependency).merge(e);
+                }
+                recorder.recordEagerSingleton(binding.getKey(), System.nanoTime() - start);
+              }
+            }
+            return null;
+          });
+    } catch (InternalProvisionException e) {
+      errors.merge(e);
     }
   }
 
@@ -247,6 +328,10 @@ public final class InternalInjectorCreator {
       this.delegateInjector = delegateInjector;
     }
 
+    Injector getDelegate() {
+      return delegateInjector;
+    }
+
     @Override
     public void injectMembers(Object o) {
       throw new UnsupportedOperationException(
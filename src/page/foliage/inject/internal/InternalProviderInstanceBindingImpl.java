@@ -58,6 +58,7 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
   public void initialize(final InjectorImpl injector, final Errors errors) throws ErrorsException {
     originalFactory.source = getSource();
     originalFactory.provisionCallback = injector.provisionListenerStore.get(this);
+    originalFactory.statistics = injector.provisionMetrics.statisticsFor(getKey());
     // For these kinds of providers, the 'user supplied provider' is really 'guice supplied'
     // So make our user supplied provider just delegate to the guice supplied one.
     originalFactory.delegateProvider = getProvider();
@@ -73,6 +74,7 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
     private Object source;
     private Provider<T> delegateProvider;
     ProvisionListenerStackCallback<T> provisionCallback;
+    ProvisionStatisticsImpl statistics;
 
     Factory(InitializationTiming initializationTiming) {
       this.initializationTiming = initializationTiming;
@@ -109,17 +111,24 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
     @Override
     public T get(final InternalContext context, final Dependency<?> dependency, boolean linked)
         throws InternalProvisionException {
-      if (provisionCallback == null) {
-        return doProvision(context, dependency);
-      } else {
-        return provisionCallback.provision(
-            context,
-            new ProvisionCallback<T>() {
-              @Override
-              public T call() throws InternalProvisionException {
-                return doProvision(context, dependency);
-              }
-            });
+      long start = statistics != null ? System.nanoTime() : 0L;
+      try {
+        if (provisionCallback == null) {
+          return doProvision(context, dependency);
+        } else {
+          return provisionCallback.provision(
+              context,
+              new ProvisionCallback<T>() {
+                @Override
+                public T call() throws InternalProvisionException {
+                  return doProvision(context, dependency);
+                }
+              });
+        }
+      } finally {
+        if (statistics != null) {
+          statistics.record(System.nanoTime() - start);
+        }
       }
     }
     /**
@@ -137,6 +146,7 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
    * a {@link ProviderWithExtensionVisitor} and also implements {@link InternalFactory}
    */
   abstract static class CyclicFactory<T> extends Factory<T> {
+    private final ConstructionContextSlot constructionContextSlot = new ConstructionContextSlot();
 
     CyclicFactory(InitializationTiming initializationTiming) {
       super(initializationTiming);
@@ -146,7 +156,8 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
     public final T get(
         final InternalContext context, final Dependency<?> dependency, boolean linked)
         throws InternalProvisionException {
-      final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+      final ConstructionContext<T> constructionContext =
+          context.getConstructionContext(constructionContextSlot);
       // We have a circular reference between bindings. Return a proxy.
       if (constructionContext.isConstructing()) {
         Class<?> expectedType = dependency.getKey().getTypeLiteral().getRawType();
@@ -157,6 +168,7 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
       }
       // Optimization: Don't go through the callback stack if no one's listening.
       constructionContext.startConstruction();
+      long start = statistics != null ? System.nanoTime() : 0L;
       try {
         if (provisionCallback == null) {
           return provision(dependency, context, constructionContext);
@@ -173,6 +185,9 @@ final class InternalProviderInstanceBindingImpl<T> extends ProviderInstanceBindi
       } finally {
         constructionContext.removeCurrentReference();
         constructionContext.finishConstruction();
+        if (statistics != null) {
+          statistics.record(System.nanoTime() - start);
+        }
       }
     }
 
@@ -41,15 +41,19 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
   @Nullable private final ImmutableList<MembersInjector<? super T>> userMembersInjectors;
   @Nullable private final ImmutableList<InjectionListener<? super T>> injectionListeners;
   @Nullable private final ImmutableList<MethodAspect> addedAspects;
+  // injects memberInjectors in one pass when bytecode generation is enabled, null otherwise
+  @Nullable private final FastMembersInjection fastMembersInjection;
 
   MembersInjectorImpl(
       InjectorImpl injector,
       TypeLiteral<T> typeLiteral,
       EncounterImpl<T> encounter,
-      ImmutableList<SingleMemberInjector> memberInjectors) {
+      ImmutableList<SingleMemberInjector> memberInjectors,
+      @Nullable FastMembersInjection fastMembersInjection) {
     this.injector = injector;
     this.typeLiteral = typeLiteral;
     this.memberInjectors = memberInjectors.isEmpty() ? null : memberInjectors;
+    this.fastMembersInjection = fastMembersInjection;
     this.userMembersInjectors =
         encounter.getMembersInjectors().isEmpty() ? null : encounter.getMembersInjectors().asList();
     this.injectionListeners =
@@ -62,6 +66,14 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
             : null;
   }
 
+  /**
+   * Returns true if injecting members does nothing: there are no injectable members, user members
+   * injectors or injection listeners.
+   */
+  boolean isNoOp() {
+    return memberInjectors == null && userMembersInjectors == null && injectionListeners == null;
+  }
+
   public ImmutableList<SingleMemberInjector> getMemberInjectors() {
     return memberInjectors == null ? ImmutableList.<SingleMemberInjector>of() : memberInjectors;
   }
@@ -86,24 +98,23 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
     if (instance == null) {
       return;
     }
-    final InternalContext context = injector.enterContext();
-    try {
-      if (provisionCallback != null && provisionCallback.hasListeners()) {
-        provisionCallback.provision(
-            context,
-            new ProvisionCallback<T>() {
-              @Override
-              public T call() throws InternalProvisionException {
-                injectMembers(instance, context, toolableOnly);
-                return instance;
-              }
-            });
-      } else {
-        injectMembers(instance, context, toolableOnly);
-      }
-    } finally {
-      context.close();
-    }
+    injector.callInContext(
+        context -> {
+          if (provisionCallback != null && provisionCallback.hasListeners()) {
+            provisionCallback.provision(
+                context,
+                new ProvisionCallback<T>() {
+                  @Override
+                  public T call() throws InternalProvisionException {
+                    injectMembers(instance, context, toolableOnly);
+                    return instance;
+                  }
+                });
+          } else {
+            injectMembers(instance, context, toolableOnly);
+          }
+          return null;
+        });
 
     // TODO: We *could* notify listeners too here,
     // but it's not clear if we want to.  There's no way to know
@@ -139,7 +150,10 @@ final class MembersInjectorImpl<T> implements MembersInjector<T> {
   void injectMembers(T t, InternalContext context, boolean toolableOnly)
       throws InternalProvisionException {
     ImmutableList<SingleMemberInjector> localMembersInjectors = memberInjectors;
-    if (localMembersInjectors != null) {
+    FastMembersInjection localFastMembersInjection = fastMembersInjection;
+    if (localFastMembersInjection != null && !toolableOnly) {
+      localFastMembersInjection.inject(context, t);
+    } else if (localMembersInjectors != null) {
       // optimization: use manual for/each to save allocating an iterator here
       for (int i = 0, size = localMembersInjectors.size(); i < size; i++) {
         SingleMemberInjector injector = localMembersInjectors.get(i);
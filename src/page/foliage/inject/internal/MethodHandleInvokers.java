@@ -0,0 +1,69 @@
+package page.foliage.inject.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates {@link MethodHandle}s that invoke constructors and methods without reflection, for use
+ * when bytecode generation is disabled or can't be used for a particular member.
+ *
+ * <p>Every handle has the same type as fast-class invokers: {@code (Object, Object[])Object}. The
+ * first argument is the target instance, which is ignored for constructors and static methods,
+ * and the second holds the arguments. Callers keep the handle in a final field and call it with
+ * {@link MethodHandle#invokeExact}, which avoids the argument checks and boxing of {@link
+ * MethodHandle#invoke}. Exceptions thrown by the member propagate unwrapped.
+ */
+final class MethodHandleInvokers {
+  private MethodHandleInvokers() {}
+
+  /** The type of all handles returned by this class. */
+  static final MethodType INVOKER_TYPE =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  /**
+   * Returns a handle that invokes the given constructor.
+   *
+   * @throws IllegalAccessException if the constructor can't be accessed
+   */
+  static MethodHandle forConstructor(Constructor<?> constructor) throws IllegalAccessException {
+    makeAccessible(constructor);
+    MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor).asFixedArity();
+    return MethodHandles.dropArguments(spread(handle), 0, Object.class);
+  }
+
+  /**
+   * Returns a handle that invokes the given method.
+   *
+   * @throws IllegalAccessException if the method can't be accessed
+   */
+  static MethodHandle forMethod(Method method) throws IllegalAccessException {
+    makeAccessible(method);
+    MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+    if (Modifier.isStatic(method.getModifiers())) {
+      return MethodHandles.dropArguments(spread(handle), 0, Object.class);
+    }
+    int parameterCount = handle.type().parameterCount() - 1;
+    return handle.asType(handle.type().generic()).asSpreader(Object[].class, parameterCount);
+  }
+
+  /** Erases the handle to {@code (Object[])Object}, spreading the arguments. */
+  private static MethodHandle spread(MethodHandle handle) {
+    return handle
+        .asType(handle.type().generic())
+        .asSpreader(Object[].class, handle.type().parameterCount());
+  }
+
+  /** Suppresses access checks for members that aren't public, as the reflective path does. */
+  private static <M extends AccessibleObject & Member> void makeAccessible(M member) {
+    if (!Modifier.isPublic(member.getModifiers())
+        || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+      member.setAccessible(true);
+    }
+  }
+}
@@ -0,0 +1,356 @@
+package page.foliage.inject.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import page.foliage.guava.common.collect.ImmutableSet;
+import page.foliage.inject.Binding;
+import page.foliage.inject.Injector;
+import page.foliage.inject.Key;
+import page.foliage.inject.MembersInjector;
+import page.foliage.inject.Provider;
+import page.foliage.inject.spi.Dependency;
+import page.foliage.inject.spi.HasDependencies;
+
+/**
+ * Loads the eager singletons of an injector concurrently, in dependency order.
+ *
+ * <p>The singletons form a graph whose edges are the dependencies declared by their bindings,
+ * followed through any bindings that aren't eager singletons themselves. A singleton is loaded once
+ * all the singletons it depends on have been loaded, so threads don't contend for the same
+ * singleton through declared dependencies. Undeclared dependencies, such as a provider that looks
+ * up another singleton, are still guarded by the cycle-detecting locks of {@link SingletonScope}.
+ * Singletons that are part of a dependency cycle, or depend on one, are loaded afterwards by the
+ * calling thread in their original order.
+ *
+ * <p>Singletons are loaded by the calling thread and by the threads of an {@link Executor}, which
+ * only speed the loading up: the calling thread loads every singleton that is ready while no other
+ * thread has taken it, so loading completes even if the executor's threads are all busy, for
+ * example with the eager singletons of another injector.
+ *
+ * <p>Errors are merged in the order of the given bindings, as when loading them sequentially.
+ */
+final class ParallelSingletonLoader {
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  /** Threads shared by the injectors that load their singletons in parallel, idle ones time out. */
+  private static final class DefaultExecutor {
+    static final ThreadPoolExecutor INSTANCE = newExecutor();
+
+    private static ThreadPoolExecutor newExecutor() {
+      int threads = Math.max(1, InternalFlags.getParallelSingletonThreads());
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(
+                        runnable, "Guice eager singleton loader-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+
+  /** Returns the executor that injectors load their singletons with. */
+  static Executor defaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  private final InjectorImpl injector;
+  private final List<BindingImpl<?>> singletons;
+  private final InjectorCreationRecorder recorder;
+  private final Executor executor;
+  private final Map<Binding<?>, Integer> indices = new IdentityHashMap<>();
+
+  /** The singletons reachable from a non-singleton binding, by index; empty while in progress. */
+  private final Map<Binding<?>, Set<Integer>> reachable = new IdentityHashMap<>();
+
+  private final InternalProvisionException[] failures;
+  private final Throwable[] unexpected;
+
+  ParallelSingletonLoader(
+      InjectorImpl injector,
+      List<BindingImpl<?>> singletons,
+      InjectorCreationRecorder recorder,
+      Executor executor) {
+    this.injector = injector;
+    this.singletons = singletons;
+    this.recorder = recorder;
+    this.executor = executor;
+    for (int i = 0; i < singletons.size(); i++) {
+      indices.put(singletons.get(i), i);
+    }
+    this.failures = new InternalProvisionException[singletons.size()];
+    this.unexpected = new Throwable[singletons.size()];
+  }
+
+  /** Loads all singletons, merging their errors into {@code errors}. */
+  void load(Errors errors) {
+    int size = singletons.size();
+    List<List<Integer>> dependents = new ArrayList<>(size);
+    int[] pending = new int[size];
+    for (int i = 0; i < size; i++) {
+      dependents.add(new ArrayList<>());
+    }
+    for (int i = 0; i < size; i++) {
+      for (int dependency : singletonDependencies(singletons.get(i))) {
+        if (dependency != i) {
+          dependents.get(dependency).add(i);
+          pending[i]++;
+        }
+      }
+    }
+
+    // find the singletons that can be ordered, the rest are in or behind a cycle
+    boolean[] ordered = new boolean[size];
+    int orderedCount = 0;
+    int[] remaining = pending.clone();
+    List<Integer> ready = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      if (remaining[i] == 0) {
+        ready.add(i);
+      }
+    }
+    for (int r = 0; r < ready.size(); r++) {
+      int next = ready.get(r);
+      ordered[next] = true;
+      orderedCount++;
+      for (int dependent : dependents.get(next)) {
+        if (--remaining[dependent] == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+
+    boolean parallel = orderedCount > 1;
+    if (parallel) {
+      loadInParallel(orderedCount, dependents, pending);
+    }
+    for (int i = 0; i < size; i++) {
+      if (!parallel || !ordered[i]) {
+        loadSingleton(i);
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (unexpected[i] instanceof RuntimeException) {
+        throw (RuntimeException) unexpected[i];
+      } else if (unexpected[i] instanceof Error) {
+        throw (Error) unexpected[i];
+      }
+      if (failures[i] != null) {
+        errors.withSource(Dependency.get(singletons.get(i).getKey())).merge(failures[i]);
+      }
+    }
+  }
+
+  private void loadInParallel(int orderedCount, List<List<Integer>> dependents, int[] pending) {
+    Scheduler scheduler =
+        new Scheduler(new AtomicIntegerArray(pending), dependents, orderedCount);
+    for (int i = 0; i < pending.length; i++) {
+      if (pending[i] == 0) {
+        scheduler.submit(i);
+      }
+    }
+    scheduler.run();
+  }
+
+  /**
+   * Hands singletons out once their dependencies are loaded, to the calling thread and to the
+   * executor's threads, whichever takes them first.
+   */
+  private final class Scheduler {
+    final AtomicIntegerArray remaining;
+    final List<List<Integer>> dependents;
+    final Queue<Integer> ready = new ConcurrentLinkedQueue<>();
+    final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+    /** The number of singletons that aren't loaded yet. Guarded by {@link #ready}. */
+    int unloaded;
+
+    Scheduler(AtomicIntegerArray remaining, List<List<Integer>> dependents, int unloaded) {
+      this.remaining = remaining;
+      this.dependents = dependents;
+      this.unloaded = unloaded;
+    }
+
+    void submit(int index) {
+      ready.add(index);
+      synchronized (ready) {
+        ready.notifyAll();
+      }
+      try {
+        executor.execute(this::loadReadyInPool);
+      } catch (RejectedExecutionException e) {
+        // the calling thread loads it
+      }
+    }
+
+    /** Loads ready singletons on the calling thread until all of them are loaded. */
+    void run() {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          Integer index = ready.poll();
+          if (index != null) {
+            load(index);
+            continue;
+          }
+          synchronized (ready) {
+            if (unloaded == 0) {
+              return;
+            }
+            if (ready.isEmpty()) {
+              try {
+                ready.wait();
+              } catch (InterruptedException e) {
+                interrupted = true;
+              }
+            }
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void loadReadyInPool() {
+      Integer index = ready.poll();
+      if (index == null) {
+        return; // the calling thread or another pool thread took it
+      }
+      Thread thread = Thread.currentThread();
+      ClassLoader previous = thread.getContextClassLoader();
+      thread.setContextClassLoader(contextClassLoader);
+      InjectorCreationRecorder previousRecorder = recorder.enter();
+      try {
+        load(index);
+      } finally {
+        InjectorCreationRecorder.exit(previousRecorder);
+        thread.setContextClassLoader(previous);
+      }
+    }
+
+    private void load(int index) {
+      try {
+        loadSingleton(index);
+      } finally {
+        for (int dependent : dependents.get(index)) {
+          if (remaining.decrementAndGet(dependent) == 0) {
+            submit(dependent);
+          }
+        }
+        synchronized (ready) {
+          if (--unloaded == 0) {
+            ready.notifyAll();
+          }
+        }
+      }
+    }
+  }
+
+  private void loadSingleton(int index) {
+    BindingImpl<?> binding = singletons.get(index);
+    long start = System.nanoTime();
+    try {
+      injector.callInContext(
+          context ->
+              binding.getInternalFactory().get(context, Dependency.get(binding.getKey()), false));
+    } catch (InternalProvisionException e) {
+      failures[index] = e;
+    } catch (RuntimeException | Error e) {
+      unexpected[index] = e;
+    }
+    recorder.recordEagerSingleton(binding.getKey(), System.nanoTime() - start);
+  }
+
+  /** Returns the indices of the singletons that the binding depends on. */
+  private Set<Integer> singletonDependencies(Binding<?> binding) {
+    Set<Integer> result = new LinkedHashSet<>();
+    for (Binding<?> dependency : directDependencies(binding)) {
+      Integer index = indices.get(dependency);
+      if (index != null) {
+        result.add(index);
+      } else {
+        result.addAll(reachableSingletons(dependency));
+      }
+    }
+    return result;
+  }
+
+  /** Returns the singletons reachable through a binding that isn't a singleton being loaded. */
+  private Set<Integer> reachableSingletons(Binding<?> binding) {
+    Set<Integer> result = reachable.get(binding);
+    if (result == null) {
+      reachable.put(binding, new LinkedHashSet<>()); // guards against cycles
+      result = singletonDependencies(binding);
+      reachable.put(binding, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the existing bindings that must be provisioned to provision the given binding. Keys
+   * that only give access to a binding, like providers, aren't followed.
+   */
+  private static List<Binding<?>> directDependencies(Binding<?> binding) {
+    List<Binding<?>> result = new ArrayList<>();
+    InjectorImpl lookupInjector = ((BindingImpl<?>) binding).getInjector();
+    Set<Dependency<?>> dependencies;
+    if (binding instanceof ExposedBindingImpl) {
+      // the exposed binding delegates to the binding of the same key in the private injector
+      Injector privateInjector =
+          ((ExposedBindingImpl<?>) binding).getPrivateElements().getInjector();
+      if (!(privateInjector instanceof InjectorImpl)) {
+        return result;
+      }
+      lookupInjector = (InjectorImpl) privateInjector;
+      dependencies = ImmutableSet.<Dependency<?>>of(Dependency.get(binding.getKey()));
+    } else if (binding instanceof HasDependencies) {
+      try {
+        dependencies = ((HasDependencies) binding).getDependencies();
+      } catch (RuntimeException e) {
+        return result; // not ready, so there's nothing to order it by
+      }
+    } else {
+      return result;
+    }
+    for (Dependency<?> dependency : dependencies) {
+      Key<?> key = dependency.getKey();
+      Class<?> rawType = key.getTypeLiteral().getRawType();
+      if (rawType == Provider.class
+          || rawType == javax.inject.Provider.class
+          || rawType == MembersInjector.class) {
+        continue;
+      }
+      Binding<?> existing = lookupInjector.getExistingBinding(key);
+      if (existing != null) {
+        result.add(existing);
+      }
+    }
+    return result;
+  }
+}
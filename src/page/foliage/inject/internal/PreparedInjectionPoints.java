@@ -0,0 +1,219 @@
+package page.foliage.inject.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import page.foliage.inject.Binding;
+import page.foliage.inject.ConfigurationException;
+import page.foliage.inject.ImplementedBy;
+import page.foliage.inject.Key;
+import page.foliage.inject.ProvidedBy;
+import page.foliage.inject.TypeLiteral;
+import page.foliage.inject.internal.InjectorImpl.JitLimitation;
+import page.foliage.inject.spi.Dependency;
+import page.foliage.inject.spi.InjectionPoint;
+
+/**
+ * Scans the injection points of types that are about to get just-in-time bindings, before the lock
+ * that guards just-in-time binding creation is taken.
+ *
+ * <p>Creating a just-in-time binding links it into the injector hierarchy, which must happen under
+ * the lock shared by the hierarchy so that banned keys, failure caching and the cleanup of failed
+ * bindings stay consistent. Bindings are therefore created one at a time, unless {@link
+ * InternalFlags#isConcurrentJitEnabled concurrent creation} is enabled. Most of the cost of
+ * creating constructor bindings on a cold start is reflection and bytecode generation though, which
+ * don't depend on the injector. Threads that miss a binding therefore first scan the type and its
+ * unbound concrete dependencies without the lock, so unrelated types are scanned in parallel.
+ *
+ * <p>Scanning fills the caches of {@link InjectionPoint} and {@link BytecodeGen}, which binding
+ * creation then reads under the lock. Each class is claimed by the first thread that prepares it,
+ * once per JVM, so later lookups of the class and its dependencies, such as retries of keys that
+ * failed, don't walk them again. Classes whose scans aren't cached, such as parameterized types,
+ * are left to be scanned under the lock.
+ */
+final class PreparedInjectionPoints {
+  private PreparedInjectionPoints() {}
+
+  /** Limits the number of types prepared by a single lookup. */
+  private static final int MAX_PREPARED_PER_LOOKUP = 1_000;
+
+  // Claims of a class, for each way its constructor can be scanned.
+  private static final int CLAIMED_AT_INJECT_REQUIRED = 1;
+  private static final int CLAIMED_AT_INJECT_OPTIONAL = 2;
+
+  /** The ways each class has been claimed for preparation. */
+  private static final ClassValue<AtomicInteger> claims =
+      new ClassValue<AtomicInteger>() {
+        @Override
+        protected AtomicInteger computeValue(Class<?> type) {
+          return new AtomicInteger();
+        }
+      };
+
+  /**
+   * Prepares the type of {@code key}, if it may get a constructor binding here, along with the
+   * types of its dependencies that may also need one. Must not be called while holding the lock.
+   */
+  static void prepare(InjectorImpl injector, Key<?> key, JitLimitation jitType) {
+    if (injector.options.jitDisabled && jitType == JitLimitation.NO_JIT) {
+      return; // the key can't get a constructor binding
+    }
+    prepare(injector, key);
+  }
+
+  /**
+   * Prepares the types of the given explicit bindings and of their unbound concrete dependencies in
+   * parallel, returning once all of them have been prepared. This is used when creating injectors
+   * in parallel, before the bindings are initialized. Bindings and their dependencies are collected
+   * by the calling thread; only scanning is done by worker threads, so this may be called while
+   * holding the lock.
+   */
+  static void prepareAll(InjectorImpl injector, Collection<? extends Binding<?>> bindings) {
+    boolean atInjectRequired = injector.options.atInjectRequired;
+    List<Runnable> tasks = new ArrayList<>();
+    for (Binding<?> binding : bindings) {
+      if (binding instanceof ConstructorBindingImpl) {
+        InjectionPoint constructor = ((ConstructorBindingImpl<?>) binding).getInternalConstructor();
+        if (constructor != null) {
+          tasks.add(
+              () -> {
+                List<Key<?>> dependencies =
+                    prepareType(constructor.getDeclaringType(), atInjectRequired, constructor);
+                if (dependencies != null && !injector.options.jitDisabled) {
+                  for (Key<?> dependency : dependencies) {
+                    prepare(injector, dependency);
+                  }
+                }
+              });
+        }
+      } else if (binding instanceof LinkedBindingImpl) {
+        Key<?> target = ((LinkedBindingImpl<?>) binding).getLinkedKey();
+        tasks.add(() -> prepare(injector, target));
+      } else if (binding instanceof ProviderInstanceBindingImpl
+          && !injector.options.jitDisabled) {
+        Object provider = ((ProviderInstanceBindingImpl<?>) binding).getUserSuppliedProvider();
+        if (provider instanceof ProviderMethod) {
+          for (Dependency<?> dependency : ((ProviderMethod<?>) provider).getDependencies()) {
+            tasks.add(() -> prepare(injector, dependency.getKey()));
+          }
+        }
+      }
+    }
+    // the worker threads scan for the creation that the calling thread works for
+    InjectorCreationRecorder recorder = InjectorCreationRecorder.current();
+    tasks.parallelStream()
+        .map(task -> recorder != null ? recorder.workingFor(task) : task)
+        .forEach(Runnable::run);
+  }
+
+  private static void prepare(InjectorImpl injector, Key<?> key) {
+    boolean atInjectRequired = injector.options.atInjectRequired;
+    Deque<Key<?>> pending = new ArrayDeque<>();
+    Set<Key<?>> seen = new HashSet<>();
+    pending.push(key);
+    while (!pending.isEmpty() && seen.size() < MAX_PREPARED_PER_LOOKUP) {
+      Key<?> next = pending.pop();
+      if (!seen.add(next) || !needsConstructorBinding(injector, next)) {
+        continue;
+      }
+      List<Key<?>> dependencies = prepareType(next.getTypeLiteral(), atInjectRequired, null);
+      if (dependencies != null && !injector.options.jitDisabled) {
+        // with jit disabled, dependencies can only be bound explicitly
+        pending.addAll(dependencies);
+      }
+    }
+  }
+
+  /**
+   * Scans the type unless it was already claimed, starting with its default constructor unless
+   * {@code knownConstructor} is given. Returns the keys of its dependencies, or {@code null} if the
+   * type was already claimed or can't be cached.
+   */
+  private static List<Key<?>> prepareType(
+      TypeLiteral<?> type, boolean atInjectRequired, InjectionPoint knownConstructor) {
+    if (!(type.getType() instanceof Class) || !claim(type.getRawType(), atInjectRequired)) {
+      return null;
+    }
+    List<Key<?>> dependencies = new ArrayList<>();
+    try {
+      InjectionPoint constructor =
+          knownConstructor != null
+              ? knownConstructor
+              : InjectionPoint.forConstructorOf(type, atInjectRequired);
+      addDependencies(constructor, dependencies);
+      warmUp(constructor);
+      Set<InjectionPoint> members;
+      try {
+        members = InjectionPoint.forInstanceMethodsAndFields(type);
+      } catch (ConfigurationException e) {
+        members = e.getPartialValue();
+      }
+      for (InjectionPoint member : members) {
+        addDependencies(member, dependencies);
+        warmUp(member);
+      }
+    } catch (RuntimeException | LinkageError e) {
+      /* leave the rest of the type unprepared, binding creation will report its errors */
+    }
+    return dependencies;
+  }
+
+  /** Claims the type for preparation; returns false if it was already claimed. */
+  private static boolean claim(Class<?> type, boolean atInjectRequired) {
+    int claim = atInjectRequired ? CLAIMED_AT_INJECT_REQUIRED : CLAIMED_AT_INJECT_OPTIONAL;
+    return (claims.get(type).getAndUpdate(claimed -> claimed | claim) & claim) == 0;
+  }
+
+  private static void addDependencies(InjectionPoint injectionPoint, List<Key<?>> keys) {
+    for (Dependency<?> dependency : injectionPoint.getDependencies()) {
+      keys.add(dependency.getKey());
+    }
+  }
+
+  /** True if the key may get a constructor binding that hasn't been created yet. */
+  private static boolean needsConstructorBinding(InjectorImpl injector, Key<?> key) {
+    if (key.getAnnotationType() != null) {
+      return false;
+    }
+    Class<?> rawType = key.getTypeLiteral().getRawType();
+    if (rawType.isInterface()
+        || rawType.isArray()
+        || rawType.isPrimitive()
+        || rawType == TypeLiteral.class
+        || Modifier.isAbstract(rawType.getModifiers())
+        || rawType.isAnnotationPresent(ImplementedBy.class)
+        || rawType.isAnnotationPresent(ProvidedBy.class)) {
+      return false;
+    }
+    return injector.getExistingBinding(key) == null;
+  }
+
+  /**
+   * Generates the fast-class used to invoke the constructor or method ahead of time, unless it is
+   * invoked through generated members.
+   */
+  private static void warmUp(InjectionPoint injectionPoint) {
+    Member member = injectionPoint.getMember();
+    if (InternalFlags.isBytecodeGenEnabled() && GeneratedInjection.invoker(member) == null) {
+      try {
+        if (member instanceof Constructor) {
+          BytecodeGen.fastConstructor((Constructor<?>) member);
+        } else if (member instanceof Method) {
+          BytecodeGen.fastMethod((Method) member);
+        }
+      } catch (Exception | LinkageError e) {
+        /* fall-through, the injectors will handle it */
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ class ProvidedByInternalFactory<T> extends ProviderInternalFactory<T> implements
   private final Key<? extends Provider<T>> providerKey;
   private BindingImpl<? extends Provider<T>> providerBinding;
   private ProvisionListenerStackCallback<T> provisionCallback;
+  private ProvisionStatisticsImpl statistics;
 
   ProvidedByInternalFactory(
       Class<?> rawType,
@@ -50,6 +51,10 @@ class ProvidedByInternalFactory<T> extends ProviderInternalFactory<T> implements
     provisionCallback = listener;
   }
 
+  void setProvisionStatistics(ProvisionStatisticsImpl statistics) {
+    this.statistics = statistics;
+  }
+
   @Override
   public void initialize(InjectorImpl injector, Errors errors) throws ErrorsException {
     providerBinding =
@@ -67,7 +72,7 @@ class ProvidedByInternalFactory<T> extends ProviderInternalFactory<T> implements
     try {
       Provider<? extends T> provider =
           localProviderBinding.getInternalFactory().get(context, dependency, true);
-      return circularGet(provider, context, dependency, provisionCallback);
+      return circularGet(provider, context, dependency, provisionCallback, statistics);
     } catch (InternalProvisionException ipe) {
       throw ipe.addSource(localProviderKey);
     }
@@ -32,6 +32,7 @@ import page.foliage.inject.spi.Dependency;
 abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
 
   protected final Object source;
+  private final ConstructionContextSlot constructionContextSlot = new ConstructionContextSlot();
 
   ProviderInternalFactory(Object source) {
     this.source = checkNotNull(source, "source");
@@ -41,9 +42,11 @@ abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
       final Provider<? extends T> provider,
       InternalContext context,
       final Dependency<?> dependency,
-      @Nullable ProvisionListenerStackCallback<T> provisionCallback)
+      @Nullable ProvisionListenerStackCallback<T> provisionCallback,
+      @Nullable ProvisionStatisticsImpl statistics)
       throws InternalProvisionException {
-    final ConstructionContext<T> constructionContext = context.getConstructionContext(this);
+    final ConstructionContext<T> constructionContext =
+        context.getConstructionContext(constructionContextSlot);
 
     // We have a circular reference between constructors. Return a proxy.
     if (constructionContext.isConstructing()) {
@@ -56,6 +59,7 @@ abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
 
     // Optimization: Don't go through the callback stack if no one's listening.
     constructionContext.startConstruction();
+    long start = statistics != null ? System.nanoTime() : 0L;
     try {
       if (provisionCallback == null) {
         return provision(provider, dependency, constructionContext);
@@ -72,6 +76,9 @@ abstract class ProviderInternalFactory<T> implements InternalFactory<T> {
     } finally {
       constructionContext.removeCurrentReference();
       constructionContext.finishConstruction();
+      if (statistics != null) {
+        statistics.record(System.nanoTime() - start);
+      }
     }
   }
 
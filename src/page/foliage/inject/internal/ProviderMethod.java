@@ -17,6 +17,7 @@
 package page.foliage.inject.internal;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -51,9 +52,13 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
   /**
    * Creates a {@link ProviderMethod}.
    *
-   * <p>Unless {@code skipFastClassGeneration} is set, this will use bytecode generation to invoke
-   * the actual method, since it is significantly faster. However, this may fail if the method is
-   * {@code private} or {@code protected}, since this approach is subject to java access policies.
+   * <p>Methods whose class was compiled with the annotation processor are invoked through its
+   * generated members. Otherwise, unless {@code skipFastClassGeneration} is set, this will use
+   * bytecode generation to invoke the actual method, since it is significantly faster. However,
+   * this may fail if the method is {@code private} or {@code protected}, since this approach is
+   * subject to java access policies. In that case, or when bytecode generation is disabled, this
+   * will use a method handle and only fall back to reflection if the method handle can't be
+   * created.
    */
   static <T> ProviderMethod<T> create(
       Key<T> key,
@@ -64,6 +69,12 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
       boolean skipFastClassGeneration,
       Annotation annotation) {
     int modifiers = method.getModifiers();
+    BiFunction<Object, Object[], Object> generatedMethod = GeneratedInjection.invoker(method);
+    if (generatedMethod != null) {
+      return new FastClassProviderMethod<T>(
+          key, method, instance, dependencies, scopeAnnotation, annotation, generatedMethod);
+    }
+
     if (InternalFlags.isBytecodeGenEnabled() && !skipFastClassGeneration) {
       try {
         BiFunction<Object, Object[], Object> fastMethod = BytecodeGen.fastMethod(method);
@@ -76,6 +87,19 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
       }
     }
 
+    try {
+      return new MethodHandleProviderMethod<T>(
+          key,
+          method,
+          instance,
+          dependencies,
+          scopeAnnotation,
+          annotation,
+          MethodHandleInvokers.forMethod(method));
+    } catch (Exception | LinkageError e) {
+      /* fall-through */
+    }
+
     if (!Modifier.isPublic(modifiers)
         || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
       method.setAccessible(true);
@@ -119,6 +143,24 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
     this.annotation = annotation;
   }
 
+  /** Creates a provider method that invokes the same method as {@code original}. */
+  ProviderMethod(ProviderMethod<T> original) {
+    this(
+        original.key,
+        original.method,
+        original.instance,
+        original.dependencies,
+        original.scopeAnnotation,
+        original.annotation);
+  }
+
+  /**
+   * Returns a provider method that invokes the same method in the same way, without the state this
+   * one was given when it was initialized for an injector. Used to bind recorded provider methods
+   * in another injector.
+   */
+  abstract ProviderMethod<T> copy();
+
   @Override
   public Key<T> getKey() {
     return key;
@@ -236,8 +278,8 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
 
 
   /**
-   * A {@link ProviderMethod} implementation that uses bytecode generation to invoke the provider
-   * method.
+   * A {@link ProviderMethod} implementation that invokes the provider method through bytecode
+   * generated at runtime, or through the members generated for its class at compile time.
    */
   private static final class FastClassProviderMethod<T> extends ProviderMethod<T> {
     final BiFunction<Object, Object[], Object> fastMethod;
@@ -254,6 +296,16 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
       this.fastMethod = fastMethod;
     }
 
+    FastClassProviderMethod(FastClassProviderMethod<T> original) {
+      super(original);
+      this.fastMethod = original.fastMethod;
+    }
+
+    @Override
+    ProviderMethod<T> copy() {
+      return new FastClassProviderMethod<T>(this);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public T doProvision(Object[] parameters) throws InvocationTargetException {
@@ -265,6 +317,46 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
     }
   }
 
+  /**
+   * A {@link ProviderMethod} implementation that uses a method handle to invoke the provider
+   * method, when bytecode generation is disabled or fails.
+   */
+  private static final class MethodHandleProviderMethod<T> extends ProviderMethod<T> {
+    final MethodHandle handle;
+
+    MethodHandleProviderMethod(
+        Key<T> key,
+        Method method,
+        Object instance,
+        ImmutableSet<Dependency<?>> dependencies,
+        Class<? extends Annotation> scopeAnnotation,
+        Annotation annotation,
+        MethodHandle handle) {
+      super(key, method, instance, dependencies, scopeAnnotation, annotation);
+      this.handle = handle;
+    }
+
+    MethodHandleProviderMethod(MethodHandleProviderMethod<T> original) {
+      super(original);
+      this.handle = original.handle;
+    }
+
+    @Override
+    ProviderMethod<T> copy() {
+      return new MethodHandleProviderMethod<T>(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T doProvision(Object[] parameters) throws InvocationTargetException {
+      try {
+        return (T) (Object) handle.invokeExact(instance, parameters);
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e); // match JDK reflection behaviour
+      }
+    }
+  }
+
   /**
    * A {@link ProviderMethod} implementation that invokes the method using normal java reflection.
    */
@@ -279,6 +371,15 @@ public abstract class ProviderMethod<T> extends InternalProviderInstanceBindingI
       super(key, method, instance, dependencies, scopeAnnotation, annotation);
     }
 
+    ReflectionProviderMethod(ReflectionProviderMethod<T> original) {
+      super(original);
+    }
+
+    @Override
+    ProviderMethod<T> copy() {
+      return new ReflectionProviderMethod<T>(this);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     T doProvision(Object[] parameters) throws IllegalAccessException, InvocationTargetException {
@@ -110,13 +110,42 @@ public final class ProviderMethodsModule implements Module {
   }
 
   public List<ProviderMethod<?>> getProviderMethods(Binder binder) {
+    if (scanner == ProvidesMethodScanner.INSTANCE && !isStaticModule()) {
+      List<InjectionSnapshot.RecordedMember> generated =
+          GeneratedInjection.findProviderMethods(getDelegateModuleClass());
+      if (generated != null) {
+        return getProviderMethods(binder, generated);
+      }
+    }
+    InjectionSnapshot snapshot = InjectionSnapshot.get();
+    String snapshotKey = null;
+    if (snapshot != null) {
+      snapshotKey =
+          InjectionSnapshot.providerMethodsKey(
+              getDelegateModuleClass(), isStaticModule(), scanner.annotationClasses());
+      List<InjectionSnapshot.RecordedMember> recorded =
+          snapshot.find(snapshotKey, getDelegateModuleClass(), true);
+      if (recorded != null) {
+        return getProviderMethods(binder, recorded);
+      }
+    }
+    boolean reportedErrors = false;
     List<ProviderMethod<?>> result = null;
     List<MethodAndAnnotation> methodsAndAnnotations = null;
     // The highest class in the type hierarchy that contained a provider method definition.
     Class<?> superMostClass = getDelegateModuleClass();
     for (Class<?> c = superMostClass; c != Object.class && c != null; c = c.getSuperclass()) {
       for (Method method : DeclaredMembers.getDeclaredMethods(c)) {
-        Annotation annotation = getAnnotation(binder, method);
+        List<Annotation> claimedAnnotations = getClaimedAnnotations(method);
+        if (claimedAnnotations.size() > 1) {
+          binder.addError(
+              "More than one annotation claimed by %s on method %s."
+                  + " Methods can only have one annotation claimed per scanner.",
+              scanner, method);
+          reportedErrors = true;
+          continue;
+        }
+        Annotation annotation = claimedAnnotations.isEmpty() ? null : claimedAnnotations.get(0);
         if (annotation != null) {
           if (isStaticModule()
               && !Modifier.isStatic(method.getModifiers())
@@ -127,6 +156,7 @@ public final class ProviderMethodsModule implements Module {
                     "%s is an instance method, but a class literal was passed. Make this method"
                         + " static or pass an instance of the module instead.",
                     method);
+            reportedErrors = true;
             continue;
           }
           if (result == null) {
@@ -145,6 +175,9 @@ public final class ProviderMethodsModule implements Module {
     }
     if (result == null) {
       // We didn't find anything
+      if (snapshot != null && !reportedErrors) {
+        snapshot.record(snapshotKey, getDelegateModuleClass(), true, ImmutableList.of());
+      }
       return ImmutableList.of();
     }
     // We have found some provider methods, now we need to check if any were overridden.
@@ -196,11 +229,47 @@ public final class ProviderMethodsModule implements Module {
                     + " method: %s\n\toverridden by: %s",
                 method,
                 matchingSignature);
+            reportedErrors = true;
             break;
           }
         }
       }
     }
+    if (snapshot != null && !reportedErrors) {
+      List<Class<? extends Annotation>> annotationClasses =
+          new ArrayList<>(scanner.annotationClasses());
+      List<InjectionSnapshot.RecordedMember> recorded = new ArrayList<>();
+      for (MethodAndAnnotation methodAndAnnotation : methodsAndAnnotations) {
+        recorded.add(
+            new InjectionSnapshot.RecordedMember(
+                methodAndAnnotation.method,
+                annotationClasses.indexOf(methodAndAnnotation.annotation.annotationType())));
+      }
+      snapshot.record(snapshotKey, getDelegateModuleClass(), true, recorded);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the provider methods recorded in the injection snapshot or listed by generated members,
+   * the same way as scanning returns the methods it finds.
+   */
+  private List<ProviderMethod<?>> getProviderMethods(
+      Binder binder, List<InjectionSnapshot.RecordedMember> recorded) {
+    if (recorded.isEmpty()) {
+      return ImmutableList.of();
+    }
+    List<Class<? extends Annotation>> annotationClasses =
+        new ArrayList<>(scanner.annotationClasses());
+    List<ProviderMethod<?>> result = new ArrayList<>();
+    for (InjectionSnapshot.RecordedMember member : recorded) {
+      Method method = (Method) member.getMember();
+      Annotation annotation = method.getAnnotation(annotationClasses.get(member.getFlags()));
+      ProviderMethod<Object> providerMethod = createProviderMethod(binder, method, annotation);
+      if (providerMethod != null) {
+        result.add(providerMethod);
+      }
+    }
     return result;
   }
 
@@ -214,26 +283,23 @@ public final class ProviderMethodsModule implements Module {
     }
   }
 
-  /** Returns the annotation that is claimed by the scanner, or null if there is none. */
-  private Annotation getAnnotation(Binder binder, Method method) {
+  /** Returns the annotations of the method that are claimed by the scanner. */
+  private List<Annotation> getClaimedAnnotations(Method method) {
     if (method.isBridge() || method.isSynthetic()) {
-      return null;
+      return ImmutableList.of();
     }
-    Annotation annotation = null;
+    List<Annotation> annotations = ImmutableList.of();
     for (Class<? extends Annotation> annotationClass : scanner.annotationClasses()) {
       Annotation foundAnnotation = method.getAnnotation(annotationClass);
       if (foundAnnotation != null) {
-        if (annotation != null) {
-          binder.addError(
-              "More than one annotation claimed by %s on method %s."
-                  + " Methods can only have one annotation claimed per scanner.",
-              scanner, method);
-          return null;
+        if (annotations.isEmpty()) {
+          annotations = ImmutableList.of(foundAnnotation);
+        } else {
+          annotations = ImmutableList.of(annotations.get(0), foundAnnotation);
         }
-        annotation = foundAnnotation;
       }
     }
-    return annotation;
+    return annotations;
   }
 
   private static final class Signature {
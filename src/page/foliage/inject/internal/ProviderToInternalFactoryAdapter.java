@@ -32,20 +32,33 @@ final class ProviderToInternalFactoryAdapter<T> implements Provider<T> {
 
   @Override
   public T get() {
-    InternalContext context = injector.enterContext();
     try {
-      // Always pretend that we are a linked binding, to support
-      // scoping implicit bindings.  If we are not actually a linked
-      // binding, we'll fail properly elsewhere in the chain.
-      T t = internalFactory.get(context, context.getDependency(), true);
-      return t;
+      return injector.callInContext(this::provision);
     } catch (InternalProvisionException e) {
       throw e.toProvisionException();
-    } finally {
-      context.close();
     }
   }
 
+  /**
+   * Like {@link #get()}, but uses the given context rather than entering one. Used by {@link
+   * SingletonScope} to hand the caller's context to us directly.
+   */
+  T get(InternalContext context) {
+    try {
+      return provision(context);
+    } catch (InternalProvisionException e) {
+      throw e.toProvisionException();
+    }
+  }
+
+  private T provision(InternalContext context) throws InternalProvisionException {
+    // Always pretend that we are a linked binding, to support
+    // scoping implicit bindings.  If we are not actually a linked
+    // binding, we'll fail properly elsewhere in the chain.
+    T t = internalFactory.get(context, context.getDependency(), true);
+    return t;
+  }
+
   /** Exposed for SingletonScope. */
   InjectorImpl getInjector() {
     return injector;
@@ -0,0 +1,69 @@
+package page.foliage.inject.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import page.foliage.guava.common.collect.ImmutableMap;
+import page.foliage.inject.Binding;
+import page.foliage.inject.Key;
+import page.foliage.inject.spi.ProvisionMetrics;
+import page.foliage.inject.spi.ProvisionStatistics;
+
+/**
+ * Collects the provision statistics of the bindings of an injector. Statistics are created when
+ * bindings are initialized, and kept by their factories so that recording a provision only updates
+ * counters, without allocating or looking anything up.
+ */
+final class ProvisionMetricsImpl implements ProvisionMetrics {
+
+  private final InjectorImpl injector;
+  private final boolean enabled = InternalFlags.isProvisionMetricsEnabled();
+  private final ConcurrentMap<Key<?>, ProvisionStatisticsImpl> statistics =
+      new ConcurrentHashMap<>();
+
+  ProvisionMetricsImpl(InjectorImpl injector) {
+    this.injector = injector;
+  }
+
+  /** Returns the statistics of the binding for {@code key}, or null if metrics are disabled. */
+  ProvisionStatisticsImpl statisticsFor(Key<?> key) {
+    return enabled ? statistics.computeIfAbsent(key, k -> new ProvisionStatisticsImpl()) : null;
+  }
+
+  /** Forgets the statistics of a binding that was removed from the injector. */
+  void remove(Key<?> key) {
+    statistics.remove(key);
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public ImmutableMap<Binding<?>, ProvisionStatistics> getStatistics() {
+    ImmutableMap.Builder<Binding<?>, ProvisionStatistics> builder = ImmutableMap.builder();
+    Map<Key<?>, BindingImpl<?>> jitBindings =
+        injector.getJitBindingData().getPublishedJitBindings();
+    for (Map.Entry<Key<?>, ProvisionStatisticsImpl> entry : statistics.entrySet()) {
+      ProvisionStatisticsImpl value = entry.getValue();
+      if (value.getCount() == 0 && value.getSingletonLockWaitTime().isZero()) {
+        continue;
+      }
+      Binding<?> binding = injector.getBindingData().getExplicitBinding(entry.getKey());
+      if (binding == null) {
+        binding = jitBindings.get(entry.getKey());
+      }
+      if (binding != null) {
+        builder.put(binding, value);
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    return "ProvisionMetrics[enabled=" + enabled + ", bindings=" + statistics.size() + "]";
+  }
+}
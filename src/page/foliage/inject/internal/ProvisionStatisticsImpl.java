@@ -0,0 +1,98 @@
+package page.foliage.inject.internal;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import page.foliage.inject.spi.ProvisionStatistics;
+
+/** The provision statistics of one binding, updated without locking or allocating. */
+final class ProvisionStatisticsImpl implements ProvisionStatistics {
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+  private final LongAdder lockWaitNanos = new LongAdder();
+
+  /** Records a provision that took {@code nanos}. */
+  void record(long nanos) {
+    count.increment();
+    totalNanos.add(nanos);
+    histogram.incrementAndGet(bucket(nanos));
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /** Records a wait of {@code nanos} for the singleton lock. */
+  void recordLockWait(long nanos) {
+    lockWaitNanos.add(nanos);
+  }
+
+  private static int bucket(long nanos) {
+    if (nanos <= 1) {
+      return 0;
+    }
+    return Math.min(63 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public Duration getTotalTime() {
+    return Duration.ofNanos(totalNanos.sum());
+  }
+
+  @Override
+  public Duration getMaxTime() {
+    return Duration.ofNanos(maxNanos.get());
+  }
+
+  @Override
+  public Duration getTimeAtPercentile(double percentile) {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+    long[] counts = getHistogram();
+    long total = 0;
+    for (long bucketCount : counts) {
+      total += bucketCount;
+    }
+    long max = maxNanos.get();
+    long target = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS - 1; i++) {
+      seen += counts[i];
+      if (seen >= target && seen > 0) {
+        return Duration.ofNanos(Math.min(1L << (i + 1), max));
+      }
+    }
+    return Duration.ofNanos(max);
+  }
+
+  @Override
+  public long[] getHistogram() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = histogram.get(i);
+    }
+    return counts;
+  }
+
+  @Override
+  public Duration getSingletonLockWaitTime() {
+    return Duration.ofNanos(lockWaitNanos.sum());
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "ProvisionStatistics[count=%d, totalTime=%s, maxTime=%s, singletonLockWaitTime=%s]",
+        getCount(), getTotalTime(), getMaxTime(), getSingletonLockWaitTime());
+  }
+}
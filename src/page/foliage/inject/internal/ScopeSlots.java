@@ -0,0 +1,117 @@
+package page.foliage.inject.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import page.foliage.guava.common.collect.MapMaker;
+import page.foliage.inject.Key;
+import page.foliage.inject.spi.IndexedScope;
+
+/**
+ * Assigns the slots of {@link IndexedScope indexed scopes}. Each scope has its own slots, which are
+ * shared by all the injectors that use it, so that a key has the same slot in all of them.
+ *
+ * <p>A key keeps its slot while any of the unscoped providers it was scoped with is reachable.
+ * Once they've all been collected, such as when the child injectors that bound the key are gone,
+ * the key is released and its slot is reused by the next key that's scoped. Keys therefore don't
+ * keep the classes and class loaders they refer to alive beyond the injectors that bound them.
+ */
+public final class ScopeSlots {
+  private ScopeSlots() {}
+
+  /** The slots of each scope, which are released with the scope. */
+  private static final ConcurrentMap<IndexedScope, Slots> slotsByScope =
+      new MapMaker().weakKeys().makeMap();
+
+  /**
+   * Returns the slot of {@code key} in {@code scope}, assigning a free slot if it has none. The
+   * slot is kept for {@code key} at least as long as {@code unscoped} is reachable.
+   */
+  public static int slotOf(IndexedScope scope, Key<?> key, Object unscoped) {
+    return slotsOf(scope).slotOf(key, unscoped);
+  }
+
+  /** Returns one more than the highest slot in use in {@code scope}. */
+  public static int getSlotCount(IndexedScope scope) {
+    Slots slots = slotsByScope.get(scope);
+    return slots != null ? slots.count() : 0;
+  }
+
+  private static Slots slotsOf(IndexedScope scope) {
+    Slots slots = slotsByScope.get(scope);
+    if (slots == null) {
+      Slots newSlots = new Slots();
+      slots = slotsByScope.putIfAbsent(scope, newSlots);
+      if (slots == null) {
+        slots = newSlots;
+      }
+    }
+    return slots;
+  }
+
+  /** The slots of the keys of one scope. */
+  private static final class Slots {
+    private final Map<Key<?>, Slot> slots = new HashMap<>();
+    private final BitSet used = new BitSet();
+    private final ReferenceQueue<Object> released = new ReferenceQueue<>();
+
+    synchronized int slotOf(Key<?> key, Object unscoped) {
+      expungeReleased();
+      Slot slot = slots.get(key);
+      if (slot == null) {
+        slot = new Slot(key, used.nextClearBit(0));
+        used.set(slot.index);
+        slots.put(key, slot);
+      }
+      slot.users.add(new User(unscoped, slot, released));
+      return slot.index;
+    }
+
+    synchronized int count() {
+      expungeReleased();
+      return used.length();
+    }
+
+    /** Frees the slots of the keys whose unscoped providers have all been collected. */
+    private void expungeReleased() {
+      for (Reference<?> reference; (reference = released.poll()) != null; ) {
+        User user = (User) reference;
+        Slot slot = user.slot;
+        slot.users.remove(user);
+        if (slot.users.isEmpty()) {
+          slots.remove(slot.key);
+          used.clear(slot.index);
+        }
+      }
+    }
+  }
+
+  /** The slot of a key, with the unscoped providers that use it. */
+  private static final class Slot {
+    final Key<?> key;
+    final int index;
+    final Set<User> users = new HashSet<>();
+
+    Slot(Key<?> key, int index) {
+      this.key = key;
+      this.index = index;
+    }
+  }
+
+  /** An unscoped provider that uses a slot, which is enqueued when it's collected. */
+  private static final class User extends WeakReference<Object> {
+    final Slot slot;
+
+    User(Object unscoped, Slot slot, ReferenceQueue<Object> queue) {
+      super(unscoped, queue);
+      this.slot = slot;
+    }
+  }
+}
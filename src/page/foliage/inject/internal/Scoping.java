@@ -27,6 +27,7 @@ import page.foliage.inject.Singleton;
 import page.foliage.inject.Stage;
 import page.foliage.inject.binder.ScopedBindingBuilder;
 import page.foliage.inject.spi.BindingScopingVisitor;
+import page.foliage.inject.spi.IndexedScope;
 import page.foliage.inject.spi.ScopeBinding;
 
 /**
@@ -296,8 +297,14 @@ public abstract class Scoping {
     // NOTE: SingletonScope relies on the fact that we are passing a
     // ProviderToInternalFactoryAdapter here.  If you change the type make sure to update
     // SingletonScope as well.
-    Provider<T> scoped =
-        scope.scope(key, new ProviderToInternalFactoryAdapter<T>(injector, creator));
+    Provider<T> unscoped = new ProviderToInternalFactoryAdapter<T>(injector, creator);
+    Provider<T> scoped;
+    if (scope instanceof IndexedScope) {
+      IndexedScope indexedScope = (IndexedScope) scope;
+      scoped = indexedScope.scope(key, ScopeSlots.slotOf(indexedScope, key, unscoped), unscoped);
+    } else {
+      scoped = scope.scope(key, unscoped);
+    }
     return new InternalFactoryToProviderAdapter<T>(scoped, source);
   }
 
@@ -17,7 +17,9 @@
 package page.foliage.inject.internal;
 
 import java.lang.reflect.Field;
+import java.util.function.BiFunction;
 
+import page.foliage.guava.common.primitives.Primitives;
 import page.foliage.inject.internal.InjectorImpl.JitLimitation;
 import page.foliage.inject.spi.Dependency;
 import page.foliage.inject.spi.InjectionPoint;
@@ -29,12 +31,18 @@ final class SingleFieldInjector implements SingleMemberInjector {
   final Dependency<?> dependency;
   final BindingImpl<?> binding;
 
+  /** Sets the field through the members generated for its class, or null to use reflection. */
+  private final BiFunction<Object, Object[], Object> generatedSetter;
+  private final Class<?> boxedType;
+
   public SingleFieldInjector(InjectorImpl injector, InjectionPoint injectionPoint, Errors errors)
       throws ErrorsException {
     this.injectionPoint = injectionPoint;
     this.field = (Field) injectionPoint.getMember();
     this.dependency = injectionPoint.getDependencies().get(0);
 
+    generatedSetter = GeneratedInjection.invoker(field);
+    boxedType = Primitives.wrap(field.getType());
     // Ewwwww...
     field.setAccessible(true);
     binding = injector.getBindingOrThrow(dependency.getKey(), errors, JitLimitation.NO_JIT);
@@ -49,7 +57,13 @@ final class SingleFieldInjector implements SingleMemberInjector {
   public void inject(InternalContext context, Object o) throws InternalProvisionException {
     try {
       Object value = binding.getInternalFactory().get(context, dependency, false);
-      field.set(o, value);
+      if (generatedSetter != null
+          && (value != null ? boxedType.isInstance(value) : !field.getType().isPrimitive())) {
+        generatedSetter.apply(o, new Object[] {value});
+      } else {
+        // let reflection set or reject the value
+        field.set(o, value);
+      }
     } catch (InternalProvisionException e) {
       throw e.addSource(dependency);
     } catch (IllegalAccessException e) {
@@ -16,6 +16,7 @@
 
 package page.foliage.inject.internal;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -39,27 +40,39 @@ final class SingleMethodInjector implements SingleMemberInjector {
   }
 
   private MethodInvoker createMethodInvoker(final Method method) {
+    BiFunction<Object, Object[], Object> generatedMethod = GeneratedInjection.invoker(method);
+    if (generatedMethod != null) {
+      return fastMethodInvoker(generatedMethod);
+    }
+
     if (InternalFlags.isBytecodeGenEnabled()) {
       try {
         BiFunction<Object, Object[], Object> fastMethod = BytecodeGen.fastMethod(method);
         if (fastMethod != null) {
-          return new MethodInvoker() {
-            @Override
-            public Object invoke(Object target, Object... parameters)
-                throws InvocationTargetException {
-              try {
-                return fastMethod.apply(target, parameters);
-              } catch (Throwable e) {
-                throw new InvocationTargetException(e); // match JDK reflection behaviour
-              }
-            }
-          };
+          return fastMethodInvoker(fastMethod);
         }
       } catch (Exception | LinkageError e) {
         /* fall-through */
       }
     }
 
+    try {
+      MethodHandle handle = MethodHandleInvokers.forMethod(method);
+      return new MethodInvoker() {
+        @Override
+        public Object invoke(Object target, Object... parameters)
+            throws InvocationTargetException {
+          try {
+            return (Object) handle.invokeExact(target, parameters);
+          } catch (Throwable e) {
+            throw new InvocationTargetException(e); // match JDK reflection behaviour
+          }
+        }
+      };
+    } catch (Exception | LinkageError e) {
+      /* fall-through */
+    }
+
     int modifiers = method.getModifiers();
     if (!Modifier.isPublic(modifiers)
         || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
@@ -75,11 +88,29 @@ final class SingleMethodInjector implements SingleMemberInjector {
     };
   }
 
+  private static MethodInvoker fastMethodInvoker(BiFunction<Object, Object[], Object> fastMethod) {
+    return new MethodInvoker() {
+      @Override
+      public Object invoke(Object target, Object... parameters) throws InvocationTargetException {
+        try {
+          return fastMethod.apply(target, parameters);
+        } catch (Throwable e) {
+          throw new InvocationTargetException(e); // match JDK reflection behaviour
+        }
+      }
+    };
+  }
+
   @Override
   public InjectionPoint getInjectionPoint() {
     return injectionPoint;
   }
 
+  /** Returns the injectors for the method's parameters, or {@code null} if it has none. */
+  SingleParameterInjector<?>[] getParameterInjectors() {
+    return parameterInjectors;
+  }
+
   @Override
   public void inject(InternalContext context, Object o) throws InternalProvisionException {
     Object[] parameters = SingleParameterInjector.getAll(context, parameterInjectors);
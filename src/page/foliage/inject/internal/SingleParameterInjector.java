@@ -28,19 +28,49 @@ final class SingleParameterInjector<T> {
 
   private final InternalFactory<? extends T> factory;
 
+  /** The singleton the factory adapts, or null if the dependency isn't a singleton. */
+  private final SingletonScope.SingletonProvider<? extends T> singleton;
+
+  /**
+   * Set once the singleton is initialized, so that it is injected without going through its scope.
+   * A plain field, as the holder's field is final.
+   */
+  private SingletonScope.Initialized<? extends T> initialized;
+
   SingleParameterInjector(Dependency<T> dependency, BindingImpl<? extends T> binding) {
     this.dependency = dependency;
     this.source = binding.getSource();
     this.factory = binding.getInternalFactory();
+    this.singleton =
+        factory instanceof InternalFactoryToProviderAdapter
+            ? ((InternalFactoryToProviderAdapter<? extends T>) factory).getSingleton()
+            : null;
+  }
+
+  Dependency<T> getDependency() {
+    return dependency;
+  }
+
+  InternalFactory<? extends T> getFactory() {
+    return factory;
   }
 
   T inject(InternalContext context) throws InternalProvisionException {
+    SingletonScope.Initialized<? extends T> localInitialized = initialized;
+    if (localInitialized != null) {
+      return localInitialized.instance;
+    }
     Dependency<T> localDependency = dependency;
+    T t;
     try {
-      return factory.get(context, localDependency, false);
+      t = factory.get(context, localDependency, false);
     } catch (InternalProvisionException ipe) {
       throw ipe.addSource(localDependency);
     }
+    if (singleton != null) {
+      initialized = singleton.getInitialized();
+    }
+    return t;
   }
 
   // TODO(lukes): inline into callers to decrease stack depth
@@ -2,6 +2,8 @@ package page.foliage.inject.internal;
 
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nullable;
 
@@ -71,11 +73,14 @@ public class SingletonScope implements Scope {
    * Allows us to detect when circular proxies are necessary. It's only used during singleton
    * instance initialization, after initialization direct access through volatile field is used.
    *
+   * <p>Singletons of injectors use the factory of their injector tree instead, see {@link
+   * InjectorImpl#singletonLockFactory}. This one is only used for creators that don't belong to
+   * an injector, when users call {@code scope} themselves.
+   *
    * <p>NB: Factory uses {@link Key}s as a user locks ids, different injectors can share them.
    * Cycles are detected properly as cycle detection does not rely on user locks ids, but error
    * message generated could be less than ideal.
    */
-  // TODO(user): we may use one factory per injector tree for optimization reasons
   private static final CycleDetectingLockFactory<Key<?>> cycleDetectingLockFactory =
       new CycleDetectingLockFactory<Key<?>>();
 
@@ -98,211 +103,337 @@ public class SingletonScope implements Scope {
    */
   @Override
   public <T> Provider<T> scope(final Key<T> key, final Provider<T> creator) {
-    /** Locking strategy: */
-    return new Provider<T>() {
-      /**
-       * The lazily initialized singleton instance. Once set, this will either have type T or will
-       * be equal to NULL. Would never be reset to null.
-       *
-       * <p>Locking strategy: double-checked locking for quick exit when scope is initialized.
-       */
-      volatile Object instance;
-
-      /**
-       * Circular proxies are used when potential deadlocks are detected. Guarded by itself.
-       * ConstructionContext is not thread-safe, so each call should be synchronized.
-       *
-       * <p>Locking strategy: manipulations with proxies list or instance initialization.
-       */
-      final ConstructionContext<T> constructionContext = new ConstructionContext<>();
-
-      /**
-       * For each binding there is a separate lock that we hold during object creation.
-       *
-       * <p>Locking strategy: singleton instance creation.
-       *
-       * <ul>
-       *   <li>allows to guarantee only one instance per singleton,
-       *   <li>special type of a lock, that prevents potential deadlocks,
-       *   <li>guards constructionContext for all operations except proxy creation
-       * </ul>
-       */
-      final CycleDetectingLock<Key<?>> creationLock = cycleDetectingLockFactory.create(key);
-
-      /**
-       * The singleton provider needs a reference back to the injector, in order to get ahold of
-       * InternalContext during instantiation.
-       */
-      final @Nullable InjectorImpl injector;
-
-      {
-        // If we are getting called by Scoping
-        if (creator instanceof ProviderToInternalFactoryAdapter) {
-          injector = ((ProviderToInternalFactoryAdapter) creator).getInjector();
-        } else {
-          injector = null;
+    return new SingletonProvider<T>(key, creator);
+  }
+
+  /** Provider returned by {@link SingletonScope#scope}. */
+  static final class SingletonProvider<T> implements Provider<T> {
+    /**
+     * The lazily initialized singleton instance. Once set, this will either have type T or will
+     * be equal to NULL. Would never be reset to null.
+     *
+     * <p>Locking strategy: double-checked locking for quick exit when scope is initialized.
+     */
+    volatile Object instance;
+
+    /**
+     * Everything needed to create the instance, released as soon as the instance is set so that an
+     * initialized singleton doesn't keep its lock, construction context and creator alive. Only
+     * read after {@link #instance} was found to be null; when this is null too, the instance was
+     * set concurrently.
+     */
+    volatile @Nullable Creation<T> creation;
+
+    SingletonProvider(Key<T> key, Provider<T> creator) {
+      this.creation = new Creation<T>(key, creator);
+    }
+
+    @Override
+    public T get() {
+      // cache volatile variable for the usual case of already initialized object
+      final Object initialInstance = instance;
+      if (initialInstance == null) {
+        // instance is not initialized yet
+
+        // first, store the current InternalContext in a map, so that if there is a circular
+        // dependency error, we can use the InternalContext objects to create a complete
+        // error message.
+        // Handle injector being null, which can happen when users call Scoping.scope themselves
+        final Creation<T> currentCreation = creation;
+        if (currentCreation == null) {
+          return initializedInstance();
         }
+        InjectorImpl injector = currentCreation.injector;
+        return initialize(currentCreation, injector == null ? null : injector.getLocalContext());
+      } else {
+        // singleton is already initialized and local cache can be used
+        @SuppressWarnings("unchecked")
+        T typedInitialIntance = (T) initialInstance;
+        return initialInstance == NULL ? null : typedInitialIntance;
       }
+    }
 
-      @SuppressWarnings("DoubleCheckedLocking")
-      @Override
-      public T get() {
-        // cache volatile variable for the usual case of already initialized object
-        final Object initialInstance = instance;
-        if (initialInstance == null) {
-          // instance is not initialized yet
-
-          // first, store the current InternalContext in a map, so that if there is a circular
-          // dependency error, we can use the InternalContext objects to create a complete
-          // error message.
-          // Handle injector being null, which can happen when users call Scoping.scope themselves
-          final InternalContext context = injector == null ? null : injector.getLocalContext();
-          // acquire lock for current binding to initialize an instance
-          final ListMultimap<Thread, Key<?>> locksCycle =
-              creationLock.lockOrDetectPotentialLocksCycle();
-
-          if (locksCycle.isEmpty()) {
-            // this thread now owns creation of an instance
-            try {
-              // intentionally reread volatile variable to prevent double initialization
-              if (instance == null) {
-                // creator throwing an exception can cause circular proxies created in
-                // different thread to never be resolved, just a warning
-                T provided = creator.get();
-                Object providedNotNull = provided == null ? NULL : provided;
-
-                // scope called recursively can initialize instance as a side effect
-                if (instance == null) {
-                  // instance is still not initialized, so we can proceed
-
-                  // don't remember proxies created by Guice on circular dependency
-                  // detection within the same thread; they are not real instances to cache
-                  if (Scopes.isCircularProxy(provided)) {
-                    return provided;
-                  }
-
-                  synchronized (constructionContext) {
-                    // guarantee thread-safety for instance and proxies initialization
-                    instance = providedNotNull;
-                    constructionContext.setProxyDelegates(provided);
-                  }
-                } else {
-                  // safety assert in case instance was initialized
-                  Preconditions.checkState(
-                      instance == providedNotNull,
-                      "Singleton is called recursively returning different results");
-                }
+    /**
+     * Returns a holder of the instance if it was set to a non-null value, or null otherwise. Null
+     * instances are left to the scoped factory, which checks whether the dependency allows them.
+     */
+    @Nullable
+    Initialized<T> getInitialized() {
+      final Object initializedInstance = instance;
+      if (initializedInstance == null || initializedInstance == NULL) {
+        return null;
+      }
+      @SuppressWarnings("unchecked")
+      T typedInstance = (T) initializedInstance;
+      return new Initialized<T>(typedInstance);
+    }
+
+    /**
+     * Like {@link #get()}, but with the current InternalContext handed to us by the caller instead
+     * of looked up through the injector. The context is also handed on to the creator.
+     */
+    T get(InternalContext context) {
+      final Object initialInstance = instance;
+      if (initialInstance == null) {
+        final Creation<T> currentCreation = creation;
+        return currentCreation == null
+            ? initializedInstance()
+            : initialize(currentCreation, context);
+      } else {
+        @SuppressWarnings("unchecked")
+        T typedInitialIntance = (T) initialInstance;
+        return initialInstance == NULL ? null : typedInitialIntance;
+      }
+    }
+
+    @SuppressWarnings({"DoubleCheckedLocking", "unchecked"})
+    private T initialize(Creation<T> creation, @Nullable InternalContext context) {
+      final CycleDetectingLock<Key<?>> creationLock = creation.creationLock;
+      final ConstructionContext<T> constructionContext = creation.constructionContext;
+      final Lock constructionContextLock = creation.constructionContextLock;
+      final Provider<T> creator = creation.creator;
+      final ProvisionStatisticsImpl statistics = creation.statistics;
+
+      // acquire lock for current binding to initialize an instance
+      long start = statistics != null ? System.nanoTime() : 0L;
+      final ListMultimap<Thread, Key<?>> locksCycle =
+          creationLock.lockOrDetectPotentialLocksCycle();
+      if (statistics != null) {
+        statistics.recordLockWait(System.nanoTime() - start);
+      }
+
+      if (locksCycle.isEmpty()) {
+        // this thread now owns creation of an instance
+        try {
+          // intentionally reread volatile variable to prevent double initialization
+          if (instance == null) {
+            // creator throwing an exception can cause circular proxies created in
+            // different thread to never be resolved, just a warning
+            T provided =
+                context != null && creator instanceof ProviderToInternalFactoryAdapter
+                    ? ((ProviderToInternalFactoryAdapter<T>) creator).get(context)
+                    : creator.get();
+            Object providedNotNull = provided == null ? NULL : provided;
+
+            // scope called recursively can initialize instance as a side effect
+            if (instance == null) {
+              // instance is still not initialized, so we can proceed
+
+              // don't remember proxies created by Guice on circular dependency
+              // detection within the same thread; they are not real instances to cache
+              if (Scopes.isCircularProxy(provided)) {
+                return provided;
               }
-            } catch (RuntimeException e) {
-              // something went wrong, be sure to clean a construction context
-              // this helps to prevent potential memory leaks in circular proxies list
-              synchronized (constructionContext) {
-                constructionContext.finishConstruction();
+
+              constructionContextLock.lock();
+              try {
+                // guarantee thread-safety for instance and proxies initialization
+                instance = providedNotNull;
+                constructionContext.setProxyDelegates(provided);
+                // nothing is created anymore, threads that still hold the creation state only
+                // use it to find out that the instance is set
+                this.creation = null;
+              } finally {
+                constructionContextLock.unlock();
               }
-              throw e;
-            } finally {
-              // always release our creation lock, even on failures
-              creationLock.unlock();
+            } else {
+              // safety assert in case instance was initialized
+              Preconditions.checkState(
+                  instance == providedNotNull,
+                  "Singleton is called recursively returning different results");
             }
-          } else {
-            if (context == null) {
+          }
+        } catch (RuntimeException e) {
+          // something went wrong, be sure to clean a construction context
+          // this helps to prevent potential memory leaks in circular proxies list
+          constructionContextLock.lock();
+          try {
+            constructionContext.finishConstruction();
+          } finally {
+            constructionContextLock.unlock();
+          }
+          throw e;
+        } finally {
+          // always release our creation lock, even on failures
+          creationLock.unlock();
+        }
+      } else {
+        if (context == null) {
+          throw new ProvisionException(
+              ImmutableList.of(createCycleDependenciesMessage(locksCycle, null)));
+        }
+        // potential deadlock detected, creation lock is not taken by this thread
+        constructionContextLock.lock();
+        try {
+          // guarantee thread-safety for instance and proxies initialization
+          if (instance == null) {
+            // creating a proxy to satisfy circular dependency across several threads
+            Dependency<?> dependency =
+                Preconditions.checkNotNull(
+                    context.getDependency(), "internalContext.getDependency()");
+            Class<?> rawType = dependency.getKey().getTypeLiteral().getRawType();
+
+            try {
+              T proxy =
+                  (T) constructionContext.createProxy(context.getInjectorOptions(), rawType);
+              return proxy;
+            } catch (InternalProvisionException e) {
+              // best effort to create a rich error message
+              Message proxyCreationError = Iterables.getOnlyElement(e.getErrors());
+              Message cycleDependenciesMessage =
+                  createCycleDependenciesMessage(locksCycle, proxyCreationError);
+              // adding stack trace generated by us in addition to a standard one
               throw new ProvisionException(
-                  ImmutableList.of(createCycleDependenciesMessage(locksCycle, null)));
-            }
-            // potential deadlock detected, creation lock is not taken by this thread
-            synchronized (constructionContext) {
-              // guarantee thread-safety for instance and proxies initialization
-              if (instance == null) {
-                // creating a proxy to satisfy circular dependency across several threads
-                Dependency<?> dependency =
-                    Preconditions.checkNotNull(
-                        context.getDependency(), "internalContext.getDependency()");
-                Class<?> rawType = dependency.getKey().getTypeLiteral().getRawType();
-
-                try {
-                  @SuppressWarnings("unchecked")
-                  T proxy =
-                      (T) constructionContext.createProxy(context.getInjectorOptions(), rawType);
-                  return proxy;
-                } catch (InternalProvisionException e) {
-                  // best effort to create a rich error message
-                  Message proxyCreationError = Iterables.getOnlyElement(e.getErrors());
-                  Message cycleDependenciesMessage =
-                      createCycleDependenciesMessage(locksCycle, proxyCreationError);
-                  // adding stack trace generated by us in addition to a standard one
-                  throw new ProvisionException(
-                      ImmutableList.of(cycleDependenciesMessage, proxyCreationError));
-                }
-              }
+                  ImmutableList.of(cycleDependenciesMessage, proxyCreationError));
             }
           }
-
-          // at this point we're sure that singleton was initialized,
-          // reread volatile variable to catch all corner cases
-
-          // caching volatile variable to minimize number of reads performed
-          final Object initializedInstance = instance;
-          Preconditions.checkState(
-              initializedInstance != null,
-              "Internal error: Singleton is not initialized contrary to our expectations");
-          @SuppressWarnings("unchecked")
-          T initializedTypedInstance = (T) initializedInstance;
-          return initializedInstance == NULL ? null : initializedTypedInstance;
-        } else {
-          // singleton is already initialized and local cache can be used
-          @SuppressWarnings("unchecked")
-          T typedInitialIntance = (T) initialInstance;
-          return initialInstance == NULL ? null : typedInitialIntance;
+        } finally {
+          constructionContextLock.unlock();
         }
       }
 
-      /**
-       * Helper method to create beautiful and rich error descriptions. Best effort and slow. Tries
-       * its best to provide dependency information from injectors currently available in a global
-       * internal context.
-       *
-       * <p>The main thing being done is creating a list of Dependencies involved into lock cycle
-       * across all the threads involved. This is a structure we're creating:
-       *
-       * <pre>
-       * { Current Thread, C.class, B.class, Other Thread, B.class, C.class, Current Thread }
-       * To be inserted in the beginning by Guice: { A.class, B.class, C.class }
-       * </pre>
-       *
-       * When we're calling Guice to create A and it fails in the deadlock while trying to create C,
-       * which is being created by another thread, which waits for B. List would be reversed before
-       * printing it to the end user.
-       */
-      private Message createCycleDependenciesMessage(
-          ListMultimap<Thread, Key<?>> locksCycle, @Nullable Message proxyCreationError) {
-        // this is the main thing that we'll show in an error message,
-        // current thread is populate by Guice
-        StringBuilder sb = new StringBuilder();
-        Formatter fmt = new Formatter(sb);
-        fmt.format("Encountered circular dependency spanning several threads.");
-        if (proxyCreationError != null) {
-          fmt.format(" %s", proxyCreationError.getMessage());
+      // at this point we're sure that singleton was initialized
+      return initializedInstance();
+    }
+
+    /** Returns the instance, which must have been set. */
+    @SuppressWarnings("unchecked")
+    private T initializedInstance() {
+      // reread volatile variable to catch all corner cases
+
+      // caching volatile variable to minimize number of reads performed
+      final Object initializedInstance = instance;
+      Preconditions.checkState(
+          initializedInstance != null,
+          "Internal error: Singleton is not initialized contrary to our expectations");
+      T initializedTypedInstance = (T) initializedInstance;
+      return initializedInstance == NULL ? null : initializedTypedInstance;
+    }
+
+    /**
+     * Helper method to create beautiful and rich error descriptions. Best effort and slow. Tries
+     * its best to provide dependency information from injectors currently available in a global
+     * internal context.
+     *
+     * <p>The main thing being done is creating a list of Dependencies involved into lock cycle
+     * across all the threads involved. This is a structure we're creating:
+     *
+     * <pre>
+     * { Current Thread, C.class, B.class, Other Thread, B.class, C.class, Current Thread }
+     * To be inserted in the beginning by Guice: { A.class, B.class, C.class }
+     * </pre>
+     *
+     * When we're calling Guice to create A and it fails in the deadlock while trying to create C,
+     * which is being created by another thread, which waits for B. List would be reversed before
+     * printing it to the end user.
+     */
+    private Message createCycleDependenciesMessage(
+        ListMultimap<Thread, Key<?>> locksCycle, @Nullable Message proxyCreationError) {
+      // this is the main thing that we'll show in an error message,
+      // current thread is populate by Guice
+      StringBuilder sb = new StringBuilder();
+      Formatter fmt = new Formatter(sb);
+      fmt.format("Encountered circular dependency spanning several threads.");
+      if (proxyCreationError != null) {
+        fmt.format(" %s", proxyCreationError.getMessage());
+      }
+      fmt.format("%n");
+      for (Thread lockedThread : locksCycle.keySet()) {
+        List<Key<?>> lockedKeys = locksCycle.get(lockedThread);
+        fmt.format("%s is holding locks the following singletons in the cycle:%n", lockedThread);
+        for (Key<?> lockedKey : lockedKeys) {
+          fmt.format("%s%n", Errors.convert(lockedKey));
         }
-        fmt.format("%n");
-        for (Thread lockedThread : locksCycle.keySet()) {
-          List<Key<?>> lockedKeys = locksCycle.get(lockedThread);
-          fmt.format("%s is holding locks the following singletons in the cycle:%n", lockedThread);
-          for (Key<?> lockedKey : lockedKeys) {
-            fmt.format("%s%n", Errors.convert(lockedKey));
-          }
-          for (StackTraceElement traceElement : lockedThread.getStackTrace()) {
-            fmt.format("\tat %s%n", traceElement);
-          }
+        for (StackTraceElement traceElement : lockedThread.getStackTrace()) {
+          fmt.format("\tat %s%n", traceElement);
         }
-        fmt.close();
-        return new Message(Thread.currentThread(), sb.toString());
       }
+      fmt.close();
+      return new Message(Thread.currentThread(), sb.toString());
+    }
+
+    @Override
+    public String toString() {
+      final Creation<T> currentCreation = creation;
+      if (currentCreation != null) {
+        return String.format("%s[%s]", currentCreation.creator, Scopes.SINGLETON);
+      }
+      final Object initializedInstance = instance;
+      return String.format(
+          "%s[%s]",
+          initializedInstance == NULL ? "null" : initializedInstance.getClass().getName(),
+          Scopes.SINGLETON);
+    }
+  }
+
+  /**
+   * An initialized singleton instance in a final field. Callers that provision the same singleton
+   * repeatedly keep one of these in a plain field: the final field makes that safe without a
+   * volatile read, and lets the JIT hoist the instance out of loops like a constant.
+   */
+  static final class Initialized<T> {
+    final T instance;
+
+    Initialized(T instance) {
+      this.instance = instance;
+    }
+  }
+
+  /** The state a {@link SingletonProvider} needs until its instance is created. */
+  private static final class Creation<T> {
+    /**
+     * Circular proxies are used when potential deadlocks are detected. Guarded by {@link
+     * #constructionContextLock}. ConstructionContext is not thread-safe, so each call should be
+     * synchronized.
+     *
+     * <p>Locking strategy: manipulations with proxies list or instance initialization.
+     */
+    final ConstructionContext<T> constructionContext = new ConstructionContext<>();
+
+    /**
+     * Guards {@link #constructionContext}. This is a {@link ReentrantLock} rather than a monitor so
+     * that threads waiting for it don't pin the carrier thread when running on virtual threads.
+     */
+    final Lock constructionContextLock = new ReentrantLock();
+
+    /**
+     * For each binding there is a separate lock that we hold during object creation.
+     *
+     * <p>Locking strategy: singleton instance creation.
+     *
+     * <ul>
+     *   <li>allows to guarantee only one instance per singleton,
+     *   <li>special type of a lock, that prevents potential deadlocks,
+     *   <li>guards constructionContext for all operations except proxy creation
+     * </ul>
+     */
+    final CycleDetectingLock<Key<?>> creationLock;
+
+    /**
+     * The singleton provider needs a reference back to the injector, in order to get ahold of
+     * InternalContext during instantiation.
+     */
+    final @Nullable InjectorImpl injector;
+
+    /** Creates the singleton instance; called no more than once successfully. */
+    final Provider<T> creator;
+
+    /** Records the time spent waiting for the creation lock, null unless metrics are enabled. */
+    final @Nullable ProvisionStatisticsImpl statistics;
 
-      @Override
-      public String toString() {
-        return String.format("%s[%s]", creator, Scopes.SINGLETON);
+    Creation(Key<T> key, Provider<T> creator) {
+      this.creator = creator;
+      // If we are getting called by Scoping
+      if (creator instanceof ProviderToInternalFactoryAdapter) {
+        injector = ((ProviderToInternalFactoryAdapter) creator).getInjector();
+      } else {
+        injector = null;
       }
-    };
+      this.creationLock =
+          (injector != null ? injector.singletonLockFactory : cycleDetectingLockFactory)
+              .create(key);
+      statistics = injector != null ? injector.provisionMetrics.statisticsFor(key) : null;
+    }
   }
 
   @Override
@@ -25,6 +25,7 @@ import static page.foliage.inject.internal.aop.ClassDefining.hasPackageAccess;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -111,6 +112,16 @@ public final class ClassBuilding {
     return new EnhancerBuilderImpl(hostClass, enhanceableMethods.values(), bridgeDelegates);
   }
 
+  /** Builder of construction graphs that provision trees of constructor calls in one pass. */
+  public static BytecodeGen.ConstructionGraphBuilder buildConstructionGraph(Class<?> hostClass) {
+    return new ConstructionGraph(hostClass);
+  }
+
+  /** Builder of fast members-injectors for the given class. */
+  public static BytecodeGen.MembersInjectorBuilder buildMembersInjector(Class<?> hostClass) {
+    return new FastMembersInjector(hostClass);
+  }
+
   /**
    * Methods are partitioned by name and parameter count. This helps focus the search for bridge
    * delegates that involve type-erasure of generic parameter types, since the parameter count will
@@ -295,6 +306,45 @@ public final class ClassBuilding {
     }
   }
 
+  /** Can glue defined alongside the host class resolve and access the given type? */
+  static boolean canAccessFrom(Class<?> hostClass, Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    ClassLoader hostLoader = hostClass.getClassLoader();
+    if (type.getClassLoader() != hostLoader) {
+      try {
+        if (Class.forName(type.getName(), false, hostLoader) != type) {
+          return false;
+        }
+      } catch (ClassNotFoundException | LinkageError e) {
+        return false;
+      }
+    }
+    return (type.getModifiers() & PUBLIC) != 0 || inSamePackage(hostClass, type);
+  }
+
+  /** Can glue defined alongside the host class access the given member directly? */
+  static boolean canAccessFrom(Class<?> hostClass, Member member) {
+    int modifiers = member.getModifiers();
+    Class<?> declaringClass = member.getDeclaringClass();
+    if ((modifiers & PRIVATE) != 0
+        || ((modifiers & PUBLIC) == 0 && !inSamePackage(hostClass, declaringClass))) {
+      return false;
+    }
+    return canAccessFrom(hostClass, declaringClass);
+  }
+
+  /** Is the given type in the same runtime package as glue defined alongside the host class? */
+  private static boolean inSamePackage(Class<?> hostClass, Class<?> type) {
+    return hasPackageAccess()
+        && type.getClassLoader() == hostClass.getClassLoader()
+        && packageName(type.getName()).equals(packageName(hostClass.getName()));
+  }
+
   /** Can we access this member from a subclass which may be in the same package? */
   private static boolean canAccess(Executable member, boolean samePackage) {
     int modifiers = member.getModifiers();
@@ -18,6 +18,7 @@ package page.foliage.inject.internal.aop;
 
 import java.util.logging.Logger;
 
+import page.foliage.inject.internal.InjectorCreationRecorder;
 import page.foliage.inject.internal.InternalFlags;
 import page.foliage.inject.internal.InternalFlags.CustomClassLoadingOption;
 
@@ -42,7 +43,9 @@ public final class ClassDefining {
 
   /** Defines a new class relative to the host. */
   public static Class<?> define(Class<?> hostClass, byte[] bytecode) throws Exception {
-    return ClassDefinerHolder.INSTANCE.define(hostClass, bytecode);
+    Class<?> definedClass = ClassDefinerHolder.INSTANCE.define(hostClass, bytecode);
+    InjectorCreationRecorder.countGeneratedClass();
+    return definedClass;
   }
 
   /** Returns true if the current class definer allows access to package-private members. */
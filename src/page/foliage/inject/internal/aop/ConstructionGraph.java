@@ -0,0 +1,322 @@
+package page.foliage.inject.internal.aop;
+
+import static java.lang.reflect.Modifier.FINAL;
+import static java.lang.reflect.Modifier.PRIVATE;
+import static java.lang.reflect.Modifier.PUBLIC;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F_FULL;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+import static page.foliage.inject.internal.BytecodeGen.GRAPH_BY_GUICE_MARKER;
+import static page.foliage.inject.internal.aop.BytecodeTasks.pushInteger;
+import static page.foliage.inject.internal.aop.BytecodeTasks.unbox;
+import static page.foliage.inject.internal.aop.ClassBuilding.canAccessFrom;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import page.foliage.inject.internal.BytecodeGen;
+
+/**
+ * Generates construction graphs.
+ *
+ * <p>A construction graph provisions a tree of constructor calls in one pass. Each constructor is
+ * invoked directly, its arguments being either nested constructor calls or values returned by leaf
+ * functions. Leaf functions accept the context object passed to the graph and return the argument.
+ *
+ * <p>When a constructor throws, or a leaf value can't be cast to its parameter type, the error
+ * function is called with the index of that constructor and the exception. The exception returned
+ * by the error function is then thrown from the graph. Exceptions thrown by leaf functions are not
+ * passed to the error function, they propagate unchanged.
+ *
+ * <p>Construction graphs have the following pseudo-Java structure:
+ *
+ * <pre>
+ * public final class HostClass$$GraphByGuice
+ *   implements Function // each graph instance provisions one tree
+ * {
+ *   private final Function[] leaves;
+ *   private final BiFunction onError;
+ *
+ *   public HostClass$$GraphByGuice(Function[] leaves, BiFunction onError) {
+ *     this.leaves = leaves;
+ *     this.onError = onError;
+ *   }
+ *
+ *   public Object apply(Object context) {
+ *     return new HostClass(
+ *         new Dependency((Argument) leaves[0].apply(context)),
+ *         (OtherArgument) leaves[1].apply(context));
+ *   }
+ * }
+ * </pre>
+ */
+final class ConstructionGraph implements BytecodeGen.ConstructionGraphBuilder {
+
+  private static final String GENERATED_SOURCE = "<generated>";
+
+  private static final String[] CONSTRUCTION_GRAPH_API = {"java/util/function/Function"};
+
+  private static final String FUNCTION_TYPE = "java/util/function/Function";
+
+  private static final String BI_FUNCTION_TYPE = "java/util/function/BiFunction";
+
+  private static final String LEAVES_NAME = "leaves";
+
+  private static final String LEAVES_DESCRIPTOR = "[Ljava/util/function/Function;";
+
+  private static final String ON_ERROR_NAME = "onError";
+
+  private static final String ON_ERROR_DESCRIPTOR = "Ljava/util/function/BiFunction;";
+
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+
+  private final Class<?> hostClass;
+
+  private final String proxyName;
+
+  /** Constructors in the graph, by node index. */
+  private final List<Constructor<?>> constructors = new ArrayList<>();
+
+  /** Pre-order listing of the graph: constructor indices, and complemented leaf indices. */
+  private final List<Integer> entries = new ArrayList<>();
+
+  private int leafCount;
+
+  ConstructionGraph(Class<?> hostClass) {
+    this.hostClass = hostClass;
+    this.proxyName =
+        Type.getInternalName(hostClass) + GRAPH_BY_GUICE_MARKER + COUNTER.getAndIncrement();
+  }
+
+  @Override
+  public boolean canConstruct(Constructor<?> constructor) {
+    if (hostClass.getClassLoader() == null) {
+      return false; // can't define glue alongside bootstrap types
+    }
+    if (!canAccessFrom(hostClass, constructor)) {
+      return false;
+    }
+    for (Class<?> type : constructor.getParameterTypes()) {
+      if (!canAccessFrom(hostClass, type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int addConstructor(Constructor<?> constructor) {
+    int nodeIndex = constructors.size();
+    constructors.add(constructor);
+    entries.add(nodeIndex);
+    return nodeIndex;
+  }
+
+  @Override
+  public int addLeaf() {
+    int leafIndex = leafCount++;
+    entries.add(~leafIndex);
+    return leafIndex;
+  }
+
+  @Override
+  public Function<Object, Object> build(
+      Function<Object, Object>[] leaves, BiFunction<Object, Object, Object> onError) {
+    if (leaves.length != leafCount) {
+      throw new IllegalArgumentException(
+          "Expected " + leafCount + " leaves, but got " + leaves.length);
+    }
+    try {
+      byte[] bytecode = generateGlue();
+      Class<?> glueClass = ClassDefining.define(hostClass, bytecode);
+      @SuppressWarnings("unchecked")
+      Function<Object, Object> graph =
+          (Function<Object, Object>)
+              glueClass
+                  .getConstructor(Function[].class, BiFunction.class)
+                  .newInstance(leaves, onError);
+      return graph;
+    } catch (Throwable e) {
+      throw new GlueException("Problem generating " + proxyName, e);
+    }
+  }
+
+  /** Generates the construction graph bytecode. */
+  private byte[] generateGlue() {
+    ClassWriter cw = new ClassWriter(COMPUTE_MAXS);
+    MethodVisitor mv;
+
+    // target Java8 because that's all we need for the generated graph code
+    cw.visit(
+        V1_8,
+        PUBLIC | FINAL | ACC_SUPER,
+        proxyName,
+        null,
+        "java/lang/Object",
+        CONSTRUCTION_GRAPH_API);
+    cw.visitSource(GENERATED_SOURCE, null);
+
+    cw.visitField(PRIVATE | FINAL, LEAVES_NAME, LEAVES_DESCRIPTOR, null, null).visitEnd();
+    cw.visitField(PRIVATE | FINAL, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR, null, null).visitEnd();
+
+    // graph constructor that binds the leaf functions and error function
+    mv =
+        cw.visitMethod(
+            PUBLIC, "<init>", "(" + LEAVES_DESCRIPTOR + ON_ERROR_DESCRIPTOR + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitFieldInsn(PUTFIELD, proxyName, LEAVES_NAME, LEAVES_DESCRIPTOR);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitFieldInsn(PUTFIELD, proxyName, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(PUBLIC, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+    mv.visitCode();
+
+    // exception ranges must be declared up-front: one range for each leaf argument that needs a
+    // cast, plus one around the constructor call, all sharing the constructor's error handler
+    Label[] handlers = new Label[constructors.size()];
+    List<List<Label[]>> guardedRanges = new ArrayList<>();
+    for (int i = 0; i < handlers.length; i++) {
+      handlers[i] = new Label();
+      guardedRanges.add(new ArrayList<>());
+    }
+    declareGuardedRanges(mv, 0, handlers, guardedRanges);
+
+    generateConstruction(mv, 0, guardedRanges, new int[handlers.length]);
+    mv.visitInsn(ARETURN);
+
+    Object[] handlerLocals = {proxyName, "java/lang/Object"};
+    Object[] handlerStack = {"java/lang/Throwable"};
+    for (int i = 0; i < handlers.length; i++) {
+      mv.visitLabel(handlers[i]);
+      mv.visitFrame(F_FULL, handlerLocals.length, handlerLocals, 1, handlerStack);
+      // ask the error function which exception to throw for this constructor
+      mv.visitVarInsn(ASTORE, 2);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, proxyName, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR);
+      pushInteger(mv, i);
+      mv.visitMethodInsn(
+          INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitMethodInsn(
+          INVOKEINTERFACE,
+          BI_FUNCTION_TYPE,
+          "apply",
+          "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+          true);
+      mv.visitTypeInsn(CHECKCAST, "java/lang/Throwable");
+      mv.visitInsn(ATHROW);
+    }
+
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Declares the guarded ranges for the node at the given entry; returns the next entry. */
+  private int declareGuardedRanges(
+      MethodVisitor mv, int entry, Label[] handlers, List<List<Label[]>> guardedRanges) {
+    int nodeIndex = entries.get(entry++);
+    for (Class<?> parameterType : constructors.get(nodeIndex).getParameterTypes()) {
+      if (entries.get(entry) >= 0) {
+        entry = declareGuardedRanges(mv, entry, handlers, guardedRanges);
+      } else {
+        entry++;
+        if (parameterType != Object.class) {
+          guardedRanges.get(nodeIndex).add(declareRange(mv, handlers[nodeIndex]));
+        }
+      }
+    }
+    guardedRanges.get(nodeIndex).add(declareRange(mv, handlers[nodeIndex]));
+    return entry;
+  }
+
+  private static Label[] declareRange(MethodVisitor mv, Label handler) {
+    Label[] range = {new Label(), new Label()};
+    mv.visitTryCatchBlock(range[0], range[1], handler, "java/lang/Throwable");
+    return range;
+  }
+
+  /** Generates the node at the given entry, leaving the result on the stack; returns next entry. */
+  private int generateConstruction(
+      MethodVisitor mv, int entry, List<List<Label[]>> guardedRanges, int[] rangeCursors) {
+    int nodeIndex = entries.get(entry++);
+    Constructor<?> constructor = constructors.get(nodeIndex);
+    List<Label[]> ranges = guardedRanges.get(nodeIndex);
+    String owner = Type.getInternalName(constructor.getDeclaringClass());
+
+    mv.visitTypeInsn(NEW, owner);
+    mv.visitInsn(DUP);
+
+    for (Class<?> parameterType : constructor.getParameterTypes()) {
+      int argument = entries.get(entry);
+      if (argument >= 0) {
+        entry = generateConstruction(mv, entry, guardedRanges, rangeCursors);
+      } else {
+        entry++;
+        // leaf function accepts the context object passed to the graph
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, proxyName, LEAVES_NAME, LEAVES_DESCRIPTOR);
+        pushInteger(mv, ~argument);
+        mv.visitInsn(AALOAD);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(
+            INVOKEINTERFACE,
+            FUNCTION_TYPE,
+            "apply",
+            "(Ljava/lang/Object;)Ljava/lang/Object;",
+            true);
+        if (parameterType != Object.class) {
+          Label[] range = ranges.get(rangeCursors[nodeIndex]++);
+          mv.visitLabel(range[0]);
+          if (parameterType.isPrimitive()) {
+            unbox(mv, Type.getType(parameterType));
+          } else {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(parameterType));
+          }
+          mv.visitLabel(range[1]);
+        }
+      }
+    }
+
+    Label[] range = ranges.get(rangeCursors[nodeIndex]++);
+    mv.visitLabel(range[0]);
+    mv.visitMethodInsn(
+        INVOKESPECIAL, owner, "<init>", Type.getConstructorDescriptor(constructor), false);
+    mv.visitLabel(range[1]);
+    return entry;
+  }
+}
@@ -0,0 +1,367 @@
+package page.foliage.inject.internal.aop;
+
+import static java.lang.reflect.Modifier.FINAL;
+import static java.lang.reflect.Modifier.PRIVATE;
+import static java.lang.reflect.Modifier.PUBLIC;
+import static java.lang.reflect.Modifier.STATIC;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.F_FULL;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+import static page.foliage.inject.internal.BytecodeGen.MEMBERS_INJECTOR_BY_GUICE_MARKER;
+import static page.foliage.inject.internal.aop.BytecodeTasks.pushInteger;
+import static page.foliage.inject.internal.aop.BytecodeTasks.unbox;
+import static page.foliage.inject.internal.aop.ClassBuilding.canAccessFrom;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import page.foliage.inject.internal.BytecodeGen;
+
+/**
+ * Generates fast members-injectors.
+ *
+ * <p>A fast members-injector injects all members of an instance in one straight-line method. Each
+ * injected field is assigned directly and each injected method is called directly, with the values
+ * returned by leaf functions. Leaf functions accept a context object and the instance being
+ * injected. Members that can't be accessed from generated code are injected by a step function
+ * instead, which accepts the same arguments and whose result is ignored.
+ *
+ * <p>When an injected method throws, or one of its arguments can't be cast to its parameter type,
+ * the error function is called with the index of that member and the exception. The exception
+ * returned by the error function is then thrown from the members-injector. Exceptions thrown by
+ * leaf and step functions are not passed to the error function, they propagate unchanged. Leaf
+ * functions for fields must only return values that can be assigned to the field.
+ *
+ * <p>Fast members-injectors have the following pseudo-Java structure:
+ *
+ * <pre>
+ * public final class HostClass$$MembersInjectorByGuice
+ *   implements BiFunction // each instance injects the members of one host type
+ * {
+ *   private final BiFunction[] leaves;
+ *   private final BiFunction onError;
+ *
+ *   public HostClass$$MembersInjectorByGuice(BiFunction[] leaves, BiFunction onError) {
+ *     this.leaves = leaves;
+ *     this.onError = onError;
+ *   }
+ *
+ *   public Object apply(Object instance, Object context) {
+ *     HostClass target = (HostClass) instance;
+ *     target.field = (FieldType) leaves[0].apply(context, instance);
+ *     leaves[1].apply(context, instance); // step
+ *     target.method((Argument) leaves[2].apply(context, instance));
+ *     return null;
+ *   }
+ * }
+ * </pre>
+ */
+final class FastMembersInjector implements BytecodeGen.MembersInjectorBuilder {
+
+  private static final String GENERATED_SOURCE = "<generated>";
+
+  private static final String[] MEMBERS_INJECTOR_API = {"java/util/function/BiFunction"};
+
+  private static final String BI_FUNCTION_TYPE = "java/util/function/BiFunction";
+
+  private static final String BI_FUNCTION_DESCRIPTOR =
+      "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+
+  private static final String LEAVES_NAME = "leaves";
+
+  private static final String LEAVES_DESCRIPTOR = "[Ljava/util/function/BiFunction;";
+
+  private static final String ON_ERROR_NAME = "onError";
+
+  private static final String ON_ERROR_DESCRIPTOR = "Ljava/util/function/BiFunction;";
+
+  /** Local variable holding the instance after it has been cast to the host type. */
+  private static final int TARGET_SLOT = 3;
+
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+
+  private final Class<?> hostClass;
+
+  private final String hostName;
+
+  private final String proxyName;
+
+  /** Injected members in order, {@code null} entries are steps. */
+  private final List<Member> members = new ArrayList<>();
+
+  private int leafCount;
+
+  FastMembersInjector(Class<?> hostClass) {
+    this.hostClass = hostClass;
+    this.hostName = Type.getInternalName(hostClass);
+    this.proxyName = hostName + MEMBERS_INJECTOR_BY_GUICE_MARKER + COUNTER.getAndIncrement();
+  }
+
+  @Override
+  public boolean canInject(Member member) {
+    if (hostClass.getClassLoader() == null) {
+      return false; // can't define glue alongside bootstrap types
+    }
+    if ((member.getModifiers() & STATIC) != 0
+        || !canAccessFrom(hostClass, hostClass)
+        || !canAccessFrom(hostClass, member)) {
+      return false;
+    }
+    if (member instanceof Field) {
+      // generated code can't assign final fields, unlike reflection
+      return (member.getModifiers() & FINAL) == 0
+          && canAccessFrom(hostClass, ((Field) member).getType());
+    }
+    if (member.getDeclaringClass().isInterface()) {
+      return false; // default methods need a different invocation
+    }
+    for (Class<?> type : ((Method) member).getParameterTypes()) {
+      if (!canAccessFrom(hostClass, type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int addField(Field field) {
+    members.add(field);
+    return leafCount++;
+  }
+
+  @Override
+  public int addMethod(Method method) {
+    members.add(method);
+    int firstLeaf = leafCount;
+    leafCount += method.getParameterCount();
+    return firstLeaf;
+  }
+
+  @Override
+  public int addStep() {
+    members.add(null);
+    return leafCount++;
+  }
+
+  @Override
+  public BiFunction<Object, Object, Object> build(
+      BiFunction<Object, Object, Object>[] leaves, BiFunction<Object, Object, Object> onError) {
+    if (leaves.length != leafCount) {
+      throw new IllegalArgumentException(
+          "Expected " + leafCount + " leaves, but got " + leaves.length);
+    }
+    try {
+      byte[] bytecode = generateGlue();
+      Class<?> glueClass = ClassDefining.define(hostClass, bytecode);
+      @SuppressWarnings("unchecked")
+      BiFunction<Object, Object, Object> membersInjector =
+          (BiFunction<Object, Object, Object>)
+              glueClass
+                  .getConstructor(BiFunction[].class, BiFunction.class)
+                  .newInstance(leaves, onError);
+      return membersInjector;
+    } catch (Throwable e) {
+      throw new GlueException("Problem generating " + proxyName, e);
+    }
+  }
+
+  /** Generates the members-injector bytecode. */
+  private byte[] generateGlue() {
+    ClassWriter cw = new ClassWriter(COMPUTE_MAXS);
+    MethodVisitor mv;
+
+    // target Java8 because that's all we need for the generated injector code
+    cw.visit(
+        V1_8,
+        PUBLIC | FINAL | ACC_SUPER,
+        proxyName,
+        null,
+        "java/lang/Object",
+        MEMBERS_INJECTOR_API);
+    cw.visitSource(GENERATED_SOURCE, null);
+
+    cw.visitField(PRIVATE | FINAL, LEAVES_NAME, LEAVES_DESCRIPTOR, null, null).visitEnd();
+    cw.visitField(PRIVATE | FINAL, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR, null, null).visitEnd();
+
+    // members-injector constructor that binds the leaf functions and error function
+    mv =
+        cw.visitMethod(
+            PUBLIC, "<init>", "(" + LEAVES_DESCRIPTOR + ON_ERROR_DESCRIPTOR + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitFieldInsn(PUTFIELD, proxyName, LEAVES_NAME, LEAVES_DESCRIPTOR);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitFieldInsn(PUTFIELD, proxyName, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(PUBLIC, "apply", BI_FUNCTION_DESCRIPTOR, null, null);
+    mv.visitCode();
+
+    // exception ranges must be declared up-front: each injected method guards the casts of its
+    // arguments and the call itself, sharing the method's error handler
+    Label[] handlers = new Label[members.size()];
+    List<List<Label[]>> guardedRanges = new ArrayList<>();
+    for (int i = 0; i < handlers.length; i++) {
+      List<Label[]> ranges = new ArrayList<>();
+      if (members.get(i) instanceof Method) {
+        handlers[i] = new Label();
+        for (Class<?> parameterType : ((Method) members.get(i)).getParameterTypes()) {
+          if (parameterType != Object.class) {
+            ranges.add(declareRange(mv, handlers[i]));
+          }
+        }
+        ranges.add(declareRange(mv, handlers[i]));
+      }
+      guardedRanges.add(ranges);
+    }
+
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitTypeInsn(CHECKCAST, hostName);
+    mv.visitVarInsn(ASTORE, TARGET_SLOT);
+
+    int leafIndex = 0;
+    for (int i = 0; i < handlers.length; i++) {
+      Member member = members.get(i);
+      if (member instanceof Field) {
+        Field field = (Field) member;
+        mv.visitVarInsn(ALOAD, TARGET_SLOT);
+        loadLeaf(mv, leafIndex++);
+        // leaf functions for fields have already checked the value, so this cast always succeeds
+        cast(mv, field.getType());
+        mv.visitFieldInsn(
+            PUTFIELD,
+            Type.getInternalName(field.getDeclaringClass()),
+            field.getName(),
+            Type.getDescriptor(field.getType()));
+      } else if (member instanceof Method) {
+        leafIndex = generateMethodCall(mv, (Method) member, leafIndex, guardedRanges.get(i));
+      } else {
+        loadLeaf(mv, leafIndex++);
+        mv.visitInsn(POP);
+      }
+    }
+
+    mv.visitInsn(ACONST_NULL);
+    mv.visitInsn(ARETURN);
+
+    Object[] handlerLocals = {proxyName, "java/lang/Object", "java/lang/Object", hostName};
+    Object[] handlerStack = {"java/lang/Throwable"};
+    for (int i = 0; i < handlers.length; i++) {
+      if (handlers[i] == null) {
+        continue;
+      }
+      mv.visitLabel(handlers[i]);
+      mv.visitFrame(F_FULL, handlerLocals.length, handlerLocals, 1, handlerStack);
+      // ask the error function which exception to throw for this member
+      mv.visitVarInsn(ASTORE, TARGET_SLOT + 1);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, proxyName, ON_ERROR_NAME, ON_ERROR_DESCRIPTOR);
+      pushInteger(mv, i);
+      mv.visitMethodInsn(
+          INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+      mv.visitVarInsn(ALOAD, TARGET_SLOT + 1);
+      mv.visitMethodInsn(INVOKEINTERFACE, BI_FUNCTION_TYPE, "apply", BI_FUNCTION_DESCRIPTOR, true);
+      mv.visitTypeInsn(CHECKCAST, "java/lang/Throwable");
+      mv.visitInsn(ATHROW);
+    }
+
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private static Label[] declareRange(MethodVisitor mv, Label handler) {
+    Label[] range = {new Label(), new Label()};
+    mv.visitTryCatchBlock(range[0], range[1], handler, "java/lang/Throwable");
+    return range;
+  }
+
+  /** Generates a call to the injected method; returns the next leaf index. */
+  private int generateMethodCall(
+      MethodVisitor mv, Method method, int leafIndex, List<Label[]> ranges) {
+    int rangeIndex = 0;
+    mv.visitVarInsn(ALOAD, TARGET_SLOT);
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      loadLeaf(mv, leafIndex++);
+      if (parameterType != Object.class) {
+        Label[] range = ranges.get(rangeIndex++);
+        mv.visitLabel(range[0]);
+        cast(mv, parameterType);
+        mv.visitLabel(range[1]);
+      }
+    }
+
+    Label[] range = ranges.get(rangeIndex);
+    mv.visitLabel(range[0]);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        Type.getInternalName(method.getDeclaringClass()),
+        method.getName(),
+        Type.getMethodDescriptor(method),
+        false);
+    mv.visitLabel(range[1]);
+
+    // discard any result
+    int resultSize = Type.getReturnType(method).getSize();
+    if (resultSize == 1) {
+      mv.visitInsn(POP);
+    } else if (resultSize == 2) {
+      mv.visitInsn(POP2);
+    }
+    return leafIndex;
+  }
+
+  /** Calls the leaf function with the context object and instance, leaving the result on stack. */
+  private void loadLeaf(MethodVisitor mv, int leafIndex) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, proxyName, LEAVES_NAME, LEAVES_DESCRIPTOR);
+    pushInteger(mv, leafIndex);
+    mv.visitInsn(AALOAD);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitMethodInsn(INVOKEINTERFACE, BI_FUNCTION_TYPE, "apply", BI_FUNCTION_DESCRIPTOR, true);
+  }
+
+  private static void cast(MethodVisitor mv, Class<?> type) {
+    if (type.isPrimitive()) {
+      unbox(mv, Type.getType(type));
+    } else if (type != Object.class) {
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+    }
+  }
+}
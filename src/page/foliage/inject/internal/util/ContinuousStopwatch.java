@@ -16,8 +16,9 @@
 
 package page.foliage.inject.internal.util;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+import java.util.function.ObjLongConsumer;
 import java.util.logging.Logger;
 
 import javax.annotation.concurrent.NotThreadSafe;
@@ -33,6 +34,7 @@ import page.foliage.guava.common.base.Stopwatch;
 public final class ContinuousStopwatch {
   private final Logger logger = Logger.getLogger(ContinuousStopwatch.class.getName());
   private final Stopwatch stopwatch;
+  private final ObjLongConsumer<String> listener;
 
   /**
    * Constructs a ContinuousStopwatch, which will start timing immediately after construction.
@@ -40,20 +42,38 @@ public final class ContinuousStopwatch {
    * @param stopwatch the internal stopwatch used by ContinuousStopwatch
    */
   public ContinuousStopwatch(Stopwatch stopwatch) {
+    this(stopwatch, (label, elapsedTimeNanos) -> {});
+  }
+
+  /**
+   * Constructs a ContinuousStopwatch, which will start timing immediately after construction.
+   *
+   * @param stopwatch the internal stopwatch used by ContinuousStopwatch
+   * @param listener receives each label logged by {@link #resetAndLog} with the elapsed time in
+   *     nanoseconds
+   */
+  public ContinuousStopwatch(Stopwatch stopwatch, ObjLongConsumer<String> listener) {
     this.stopwatch = stopwatch;
+    this.listener = listener;
     reset();
   }
 
   /** Resets and returns elapsed time in milliseconds. */
   public long reset() {
-    long elapsedTimeMs = stopwatch.elapsed(MILLISECONDS);
+    return NANOSECONDS.toMillis(resetNanos());
+  }
+
+  private long resetNanos() {
+    long elapsedTimeNanos = stopwatch.elapsed(NANOSECONDS);
     stopwatch.reset();
     stopwatch.start();
-    return elapsedTimeMs;
+    return elapsedTimeNanos;
   }
 
   /** Resets and logs elapsed time in milliseconds. */
   public void resetAndLog(String label) {
-    logger.fine(label + ": " + reset() + "ms");
+    long elapsedTimeNanos = resetNanos();
+    listener.accept(label, elapsedTimeNanos);
+    logger.fine(label + ": " + NANOSECONDS.toMillis(elapsedTimeNanos) + "ms");
   }
 }
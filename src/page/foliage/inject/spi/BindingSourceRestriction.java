@@ -5,6 +5,7 @@ import static page.foliage.guava.common.base.Preconditions.checkNotNull;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.Formatter;
@@ -283,6 +284,8 @@ public final class BindingSourceRestriction {
     final Deque<ImmutableSet<Class<? extends Annotation>>> modulePermitsStack = new ArrayDeque<>();
 
     final PermitMapImpl permitMap = new PermitMapImpl();
+    // Maps of constructions merged into this one, finished along with it.
+    final List<PermitMapImpl> mergedPermitMaps = new ArrayList<>();
 
     /**
      * Returns a possibly unfinished map. The map should only be used after the construction is
@@ -326,9 +329,21 @@ public final class BindingSourceRestriction {
       currentModulePermits = modulePermitsStack.pop();
     }
 
+    /**
+     * Adds the permits of modules installed by another construction, whose map will be finished
+     * along with this one. Used when modules are installed by separate binders in parallel.
+     */
+    void merge(PermitMapConstruction other) {
+      modulePermits.putAll(other.modulePermits);
+      mergedPermitMaps.add(other.permitMap);
+    }
+
     /** Finishes the {@link PermitMap}. Called by the Binder when all modules are installed. */
     void finish() {
       permitMap.modulePermits = modulePermits;
+      for (PermitMapImpl mergedPermitMap : mergedPermitMaps) {
+        mergedPermitMap.modulePermits = modulePermits;
+      }
     }
 
     @VisibleForTesting
@@ -28,6 +28,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aopalliance.intercept.MethodInterceptor;
 
@@ -57,6 +66,8 @@ import page.foliage.inject.internal.ConstantBindingBuilderImpl;
 import page.foliage.inject.internal.Errors;
 import page.foliage.inject.internal.ExposureBuilder;
 import page.foliage.inject.internal.GuiceInternal;
+import page.foliage.inject.internal.InjectorCreationRecorder;
+import page.foliage.inject.internal.InternalFlags;
 import page.foliage.inject.internal.InternalFlags.IncludeStackTraceOption;
 import page.foliage.inject.internal.MoreTypes;
 import page.foliage.inject.internal.PrivateElementsImpl;
@@ -75,6 +86,32 @@ import page.foliage.inject.matcher.Matcher;
  */
 public final class Elements {
 
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  /** Threads shared by the injectors that record their modules in parallel, idle ones time out. */
+  private static final class RecordingExecutor {
+    static final ThreadPoolExecutor INSTANCE = newExecutor();
+
+    private static ThreadPoolExecutor newExecutor() {
+      int threads = Math.max(1, InternalFlags.getParallelModulesThreads());
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              threads,
+              threads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "Guice module recorder-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+
   private static final BindingTargetVisitor<Object, Object> GET_INSTANCE_VISITOR =
       new DefaultBindingTargetVisitor<Object, Object>() {
         @Override
@@ -105,9 +142,32 @@ public final class Elements {
 
   /** Records the elements executed by {@code modules}. */
   public static List<Element> getElements(Stage stage, Iterable<? extends Module> modules) {
-    RecordingBinder binder = new RecordingBinder(stage);
-    for (Module module : modules) {
-      binder.install(module);
+    return getElements(stage, modules, null);
+  }
+
+  /**
+   * Records the elements executed by {@code modules}, and the time spent configuring each module
+   * in {@code recorder}. Used when creating injectors.
+   */
+  public static List<Element> getElements(
+      GuiceInternal guiceInternal,
+      Stage stage,
+      Iterable<? extends Module> modules,
+      InjectorCreationRecorder recorder) {
+    checkNotNull(guiceInternal);
+    return getElements(stage, modules, checkNotNull(recorder));
+  }
+
+  private static List<Element> getElements(
+      Stage stage, Iterable<? extends Module> modules, InjectorCreationRecorder recorder) {
+    RecordingBinder binder = new RecordingBinder(stage, null, null, recorder);
+    List<Module> moduleList = Lists.newArrayList(modules);
+    if (InternalFlags.isParallelModulesEnabled() && moduleList.size() > 1) {
+      recordInParallel(binder, moduleList, RecordingExecutor.INSTANCE, recorder);
+    } else {
+      for (Module module : moduleList) {
+        binder.install(module);
+      }
     }
     binder.scanForAnnotatedMethods();
     for (RecordingBinder child : binder.privateBindersForScanning) {
@@ -119,6 +179,94 @@ public final class Elements {
     return Collections.unmodifiableList(binder.elements);
   }
 
+  /**
+   * Records each module with its own binder on the threads of {@code executor} and the calling
+   * thread, then merges the recordings in order. The recordings share the set of installed modules:
+   * the first to install a module claims it before configuring it, and the others skip it. When a
+   * module was claimed by a later recording than one that skipped it, its elements are moved to
+   * where the earlier recording installed it, so that the merged elements are in the order they
+   * would be in if the modules had been installed one after the other. No module is configured
+   * more than once.
+   *
+   * <p>The calling thread records the modules that no thread of the executor has started, so
+   * recording completes even if the executor's threads are all busy.
+   */
+  private static void recordInParallel(
+      RecordingBinder binder,
+      List<Module> modules,
+      Executor executor,
+      InjectorCreationRecorder recorder) {
+    StackTraceElement[] callerStackTrace = new Throwable().getStackTrace();
+    Map<Module, RecordedEvent> claims = new ConcurrentHashMap<>();
+    List<RecordingBinder> recordings = Lists.newArrayList();
+    List<FutureTask<Void>> tasks = Lists.newArrayList();
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    for (Module module : modules) {
+      RecordingBinder recording =
+          new RecordingBinder(binder.stage, callerStackTrace, claims, recorder);
+      Runnable record = () -> record(recording, module);
+      FutureTask<Void> task =
+          new FutureTask<>(recorder != null ? recorder.workingFor(record) : record, null);
+      recordings.add(recording);
+      tasks.add(task);
+      try {
+        executor.execute(() -> runWithContextClassLoader(task, contextClassLoader));
+      } catch (RejectedExecutionException e) {
+        // the calling thread records it
+      }
+    }
+    for (FutureTask<Void> task : tasks) {
+      task.run(); // unless a thread of the executor has started it
+      getUninterruptibly(task);
+    }
+    for (RecordingBinder recording : recordings) {
+      binder.merge(recording);
+    }
+  }
+
+  private static void runWithContextClassLoader(Runnable runnable, ClassLoader classLoader) {
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    thread.setContextClassLoader(classLoader);
+    try {
+      runnable.run();
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+  /** Installs a module on a recording thread. Frames above this one belong to the caller. */
+  private static void record(RecordingBinder binder, Module module) {
+    binder.install(module);
+  }
+
+  private static void getUninterruptibly(FutureTask<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // modules report their own exceptions, only errors get here
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   // TODO(user): Consider moving the RecordingBinder to page.foliage.inject.internal and removing these
   // internal 'friend' methods.
   /**
@@ -175,6 +323,66 @@ public final class Elements {
     }
   }
 
+  /**
+   * An install or scanner registration on the top-level binder of a module that is recorded in
+   * parallel, and the position of the elements and private binders recorded by then.
+   */
+  private static final class RecordedEvent {
+    /** The recording this event belongs to, and its index in the recording's events. */
+    final RecordingBinder recording;
+    final int index;
+    /** The installed module, or null for scanner registrations. */
+    final Module module;
+    /** The info of the installed module, or null if it was skipped as already claimed. */
+    ModuleInfo moduleInfo;
+    final ModuleAnnotatedMethodScanner scanner;
+    final int elementsStart;
+    final int privateBindersStart;
+    /** For installs, the first event and positions after the installed module. */
+    int nextEvent;
+    int elementsEnd;
+    int privateBindersEnd;
+
+    RecordedEvent(
+        RecordingBinder recording,
+        Module module,
+        ModuleAnnotatedMethodScanner scanner,
+        int elementsStart,
+        int privateBindersStart) {
+      this.recording = recording;
+      this.index = recording.events.size();
+      this.module = module;
+      this.scanner = scanner;
+      this.elementsStart = elementsStart;
+      this.privateBindersStart = privateBindersStart;
+    }
+  }
+
+  /** Times the modules installed by a binder, its copies and its private binders. */
+  private static final class ModuleTimer {
+    final InjectorCreationRecorder recorder;
+    /** The time spent in the modules installed by the module being installed. */
+    long nestedNanos;
+
+    ModuleTimer(InjectorCreationRecorder recorder) {
+      this.recorder = recorder;
+    }
+
+    /** Starts timing a module, returning the nested time to restore when it's done. */
+    long start() {
+      long outerNestedNanos = nestedNanos;
+      nestedNanos = 0;
+      return outerNestedNanos;
+    }
+
+    /** Records the time spent in a module, excluding the modules it installed. */
+    void stop(Class<?> moduleClass, long startNanos, long outerNestedNanos) {
+      long elapsedNanos = System.nanoTime() - startNanos;
+      recorder.recordModule(moduleClass, elapsedNanos - nestedNanos);
+      nestedNanos = outerNestedNanos + elapsedNanos;
+    }
+  }
+
   private static class RecordingBinder implements Binder, PrivateBinder {
     private final Stage stage;
     private final Map<Module, ModuleInfo> modules;
@@ -191,6 +399,21 @@ public final class Elements {
 
     private final BindingSourceRestriction.PermitMapConstruction permitMapConstruction;
 
+    /**
+     * The stack trace of the thread that started recording in parallel, or null if modules are
+     * recorded by the calling thread.
+     */
+    private final StackTraceElement[] callerStackTrace;
+    /** Events on the top-level binder when recording in parallel, null otherwise. */
+    private final List<RecordedEvent> events;
+    /**
+     * The installs that claimed each module, shared by the top-level binders recording in parallel,
+     * null otherwise.
+     */
+    private final Map<Module, RecordedEvent> claims;
+    /** Times modules when creating an injector, null otherwise. */
+    private final ModuleTimer moduleTimer;
+
     /** The current modules stack */
     private ModuleSource moduleSource = null;
     /**
@@ -205,7 +428,11 @@ public final class Elements {
     private ModuleAnnotatedMethodScanner currentScanner = null;
     private boolean trustedSource = false;
 
-    private RecordingBinder(Stage stage) {
+    private RecordingBinder(
+        Stage stage,
+        StackTraceElement[] callerStackTrace,
+        Map<Module, RecordedEvent> claims,
+        InjectorCreationRecorder recorder) {
       this.stage = stage;
       this.modules = Maps.newLinkedHashMap();
       this.scanners = Sets.newLinkedHashSet();
@@ -223,6 +450,10 @@ public final class Elements {
       this.privateElements = null;
       this.privateBindersForScanning = Lists.newArrayList();
       this.permitMapConstruction = new BindingSourceRestriction.PermitMapConstruction();
+      this.callerStackTrace = callerStackTrace;
+      this.events = callerStackTrace != null ? Lists.newArrayList() : null;
+      this.claims = claims;
+      this.moduleTimer = recorder != null ? new ModuleTimer(recorder) : null;
     }
 
     /** Creates a recording binder that's backed by {@code prototype}. */
@@ -247,6 +478,10 @@ public final class Elements {
       this.privateBindersForScanning = prototype.privateBindersForScanning;
       this.permitMapConstruction = prototype.permitMapConstruction;
       this.scannerSource = prototype.scannerSource;
+      this.callerStackTrace = prototype.callerStackTrace;
+      this.events = prototype.events;
+      this.claims = prototype.claims;
+      this.moduleTimer = prototype.moduleTimer;
     }
 
     /** Creates a private recording binder. */
@@ -264,6 +499,10 @@ public final class Elements {
       this.privateBindersForScanning = parent.privateBindersForScanning;
       this.permitMapConstruction = parent.permitMapConstruction;
       this.scannerSource = parent.scannerSource;
+      this.callerStackTrace = parent.callerStackTrace;
+      this.events = null; // private binders have their own module set
+      this.claims = null;
+      this.moduleTimer = parent.moduleTimer;
     }
 
     @Override
@@ -363,10 +602,23 @@ public final class Elements {
 
     @Override
     public void install(Module module) {
-      // Ignore duplicate installations of the same module instance.
-      if (modules.containsKey(module)) {
+      RecordedEvent event =
+          events != null
+              ? new RecordedEvent(
+                  this, module, null, elements.size(), privateBindersForScanning.size())
+              : null;
+      if (event != null) {
+        events.add(event);
+      }
+      // Ignore duplicate installations of the same module instance, including those claimed by
+      // another top-level binder.
+      boolean installed =
+          claims != null ? claims.putIfAbsent(module, event) != null : modules.containsKey(module);
+      if (installed) {
         return;
       }
+      long startNanos = moduleTimer != null ? System.nanoTime() : 0;
+      long outerNestedNanos = moduleTimer != null ? moduleTimer.start() : 0;
       // Whether the module installed is a ProviderMethodModule for a custom scanner.
       boolean customScanner = false;
       Class<?> newModuleClass = null;
@@ -406,7 +658,8 @@ public final class Elements {
       }
       // Always store this in the parent binder (even if it was a private module)
       // so that we know not to process it again, and so that scanners inherit down.
-      modules.put(module, new ModuleInfo(moduleSource, skipScanning));
+      ModuleInfo moduleInfo = new ModuleInfo(moduleSource, skipScanning);
+      modules.put(module, moduleInfo);
       try {
         module.configure(binder);
       } catch (RuntimeException e) {
@@ -430,6 +683,90 @@ public final class Elements {
       if (customScanner) {
         scannerSource = null;
       }
+      if (moduleTimer != null) {
+        Class<?> moduleClass =
+            module instanceof ProviderMethodsModule
+                ? ((ProviderMethodsModule) module).getDelegateModuleClass()
+                : module.getClass();
+        moduleTimer.stop(moduleClass, startNanos, outerNestedNanos);
+      }
+      if (event != null) {
+        event.moduleInfo = moduleInfo;
+        event.nextEvent = events.size();
+        event.elementsEnd = elements.size();
+        event.privateBindersEnd = privateBindersForScanning.size();
+      }
+    }
+
+    /**
+     * Merges the top-level modules, elements, private binders and scanners recorded in parallel by
+     * {@code recording}, skipping the modules that this binder already merged. The modules that
+     * {@code recording} skipped because another recording claimed them are merged from that
+     * recording in their place.
+     */
+    void merge(RecordingBinder recording) {
+      mergeEvents(
+          recording,
+          0,
+          recording.events.size(),
+          0,
+          recording.elements.size(),
+          0,
+          recording.privateBindersForScanning.size());
+      permitMapConstruction.merge(recording.permitMapConstruction);
+    }
+
+    /**
+     * Merges the events of {@code recording} from {@code firstEvent} until {@code endEvent}, and
+     * the elements and private binders between them within the given positions.
+     */
+    private void mergeEvents(
+        RecordingBinder recording,
+        int firstEvent,
+        int endEvent,
+        int elementsStart,
+        int elementsEnd,
+        int privateBindersStart,
+        int privateBindersEnd) {
+      int elementsCopied = elementsStart;
+      int privateBindersCopied = privateBindersStart;
+      for (int i = firstEvent; i < endEvent; ) {
+        RecordedEvent event = recording.events.get(i);
+        elements.addAll(recording.elements.subList(elementsCopied, event.elementsStart));
+        privateBindersForScanning.addAll(
+            recording.privateBindersForScanning.subList(
+                privateBindersCopied, event.privateBindersStart));
+        elementsCopied = event.elementsStart;
+        privateBindersCopied = event.privateBindersStart;
+        if (event.scanner != null) {
+          scanners.add(event.scanner);
+          i++;
+          continue;
+        }
+        if (!modules.containsKey(event.module)) {
+          RecordedEvent install =
+              event.moduleInfo != null ? event : event.recording.claims.get(event.module);
+          modules.put(event.module, install.moduleInfo);
+          mergeEvents(
+              install.recording,
+              install.index + 1,
+              install.nextEvent,
+              install.elementsStart,
+              install.elementsEnd,
+              install.privateBindersStart,
+              install.privateBindersEnd);
+        }
+        if (event.moduleInfo != null) {
+          elementsCopied = event.elementsEnd;
+          privateBindersCopied = event.privateBindersEnd;
+          i = event.nextEvent;
+        } else {
+          i++;
+        }
+      }
+      elements.addAll(recording.elements.subList(elementsCopied, elementsEnd));
+      privateBindersForScanning.addAll(
+          recording.privateBindersForScanning.subList(privateBindersCopied, privateBindersEnd));
     }
 
     private void forbidNestedScannerMethods(Module module) {
@@ -594,6 +931,11 @@ public final class Elements {
         return;
       }
       scanners.add(scanner);
+      if (events != null) {
+        events.add(
+            new RecordedEvent(
+                this, null, scanner, elements.size(), privateBindersForScanning.size()));
+      }
       elements.add(new ModuleAnnotatedMethodScannerBinding(getElementSource(), scanner));
     }
 
@@ -652,7 +994,7 @@ public final class Elements {
       if (declaringSource == null) {
         IncludeStackTraceOption stackTraceOption = getIncludeStackTraceOption();
         if (stackTraceOption == IncludeStackTraceOption.ONLY_FOR_DECLARING_SOURCE) {
-          StackTraceElement callingSource = sourceProvider.get(new Throwable().getStackTrace());
+          StackTraceElement callingSource = sourceProvider.get(getStackTrace());
           // If we've traversed past all reasonable sources and into our internal code, then we
           // don't know the source.
           if (callingSource
@@ -673,6 +1015,27 @@ public final class Elements {
           originalSource, trustedSource, declaringSource, moduleSource, scannerSource);
     }
 
+    /**
+     * Returns the current stack trace. When recording in parallel, the frames of the recording
+     * thread below the module are replaced by those of the thread that started recording, so
+     * sources are the same as when recording serially.
+     */
+    private StackTraceElement[] getStackTrace() {
+      StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+      if (callerStackTrace == null) {
+        return stackTrace;
+      }
+      for (int i = stackTrace.length - 1; i >= 0; i--) {
+        if (stackTrace[i].getClassName().equals(Elements.class.getName())
+            && stackTrace[i].getMethodName().equals("record")) {
+          StackTraceElement[] result = Arrays.copyOf(stackTrace, i + callerStackTrace.length);
+          System.arraycopy(callerStackTrace, 0, result, i, callerStackTrace.length);
+          return result;
+        }
+      }
+      return stackTrace;
+    }
+
     /** Returns if the binder is in the module scanning phase. */
     private boolean moduleScanning() {
       return currentScanner != null;
@@ -0,0 +1,81 @@
+package page.foliage.inject.spi;
+
+/**
+ * Injection metadata and member access for one class, generated at compile time by the
+ * foliage-guice-processor annotation processor. Guice uses it to find the injectable constructor,
+ * the injectable fields and methods, and the provider methods of the class without scanning it,
+ * and to call them without reflection or classes generated at runtime.
+ *
+ * <p>The generated class of a class {@code Foo} is named {@code Foo}{@value #SUFFIX}, using the
+ * binary name of {@code Foo}, and belongs to the same package, so it can use the members of {@code
+ * Foo} that aren't private. It is only used if it's listed by an {@link Index} that is registered
+ * as a {@link java.util.ServiceLoader} service and visible from the class loader of {@code Foo}.
+ *
+ * <p>Members are described by their name and JVM descriptor, separated by a space, such as {@code
+ * <init> (Ljava/lang/String;)V} for a constructor or {@code name Ljava/lang/String;} for a field.
+ * Described members that no longer exist, such as after a class was recompiled without the
+ * processor, are found by scanning instead.
+ *
+ * <p>This class is an implementation detail of generated code, and may change between releases.
+ */
+public abstract class GeneratedMembers {
+
+  /** The suffix of the names of generated classes. */
+  public static final String SUFFIX = "_GuiceMembers";
+
+  protected GeneratedMembers() {}
+
+  /**
+   * Returns the members declared by the class that {@link #invoke} can call, in the order of their
+   * indices.
+   */
+  public abstract String[] getAccessibleMembers();
+
+  /**
+   * Calls an accessible member, returning the new instance for a constructor and the result for a
+   * method. A field is set to the first argument.
+   *
+   * @param member the index of the member in {@link #getAccessibleMembers}
+   * @param target the instance whose field or method is used, ignored for constructors and static
+   *     methods
+   * @throws Throwable anything thrown by the constructor or method
+   */
+  public abstract Object invoke(int member, Object target, Object[] arguments) throws Throwable;
+
+  /**
+   * Returns the injectable constructor of the class as {@code flags name descriptor}, where the
+   * flags are 1 if the constructor is annotated with {@code @Inject} and 0 otherwise. Returns null
+   * if the constructor must be found by scanning.
+   */
+  public String getInjectableConstructor() {
+    return null;
+  }
+
+  /**
+   * Returns the injectable instance fields and methods of the class and its superclasses in the
+   * order they are injected, each as {@code depth flags name descriptor}. The depth is the number
+   * of superclasses between the class and the one that declares the member, and the flags are 2 for
+   * optional members and 0 otherwise. Returns null if the members must be found by scanning.
+   */
+  public String[] getInjectableMembers() {
+    return null;
+  }
+
+  /**
+   * Returns the methods of the class and its superclasses that are annotated with {@code
+   * Provides}, as found for instances of the class, each as {@code depth name descriptor}. Returns
+   * null if the methods must be found by scanning.
+   */
+  public String[] getProviderMethods() {
+    return null;
+  }
+
+  /**
+   * Lists the classes compiled with generated members. Implementations are generated along with
+   * the members, and found with {@link java.util.ServiceLoader}.
+   */
+  public interface Index {
+    /** Returns the binary names of the classes whose generated members are available. */
+    String[] getClassNames();
+  }
+}
@@ -0,0 +1,69 @@
+package page.foliage.inject.spi;
+
+import page.foliage.inject.Key;
+import page.foliage.inject.Provider;
+import page.foliage.inject.Scope;
+import page.foliage.inject.internal.ScopeSlots;
+
+/**
+ * A scope that stores its instances by slot rather than by key. When an injector scopes a binding
+ * with an indexed scope, it assigns the binding's key a slot: a small integer that's unique to the
+ * key within the scope. Slots are dense, starting from zero, so the scope can store its instances
+ * in an array instead of a map, and find them without hashing keys or comparing them with {@code
+ * equals}. Each instance is stored along with its key, which is compared by identity:
+ *
+ * <pre>
+ * public &lt;T&gt; Provider&lt;T&gt; scope(
+ *     Key&lt;T&gt; key, int slot, Provider&lt;T&gt; unscoped) {
+ *   return () -&gt; {
+ *     RequestStorage storage = currentRequest().storage(slot);
+ *     if (storage.keys[slot] != key) {
+ *       T instance = unscoped.get();
+ *       if (Scopes.isCircularProxy(instance)) {
+ *         return instance;
+ *       }
+ *       storage.instances[slot] = instance;
+ *       storage.keys[slot] = key;
+ *     }
+ *     return (T) storage.instances[slot];
+ *   };
+ * }</pre>
+ *
+ * <p>Bindings of the same key, such as those of sibling child injectors, get the same slot. Slots
+ * are assigned as bindings are created, including just-in-time bindings and the bindings of child
+ * injectors, so the storage of a scope must grow when it's given a slot beyond its length. Sizing
+ * new storage with {@link #getSlotCount} avoids growing it in most cases.
+ *
+ * <p>A key keeps its slot while any of the unscoped providers it was scoped with is reachable, so
+ * the providers returned by the scope must hold their unscoped providers. Once the key's bindings
+ * have all been collected, such as those of evicted child injectors, the key is released and its
+ * slot is reused by another key. Storage that can outlive the injectors that use it, such as the
+ * storage of sessions, may then hold an instance of the slot's previous key, which is why the
+ * example keeps the key of each instance and only returns the instance if its key is the requested
+ * one. Comparing keys with {@code ==} never returns the instance of another key; a binding whose
+ * key is equal to the stored one but a distinct object replaces the stored instance with its own.
+ */
+public interface IndexedScope extends Scope {
+
+  /**
+   * Scopes a provider, like {@link #scope(Key, Provider)}, storing its instances in {@code slot}.
+   *
+   * @param key binding key
+   * @param slot the slot of {@code key} in this scope
+   * @param unscoped locates an instance when one doesn't already exist in this scope.
+   * @return a new provider which only delegates to the given unscoped provider when an instance of
+   *     the requested object doesn't already exist in this scope
+   */
+  <T> Provider<T> scope(Key<T> key, int slot, Provider<T> unscoped);
+
+  /** Scopes a provider, storing its instances in the slot of {@code key}. */
+  @Override
+  default <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+    return scope(key, ScopeSlots.slotOf(this, key, unscoped), unscoped);
+  }
+
+  /** Returns one more than the highest slot in use in this scope, which sizes its storage. */
+  default int getSlotCount() {
+    return ScopeSlots.getSlotCount(this);
+  }
+}
@@ -28,6 +28,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -52,6 +53,9 @@ import page.foliage.inject.internal.Annotations;
 import page.foliage.inject.internal.DeclaredMembers;
 import page.foliage.inject.internal.Errors;
 import page.foliage.inject.internal.ErrorsException;
+import page.foliage.inject.internal.GeneratedInjection;
+import page.foliage.inject.internal.InjectionSnapshot;
+import page.foliage.inject.internal.InjectorCreationRecorder;
 import page.foliage.inject.internal.KotlinSupport;
 import page.foliage.inject.internal.Nullability;
 import page.foliage.inject.internal.util.Classes;
@@ -68,6 +72,20 @@ public final class InjectionPoint {
 
   private static final Logger logger = Logger.getLogger(InjectionPoint.class.getName());
 
+  /**
+   * The injectable constructors and instance members found for classes, shared by every injector
+   * in the JVM. Only the results for classes themselves are kept, not those for parameterized types,
+   * so that they never reference classes that aren't visible from the scanned class, and are
+   * dropped along with it.
+   */
+  private static final ClassValue<ScanResults> scanResults =
+      new ClassValue<ScanResults>() {
+        @Override
+        protected ScanResults computeValue(Class<?> type) {
+          return new ScanResults();
+        }
+      };
+
   private final boolean optional;
   private final Member member;
   private final TypeLiteral<?> declaringType;
@@ -293,7 +311,42 @@ public final class InjectionPoint {
    * @since 5.0
    */
   public static InjectionPoint forConstructorOf(TypeLiteral<?> type, boolean atInjectRequired) {
+    if (!(type.getType() instanceof Class)) {
+      return scanConstructorOf(type, atInjectRequired);
+    }
+    ScanResults results = scanResults.get(type.getRawType());
+    ScanResult<InjectionPoint> result =
+        atInjectRequired ? results.atInjectConstructor : results.constructor;
+    if (result == null) {
+      try {
+        result = new ScanResult<>(scanConstructorOf(type, atInjectRequired), null);
+      } catch (ConfigurationException e) {
+        result = new ScanResult<>(null, e.getErrorMessages());
+      }
+      if (atInjectRequired) {
+        results.atInjectConstructor = result;
+      } else {
+        results.constructor = result;
+      }
+    }
+    return result.get();
+  }
+
+  private static InjectionPoint scanConstructorOf(TypeLiteral<?> type, boolean atInjectRequired) {
     Class<?> rawType = getRawType(type.getType());
+    List<InjectionSnapshot.RecordedMember> generated = GeneratedInjection.findConstructor(rawType);
+    if (isInjectableConstructor(generated, atInjectRequired)) {
+      return new InjectionPoint(type, (Constructor<?>) generated.get(0).getMember());
+    }
+    InjectionSnapshot snapshot = InjectionSnapshot.get();
+    if (snapshot != null) {
+      List<InjectionSnapshot.RecordedMember> recorded =
+          snapshot.find(InjectionSnapshot.constructorKey(rawType), rawType, false);
+      if (isInjectableConstructor(recorded, atInjectRequired)) {
+        return new InjectionPoint(type, (Constructor<?>) recorded.get(0).getMember());
+      }
+    }
+    InjectorCreationRecorder.countReflectiveScan();
     Errors errors = new Errors(rawType);
 
     List<Constructor<?>> atInjectConstructors =
@@ -324,6 +377,7 @@ public final class InjectionPoint {
     errors.throwConfigurationExceptionIfErrorsExist();
 
     if (injectableConstructor != null) {
+      recordConstructor(snapshot, rawType, injectableConstructor, InjectionSnapshot.AT_INJECT);
       return new InjectionPoint(type, injectableConstructor);
     }
 
@@ -338,7 +392,9 @@ public final class InjectionPoint {
         throw new ConfigurationException(errors.getMessages());
       }
 
-      checkForMisplacedBindingAnnotations(noArgConstructor, errors);
+      if (!checkForMisplacedBindingAnnotations(noArgConstructor, errors)) {
+        recordConstructor(snapshot, rawType, noArgConstructor, 0);
+      }
       return new InjectionPoint(type, noArgConstructor);
     } catch (NoSuchMethodException e) {
       errors.missingConstructor(type);
@@ -346,6 +402,24 @@ public final class InjectionPoint {
     }
   }
 
+  /** Returns true if a constructor was found without scanning and satisfies atInjectRequired. */
+  private static boolean isInjectableConstructor(
+      List<InjectionSnapshot.RecordedMember> found, boolean atInjectRequired) {
+    return found != null
+        && (!atInjectRequired || (found.get(0).getFlags() & InjectionSnapshot.AT_INJECT) != 0);
+  }
+
+  private static void recordConstructor(
+      InjectionSnapshot snapshot, Class<?> rawType, Constructor<?> constructor, int flags) {
+    if (snapshot != null) {
+      snapshot.record(
+          InjectionSnapshot.constructorKey(rawType),
+          rawType,
+          false,
+          ImmutableList.of(new InjectionSnapshot.RecordedMember(constructor, flags)));
+    }
+  }
+
   /**
    * Returns a new injection point for the injectable constructor of {@code type}.
    *
@@ -427,6 +501,23 @@ public final class InjectionPoint {
    *     the valid injection points.
    */
   public static Set<InjectionPoint> forInstanceMethodsAndFields(TypeLiteral<?> type) {
+    if (!(type.getType() instanceof Class)) {
+      return scanInstanceMethodsAndFields(type);
+    }
+    ScanResults results = scanResults.get(type.getRawType());
+    ScanResult<Set<InjectionPoint>> result = results.instanceMembers;
+    if (result == null) {
+      try {
+        result = new ScanResult<>(scanInstanceMethodsAndFields(type), null);
+      } catch (ConfigurationException e) {
+        result = new ScanResult<>(e.getPartialValue(), e.getErrorMessages());
+      }
+      results.instanceMembers = result;
+    }
+    return result.get();
+  }
+
+  private static Set<InjectionPoint> scanInstanceMethodsAndFields(TypeLiteral<?> type) {
     Errors errors = new Errors();
     Set<InjectionPoint> result = getInjectionPoints(type, false, errors);
     if (errors.hasErrors()) {
@@ -450,6 +541,32 @@ public final class InjectionPoint {
     return forInstanceMethodsAndFields(TypeLiteral.get(type));
   }
 
+  /** The results of scanning a class, which are computed on first use. */
+  private static final class ScanResults {
+    volatile ScanResult<InjectionPoint> constructor;
+    volatile ScanResult<InjectionPoint> atInjectConstructor;
+    volatile ScanResult<Set<InjectionPoint>> instanceMembers;
+  }
+
+  /** The result of a scan, with the errors it reported if any. */
+  private static final class ScanResult<T> {
+    final T value;
+    final ImmutableList<Message> errors;
+
+    ScanResult(T value, Collection<Message> errors) {
+      this.value = value;
+      this.errors = errors != null ? ImmutableList.copyOf(errors) : null;
+    }
+
+    /** Returns the value, or throws the errors with the value as the partial value. */
+    T get() {
+      if (errors != null) {
+        throw new ConfigurationException(errors).withPartialValue(value);
+      }
+      return value;
+    }
+  }
+
   /** Returns true if the binding annotation is in the wrong place. */
   private static boolean checkForMisplacedBindingAnnotations(Member member, Errors errors) {
     Annotation misplacedBindingAnnotation =
@@ -496,6 +613,8 @@ public final class InjectionPoint {
     }
 
     abstract InjectionPoint toInjectionPoint();
+
+    abstract Member getMember();
   }
 
   static class InjectableField extends InjectableMember {
@@ -510,6 +629,11 @@ public final class InjectionPoint {
     InjectionPoint toInjectionPoint() {
       return new InjectionPoint(declaringType, field, optional);
     }
+
+    @Override
+    Member getMember() {
+      return field;
+    }
   }
 
   static class InjectableMethod extends InjectableMember {
@@ -530,6 +654,11 @@ public final class InjectionPoint {
       return new InjectionPoint(declaringType, method, optional);
     }
 
+    @Override
+    Member getMember() {
+      return method;
+    }
+
     public boolean isFinal() {
       return Modifier.isFinal(method.getModifiers());
     }
@@ -698,6 +827,23 @@ public final class InjectionPoint {
    */
   private static Set<InjectionPoint> getInjectionPoints(
       final TypeLiteral<?> type, boolean statics, Errors errors) {
+    Class<?> rawType = type.getRawType();
+    List<InjectionSnapshot.RecordedMember> generated =
+        statics ? null : GeneratedInjection.findMembers(rawType);
+    if (generated != null) {
+      return toInjectionPoints(type, generated, errors);
+    }
+    InjectionSnapshot snapshot = statics ? null : InjectionSnapshot.get();
+    if (snapshot != null) {
+      List<InjectionSnapshot.RecordedMember> recorded =
+          snapshot.find(InjectionSnapshot.membersKey(rawType), rawType, true);
+      if (recorded != null) {
+        return toInjectionPoints(type, recorded, errors);
+      }
+    }
+    InjectorCreationRecorder.countReflectiveScan();
+    int errorsBefore = errors.size();
+    boolean warned = false;
     InjectableMembers injectableMembers = new InjectableMembers();
     OverrideIndex overrideIndex = null;
 
@@ -739,6 +885,7 @@ public final class InjectionPoint {
                 boolean removed =
                     overrideIndex.removeIfOverriddenBy(method, false, injectableMethod);
                 if (removed) {
+                  warned = true;
                   logger.log(
                       Level.WARNING,
                       "Method: {0} is not a valid injectable method ("
@@ -773,6 +920,7 @@ public final class InjectionPoint {
             if (overrideIndex != null) {
               boolean removed = overrideIndex.removeIfOverriddenBy(method, false, null);
               if (removed) {
+                warned = true;
                 logger.log(
                     Level.WARNING,
                     "Method: {0} is not annotated with @Inject but "
@@ -787,6 +935,16 @@ public final class InjectionPoint {
       }
     }
 
+    if (snapshot != null && !warned && errors.size() == errorsBefore) {
+      List<InjectionSnapshot.RecordedMember> recorded = new ArrayList<>();
+      for (InjectableMember im = injectableMembers.head; im != null; im = im.next) {
+        recorded.add(
+            new InjectionSnapshot.RecordedMember(
+                im.getMember(), im.optional ? InjectionSnapshot.OPTIONAL : 0));
+      }
+      snapshot.record(InjectionSnapshot.membersKey(rawType), rawType, true, recorded);
+    }
+
     if (injectableMembers.isEmpty()) {
       return Collections.emptySet();
     }
@@ -804,6 +962,40 @@ public final class InjectionPoint {
     return builder.build();
   }
 
+  /**
+   * Returns the injection points of members recorded in the injection snapshot or listed by
+   * generated members, the same way as {@link #getInjectionPoints} does for the members it finds.
+   */
+  private static Set<InjectionPoint> toInjectionPoints(
+      TypeLiteral<?> type, List<InjectionSnapshot.RecordedMember> recorded, Errors errors) {
+    if (recorded.isEmpty()) {
+      return Collections.emptySet();
+    }
+    List<TypeLiteral<?>> hierarchy = hierarchyFor(type);
+    ImmutableSet.Builder<InjectionPoint> builder = ImmutableSet.builder();
+    for (InjectionSnapshot.RecordedMember member : recorded) {
+      TypeLiteral<?> declaringType = null;
+      for (TypeLiteral<?> current : hierarchy) {
+        if (current.getRawType() == member.getMember().getDeclaringClass()) {
+          declaringType = current;
+          break;
+        }
+      }
+      boolean optional = (member.getFlags() & InjectionSnapshot.OPTIONAL) != 0;
+      try {
+        builder.add(
+            member.getMember() instanceof Field
+                ? new InjectionPoint(declaringType, (Field) member.getMember(), optional)
+                : new InjectionPoint(declaringType, (Method) member.getMember(), optional));
+      } catch (ConfigurationException ignorable) {
+        if (!optional) {
+          errors.merge(ignorable.getErrorMessages());
+        }
+      }
+    }
+    return builder.build();
+  }
+
   private static Field[] getDeclaredFields(TypeLiteral<?> type) {
     return DeclaredMembers.getDeclaredFields(type.getRawType());
   }
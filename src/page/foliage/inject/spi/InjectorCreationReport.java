@@ -0,0 +1,70 @@
+package page.foliage.inject.spi;
+
+import java.time.Duration;
+import java.util.Map;
+
+import page.foliage.inject.Key;
+
+/**
+ * Where the time went while an injector was being created. Use it to track startup time, and to
+ * find the modules, bindings and singletons that dominate it.
+ *
+ * <p>Every injector has a report, which can be obtained with {@link
+ * page.foliage.inject.internal.InjectorCreationRecorder#getReport(page.foliage.inject.Injector)}.
+ * It isn't bound in the injector. Child injectors have their own report, while private
+ * environments share the report of the injector that they're part of. The report is complete once
+ * the injector has been created; reports obtained while the injector is being created, by eager
+ * singletons for example, only cover what was done up to that point.
+ *
+ * <p>All times are wall-clock times.
+ */
+public interface InjectorCreationReport {
+
+  /** Returns the time it took to create the injector. */
+  Duration getTotalTime();
+
+  /**
+   * Returns the time spent in each phase of injector creation, in the order the phases ran. Phases
+   * that ran once for each private environment are summed.
+   */
+  Map<String, Duration> getPhaseTimes();
+
+  /**
+   * Returns the time spent configuring modules, by module class name, slowest first. The time of a
+   * module excludes the modules it installed, and includes scanning it for provider methods.
+   * Modules of the same class are summed.
+   */
+  Map<String, Duration> getModuleTimes();
+
+  /**
+   * Returns the time spent creating just-in-time bindings while the injector was being created, by
+   * key, slowest first. The time of a binding includes the just-in-time bindings it required.
+   */
+  Map<Key<?>, Duration> getJustInTimeBindingTimes();
+
+  /**
+   * Returns the time spent loading eager singletons, by key, slowest first. The time of a singleton
+   * includes the dependencies that were provisioned for it.
+   */
+  Map<Key<?>, Duration> getEagerSingletonTimes();
+
+  /**
+   * Returns the number of classes generated for the creation of the injector, such as fast-classes
+   * and enhancers. Classes generated for other injectors at the same time aren't counted, and
+   * neither are classes that were already generated for an earlier injector.
+   */
+  long getGeneratedClassCount();
+
+  /**
+   * Returns the number of classes generated for each phase of injector creation, in the order the
+   * phases ran, counted like {@link #getGeneratedClassCount}.
+   */
+  Map<String, Long> getPhaseGeneratedClassCounts();
+
+  /**
+   * Returns the number of types whose constructors or members were scanned for injection points
+   * for the creation of the injector. Types scanned for other injectors at the same time aren't
+   * counted.
+   */
+  long getReflectiveScanCount();
+}
@@ -0,0 +1,31 @@
+package page.foliage.inject.spi;
+
+import java.util.Map;
+
+import page.foliage.inject.Binding;
+
+/**
+ * The provision statistics of the bindings of an injector. Use it to find the bindings that are
+ * provisioned most often or take the longest, and the singletons whose creation threads wait for.
+ *
+ * <p>Metrics are only collected when the {@code guice_provision_metrics_option} system property is
+ * set to {@code ENABLED}. Every injector then has its metrics, which can be injected or obtained
+ * with {@code injector.getInstance(ProvisionMetrics.class)}; otherwise they aren't bound. Child
+ * injectors and private environments have their own metrics, covering the bindings that belong to
+ * them.
+ *
+ * <p>Constructor bindings and bindings to providers are measured, including just-in-time bindings.
+ * Bindings to instances, and bindings that link to other bindings, aren't provisioned themselves:
+ * their provisions are measured by the bindings they're linked to.
+ */
+public interface ProvisionMetrics {
+
+  /** Returns true if provision metrics are being collected. */
+  boolean isEnabled();
+
+  /**
+   * Returns the statistics of the bindings of this injector that have been provisioned or waited
+   * for. The statistics are live: their values are read when they're requested.
+   */
+  Map<Binding<?>, ProvisionStatistics> getStatistics();
+}
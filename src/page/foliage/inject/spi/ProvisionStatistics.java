@@ -0,0 +1,46 @@
+package page.foliage.inject.spi;
+
+import java.time.Duration;
+
+/**
+ * How often a binding was provisioned and how long it took. Times are wall-clock times measured
+ * around each provision, so they include the dependencies that were provisioned for it. Failed
+ * provisions are included; circular proxies and re-entrant references aren't.
+ *
+ * <p>Latencies are kept in a histogram of {@value #BUCKETS} buckets whose bounds are powers of two:
+ * bucket {@code i} counts the provisions that took at least {@code 2^i} and less than {@code
+ * 2^(i+1)} nanoseconds, and the last bucket counts all longer provisions.
+ *
+ * @see ProvisionMetrics
+ */
+public interface ProvisionStatistics {
+
+  /** The number of buckets in the latency histogram. */
+  int BUCKETS = 32;
+
+  /** Returns the number of provisions. */
+  long getCount();
+
+  /** Returns the cumulative time of all provisions. */
+  Duration getTotalTime();
+
+  /** Returns the time of the longest provision. */
+  Duration getMaxTime();
+
+  /**
+   * Returns an upper bound of the time within which the given percentage of provisions completed,
+   * at the resolution of the histogram.
+   *
+   * @param percentile between 0 and 100
+   */
+  Duration getTimeAtPercentile(double percentile);
+
+  /** Returns a copy of the latency histogram. */
+  long[] getHistogram();
+
+  /**
+   * Returns the cumulative time that threads waited for the lock that guards the creation of the
+   * singleton of this binding.
+   */
+  Duration getSingletonLockWaitTime();
+}
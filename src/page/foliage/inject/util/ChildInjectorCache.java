@@ -0,0 +1,313 @@
+package page.foliage.inject.util;
+
+import static page.foliage.guava.common.base.Preconditions.checkArgument;
+import static page.foliage.guava.common.base.Preconditions.checkNotNull;
+import static page.foliage.guava.common.base.Preconditions.checkState;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import page.foliage.guava.common.base.Throwables;
+import page.foliage.guava.common.cache.CacheBuilder;
+import page.foliage.guava.common.cache.CacheLoader;
+import page.foliage.guava.common.cache.LoadingCache;
+import page.foliage.guava.common.cache.RemovalCause;
+import page.foliage.guava.common.cache.RemovalListener;
+import page.foliage.guava.common.cache.Weigher;
+import page.foliage.guava.common.util.concurrent.ExecutionError;
+import page.foliage.guava.common.util.concurrent.UncheckedExecutionException;
+import page.foliage.inject.Injector;
+import page.foliage.inject.InjectorTemplate;
+import page.foliage.inject.Key;
+import page.foliage.inject.Module;
+import page.foliage.inject.internal.InjectorResources;
+
+/**
+ * A bounded cache of child injectors, one for each configuration, such as the child injectors of
+ * the tenants of a service. Children are created on first use from the cache's modules or {@link
+ * InjectorTemplate}, and evicted when there are too many of them, when they retain too much memory,
+ * or when they haven't been used for a while:
+ *
+ * <pre>
+ *     ChildInjectorCache&lt;TenantConfig&gt; tenants = ChildInjectorCache.newBuilder()
+ *         .maximumRetainedSize(64 * 1024 * 1024)
+ *         .expireAfterAccess(Duration.ofMinutes(30))
+ *         .build(parent, config -&gt; ImmutableList.of(new TenantModule(config)));
+ *
+ *     Injector tenant = tenants.get(config);
+ * </pre>
+ *
+ * <p>Configurations are compared with {@code equals}, so they must implement it along with {@code
+ * hashCode}. When a child is evicted or invalidated, the singletons it created for its own bindings
+ * that implement {@link AutoCloseable} are closed, in the reverse order of their bindings. The
+ * child must not be used afterwards.
+ *
+ * <p>The memory a child retains is estimated by default from the number of its bindings; use
+ * {@link Builder#retainedSize} to count the instances it holds as well. A child is weighed when
+ * it's created, and weighed again when it's returned by the cache after creating just-in-time
+ * bindings, so that the children that keep growing are counted against {@link
+ * Builder#maximumRetainedSize} as they grow.
+ */
+public final class ChildInjectorCache<C> {
+
+  private static final Logger logger = Logger.getLogger(ChildInjectorCache.class.getName());
+
+  private final LoadingCache<C, Child> children;
+  private final ToLongFunction<? super Injector> retainedSize;
+  private final boolean weighed;
+
+  private ChildInjectorCache(Builder builder, Function<? super C, Injector> factory) {
+    this.retainedSize = builder.retainedSize;
+    this.weighed = builder.maximumRetainedSize >= 0;
+    CacheBuilder<C, Child> cacheBuilder =
+        CacheBuilder.newBuilder()
+            .removalListener(
+                (RemovalListener<C, Child>)
+                    notification -> {
+                      // children are replaced by themselves when they're weighed again
+                      if (notification.getCause() != RemovalCause.REPLACED) {
+                        closeSingletons(notification.getValue().injector);
+                      }
+                    });
+    if (builder.maximumSize >= 0) {
+      cacheBuilder.maximumSize(builder.maximumSize);
+    }
+    if (builder.maximumRetainedSize >= 0) {
+      // A segmented cache bounds the weight of each segment, which a single child could exceed.
+      // Children are still created concurrently, since loads don't hold the segment's lock.
+      cacheBuilder
+          .concurrencyLevel(1)
+          .maximumWeight(builder.maximumRetainedSize)
+          .weigher((Weigher<C, Child>) (configuration, child) -> child.weight);
+    }
+    if (builder.expireAfterAccess != null) {
+      cacheBuilder.expireAfterAccess(builder.expireAfterAccess);
+    }
+    this.children =
+        cacheBuilder.build(
+            new CacheLoader<C, Child>() {
+              @Override
+              public Child load(C configuration) {
+                Injector injector = factory.apply(configuration);
+                IntSupplier jitBindingCounter = InjectorResources.jitBindingCounter(injector);
+                return new Child(injector, jitBindingCounter, weigher());
+              }
+            });
+  }
+
+  /** Returns a builder of caches of child injectors, which are unbounded by default. */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the child injector of {@code configuration}, creating it if it isn't cached. Threads
+   * that ask for a configuration while its child is being created wait for it.
+   *
+   * @throws page.foliage.inject.CreationException if the child can't be created
+   */
+  public Injector get(C configuration) {
+    checkNotNull(configuration, "configuration");
+    Child child;
+    try {
+      child = children.getUnchecked(configuration);
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+    if (weighed && child.hasGrown()) {
+      // the child is weighed again before it's replaced, which evicts others if it's now over the
+      // limit; the weigher only reads the weight, as it's called with the segment locked
+      children.asMap().replace(configuration, child, child.weighAgain(retainedSize));
+    }
+    return child.injector;
+  }
+
+  /** Returns the measure of the children when they're weighed, or null if they aren't. */
+  @Nullable
+  private ToLongFunction<? super Injector> weigher() {
+    return weighed ? retainedSize : null;
+  }
+
+  /** Returns the child injector of {@code configuration}, or null if it isn't cached. */
+  public Injector getIfPresent(C configuration) {
+    Child child = children.getIfPresent(checkNotNull(configuration, "configuration"));
+    return child != null ? child.injector : null;
+  }
+
+  /** Removes the child injector of {@code configuration}, closing its singletons. */
+  public void invalidate(C configuration) {
+    children.invalidate(checkNotNull(configuration, "configuration"));
+  }
+
+  /** Removes all the child injectors, closing their singletons. */
+  public void invalidateAll() {
+    children.invalidateAll();
+  }
+
+  /** Returns the number of cached child injectors. */
+  public long size() {
+    return children.size();
+  }
+
+  /** Returns the memory currently retained by each cached child injector, in bytes. */
+  public Map<C, Long> getRetainedSizes() {
+    Map<C, Long> sizes = new LinkedHashMap<>();
+    for (Map.Entry<C, Child> entry : children.asMap().entrySet()) {
+      sizes.put(entry.getKey(), retainedSize.applyAsLong(entry.getValue().injector));
+    }
+    return Collections.unmodifiableMap(sizes);
+  }
+
+  /** Returns the memory currently retained by all the cached child injectors, in bytes. */
+  public long getRetainedSize() {
+    long size = 0;
+    for (Child child : children.asMap().values()) {
+      size += retainedSize.applyAsLong(child.injector);
+    }
+    return size;
+  }
+
+  /** Closes the closeable singletons created by a removed child, in reverse order. */
+  private static void closeSingletons(Injector injector) {
+    List<Object> singletons = InjectorResources.getSingletons(injector);
+    for (int i = singletons.size() - 1; i >= 0; i--) {
+      Object singleton = singletons.get(i);
+      if (singleton instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) singleton).close();
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Unable to close singleton " + singleton, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * A cached child injector, with its weight and the just-in-time bindings it had when it was
+   * weighed. It's weighed before it's put in the cache, since measuring it may take the locks of
+   * the injector.
+   */
+  private static final class Child {
+    final Injector injector;
+    final int weight;
+    private final IntSupplier jitBindingCounter;
+    private final int weighedJitBindings;
+
+    Child(
+        Injector injector,
+        IntSupplier jitBindingCounter,
+        @Nullable ToLongFunction<? super Injector> retainedSize) {
+      this.injector = injector;
+      this.jitBindingCounter = jitBindingCounter;
+      this.weighedJitBindings = jitBindingCounter.getAsInt();
+      this.weight =
+          retainedSize == null
+              ? 0
+              : (int) Math.min(Integer.MAX_VALUE, retainedSize.applyAsLong(injector));
+    }
+
+    /** Returns true if the child created just-in-time bindings since it was weighed. */
+    boolean hasGrown() {
+      return jitBindingCounter.getAsInt() != weighedJitBindings;
+    }
+
+    /** Returns this child weighed again, to replace it in the cache. */
+    Child weighAgain(ToLongFunction<? super Injector> retainedSize) {
+      return new Child(injector, jitBindingCounter, retainedSize);
+    }
+  }
+
+  /** Builds caches of child injectors. */
+  public static final class Builder {
+    private long maximumSize = -1;
+    private long maximumRetainedSize = -1;
+    private Duration expireAfterAccess;
+    private ToLongFunction<? super Injector> retainedSize =
+        InjectorResources::estimateRetainedSize;
+
+    private Builder() {}
+
+    /**
+     * Limits the number of cached child injectors. Can't be combined with {@link
+     * #maximumRetainedSize}.
+     *
+     * @throws IllegalStateException if {@link #maximumRetainedSize} was set
+     */
+    public Builder maximumSize(long maximumSize) {
+      checkArgument(maximumSize >= 0, "maximumSize must not be negative: %s", maximumSize);
+      checkState(maximumRetainedSize < 0, "maximumSize can't be combined with maximumRetainedSize");
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Limits the memory retained by the cached child injectors, in bytes. Can't be combined with
+     * {@link #maximumSize}.
+     *
+     * @throws IllegalStateException if {@link #maximumSize} was set
+     */
+    public Builder maximumRetainedSize(long maximumRetainedSize) {
+      checkArgument(
+          maximumRetainedSize >= 0,
+          "maximumRetainedSize must not be negative: %s",
+          maximumRetainedSize);
+      checkState(maximumSize < 0, "maximumRetainedSize can't be combined with maximumSize");
+      this.maximumRetainedSize = maximumRetainedSize;
+      return this;
+    }
+
+    /** Evicts child injectors that haven't been returned by the cache for {@code duration}. */
+    public Builder expireAfterAccess(Duration duration) {
+      checkArgument(!duration.isNegative(), "duration must not be negative: %s", duration);
+      this.expireAfterAccess = duration;
+      return this;
+    }
+
+    /**
+     * Sets how the memory retained by a child injector is measured, in bytes. By default, it's
+     * estimated from the number of bindings of the child and the private environments it exposes,
+     * without the instances they hold. With {@link #maximumRetainedSize}, it's applied whenever a
+     * child is weighed, which is when it's created, and when it's returned after creating
+     * just-in-time bindings.
+     */
+    public Builder retainedSize(ToLongFunction<? super Injector> retainedSize) {
+      this.retainedSize = checkNotNull(retainedSize, "retainedSize");
+      return this;
+    }
+
+    /**
+     * Builds a cache that creates the child injector of a configuration from the modules returned
+     * for it.
+     */
+    public <C> ChildInjectorCache<C> build(
+        Injector parent, Function<? super C, ? extends Iterable<? extends Module>> modules) {
+      checkNotNull(parent, "parent");
+      checkNotNull(modules, "modules");
+      return new ChildInjectorCache<C>(
+          this, configuration -> parent.createChildInjector(modules.apply(configuration)));
+    }
+
+    /**
+     * Builds a cache that creates the child injector of a configuration from {@code template},
+     * with the seeds returned for it.
+     */
+    public <C> ChildInjectorCache<C> build(
+        InjectorTemplate template, Function<? super C, ? extends Map<Key<?>, ?>> seeds) {
+      checkNotNull(template, "template");
+      checkNotNull(seeds, "seeds");
+      return new ChildInjectorCache<C>(
+          this, configuration -> template.createChildInjector(seeds.apply(configuration)));
+    }
+  }
+}